@@ -26,7 +26,7 @@ public class DisplayManager {
 	private ConcurrentHashMap<Printer, GraphicsDevice> graphicsDevicesByPrinter = new ConcurrentHashMap<Printer, GraphicsDevice>();
 	private ConcurrentHashMap<String, Printer> printersByDisplayIDString = new ConcurrentHashMap<String, Printer>();
 
-	public static DisplayManager Instance() {
+	public static synchronized DisplayManager Instance() {
 		if (INSTANCE == null) {
 			INSTANCE = new DisplayManager();
 		}
@@ -37,6 +37,17 @@ public class DisplayManager {
 	}
 
 	public void assignDisplay(Printer newPrinter, GraphicsDevice device) throws AlreadyAssignedException, InappropriateDeviceException {
+		//Printers that start at the same time would otherwise both pick the same last available display
+		synchronized (this) {
+			device = reserveDisplay(newPrinter, device);
+		}
+
+		newPrinter.setGraphicsData(device);
+		newPrinter.showBlankImage();
+		logger.info("Display:{} assigned to Printer:{}", device, newPrinter);
+	}
+	
+	private GraphicsDevice reserveDisplay(Printer newPrinter, GraphicsDevice device) throws AlreadyAssignedException, InappropriateDeviceException {
 		if (device.getIDstring().equals(LAST_AVAILABLE_DISPLAY)) {
 			ArrayList<GraphicsDevice> devices = new ArrayList<GraphicsDevice>();
 			devices.addAll(Arrays.asList(getGraphicsEnvironment().getScreenDevices()));
@@ -63,10 +74,7 @@ public class DisplayManager {
 			graphicsDevicesByPrinter.remove(newPrinter);
 			throw new AlreadyAssignedException("Display already assigned to:" + otherJob, otherJob);
 		}
-
-		newPrinter.setGraphicsData(device);
-		newPrinter.showBlankImage();
-		logger.info("Display:{} assigned to Printer:{}", device, newPrinter);
+		return device;
 	}
 	
 	public List<GraphicsDevice> getDisplayDevices() {
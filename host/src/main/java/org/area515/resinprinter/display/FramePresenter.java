@@ -0,0 +1,99 @@
+package org.area515.resinprinter.display;
+
+import java.awt.AWTException;
+import java.awt.BufferCapabilities;
+import java.awt.Graphics2D;
+import java.awt.ImageCapabilities;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.image.BufferStrategy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Paints frames into the back buffer of a window and only returns once they have been shown.
+ *
+ * A repaint() only asks the event thread to paint the window sometime later, so anything that is timed from it starts
+ * before the frame is on the screen. Here the frame is painted by the caller into the window's BufferStrategy, which
+ * keeps its buffers in VolatileImages, and show() is called on it. When the display can page flip, show() flips on
+ * the next vertical retrace. Otherwise the back buffer is copied to the screen and the toolkit is synced to get it
+ * there. Either way the time that is returned is when the frame was shown.
+ */
+public class FramePresenter {
+	private static final Logger logger = LogManager.getLogger();
+	
+	/**
+	 * Returned by present() when the frame couldn't be shown yet, so nothing should be timed from it.
+	 */
+	public static final long NOT_PRESENTED = Long.MIN_VALUE;
+
+	public interface FramePainter {
+		public void paint(Graphics2D g);
+	}
+
+	private Window window;
+	private BufferStrategy strategy;
+	private FramePainter painter;
+
+	public FramePresenter(Window window, FramePainter painter) {
+		this.window = window;
+		this.painter = painter;
+	}
+
+	FramePresenter(BufferStrategy strategy, FramePainter painter) {
+		this.strategy = strategy;
+		this.painter = painter;
+	}
+
+	/**
+	 * @return the System.nanoTime() at which the frame was shown or NOT_PRESENTED if the window isn't on the screen
+	 */
+	public synchronized long present() {
+		BufferStrategy strategy = getBufferStrategy();
+		if (strategy == null) {
+			//Until the window is on the screen there isn't anything to show the frame on, it will be painted when it gets there
+			logger.debug("Window:{} isn't on the screen, the frame will be painted once it is", window.getName());
+			window.repaint();
+			return NOT_PRESENTED;
+		}
+
+		//The buffers can be lost at any time, for example when the display changes mode, so paint until a whole frame makes it
+		do {
+			do {
+				Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+				try {
+					painter.paint(g);
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+
+			strategy.show();
+		} while (strategy.contentsLost());
+
+		Toolkit.getDefaultToolkit().sync();
+		return System.nanoTime();
+	}
+
+	private BufferStrategy getBufferStrategy() {
+		if (window == null || strategy != null && window.isDisplayable()) {
+			return strategy;
+		}
+
+		//A window that was disposed took its buffers with it
+		strategy = null;
+		if (!window.isDisplayable()) {
+			return null;
+		}
+
+		try {
+			window.createBufferStrategy(2, new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED));
+		} catch (AWTException e) {
+			logger.info("Page flipping isn't available for:{}, frames will be copied to the screen", window.getName());
+			window.createBufferStrategy(2);
+		}
+		strategy = window.getBufferStrategy();
+		return strategy;
+	}
+}
@@ -1,6 +1,10 @@
 package org.area515.resinprinter.gcode;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -8,15 +12,19 @@ import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.gcode.GCodeProgram.GCodeLine;
+import org.area515.resinprinter.job.ExposureClock;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.job.PrintJobMetrics;
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.MachineConfig;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.printer.Printer.DisplayState;
 import org.area515.resinprinter.serial.SerialManager;
 import org.area515.util.IOUtilities;
 import org.area515.util.IOUtilities.ParseState;
-import org.area515.util.TemplateEngine;
 
 import freemarker.template.TemplateException;
 
@@ -29,6 +37,8 @@ public abstract class GCodeControl {
     private ReentrantLock gCodeLock = new ReentrantLock();
     private StringBuilder builder = new StringBuilder();
     private int parseLocation = 0;
+    private volatile long averageResponseTime = 0;
+    private ExposureClock exposureClock = ExposureClock.SYSTEM;
     
     public GCodeControl(Printer printer) {
     	this.printer = printer;
@@ -40,6 +50,36 @@ public abstract class GCodeControl {
     	return printer;
     }
     
+    /**
+     * @return the recent average of milliseconds between writing a gcode and reading its response
+     */
+    public long getAverageResponseTime() {
+    	return averageResponseTime;
+    }
+    
+    public ExposureClock getExposureClock() {
+    	return exposureClock;
+    }
+    
+    /**
+     * <Delay>s are waited out on this clock, since for CWS files they are the exposures.
+     */
+    public void setExposureClock(ExposureClock exposureClock) {
+    	this.exposureClock = exposureClock;
+    }
+    
+    private void addResponseTime(long responseTime) {
+    	//Weighs recent gcodes the most, since the firmware can be busier at some times than others
+    	averageResponseTime = averageResponseTime == 0?responseTime:(averageResponseTime * 7 + responseTime) / 8;
+    }
+    
+    private void record(PrintJob printJob, Phase phase, long nanos) {
+    	PrintJobMetrics metrics = printJob.getMetrics();
+    	if (metrics != null) {
+    		metrics.record(printJob.getCurrentSlice(), phase, nanos);
+    	}
+    }
+    
 	private PrinterResponse readUntilOkOrStoppedPrinting(Printer printer) throws IOException {
 		PrinterResponse line = null;
 		StringBuilder responseBuilder = new StringBuilder();
@@ -63,6 +103,21 @@ public abstract class GCodeControl {
 		return line;
 	}
 	
+	//Feedback messages and status reports can come before the ok, but they don't free up any of the firmware's buffer
+	private PrinterResponse readUntilAcknowledgedOrStoppedPrinting(Printer printer) throws IOException {
+		PrinterResponse response = readUntilOkOrStoppedPrinting(printer);
+		while (response != null && response.getLastLineMatcher().group(1) == null) {
+			PrinterResponse nextResponse = readUntilOkOrStoppedPrinting(printer);
+			if (nextResponse == null) {
+				return null;
+			}
+			
+			nextResponse.getFullResponse().insert(0, response.getFullResponse());
+			response = nextResponse;
+		}
+		return response;
+	}
+	
 	private boolean isPausableError(Matcher matcher, PrintJob printJob) {
 		if (matcher.group(1) == null || !matcher.group(1).toLowerCase().endsWith("rror:")) {
 			return false;
@@ -83,11 +138,15 @@ public abstract class GCodeControl {
         	boolean mustAttempt = true;
         	for (int attempt = 0; mustAttempt; attempt++) {
 	        	logger.info("Write {}: {}", attempt, cmd);
+	        	long writeTime = System.nanoTime();
 	        	getPrinter().getPrinterFirmwareSerialPort().write(cmd.getBytes());
 	        	PrinterResponse response = readUntilOkOrStoppedPrinting(printer);
 	        	if (response == null) {
 	        		return "";//I think this should be null, but I'm preserving backwards compatibility
 	        	}
+	        	long roundTrip = System.nanoTime() - writeTime;
+	        	addResponseTime(roundTrip / 1000000);
+	        	record(printJob, Phase.GCodeRoundTrip, roundTrip);
 	        	
 	        	if (isPausableError(response.getLastLineMatcher(), printJob)) {
 	        		attempt++;
@@ -97,11 +156,13 @@ public abstract class GCodeControl {
 	        		
 	        		//Allow the user to manipulate the printer while paused
 	        		gCodeLock.unlock();
+	        		long pauseStart = System.nanoTime();
 	        		try {
 	        			mustAttempt = printer.waitForPauseIfRequired();
 	        		} finally {
 	        			gCodeLock.lock();
 	        		}
+	        		record(printJob, Phase.Pause, System.nanoTime() - pauseStart);
 	        	} else {
 	        		mustAttempt = false;
 	        	}
@@ -115,6 +176,103 @@ public abstract class GCodeControl {
         }
     }
     
+	/**
+	 * Streams gcodes to a firmware that can buffer receiveBufferSize bytes of them, by counting the bytes of every
+	 * gcode that hasn't been responded to yet. Each response is for the oldest of those gcodes.
+	 * 
+	 * When a gcode is responded to with a pausable error, nothing else is written. The gcodes that were already sent after
+	 * it are still executed by the firmware, so their responses are read and checked for errors too before the print is
+	 * paused. Every gcode that failed is then attempted again in its original order, and the rest of the gcodes are sent
+	 * one at a time, so that no gcode can run ahead of one that fails from then on.
+	 */
+	String sendGcodesAndRespectPrinter(PrintJob printJob, List<String> cmds, int receiveBufferSize) throws IOException {
+		gCodeLock.lock();
+		try {
+			StringBuilder builder = new StringBuilder();
+			ArrayDeque<String> unsentGCodes = new ArrayDeque<String>();
+			for (String cmd : cmds) {
+				unsentGCodes.add(cmd.endsWith("\n") ? cmd : cmd + "\n");
+			}
+			
+			ArrayDeque<String> unacknowledgedGCodes = new ArrayDeque<String>();
+			ArrayDeque<Long> writeTimes = new ArrayDeque<Long>();
+			int bufferedBytes = 0;
+			while (true) {
+				while (!unsentGCodes.isEmpty() && printer.isPrintActive()) {
+					byte[] gcode = unsentGCodes.peekFirst().getBytes();
+					if (!unacknowledgedGCodes.isEmpty() && bufferedBytes + gcode.length > receiveBufferSize) {
+						break;
+					}
+					
+					logger.info("Write {} buffered bytes: {}", bufferedBytes, unsentGCodes.peekFirst());
+					getPrinter().getPrinterFirmwareSerialPort().write(gcode);
+					writeTimes.addLast(System.nanoTime());
+					unacknowledgedGCodes.addLast(unsentGCodes.removeFirst());
+					bufferedBytes += gcode.length;
+				}
+				
+				if (unacknowledgedGCodes.isEmpty()) {
+					return builder.toString();
+				}
+				
+				PrinterResponse response = readUntilAcknowledgedOrStoppedPrinting(printer);
+				if (response == null) {
+					return builder.toString();
+				}
+				
+				String acknowledgedGCode = unacknowledgedGCodes.removeFirst();
+				record(printJob, Phase.GCodeRoundTrip, System.nanoTime() - writeTimes.removeFirst());
+				bufferedBytes -= acknowledgedGCode.getBytes().length;
+				builder.append(response.getFullResponse().toString());
+				if (isPausableError(response.getLastLineMatcher(), printJob)) {
+					ArrayDeque<String> failedGCodes = new ArrayDeque<String>();
+					failedGCodes.addLast(acknowledgedGCode);
+					while (!unacknowledgedGCodes.isEmpty()) {
+						PrinterResponse bufferedResponse = readUntilAcknowledgedOrStoppedPrinting(printer);
+						if (bufferedResponse == null) {
+							return builder.toString();
+						}
+						
+						builder.append(bufferedResponse.getFullResponse().toString());
+						String bufferedGCode = unacknowledgedGCodes.removeFirst();
+						record(printJob, Phase.GCodeRoundTrip, System.nanoTime() - writeTimes.removeFirst());
+						if (isPausableError(bufferedResponse.getLastLineMatcher(), printJob)) {
+							failedGCodes.addLast(bufferedGCode);
+						}
+					}
+					bufferedBytes = 0;
+					
+					//Ping-pong for the rest of the block
+					receiveBufferSize = 0;
+					
+					printJob.setErrorDescription(response.getLastLineMatcher().group(2));
+					printer.setStatus(JobStatus.PausedWithWarning);
+					NotificationManager.jobChanged(printer, printJob);
+					
+					//Allow the user to manipulate the printer while paused
+					gCodeLock.unlock();
+					boolean mustAttempt;
+					long pauseStart = System.nanoTime();
+					try {
+						mustAttempt = printer.waitForPauseIfRequired();
+					} finally {
+						gCodeLock.lock();
+					}
+					record(printJob, Phase.Pause, System.nanoTime() - pauseStart);
+					
+					if (mustAttempt) {
+						Iterator<String> failedGCodeIter = failedGCodes.descendingIterator();
+						while (failedGCodeIter.hasNext()) {
+							unsentGCodes.addFirst(failedGCodeIter.next());
+						}
+					}
+				}
+			}
+		} finally {
+			gCodeLock.unlock();
+		}
+	}
+	
     public String sendGcode(String cmd) {
 		gCodeLock.lock();
         try {
@@ -123,11 +281,13 @@ public abstract class GCodeControl {
         	}
         	
         	logger.info("Write: {}", cmd);
+        	long writeTime = System.currentTimeMillis();
         	getPrinter().getPrinterFirmwareSerialPort().write(cmd.getBytes());
         	PrinterResponse response = readUntilOkOrStoppedPrinting(null);
         	if (response == null) {
         		return "";
         	}
+        	addResponseTime(System.currentTimeMillis() - writeTime);
         	
         	return response.getFullResponse().toString();
         } catch (IOException ex) {
@@ -189,55 +349,65 @@ public abstract class GCodeControl {
         return sendGcode("G28\r\n");
     }
     
-    private void parseCommentCommand(String comment) {
-		//If a comment was encountered, parse it to determine if something interesting was in there.
-		Pattern delayPattern = Pattern.compile(";\\s*<\\s*Delay\\s*>\\s*(\\d+).*", Pattern.CASE_INSENSITIVE);
-		Matcher matcher = delayPattern.matcher(comment);
-		if (matcher.matches()) {
-			try {
-				int sleepTime = Integer.parseInt(matcher.group(1));
-				logger.info("Sleep:{}", sleepTime);
-				Thread.sleep(sleepTime);
-				logger.info("Sleep complete");
-			} catch (InterruptedException e) {
-				logger.error("Interrupted while waiting for sleep to complete.", e);
+    //For CWS files the delay after an image is shown is its exposure, so it's held to a deadline as well
+    private void delay(PrintJob printJob, int sleepTime) {
+		try {
+			logger.info("Sleep:{}", sleepTime);
+			//Only a delay while a slice is on the display is an exposure, the rest wait on lifts, headers and other gcodes
+			boolean exposing = printJob.getPrinter().getDisplayState() == DisplayState.CurrentSlice;
+			ExposureClock clock = getExposureClock();
+			long error = clock.waitUntil(clock.nanoTime() + sleepTime * 1000000L, () -> printJob.getPrinter().isPrintActive());
+			PrintJobMetrics metrics = printJob.getMetrics();
+			if (metrics != null && exposing) {
+				metrics.recordExposureError(printJob.getCurrentSlice(), error);
 			}
+			logger.info("Sleep complete");
+		} catch (InterruptedException e) {
+			logger.error("Interrupted while waiting for sleep to complete.", e);
 		}
     }
     
     public String executeGCodeWithTemplating(PrintJob printJob, String gcodes) throws InappropriateDeviceException {
-		Pattern gCodePattern = Pattern.compile("\\s*([^;]*)\\s*(;.*)?", Pattern.CASE_INSENSITIVE);
 		try {
 			if (gcodes == null || gcodes.trim().isEmpty()) {
 				throw new InappropriateDeviceException(MachineConfig.NOT_CAPABLE);
 			}
 			
 			StringBuilder buffer = new StringBuilder();
-			gcodes = TemplateEngine.buildData(printJob, printJob.getPrinter(), gcodes);
-			if (gcodes == null) {
+			List<GCodeLine> lines = printJob.buildGCodeProgram(gcodes).buildLines();
+			if (lines == null) {
 				return null;
 			}
 			
-			for (String gcode : gcodes.split("[\r]?\n")) {
+			Integer receiveBufferSize = printJob.getPrinter().getConfiguration().getMachineConfig().getFirmwareReceiveBufferSize();
+			boolean pipelined = receiveBufferSize != null && receiveBufferSize > 0;
+			List<String> pipelinedGCodes = new ArrayList<String>();
+			for (GCodeLine line : lines) {
 				if (!printJob.getPrinter().isPrintActive()) {
 					break;
 				}
 				
-				if (gcode != null) {
-					Matcher matcher = gCodePattern.matcher(gcode);
-					if (matcher.matches()) {
-						String singleGCode = matcher.group(1);
-						String comment = matcher.group(2);
-						if (singleGCode != null && singleGCode.trim().length() > 0) {
-							buffer.append(sendGcodeAndRespectPrinter(printJob, singleGCode));
-						}
-						if (comment != null) {
-							parseCommentCommand(comment);
-						}
+				if (line.getGCode() != null) {
+					if (pipelined) {
+						pipelinedGCodes.add(line.getGCode());
+					} else {
+						buffer.append(sendGcodeAndRespectPrinter(printJob, line.getGCode()));
+					}
+				}
+				if (line.getDelay() != null) {
+					//Delays are for the gcodes before them to finish, so they all have to be responded to first
+					if (!pipelinedGCodes.isEmpty()) {
+						buffer.append(sendGcodesAndRespectPrinter(printJob, pipelinedGCodes, receiveBufferSize));
+						pipelinedGCodes.clear();
 					}
+					delay(printJob, line.getDelay());
 				}
 			}
 			
+			if (!pipelinedGCodes.isEmpty()) {
+				buffer.append(sendGcodesAndRespectPrinter(printJob, pipelinedGCodes, receiveBufferSize));
+			}
+			
 			return buffer.toString();
 		} catch (IOException | TemplateException e) {
 			throw new InappropriateDeviceException(MachineConfig.NOT_CAPABLE, e);
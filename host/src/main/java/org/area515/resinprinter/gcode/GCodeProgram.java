@@ -0,0 +1,148 @@
+package org.area515.resinprinter.gcode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.util.TemplateEngine;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+/**
+ * A block of templated gcode compiled for one print job.
+ *
+ * The template is parsed once and the variables that don't change during a print are only looked up once. Each time
+ * the program is built, the variables that can change from layer to layer are refreshed, the template is processed and
+ * its output is split into gcodes, comments and delays. That split is reused for as long as the output stays the same,
+ * which for most templates is the whole print. Blocks that don't use FreeMarker at all are split once, up front.
+ */
+public class GCodeProgram {
+	private static final Pattern GCODE_PATTERN = Pattern.compile("\\s*([^;]*)\\s*(;.*)?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern DELAY_PATTERN = Pattern.compile(";\\s*<\\s*Delay\\s*>\\s*(\\d+).*", Pattern.CASE_INSENSITIVE);
+	private static final String[] FREEMARKER_MARKUP = {"${", "#{", "<#", "</#", "<@", "</@", "[#", "[/#", "[@", "[/@"};
+
+	private PrintJob printJob;
+	private Printer printer;
+	private String gcodes;
+	private Template template;
+	private Map<String, Object> variables;
+	private String lastOutput;
+	private List<GCodeLine> lines;
+
+	public static class GCodeLine {
+		private String gcode;
+		private String comment;
+		private Integer delay;
+
+		GCodeLine(String gcode, String comment, Integer delay) {
+			this.gcode = gcode;
+			this.comment = comment;
+			this.delay = delay;
+		}
+
+		/**
+		 * @return the gcode to send or null if there is only a comment on this line
+		 */
+		public String getGCode() {
+			return gcode;
+		}
+
+		public String getComment() {
+			return comment;
+		}
+
+		/**
+		 * @return the milliseconds a <Delay> comment asks to wait for or null if it doesn't have one
+		 */
+		public Integer getDelay() {
+			return delay;
+		}
+	}
+
+	public static GCodeProgram compile(PrintJob printJob, String gcodes) throws IOException {
+		GCodeProgram program = new GCodeProgram();
+		program.printJob = printJob;
+		program.printer = printJob.getPrinter();
+		program.gcodes = gcodes;
+		if (usesFreeMarker(gcodes)) {
+			program.template = TemplateEngine.compileTemplate(gcodes);
+		} else {
+			program.lines = parseLines(gcodes);
+		}
+		return program;
+	}
+
+	private static boolean usesFreeMarker(String gcodes) {
+		for (String markup : FREEMARKER_MARKUP) {
+			if (gcodes.contains(markup)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static List<GCodeLine> parseLines(String gcodes) {
+		List<GCodeLine> lines = new ArrayList<GCodeLine>();
+		for (String gcode : gcodes.split("[\r]?\n")) {
+			Matcher matcher = GCODE_PATTERN.matcher(gcode);
+			if (!matcher.matches()) {
+				continue;
+			}
+
+			String singleGCode = matcher.group(1);
+			String comment = matcher.group(2);
+			if (singleGCode != null && singleGCode.trim().length() == 0) {
+				singleGCode = null;
+			}
+			Integer delay = null;
+			if (comment != null) {
+				Matcher delayMatcher = DELAY_PATTERN.matcher(comment);
+				if (delayMatcher.matches()) {
+					try {
+						delay = Integer.parseInt(delayMatcher.group(1));
+					} catch (NumberFormatException e) {
+						//Too long to be a delay anyone meant
+					}
+				}
+			}
+			if (singleGCode != null || comment != null) {
+				lines.add(new GCodeLine(singleGCode, comment, delay));
+			}
+		}
+
+		return Collections.unmodifiableList(lines);
+	}
+
+	/**
+	 * @return the lines for the printer's current state or null if the template uses a variable this printer doesn't support
+	 */
+	public synchronized List<GCodeLine> buildLines() throws IOException, TemplateException {
+		if (template == null) {
+			return lines;
+		}
+
+		if (variables == null) {
+			variables = TemplateEngine.buildVariables(printJob, printer);
+		} else {
+			TemplateEngine.updateLayerVariables(variables, printJob, printer);
+		}
+
+		String output = TemplateEngine.processTemplate(template, variables, printer, gcodes);
+		if (output == null) {
+			return null;
+		}
+
+		if (!output.equals(lastOutput)) {
+			lines = parseLines(output);
+			lastOutput = output;
+		}
+		return lines;
+	}
+}
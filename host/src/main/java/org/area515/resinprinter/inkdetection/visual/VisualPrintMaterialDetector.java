@@ -19,7 +19,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.inkdetection.PrintMaterialDetector;
 import org.area515.resinprinter.printer.Printer;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.services.MediaService;
 
 public class VisualPrintMaterialDetector implements PrintMaterialDetector {
@@ -75,7 +75,7 @@ public class VisualPrintMaterialDetector implements PrintMaterialDetector {
 		final ShapeDetectionCache cache = buildPictures.get(printer);
 		PipedInputStream inputStream = new PipedInputStream();
 		final PipedOutputStream pipedOutputStream = new PipedOutputStream(inputStream);
-		Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		HostExecutors.getIOExecutor().submit(new Runnable() {
 			@Override
 			public void run() {
 				try {
@@ -7,13 +7,20 @@ import java.awt.image.BufferedImage;
 import java.awt.geom.AffineTransform; 
 import java.awt.image.AffineTransformOp;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
+import org.area515.resinprinter.display.FramePresenter;
 import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
+import org.area515.resinprinter.job.render.ImageBufferPool;
+import org.area515.resinprinter.job.render.ImageTransformPlan;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.PrinterConfiguration;
@@ -47,8 +54,15 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		public double sliceHeight;
 		public InkDetector inkDetector;
 		public long currentSliceTime;
+		public PrintJobMetrics metrics;
+		//nanoTimes for the metrics, the time the print waits on an image is whatever isn't spent on the layers themselves
+		public long layerEndTime;
+		public long preSliceTime;
+		public Map<BufferedImage, Long> transformTimes = Collections.synchronizedMap(new IdentityHashMap<BufferedImage, Long>());
 		public Paint maskPaint;
 		public AffineTransform affineTransform = new AffineTransform();
+		public ImageTransformPlan transformPlan;
+		public ExposureClock exposureClock = ExposureClock.SYSTEM;
 
 		//should have affine transform matrix calculated here 
 		//store Affine Transform Object here
@@ -65,6 +79,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 				scriptEngine = HostProperties.Instance().buildScriptEngine();
 			}
 			printer = printJob.getPrinter();
+			metrics = printJob.getMetrics();
 			printJob.setStartTime(System.currentTimeMillis());
 		    configuration = printer.getConfiguration();
 			slicingProfile = configuration.getSlicingProfile();
@@ -120,8 +135,9 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		aid.printJob.setZLiftDistance(aid.slicingProfile.getLiftFeedRate());
 		aid.printJob.setZLiftSpeed(aid.slicingProfile.getLiftDistance());
 		
-		//Initialize bulb hours only once per print
+		//Start reading the bulb hours only once per print, the templates use whatever was read last
 		aid.printer.getBulbHours();
+		aid.layerEndTime = System.nanoTime();
 	}
 	
 	public JobStatus performPreSlice(DataAid aid, List<StlError> errors) throws InappropriateDeviceException {
@@ -129,6 +145,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			throw new IllegalStateException("initializeDataAid must be called before this method");
 		}
 		aid.currentSliceTime = System.currentTimeMillis();
+		long preSliceStart = System.nanoTime();
 
 		//Show the errors to our users if the stl file is broken, but we'll keep on processing like normal
 		if (errors != null && !errors.isEmpty()) {
@@ -138,7 +155,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		//Perform two actions at once here:
 		// 1. Pause if the user asked us to pause
 		// 2. Get out if the print is cancelled
-		if (!aid.printer.waitForPauseIfRequired()) {
+		if (!waitForPauseIfRequired(aid)) {
 			return aid.printer.getStatus();
 		}
 
@@ -147,6 +164,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodePreslice());
 		}
 		
+		aid.preSliceTime += System.nanoTime() - preSliceStart;
 		return null;
 	}
 	
@@ -159,6 +177,17 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			throw new IllegalStateException("You must specify a sliceImage to display");
 		}
 		
+		if (aid.layerEndTime > 0) {
+			long renderWait = Math.max(System.nanoTime() - aid.layerEndTime - aid.preSliceTime, 0);
+			aid.printJob.addRenderTime(renderWait / 1000000);
+			record(aid, Phase.RenderWait, renderWait);
+		}
+		aid.preSliceTime = 0;
+		Long transformTime = aid.transformTimes.remove(sliceImage);
+		if (transformTime != null) {
+			record(aid, Phase.TransformAndMask, transformTime);
+		}
+		
 		//Start but don't wait for a potentially heavy weight operation to determine if we are out of ink.
 		if (aid.inkDetector != null) {
 			aid.inkDetector.startMeasurement();
@@ -173,30 +202,50 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		}
 
 		logger.info("ExposureStart:{}", ()->Log4jTimer.startTimer(EXPOSURE_TIMER));
-		aid.printer.showImage(sliceImage);
+		//This returns once the slice is on the display, so the exposure isn't shortened by the time it takes to paint it
+		long displayStart = System.nanoTime();
+		long shownAt = aid.printer.showImage(sliceImage);
+		long displayEnd = System.nanoTime();
+		record(aid, Phase.DisplaySwitch, displayEnd - displayStart);
 		
-		if (aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0) {
+		boolean hasShutter = aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0;
+		if (hasShutter) {
 			aid.printer.setShutterOpen(true);
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodeShutter());
 		}
 		
-		//Sleep for the amount of time that we are exposing the resin.
-		Thread.sleep(aid.printJob.getExposureTime());
+		//Without a shutter the resin has been exposed since the slice got to the display, not since showImage() returned.
+		//The exposure clock doesn't have to count from the same origin as System.nanoTime(), so only the time since the
+		//slice was shown is carried over, and only when it was taken while showImage() was running.
+		long exposureStart = aid.exposureClock.nanoTime();
+		if (!hasShutter && shownAt != FramePresenter.NOT_PRESENTED && shownAt >= displayStart && shownAt <= displayEnd) {
+			exposureStart -= System.nanoTime() - shownAt;
+		}
+		
+		//Expose the resin until the deadline, unless the print is cancelled. A pause waits for the layer to be exposed.
+		long exposureNanos = aid.printJob.getExposureTime() * 1000000L;
+		long exposureError = aid.exposureClock.waitUntil(exposureStart + exposureNanos, () -> aid.printer.isPrintActive());
+		record(aid, Phase.Exposure, exposureNanos + exposureError);
+		if (aid.metrics != null) {
+			aid.metrics.recordExposureError(aid.printJob.getCurrentSlice(), exposureError);
+		}
 		
-		if (aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0) {
+		if (hasShutter) {
 			aid.printer.setShutterOpen(false);
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodeShutter());
 		}
 
 		//Blank the screen
+		displayStart = System.nanoTime();
 		aid.printer.showBlankImage();
+		record(aid, Phase.DisplaySwitch, System.nanoTime() - displayStart);
 		
 		logger.info("ExposureTime:{}", ()->Log4jTimer.completeTimer(EXPOSURE_TIMER));
 		
 		//Perform two actions at once here:
 		// 1. Pause if the user asked us to pause
 		// 2. Get out if the print is cancelled
-		if (!aid.printer.waitForPauseIfRequired()) {
+		if (!waitForPauseIfRequired(aid)) {
 			return aid.printer.getStatus();
 		}
 		
@@ -233,6 +282,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		//Notify the client that the printJob has increased the currentSlice
 		NotificationManager.jobChanged(aid.printer, aid.printJob);
 		
+		aid.layerEndTime = System.nanoTime();
 		return null;
 	}
 
@@ -256,6 +306,23 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		return JobStatus.Completed;
 	}
 
+	private void record(DataAid aid, Phase phase, long nanos) {
+		if (aid.metrics != null) {
+			aid.metrics.record(aid.printJob.getCurrentSlice(), phase, nanos);
+		}
+	}
+	
+	//Only the time spent paused is recorded, the print is almost never paused when this is called
+	private boolean waitForPauseIfRequired(DataAid aid) {
+		boolean paused = aid.printer.getStatus() != null && aid.printer.getStatus().isPaused();
+		long pauseStart = System.nanoTime();
+		boolean printActive = aid.printer.waitForPauseIfRequired();
+		if (paused) {
+			record(aid, Phase.Pause, System.nanoTime() - pauseStart);
+		}
+		return printActive;
+	}
+	
 	private Number calculate(DataAid aid, String calculator, String calculationName) throws ScriptException {
 		try {
 			Number num = (Number)TemplateEngine.runScript(aid.printJob, aid.printer, aid.scriptEngine, calculator, calculationName, null);
@@ -268,30 +335,58 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		}
 	}
 
-	public void applyBulbMask(DataAid aid, Graphics2D g2, int width, int height) throws ScriptException {
-		if (aid == null) {
-			throw new IllegalStateException("initializeDataAid must be called before this method");
-		}
-		
+	//Returns null when the printer doesn't use a bulb mask
+	private Paint getMaskPaint(DataAid aid) throws ScriptException {
 		if (aid.slicingProfile.getProjectorGradientCalculator() == null || aid.slicingProfile.getProjectorGradientCalculator().trim().length() == 0) {
-			return;
+			return null;
 		}
 		
 		if (!aid.configuration.getMachineConfig().getMonitorDriverConfig().isUseMask()) {
-			return;
+			return null;
 		}
 		
 		try {
-			if (aid.maskPaint == null) {
-				aid.maskPaint = (Paint)TemplateEngine.runScript(aid.printJob, aid.printer, aid.scriptEngine, aid.slicingProfile.getProjectorGradientCalculator(), "projector gradient script", null);
+			//Several layers can be rendered at the same time, so only one of them should run the script
+			synchronized (aid) {
+				if (aid.maskPaint == null) {
+					aid.maskPaint = (Paint)TemplateEngine.runScript(aid.printJob, aid.printer, aid.scriptEngine, aid.slicingProfile.getProjectorGradientCalculator(), "projector gradient script", null);
+				}
+				return aid.maskPaint;
 			}
-			g2.setPaint(aid.maskPaint);
-			g2.fillRect(0, 0, width, height);
 		} catch (ClassCastException e) {
 			throw new IllegalArgumentException("The result of your bulb mask script needs to evaluate to an instance of java.awt.Paint");
 		}
 	}
+	
+	public void applyBulbMask(DataAid aid, Graphics2D g2, int width, int height) throws ScriptException {
+		if (aid == null) {
+			throw new IllegalStateException("initializeDataAid must be called before this method");
+		}
+		
+		Paint maskPaint = getMaskPaint(aid);
+		if (maskPaint == null) {
+			return;
+		}
+		
+		g2.setPaint(maskPaint);
+		g2.fillRect(0, 0, width, height);
+	}
+	
+	//The plan is compiled by the first layer of a job and shared by every layer after it that's the same size and type
+	private ImageTransformPlan getTransformPlan(DataAid aid, Paint maskPaint, int width, int height, int type) {
+		synchronized (aid) {
+			if (aid.transformPlan == null || !aid.transformPlan.isCompiledFor(width, height, type)) {
+				aid.transformPlan = ImageTransformPlan.compile(aid.affineTransform, maskPaint, width, height, type);
+			}
+			return aid.transformPlan;
+		}
+	}
 
+	/**
+	 * A transform is drawn into an image from the ImageBufferPool, which the caller releases once it's off the screen.
+	 * Without a transform, the bulb mask is drawn onto img and img itself is returned. Both are done by the job's
+	 * ImageTransformPlan in one pass unless it doesn't support the image.
+	 */
 	//public void applyImageTransforms(DataAid aid, BufferedImage bi, int width, int height) throws ScriptException {
 	public BufferedImage applyImageTransforms(DataAid aid, BufferedImage img, int width, int height) throws ScriptException {
 		if (aid == null) {
@@ -301,10 +396,23 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			throw new IllegalStateException("BufferedImage is null");
 		}
 
+		long transformStart = System.nanoTime();
+		Paint maskPaint = getMaskPaint(aid);
+		if (aid.affineTransform.isIdentity() && maskPaint == null) {
+			return img;
+		}
+		
+		ImageTransformPlan plan = getTransformPlan(aid, maskPaint, width, height, img.getType());
+		if (plan != null && plan.canApply(img)) {
+			BufferedImage after = plan.isIdentity() ? img : ImageBufferPool.acquire(width, height, img.getType());
+			plan.apply(img, after);
+			return transformed(aid, after, transformStart);
+		}
+		
 		BufferedImage after = img;
 		
 		if (!aid.affineTransform.isIdentity()) {
-			after = new BufferedImage(width, height, img.getType());
+			after = ImageBufferPool.acquire(width, height, img.getType());
 			
 			((Graphics2D)img.getGraphics()).setBackground(Color.black);
 			((Graphics2D)after.getGraphics()).setBackground(Color.black);
@@ -326,7 +434,19 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			*/
 		}
 
-		applyBulbMask(aid, (Graphics2D)after.getGraphics(), width, height);
+		if (maskPaint != null) {
+			Graphics2D graphics = (Graphics2D)after.getGraphics();
+			graphics.setPaint(maskPaint);
+			graphics.fillRect(0, 0, width, height);
+		}
+		return transformed(aid, after, transformStart);
+	}
+	
+	//Images are transformed ahead of time, so the time is recorded against the layer once the image is shown
+	private BufferedImage transformed(DataAid aid, BufferedImage after, long transformStart) {
+		if (aid.metrics != null) {
+			aid.transformTimes.put(after, System.nanoTime() - transformStart);
+		}
 		return after;
 	}
 	
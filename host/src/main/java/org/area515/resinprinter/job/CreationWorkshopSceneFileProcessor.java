@@ -4,35 +4,35 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-
-import javax.imageio.ImageIO;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.render.ImageBufferPool;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
 
 public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcessor<Object,Object> {
 	private static final Logger logger = LogManager.getLogger();
+	private static final Pattern SLICE_PATTERN = Pattern.compile("\\s*;\\s*<\\s*Slice\\s*>\\s*(\\d+|blank)\\s*", Pattern.CASE_INSENSITIVE);
 	private HashMap<PrintJob, BufferedImage> currentlyDisplayedImage = new HashMap<PrintJob, BufferedImage>();
 	
 	@Override
@@ -65,19 +65,35 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 	
 	@Override
 	public JobStatus processFile(final PrintJob printJob) throws Exception {
-		File gCodeFile = findGcodeFile(printJob.getJobFile());
-		DataAid aid = initializeDataAid(printJob);
+		final DataAid aid = initializeDataAid(printJob);
 		
 		Printer printer = printJob.getPrinter();
+		final SliceArchive archive = openSliceArchive(printJob.getJobFile());
+		SliceImageLookahead lookahead = null;
 		BufferedReader stream = null;
 		long startOfLastImageDisplay = -1;
 		try {
+			String gCodeFile = findGcodeFile(archive);
 			logger.info("Parsing file:{}", gCodeFile);
-			int padLength = determinePadLength(gCodeFile);
-			stream = new BufferedReader(new FileReader(gCodeFile));
+			int padLength = determinePadLength(archive, gCodeFile);
+			lookahead = new SliceImageLookahead(
+					findUpcomingImages(archive, gCodeFile, padLength), 
+					HostProperties.Instance().getSliceLookahead(), 
+					HostExecutors.getRenderingExecutor(), 
+					new SliceImageLookahead.ImagePreparer() {
+						@Override
+						public BufferedImage prepareImage(String imageName) throws Exception {
+							BufferedImage image = archive.readImage(imageName);
+							BufferedImage transformedImage = applyImageTransforms(aid, image, image.getWidth(), image.getHeight());
+							if (transformedImage != image) {
+								ImageBufferPool.release(image);
+							}
+							return transformedImage;
+						}
+					});
+			stream = new BufferedReader(new InputStreamReader(archive.getInputStream(gCodeFile)));
 			String currentLine;
 			Integer sliceCount = null;
-			Pattern slicePattern = Pattern.compile("\\s*;\\s*<\\s*Slice\\s*>\\s*(\\d+|blank)\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern liftSpeedPattern = Pattern.compile(   "\\s*;\\s*\\(?\\s*Z\\s*Lift\\s*Feed\\s*Rate\\s*=\\s*([\\d\\.]+)\\s*(?:[Mm]{2}?/[Ss])?\\s*\\)?\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern liftDistancePattern = Pattern.compile("\\s*;\\s*\\(?\\s*Lift\\s*Distance\\s*=\\s*([\\d\\.]+)\\s*(?:[Mm]{2})?\\s*\\)?\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern sliceCountPattern = Pattern.compile("\\s*;\\s*Number\\s*of\\s*Slices\\s*=\\s*(\\d+)\\s*", Pattern.CASE_INSENSITIVE);
@@ -88,7 +104,7 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 			//data.printJob.setZLiftSpeed(data.slicingProfile.getLiftDistance());
 
 			while ((currentLine = stream.readLine()) != null && printer.isPrintActive()) {
-					Matcher matcher = slicePattern.matcher(currentLine);
+					Matcher matcher = SLICE_PATTERN.matcher(currentLine);
 					if (matcher.matches()) {
 						if (sliceCount == null) {
 							throw new IllegalArgumentException("No 'Number of Slices' line in gcode file");
@@ -113,11 +129,10 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 							}
 							int incoming = Integer.parseInt(matcher.group(1));
 					//printJob.setCurrentSlice(incoming);
-							String imageNumber = String.format("%0" + padLength + "d", incoming);
-							String imageFilename = FilenameUtils.removeExtension(gCodeFile.getName()) + imageNumber + ".png";
-							File imageFile = new File(gCodeFile.getParentFile(), imageFilename);
-							BufferedImage newImage = ImageIO.read(imageFile);
-							newImage = applyImageTransforms(aid, newImage, newImage.getWidth(), newImage.getHeight());
+							String imageFilename = buildImageFilename(gCodeFile, padLength, incoming);
+							
+							//The image was decoded and transformed while the last slice was exposed
+							BufferedImage newImage = lookahead.takeImage(imageFilename);
 							// applyBulbMask(aid, (Graphics2D)newImage.getGraphics(), newImage.getWidth(), newImage.getHeight());
 							currentlyDisplayedImage.put(printJob, newImage);
 							logger.info("Show picture: {}", imageFilename);
@@ -127,9 +142,7 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 
 							printer.showImage(currentlyDisplayedImage.get(printJob));
 							
-							if (oldImage != null) {
-								oldImage.flush();
-							}
+							ImageBufferPool.release(oldImage);
 						}
 						continue;
 					}
@@ -217,11 +230,21 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 				}
 			}
 			
+			if (lookahead != null) {
+				lookahead.cancel();
+			}
+			
+			try {
+				archive.close();
+			} catch (IOException e) {
+				logger.warn("Couldn't close archive:{}", printJob.getJobFile(), e);
+			}
+			
 			if (currentlyDisplayedImage != null) {
 				BufferedImage image = currentlyDisplayedImage.get(printJob);
 				if (image != null) {
-					currentlyDisplayedImage.get(printJob).flush();
 					currentlyDisplayedImage.remove(printJob);
+					ImageBufferPool.release(image);
 				}
 			}
 		}
@@ -231,6 +254,36 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 		return new File(HostProperties.Instance().getWorkingDir(), archive + "extract");
 	}
 
+	/**
+	 * Opens the archive that prepareEnvironment() set up, which is the archive itself unless it had to be extracted.
+	 */
+	protected SliceArchive openSliceArchive(File processingFile) throws IOException {
+		return SliceArchive.open(processingFile, buildExtractionDirectory(processingFile.getName()));
+	}
+	
+	private String buildImageFilename(String gCodeFile, int padLength, int imageIndex) {
+		return FilenameUtils.removeExtension(gCodeFile) + String.format("%0" + padLength + "d", imageIndex) + ".png";
+	}
+	
+	//Scans the whole gcode file up front so the images can be prepared in the order they will be shown
+	private List<String> findUpcomingImages(SliceArchive archive, String gCodeFile, int padLength) throws IOException {
+		List<String> upcomingImages = new ArrayList<String>();
+		BufferedReader stream = new BufferedReader(new InputStreamReader(archive.getInputStream(gCodeFile)));
+		try {
+			String currentLine;
+			while ((currentLine = stream.readLine()) != null) {
+				Matcher matcher = SLICE_PATTERN.matcher(currentLine);
+				if (matcher.matches() && !matcher.group(1).equalsIgnoreCase("BLANK")) {
+					upcomingImages.add(buildImageFilename(gCodeFile, padLength, Integer.parseInt(matcher.group(1))));
+				}
+			}
+		} finally {
+			stream.close();
+		}
+		
+		return upcomingImages;
+	}
+
 	@Override
 	public void prepareEnvironment(File processingFile, PrintJob printJob) throws JobManagerException {
 		List<PrintJob> printJobs = PrintJobManager.Instance().getJobsByFilename(processingFile.getName());
@@ -249,6 +302,11 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 			}
 		}
 
+		//Slices are read straight out of the archive unless it can't be read that way
+		if (!HostProperties.Instance().isExtractSliceArchives() && SliceArchive.canReadInPlace(processingFile)) {
+			return;
+		}
+		
 		try {
 			unpackDir(processingFile);
 		} catch (IOException e) {
@@ -273,7 +331,7 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 		ZipFile zip = null;
 		
 		try {
-			zip = new ZipFile(zipFile, Charset.forName("CP437"));
+			zip = new ZipFile(zipFile, SliceArchive.ENTRY_NAME_CHARSET);
 			return zip.stream().anyMatch(z -> z.getName().toLowerCase().endsWith("gcode"));
 		} catch (IOException e) {
 			logger.error("Unable to open uploaded zip file", e);
@@ -292,66 +350,46 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 	}
 	
 	
-	private File findGcodeFile(File jobFile) throws JobManagerException{
-	
-            String[] extensions = {"gcode"};
-            boolean recursive = true;
-            
-            //
-            // Finds files within a root directory and optionally its
-            // subdirectories which match an array of extensions. When the
-            // extensions is null all files will be returned.
-            //
-            // This method will returns matched file as java.io.File
-            //
-            List<File> files = new ArrayList<File>(FileUtils.listFiles(buildExtractionDirectory(jobFile.getName()), extensions, recursive));
-
-           if (files.size() > 1){
-            	throw new JobManagerException("More than one gcode file exists in print directory");
-            }else if (files.size() == 0){
-            	throw new JobManagerException("Gcode file was not found. Did you include the Gcode when you exported your scene?");
-            }
-           
-           return files.get(0);
+	private String findGcodeFile(SliceArchive archive) throws JobManagerException{
+		List<String> files = archive.findEntries("gcode");
+		if (files.size() > 1){
+			throw new JobManagerException("More than one gcode file exists in print directory");
+		}else if (files.size() == 0){
+			throw new JobManagerException("Gcode file was not found. Did you include the Gcode when you exported your scene?");
+		}
+		
+		return files.get(0);
 	}
 	
+	//ZipInputStream reads the local headers one after another, so this works even when the central directory is damaged
 	private void unpackDir(File jobFile) throws IOException, JobManagerException {
-		ZipFile zipFile = null;
-		InputStream in = null;
-		OutputStream out = null;
 		File extractDirectory = buildExtractionDirectory(jobFile.getName());
+		ZipInputStream zipStream = new ZipInputStream(new FileInputStream(jobFile), SliceArchive.ENTRY_NAME_CHARSET);
 		try {
-			zipFile = new ZipFile(jobFile, Charset.forName("CP437"));
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
+			ZipEntry entry;
+			while ((entry = zipStream.getNextEntry()) != null) {
 				File entryDestination = new File(extractDirectory, entry.getName());
 				entryDestination.getParentFile().mkdirs();
 				if (entry.isDirectory())
 					entryDestination.mkdirs();
 				else {
-					in = zipFile.getInputStream(entry);
-					out = new FileOutputStream(entryDestination);
-					IOUtils.copy(in, out);
-					IOUtils.closeQuietly(in);
-					IOUtils.closeQuietly(out);
+					OutputStream out = new FileOutputStream(entryDestination);
+					try {
+						IOUtils.copy(zipStream, out);
+					} finally {
+						IOUtils.closeQuietly(out);
+					}
 				}
 			}
-			String basename = FilenameUtils.removeExtension(jobFile.getName());
-			logger.info("BaseName: {}", FilenameUtils.removeExtension(basename));
-			//findGcodeFile(jobFile);
-		} catch (IOException ioe) {
-			throw ioe;
+			logger.info("Extracted:{} into:{}", jobFile, extractDirectory);
 		} finally {
-			zipFile.close();
+			zipStream.close();
 		}
 	}
 	
-	public int determinePadLength(File gCode) throws FileNotFoundException {
-		File currentFile = null;
+	public int determinePadLength(SliceArchive archive, String gCodeFile) throws FileNotFoundException {
 		for (int t = 1; t < 10; t++) {
-			currentFile = new File(gCode.getParentFile(), FilenameUtils.removeExtension(gCode.getName()) + String.format("%0" + t + "d", 0) + ".png");
-			if (currentFile.exists()) {
+			if (archive.hasEntry(buildImageFilename(gCodeFile, t, 0))) {
 				return t;
 			}
 		}
@@ -0,0 +1,87 @@
+package org.area515.resinprinter.job;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Waits until a deadline instead of sleeping for a length of time.
+ *
+ * Thread.sleep() wakes up whenever the thread gets a cpu back after the time is up, which is tens of milliseconds late
+ * during a GC or while other layers are being sliced. Here the thread sleeps until it's close to the deadline, then
+ * parks for what is left, and tells the caller how late it really was. The sleeps are short enough that a print that
+ * is cancelled stops waiting right away.
+ */
+public class ExposureClock {
+	public static final long DEFAULT_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+	private static final long MAX_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	public static final ExposureClock SYSTEM = new ExposureClock(new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep(long nanos) throws InterruptedException {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+
+		@Override
+		public void park(long nanos) {
+			LockSupport.parkNanos(nanos);
+		}
+	}, DEFAULT_PARK_NANOS);
+
+	public interface Clock {
+		public long nanoTime();
+
+		/**
+		 * Gives up the cpu for about nanos, it's fine to come back late.
+		 */
+		public void sleep(long nanos) throws InterruptedException;
+
+		/**
+		 * Waits for at most nanos, it's fine to come back early.
+		 */
+		public void park(long nanos);
+	}
+
+	private Clock clock;
+	private long parkNanos;
+
+	/**
+	 * @param parkNanos how close to the deadline the clock stops sleeping and starts parking
+	 */
+	public ExposureClock(Clock clock, long parkNanos) {
+		this.clock = clock;
+		this.parkNanos = parkNanos;
+	}
+
+	public long nanoTime() {
+		return clock.nanoTime();
+	}
+
+	/**
+	 * @param keepWaiting is asked between sleeps if the wait should go on, null to always wait until the deadline
+	 * @return how many nanoseconds after the deadline the wait ended, or how many before it if keepWaiting cut it short
+	 */
+	public long waitUntil(long deadlineNanos, BooleanSupplier keepWaiting) throws InterruptedException {
+		while (true) {
+			long remainingNanos = deadlineNanos - clock.nanoTime();
+			if (remainingNanos <= 0 || keepWaiting != null && !keepWaiting.getAsBoolean()) {
+				return -remainingNanos;
+			}
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+
+			if (remainingNanos > parkNanos) {
+				clock.sleep(Math.min(remainingNanos - parkNanos, MAX_SLEEP_NANOS));
+			} else {
+				clock.park(remainingNanos);
+			}
+		}
+	}
+}
@@ -9,7 +9,7 @@ import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.inkdetection.PrintMaterialDetector;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
 
 public class InkDetector {
     private static final Logger logger = LogManager.getLogger();
@@ -58,6 +58,6 @@ public class InkDetector {
 	
 	public Future<Boolean> startMeasurement() {
 		detector.startMeasurement(printer);
-		return Main.GLOBAL_EXECUTOR.submit(new CPUIntensiveActionToDetermineIfEmpty());
+		return HostExecutors.getRenderingExecutor().submit(new CPUIntensiveActionToDetermineIfEmpty());
 	}
 }
\ No newline at end of file
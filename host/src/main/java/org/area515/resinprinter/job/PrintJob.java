@@ -1,6 +1,7 @@
 package org.area515.resinprinter.job;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -15,6 +16,7 @@ import javax.script.ScriptException;
 import javax.xml.bind.annotation.XmlTransient;
 
 import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.gcode.GCodeProgram;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.SlicingProfile.InkConfig;
 
@@ -22,10 +24,14 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class PrintJob {
+	public static final int MAX_CACHED_GCODE_PROGRAMS = 32;
+	
 	private volatile int totalSlices = 0;
 	private volatile int currentSlice = 0;
 	private volatile long currentSliceTime = 0;
 	private volatile long averageSliceTime = 0;
+	private volatile long averageRenderTime = 0;
+	private volatile int renderedSlices = 0;
 	private volatile long startTime = 0;
 	private volatile long elapsedTime = 0;
 	private volatile double totalCost = 0;
@@ -47,6 +53,8 @@ public class PrintJob {
 	private Future<JobStatus> futureJobStatus;
 	private CountDownLatch futureJobStatusAssigned = new CountDownLatch(1);
 	private Map<String, CompiledScript> scriptsByName = new HashMap<>();
+	private Map<String, GCodeProgram> gCodeProgramsByGCodes = new HashMap<>();
+	private PrintJobMetrics metrics = new PrintJobMetrics();
 
 	private Customizer customizer;
 
@@ -233,6 +241,24 @@ public class PrintJob {
 		return compiledScript;
 	}
 	
+	/**
+	 * Only the first MAX_CACHED_GCODE_PROGRAMS blocks of gcode are held onto, since a file processor can send a whole
+	 * file one line at a time.
+	 */
+	public GCodeProgram buildGCodeProgram(String gcodes) throws IOException {
+		synchronized (gCodeProgramsByGCodes) {
+			GCodeProgram program = gCodeProgramsByGCodes.get(gcodes);
+			if (program == null) {
+				program = GCodeProgram.compile(this, gcodes);
+				if (gCodeProgramsByGCodes.size() < MAX_CACHED_GCODE_PROGRAMS) {
+					gCodeProgramsByGCodes.put(gcodes, program);
+				}
+			}
+			
+			return program;
+		}
+	}
+	
 	public void stopOverridingZLiftSpeed() {
 		overrideZLiftSpeed = false;
 	}
@@ -285,6 +311,22 @@ public class PrintJob {
 		this.averageSliceTime = averageSliceTime;
 	}
 
+	/**
+	 * @return the average milliseconds that the print waited on a layer's image, not counting its preslice gcode
+	 */
+	public long getAverageRenderTime() {
+		return averageRenderTime;
+	}
+	public void addRenderTime(long renderTime) {
+		averageRenderTime = ((averageRenderTime * renderedSlices) + renderTime) / (renderedSlices + 1);
+		renderedSlices++;
+	}
+
+	@JsonIgnore
+	public PrintJobMetrics getMetrics() {
+		return metrics;
+	}
+
 	public double getTotalCost() {
 		return totalCost;
 	}
@@ -15,8 +15,8 @@ import org.area515.resinprinter.job.render.StubPrintFileProcessor;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.PrinterManager;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
 
 import org.area515.resinprinter.services.CustomizerService;
 
@@ -118,7 +118,7 @@ public class PrintJobManager {
 		try {
 			PrinterManager.Instance().assignPrinter(newJob, printer);
 			PrintJobProcessingThread worker = new PrintJobProcessingThread(newJob, printer);
-			futureJobStatus = Main.GLOBAL_EXECUTOR.submit(worker);
+			futureJobStatus = HostExecutors.getJobExecutor(printer.getName()).submit(worker);
 			newJob.setPrintFileProcessor(worker.getPrintFileProcessor());
 			newJob.initializePrintJob(futureJobStatus);
 		} catch (AlreadyAssignedException e) {
@@ -126,7 +126,7 @@ public class PrintJobManager {
 			throw e;
 		} finally {
 			//Trigger all job completion tasks after job is complete
-			Main.GLOBAL_EXECUTOR.submit(new JobCloser(printer, futureJobStatus, newJob));
+			HostExecutors.getJobExecutor(printer.getName()).submit(new JobCloser(printer, futureJobStatus, newJob));
 		}
 		return newJob;		
 	}
@@ -0,0 +1,238 @@
+package org.area515.resinprinter.job;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where the time of each layer of a print job goes.
+ *
+ * Every timing is measured with System.nanoTime() and recorded twice, once into a histogram for the whole job and once
+ * into the layer it was spent on. The histograms keep a count for each power of two of microseconds, so recording costs
+ * the same no matter how long a job runs and percentiles are accurate to within a factor of two.
+ */
+public class PrintJobMetrics {
+	private static final int BUCKETS = 40;
+
+	public static enum Phase {
+		RenderWait,
+		TransformAndMask,
+		DisplaySwitch,
+		Exposure,
+		GCodeRoundTrip,
+		Pause,
+		NotificationFanOut
+	}
+
+	public static class Histogram {
+		private long[] buckets = new long[BUCKETS];
+		private long count;
+		private long totalNanos;
+		private long minNanos = Long.MAX_VALUE;
+		private long maxNanos;
+
+		private void record(long nanos) {
+			long micros = Math.max(nanos / 1000, 1);
+			int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+			buckets[bucket]++;
+			count++;
+			totalNanos += nanos;
+			minNanos = Math.min(minNanos, nanos);
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getTotalMillis() {
+			return totalNanos / 1000000.0;
+		}
+
+		public double getMeanMillis() {
+			return count == 0?0:totalNanos / 1000000.0 / count;
+		}
+
+		public double getMinMillis() {
+			return count == 0?0:minNanos / 1000000.0;
+		}
+
+		public double getMaxMillis() {
+			return maxNanos / 1000000.0;
+		}
+
+		/**
+		 * @return the top of the bucket that the percentile falls into, but never more than the longest timing
+		 */
+		public double getPercentileMillis(double percentile) {
+			long wanted = (long)Math.ceil(count * percentile / 100);
+			long seen = 0;
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				seen += buckets[bucket];
+				if (seen >= wanted && seen > 0) {
+					return Math.min((2L << bucket) / 1000.0, getMaxMillis());
+				}
+			}
+			return getMaxMillis();
+		}
+
+		public double getMedianMillis() {
+			return getPercentileMillis(50);
+		}
+
+		public double getP95Millis() {
+			return getPercentileMillis(95);
+		}
+
+		public double getP99Millis() {
+			return getPercentileMillis(99);
+		}
+
+		private Histogram copy() {
+			Histogram copy = new Histogram();
+			copy.buckets = buckets.clone();
+			copy.count = count;
+			copy.totalNanos = totalNanos;
+			copy.minNanos = minNanos;
+			copy.maxNanos = maxNanos;
+			return copy;
+		}
+	}
+
+	public static class LayerTiming {
+		private int layer;
+		private long[] nanos = new long[Phase.values().length];
+		private int[] counts = new int[Phase.values().length];
+		private long exposureErrorNanos;
+
+		private LayerTiming(int layer) {
+			this.layer = layer;
+		}
+
+		public int getLayer() {
+			return layer;
+		}
+
+		public Map<Phase, Double> getMillis() {
+			Map<Phase, Double> millis = new EnumMap<Phase, Double>(Phase.class);
+			for (Phase phase : Phase.values()) {
+				millis.put(phase, nanos[phase.ordinal()] / 1000000.0);
+			}
+			return millis;
+		}
+
+		public Map<Phase, Integer> getCounts() {
+			Map<Phase, Integer> countMap = new EnumMap<Phase, Integer>(Phase.class);
+			for (Phase phase : Phase.values()) {
+				countMap.put(phase, counts[phase.ordinal()]);
+			}
+			return countMap;
+		}
+
+		/**
+		 * @return how much longer the exposure and delays of the layer took than they were supposed to, negative if they were cut short
+		 */
+		public double getExposureErrorMillis() {
+			return exposureErrorNanos / 1000000.0;
+		}
+
+		private LayerTiming copy() {
+			LayerTiming copy = new LayerTiming(layer);
+			copy.nanos = nanos.clone();
+			copy.counts = counts.clone();
+			copy.exposureErrorNanos = exposureErrorNanos;
+			return copy;
+		}
+	}
+
+	private Map<Phase, Histogram> histograms = new EnumMap<Phase, Histogram>(Phase.class);
+	private TreeMap<Integer, LayerTiming> layers = new TreeMap<Integer, LayerTiming>();
+	private Histogram exposureErrors = new Histogram();
+
+	public PrintJobMetrics() {
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new Histogram());
+		}
+	}
+
+	public synchronized void record(int layer, Phase phase, long nanos) {
+		histograms.get(phase).record(nanos);
+
+		LayerTiming timing = getLayer(layer);
+		timing.nanos[phase.ordinal()] += nanos;
+		timing.counts[phase.ordinal()]++;
+	}
+
+	/**
+	 * @param errorNanos how much longer an exposure or delay took than it was supposed to, negative if it was cut short
+	 */
+	public synchronized void recordExposureError(int layer, long errorNanos) {
+		exposureErrors.record(Math.abs(errorNanos));
+		getLayer(layer).exposureErrorNanos += errorNanos;
+	}
+
+	private LayerTiming getLayer(int layer) {
+		LayerTiming timing = layers.get(layer);
+		if (timing == null) {
+			timing = new LayerTiming(layer);
+			layers.put(layer, timing);
+		}
+		return timing;
+	}
+
+	/**
+	 * @return a copy of the histograms, so they don't change while they are being read
+	 */
+	public synchronized Map<Phase, Histogram> getHistograms() {
+		Map<Phase, Histogram> copy = new EnumMap<Phase, Histogram>(Phase.class);
+		for (Map.Entry<Phase, Histogram> entry : histograms.entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().copy());
+		}
+		return copy;
+	}
+
+	/**
+	 * @return a copy of the histogram of how far each exposure and delay was off, whether it was long or short
+	 */
+	public synchronized Histogram getExposureErrors() {
+		return exposureErrors.copy();
+	}
+
+	/**
+	 * @return a copy of the timings of every layer so far, in layer order
+	 */
+	public synchronized List<LayerTiming> getLayers() {
+		List<LayerTiming> copy = new ArrayList<LayerTiming>(layers.size());
+		for (LayerTiming timing : layers.values()) {
+			copy.add(timing.copy());
+		}
+		return copy;
+	}
+
+	/**
+	 * Writes a row of milliseconds spent in each phase for every layer, followed by the number of gcodes it sent and how
+	 * many milliseconds its exposure was off.
+	 */
+	public void writeCSV(Writer writer) throws IOException {
+		writer.write("layer");
+		for (Phase phase : Phase.values()) {
+			writer.write("," + phase + "Millis");
+		}
+		writer.write(",gCodes,exposureErrorMillis\n");
+
+		for (LayerTiming timing : getLayers()) {
+			writer.write(String.valueOf(timing.layer));
+			for (Phase phase : Phase.values()) {
+				writer.write(String.format(Locale.US, ",%.3f", timing.nanos[phase.ordinal()] / 1000000.0));
+			}
+			writer.write("," + timing.counts[Phase.GCodeRoundTrip.ordinal()]);
+			writer.write(String.format(Locale.US, ",%.3f\n", timing.exposureErrorNanos / 1000000.0));
+		}
+		writer.flush();
+	}
+}
@@ -0,0 +1,390 @@
+package org.area515.resinprinter.job;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.area515.resinprinter.gcode.GCodeProgram.GCodeLine;
+import org.area515.resinprinter.job.PrintJobMetrics.LayerTiming;
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
+import org.area515.resinprinter.job.render.StubPrintFileProcessor;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.printer.SlicingProfile;
+import org.area515.util.TemplateEngine;
+
+import freemarker.template.TemplateException;
+
+/**
+ * Predicts how long each layer of a print will take without touching the printer, by stepping through the layers the
+ * same way AbstractPrintFileProcessor does. The exposure and lift calculator scripts of the printer's slicing profile
+ * are run for every layer and its gcode templates are built to count their gcodes and <Delay>s.
+ *
+ * A layer is predicted to take its render wait, plus its exposure time, plus its delays, plus whichever is longer of
+ * the time to get a response to each of its gcodes and the time to move the lift distance up and back down at the
+ * lift speed. Firmwares either respond once a move is done or respond right away and then make the delays wait for
+ * it, so counting both would count the move twice.
+ *
+ * A layer's image is rendered while the layer before it is exposed and lifted, so the print only waits on the part of
+ * the render time that's longer than that. Render time can only be guessed at before a print starts. The scripts are
+ * also run without a build area unless one is given, since a layer's area isn't known until it's rendered.
+ *
+ * Only processors that print with the slicing profile's gcode templates can be simulated. Creation Workshop scenes
+ * bring their own gcode, lifts and delays included.
+ */
+public class PrintTimeSimulator {
+	private Printer printer;
+	private ScriptEngine scriptEngine;
+	private long responseTime;
+	private Long renderTime;
+	private Double buildAreaMM;
+
+	public static class LayerEstimate {
+		private int layer;
+		private long startTime;
+		private long renderTime;
+		private long renderWait;
+		private long exposureTime;
+		private long liftTime;
+		private long responseTime;
+		private long delayTime;
+		private int gCodes;
+		private double liftDistance;
+		private double liftSpeed;
+
+		public int getLayer() {
+			return layer;
+		}
+
+		/**
+		 * @return milliseconds after the start of the simulation that this layer starts
+		 */
+		public long getStartTime() {
+			return startTime;
+		}
+
+		/**
+		 * @return milliseconds to render this layer's image
+		 */
+		public long getRenderTime() {
+			return renderTime;
+		}
+
+		/**
+		 * @return milliseconds that the print waits on this layer's image after the layer before it was lifted
+		 */
+		public long getRenderWait() {
+			return renderWait;
+		}
+
+		public long getExposureTime() {
+			return exposureTime;
+		}
+
+		/**
+		 * @return milliseconds to move the lift distance up and back down
+		 */
+		public long getLiftTime() {
+			return liftTime;
+		}
+
+		/**
+		 * @return milliseconds to get a response to every gcode of this layer
+		 */
+		public long getResponseTime() {
+			return responseTime;
+		}
+
+		public long getDelayTime() {
+			return delayTime;
+		}
+
+		public int getGCodes() {
+			return gCodes;
+		}
+
+		public double getLiftDistance() {
+			return liftDistance;
+		}
+
+		public double getLiftSpeed() {
+			return liftSpeed;
+		}
+
+		public long getTotalTime() {
+			return renderWait + getRenderWindow();
+		}
+
+		/**
+		 * @return milliseconds that the next layer's image has to render in, which is everything but this layer's render wait
+		 */
+		long getRenderWindow() {
+			return exposureTime + Math.max(liftTime, responseTime) + delayTime;
+		}
+
+		/**
+		 * @return true when rendering this layer's image takes longer than exposing and lifting the layer before it
+		 */
+		public boolean isRenderBound() {
+			return renderWait > 0;
+		}
+	}
+
+	public static class PrintTimeEstimate {
+		private List<LayerEstimate> layers = new ArrayList<LayerEstimate>();
+		private long headerTime;
+		private long footerTime;
+		private long totalTime;
+		private long completionTime;
+
+		public List<LayerEstimate> getLayers() {
+			return layers;
+		}
+
+		public long getHeaderTime() {
+			return headerTime;
+		}
+
+		public long getFooterTime() {
+			return footerTime;
+		}
+
+		public long getTotalTime() {
+			return totalTime;
+		}
+
+		/**
+		 * @return when the print is predicted to be done, in milliseconds since the epoch
+		 */
+		public long getCompletionTime() {
+			return completionTime;
+		}
+
+		public int getRenderBoundLayers() {
+			int renderBoundLayers = 0;
+			for (LayerEstimate layer : layers) {
+				if (layer.isRenderBound()) {
+					renderBoundLayers++;
+				}
+			}
+			return renderBoundLayers;
+		}
+	}
+
+	public PrintTimeSimulator(Printer printer, ScriptEngine scriptEngine) {
+		this.printer = printer;
+		this.scriptEngine = scriptEngine;
+		this.responseTime = printer.getGCodeControl().getAverageResponseTime();
+	}
+
+	/**
+	 * Defaults to how quickly the printer has been responding to gcodes lately.
+	 */
+	public void setResponseTime(long responseTime) {
+		this.responseTime = responseTime;
+	}
+
+	/**
+	 * @param renderTime milliseconds to render each layer's image
+	 */
+	public void setRenderTime(long renderTime) {
+		this.renderTime = renderTime;
+	}
+
+	public void setBuildAreaMM(Double buildAreaMM) {
+		this.buildAreaMM = buildAreaMM;
+	}
+
+	private PrintJob buildSimulatedJob(PrintJob printJob) {
+		PrintJob simulatedJob = new PrintJob(printJob == null?null:printJob.getJobFile());
+		simulatedJob.setPrinter(printer);
+		simulatedJob.setPrintFileProcessor(new StubPrintFileProcessor<Object, Object>() {
+			@Override
+			public Double getBuildAreaMM(PrintJob printJob) {
+				return buildAreaMM;
+			}
+		});
+		return simulatedJob;
+	}
+
+	/**
+	 * Simulates a whole print of totalSlices layers, header and footer included.
+	 */
+	public PrintTimeEstimate simulate(int totalSlices) throws ScriptException, IOException, TemplateException {
+		SlicingProfile slicingProfile = printer.getConfiguration().getSlicingProfile();
+		PrintJob simulatedJob = buildSimulatedJob(null);
+		simulatedJob.setTotalSlices(totalSlices);
+
+		//Starts from the same values that performHeader() does
+		simulatedJob.setExposureTime(slicingProfile.getSelectedInkConfig().getExposureTime());
+		simulatedJob.setZLiftDistance(slicingProfile.getLiftFeedRate());
+		simulatedJob.setZLiftSpeed(slicingProfile.getLiftDistance());
+
+		PrintTimeEstimate estimate = new PrintTimeEstimate();
+		LayerEstimate header = new LayerEstimate();
+		addGCodes(simulatedJob, slicingProfile.getgCodeHeader(), header);
+		estimate.headerTime = header.getTotalTime();
+		//The first image is rendered while the header runs
+		simulateLayers(simulatedJob, 0, renderTime == null?0:renderTime, estimate.headerTime, false, false, false, estimate);
+		return estimate;
+	}
+
+	/**
+	 * Simulates the layers that a print job hasn't gotten to yet, starting from its current exposure and lift settings.
+	 * The image of the layer that's printing now is taken to be rendered already. Unless a render time was set, it's
+	 * predicted from the render waits that the job has recorded so far.
+	 */
+	public PrintTimeEstimate simulateRemainder(PrintJob printJob) throws ScriptException, IOException, TemplateException {
+		if (printJob.getPrintFileProcessor() instanceof CreationWorkshopSceneFileProcessor && !(printJob.getPrintFileProcessor() instanceof ZipImagesFileProcessor)) {
+			throw new IllegalArgumentException("Creation Workshop scenes take their lifts and delays from the gcode in the file, they can't be simulated from the slicing profile");
+		}
+
+		PrintJob simulatedJob = buildSimulatedJob(printJob);
+		simulatedJob.setTotalSlices(printJob.getTotalSlices());
+		simulatedJob.setExposureTime(printJob.getExposureTime());
+		simulatedJob.setZLiftDistance(printJob.getZLiftDistance());
+		simulatedJob.setZLiftSpeed(printJob.getZLiftSpeed());
+		long layerRenderTime = renderTime != null?renderTime:predictRenderTime(printJob.getMetrics());
+
+		PrintTimeEstimate estimate = new PrintTimeEstimate();
+		simulateLayers(simulatedJob, printJob.getCurrentSlice(), layerRenderTime, Long.MAX_VALUE, printJob.isExposureTimeOverriden(), printJob.isZLiftDistanceOverriden(), printJob.isZLiftSpeedOverriden(), estimate);
+		return estimate;
+	}
+
+	/**
+	 * A layer's image starts rendering once the image before it is shown, so the time it took is the time the print waited
+	 * on it plus everything the layer before it did besides waiting on its own image. Layers that didn't wait only show
+	 * that their image rendered in time, so they are left out. Image transforms are left out because they are part of
+	 * the render.
+	 *
+	 * @return the average milliseconds that rendering the layers that held up the print took, or 0 if none of them did
+	 */
+	long predictRenderTime(PrintJobMetrics metrics) {
+		if (metrics == null) {
+			return 0;
+		}
+
+		List<LayerTiming> layers = metrics.getLayers();
+		double totalRenderTime = 0;
+		int renders = 0;
+		for (int timing = 1; timing < layers.size(); timing++) {
+			LayerTiming previousLayer = layers.get(timing - 1);
+			LayerTiming layer = layers.get(timing);
+			double renderWait = layer.getMillis().get(Phase.RenderWait);
+			if (layer.getLayer() != previousLayer.getLayer() + 1 || renderWait <= 0) {
+				continue;
+			}
+
+			totalRenderTime += renderWait;
+			for (Map.Entry<Phase, Double> phase : previousLayer.getMillis().entrySet()) {
+				if (phase.getKey() != Phase.RenderWait && phase.getKey() != Phase.TransformAndMask) {
+					totalRenderTime += phase.getValue();
+				}
+			}
+			renders++;
+		}
+		return renders == 0?0:Math.round(totalRenderTime / renders);
+	}
+
+	private void simulateLayers(PrintJob simulatedJob, int firstSlice, long layerRenderTime, long renderWindow, boolean exposureTimeOverriden, boolean zLiftDistanceOverriden, boolean zLiftSpeedOverriden, PrintTimeEstimate estimate) throws ScriptException, IOException, TemplateException {
+		SlicingProfile slicingProfile = printer.getConfiguration().getSlicingProfile();
+		long startTime = estimate.headerTime;
+		for (int slice = firstSlice; slice < simulatedJob.getTotalSlices(); slice++) {
+			//CURSLICE is the number of layers that are done, just like while printing
+			simulatedJob.setCurrentSlice(slice);
+			LayerEstimate layer = new LayerEstimate();
+			layer.layer = slice + 1;
+			layer.startTime = startTime;
+			layer.renderTime = layerRenderTime;
+			layer.renderWait = Math.max(layerRenderTime - renderWindow, 0);
+
+			addGCodes(simulatedJob, slicingProfile.getgCodePreslice(), layer);
+			if (!exposureTimeOverriden) {
+				Number value = calculate(simulatedJob, slicingProfile.getExposureTimeCalculator(), "exposure time script");
+				if (value != null) {
+					simulatedJob.setExposureTime(value.intValue());
+				}
+			}
+			layer.exposureTime = simulatedJob.getExposureTime();
+
+			//The shutter is opened and closed with the same gcode
+			addGCodes(simulatedJob, slicingProfile.getgCodeShutter(), layer);
+			addGCodes(simulatedJob, slicingProfile.getgCodeShutter(), layer);
+
+			if (!zLiftDistanceOverriden) {
+				Number value = calculate(simulatedJob, slicingProfile.getzLiftDistanceCalculator(), "lift distance script");
+				if (value != null) {
+					simulatedJob.setZLiftDistance(value.doubleValue());
+				}
+			}
+			if (!zLiftSpeedOverriden) {
+				Number value = calculate(simulatedJob, slicingProfile.getzLiftSpeedCalculator(), "lift speed script");
+				if (value != null) {
+					simulatedJob.setZLiftSpeed(value.doubleValue());
+				}
+			}
+			addGCodes(simulatedJob, slicingProfile.getZLiftDistanceGCode(), layer);
+			addGCodes(simulatedJob, slicingProfile.getZLiftSpeedGCode(), layer);
+			addGCodes(simulatedJob, slicingProfile.getgCodeLift(), layer);
+
+			//Lift speeds are in mm/minute
+			layer.liftDistance = simulatedJob.getZLiftDistance();
+			layer.liftSpeed = simulatedJob.getZLiftSpeed();
+			if (layer.liftSpeed > 0) {
+				layer.liftTime = (long)(Math.abs(layer.liftDistance) * 2 / layer.liftSpeed * 60000);
+			}
+
+			estimate.layers.add(layer);
+			startTime += layer.getTotalTime();
+			renderWindow = layer.getRenderWindow();
+		}
+
+		simulatedJob.setCurrentSlice(simulatedJob.getTotalSlices());
+		LayerEstimate footer = new LayerEstimate();
+		addGCodes(simulatedJob, slicingProfile.getgCodeFooter(), footer);
+		estimate.footerTime = footer.getTotalTime();
+		estimate.totalTime = startTime + estimate.footerTime;
+		estimate.completionTime = System.currentTimeMillis() + estimate.totalTime;
+	}
+
+	private void addGCodes(PrintJob simulatedJob, String gcodes, LayerEstimate layer) throws IOException, TemplateException {
+		if (gcodes == null || gcodes.trim().length() == 0) {
+			return;
+		}
+
+		List<GCodeLine> lines = simulatedJob.buildGCodeProgram(gcodes).buildLines();
+		if (lines == null) {
+			return;
+		}
+
+		for (GCodeLine line : lines) {
+			if (line.getGCode() != null) {
+				layer.gCodes++;
+				layer.responseTime += responseTime;
+			}
+			if (line.getDelay() != null) {
+				layer.delayTime += line.getDelay();
+			}
+		}
+	}
+
+	//Same as AbstractPrintFileProcessor.calculate(), a script that returns null or NaN leaves the value alone
+	private Number calculate(PrintJob simulatedJob, String calculator, String calculationName) throws ScriptException {
+		if (calculator == null || calculator.trim().length() == 0) {
+			return null;
+		}
+
+		try {
+			Number num = (Number)TemplateEngine.runScript(simulatedJob, printer, scriptEngine, calculator, calculationName, null);
+			if (num == null || Double.isNaN(num.doubleValue())) {
+				return null;
+			}
+			return num;
+		} catch (ClassCastException e) {
+			throw new IllegalArgumentException("The result of your " + calculationName + " needs to evaluate to an instance of java.lang.Number");
+		}
+	}
+}
@@ -8,7 +8,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 import java.io.*;
 import javax.script.ScriptException;
@@ -19,15 +18,20 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.exception.NoPrinterFoundException;
 
+import org.area515.resinprinter.job.render.CurrentImageRenderer;
+import org.area515.resinprinter.job.render.LookaheadRenderer;
 import org.area515.resinprinter.job.render.RenderingFileData;
 import org.area515.resinprinter.printer.BuildDirection;
 import org.area515.resinprinter.printer.SlicingProfile;
 import org.area515.resinprinter.printer.Printer;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
+import org.area515.resinprinter.server.HostProperties;
 import org.area515.resinprinter.slice.CloseOffMend;
+import org.area515.resinprinter.slice.SliceCache;
 import org.area515.resinprinter.slice.StlError;
 import org.area515.resinprinter.slice.ZSlicer;
 import org.area515.resinprinter.stl.Triangle3d;
+import org.area515.resinprinter.stl.TriangleMesh;
 import org.area515.resinprinter.services.PrinterService;
 
 import org.area515.util.Log4jTimer;
@@ -81,9 +85,10 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 
 	@Override
 	public JobStatus processFile(PrintJob printJob) throws Exception {
+		LookaheadRenderer renderer = null;
+		RenderingFileData stlData = new RenderingFileData();
 		try {
 			DataAid dataAid = initializeDataAid(printJob);
-			RenderingFileData stlData = new RenderingFileData();
 			dataByPrintJob.put(printJob, stlData);
 			
 			boolean overrideNormals = dataAid.configuration.getMachineConfig().getOverrideModelNormalsWithRightHandRule() == null?false:dataAid.configuration.getMachineConfig().getOverrideModelNormalsWithRightHandRule();
@@ -97,50 +102,60 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 					new CloseOffMend());
 			stlData.slicer.loadFile(new FileInputStream(printJob.getJobFile()), new Double(dataAid.xResolution), new Double(dataAid.yResolution));
 			printJob.setTotalSlices(stlData.slicer.getZMaxIndex() - stlData.slicer.getZMinIndex());
+			SliceCache cache = openSliceCache(printJob.getJobFile(), dataAid, overrideNormals);
+			
+			//At most lookahead layers are rendering at once, each of them needs its own slicer. A layer is only queued once the
+			//layer that was queued lookahead layers before it has been taken, so handing the slicers out in turn never gives
+			//one to two layers at the same time.
+			int lookahead = HostProperties.Instance().getSliceLookahead();
+			ZSlicer[] slicers = new ZSlicer[lookahead];
+			slicers[0] = stlData.slicer;
+			for (int t = 1; t < slicers.length; t++) {
+				slicers[t] = stlData.slicer.forkSlicer();
+			}
+			
+			//A single slicer sees every layer in order, which is the only time a sweep plane pays off
+			stlData.slicer.setSweepPlaneSlicing(HostProperties.Instance().isSweepPlaneSlicing() && slicers.length == 1);
+			ZSlicer[] slicerByImage = new ZSlicer[lookahead + 1];
+			renderer = new LookaheadRenderer(stlData, lookahead, HostExecutors.getRenderingExecutor(), new LookaheadRenderer.RendererFactory() {
+				private int queuedLayers;
+				
+				@Override
+				public CurrentImageRenderer createRenderer(Integer imageIndexToBuild, int layer) {
+					ZSlicer slicer = slicers[queuedLayers++ % slicers.length];
+					slicer.setZIndex(layer);
+					slicerByImage[imageIndexToBuild] = slicer;
+					return new STLImageRenderer(dataAid, STLFileProcessor.this, stlData, slicer, cache, imageIndexToBuild, dataAid.xResolution, dataAid.yResolution);
+				}
+			});
 			
 			//Get the slicer queued up for the first image;
-			stlData.slicer.setZIndex(stlData.slicer.getZMinIndex());
-			Object nextRenderingPointer = stlData.getCurrentRenderingPointer();
-			Future<BufferedImage> currentImage = Main.GLOBAL_EXECUTOR.submit(new STLImageRenderer(dataAid, this, stlData, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution));
+			renderer.queueLayer(stlData.slicer.getZMinIndex());
 			
 			//Everything needs to be setup in the dataByPrintJob before we start the header
 			performHeader(dataAid);
 			
 			int startPoint = dataAid.slicingProfile.getDirection() == BuildDirection.Bottom_Up?(stlData.slicer.getZMinIndex() + 1): (stlData.slicer.getZMaxIndex() + 1);
 			int endPoint = dataAid.slicingProfile.getDirection() == BuildDirection.Bottom_Up?(stlData.slicer.getZMaxIndex() + 1): (stlData.slicer.getZMinIndex() + 1);
+			int nextLayer = queueLayers(renderer, stlData, dataAid, startPoint, endPoint);
 			for (int z = startPoint; z <= endPoint && dataAid.printer.isPrintActive(); z += dataAid.slicingProfile.getDirection().getVector()) {
 				
-				//Performs all of the duties that are common to most print files
-				JobStatus status = performPreSlice(dataAid, stlData.slicer.getStlErrors());
-				if (status != null) {
-					return status;
-				}
-				
 				logger.info("SliceOverheadStart:{}", ()->Log4jTimer.startTimer(STL_OVERHEAD));
 				
 				//Wait until the image has been properly rendered. Most likely, it's already done though...
-				BufferedImage image = currentImage.get();
+				BufferedImage image = renderer.takeLayer();
 				
 				logger.info("SliceOverhead:{}", ()->Log4jTimer.completeTimer(STL_OVERHEAD));
 				
-				//Now that the image has been rendered, we can make the switch to use the pointer that we were using while we were rendering
-				stlData.setCurrentRenderingPointer(nextRenderingPointer);
-				
-				//Start the exposure timer
-				// logger.info("ExposureStart:{}", ()->Log4jTimer.startTimer(EXPOSURE_TIMER));
-				
-				//Cure the current image
-				//dataAid.printer.showImage(image);
-				
-				//Get the next pointer in line to start rendering the image into
-				nextRenderingPointer = stlData.getNextRenderingPointer();
-				
-				//Render the next image while we are waiting for the current image to cure
-				if (z < stlData.slicer.getZMaxIndex() + 1) {
-					stlData.slicer.setZIndex(z);
-					currentImage = Main.GLOBAL_EXECUTOR.submit(new STLImageRenderer(dataAid, this, stlData, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution));
+				//Performs all of the duties that are common to most print files
+				JobStatus status = performPreSlice(dataAid, slicerByImage[renderer.getCurrentImageIndex()].getStlErrors());
+				if (status != null) {
+					return status;
 				}
 				
+				//Render the next images while we are waiting for the current image to cure
+				nextLayer = queueLayers(renderer, stlData, dataAid, nextLayer, endPoint);
+				
 				//Performs all of the duties that are common to most print files
 				status = printImageAndPerformPostProcessing(dataAid, image);
 				if (status != null) {
@@ -150,8 +165,37 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 			
 			return performFooter(dataAid);
 		} finally {
+			if (renderer != null) {
+				renderer.cancel();
+			}
 			dataByPrintJob.remove(printJob);
+			stlData.releaseImages();
+		}
+	}
+	
+	//Layers are cached before they are transformed, so only the settings that change what the slicer paints are part of the key
+	private SliceCache openSliceCache(File jobFile, DataAid dataAid, boolean overrideNormals) {
+		File cacheDir = HostProperties.Instance().getSliceCacheDir();
+		if (cacheDir == null) {
+			return null;
+		}
+		
+		try {
+			return SliceCache.open(cacheDir, jobFile, dataAid.xPixelsPerMM, dataAid.yPixelsPerMM, dataAid.sliceHeight, dataAid.xResolution, dataAid.yResolution, overrideNormals);
+		} catch (IOException e) {
+			logger.warn("Slicing without a slice cache for:{}", jobFile, e);
+			return null;
+		}
+	}
+	
+	//Fills the lookahead back up and returns the layer that should be queued after that
+	private int queueLayers(LookaheadRenderer renderer, RenderingFileData stlData, DataAid dataAid, int nextLayer, int endPoint) {
+		while (!renderer.isFull() && nextLayer <= endPoint && nextLayer < stlData.slicer.getZMaxIndex() + 1) {
+			renderer.queueLayer(nextLayer);
+			nextLayer += dataAid.slicingProfile.getDirection().getVector();
 		}
+		
+		return nextLayer;
 	}
 	//This method takes in an STL file and produces the first slice of the file
 	public BufferedImage previewSlice(Customizer customizer, File jobFile, boolean projectImage) throws NoPrinterFoundException, SliceHandlingException {
@@ -209,7 +253,7 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 				//Get the slicer queued up for the first image;
 				stlData.slicer.setZIndex(stlData.slicer.getZMinIndex());
 				Object nextRenderingPointer = stlData.getCurrentRenderingPointer();
-				STLImageRenderer renderer = new STLImageRenderer(dataAid, this, stlData, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution);
+				STLImageRenderer renderer = new STLImageRenderer(dataAid, this, stlData, stlData.slicer, openSliceCache(printJob.getJobFile(), dataAid, overrideNormals), nextRenderingPointer, dataAid.xResolution, dataAid.yResolution);
 				image = renderer.call();
 				
 				if (customizer.getAffineTransformSettings().isIdentity()) {
@@ -266,22 +310,19 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 			return null;
 		}
 		
+		//Triangles are built one at a time from the mesh as they are serialized
+		TriangleMesh mesh = data.slicer.getTriangleMesh();
 		return new Iterator<Triangle3d>() {
-			private Triangle3d nextTriangle;
-			{
-				nextTriangle = data.slicer.getFirstTriangle();
-			}
+			private int nextFace = 0;
 			
 			@Override
 			public boolean hasNext() {
-				return nextTriangle != null;
+				return mesh != null && nextFace < mesh.getFaceCount();
 			}
 
 			@Override
 			public Triangle3d next() {
-				Triangle3d t = nextTriangle;
-				nextTriangle = nextTriangle.getNextTriangle();
-				return t;
+				return mesh.getTriangle(nextFace++);
 			}
 		};
 	}
@@ -7,16 +7,42 @@ import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
 import org.area515.resinprinter.job.render.RenderingFileData;
 import org.area515.resinprinter.job.render.RenderingFileData.ImageData;
+import org.area515.resinprinter.slice.SliceCache;
+import org.area515.resinprinter.slice.ZSlicer;
 
 public class STLImageRenderer extends CurrentImageRenderer {
+	private ZSlicer slicer;
+	private SliceCache cache;
+	
 	public STLImageRenderer(DataAid aid, AbstractPrintFileProcessor<?,?> processor, RenderingFileData data, Object imageIndexToBuild, int width, int height) {
+		this(aid, processor, data, data.slicer, null, imageIndexToBuild, width, height);
+	}
+
+	//Layers that are rendered at the same time each need their own slicer, the cache is optional
+	public STLImageRenderer(DataAid aid, AbstractPrintFileProcessor<?,?> processor, RenderingFileData data, ZSlicer slicer, SliceCache cache, Object imageIndexToBuild, int width, int height) {
 		super(aid, processor, data, imageIndexToBuild, width, height);
+		this.slicer = slicer;
+		this.cache = cache;
 	}
 
 	@Override
 	public void renderImage(BufferedImage image, Graphics2D g2, ImageData imageData) {
-		data.slicer.colorizePolygons(null, null);
-		data.slicer.paintSlice(g2);
-		imageData.setArea((double)data.slicer.getBuildArea());
+		if (cache != null) {
+			//A cached layer isn't sliced, so the errors the slicer found on it the first time come out of the cache instead
+			slicer.getStlErrors().clear();
+			Double area = cache.readLayer(slicer.getZIndex(), image, slicer.getStlErrors());
+			if (area != null) {
+				imageData.setArea(area);
+				return;
+			}
+		}
+		
+		slicer.colorizePolygons(null, null);
+		slicer.paintSlice(g2);
+		imageData.setArea((double)slicer.getBuildArea());
+		
+		if (cache != null) {
+			cache.writeLayer(slicer.getZIndex(), slicer.getSliceLayer(), slicer.getSliceOutlines(), slicer.getStlErrors(), image.getWidth(), image.getHeight(), slicer.getBuildArea());
+		}
 	}
 }
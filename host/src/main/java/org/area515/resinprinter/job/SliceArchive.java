@@ -0,0 +1,172 @@
+package org.area515.resinprinter.job;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.render.SlicePngDecoder;
+
+/**
+ * The slice images and gcode of a CWS or image zip, either read straight out of the archive or out of the directory it
+ * was extracted into.
+ *
+ * Reading out of the archive means the central directory is the only thing that is read up front, each image is
+ * inflated from the archive only when it's needed, and nothing is written to disk. Extraction is only needed for
+ * archives that ZipFile can't open, like ones with a damaged central directory. Entries are always named by their path
+ * inside the archive with '/' as the separator, no matter where they are read from.
+ *
+ * Entries can be read from more than one thread at once.
+ */
+public abstract class SliceArchive implements Closeable {
+	private static final Logger logger = LogManager.getLogger();
+	public static final Charset ENTRY_NAME_CHARSET = Charset.forName("CP437");
+
+	/**
+	 * Opens the directory an archive was extracted into if there is one, otherwise the archive itself.
+	 */
+	public static SliceArchive open(File archive, File extractDirectory) throws IOException {
+		if (extractDirectory != null && extractDirectory.isDirectory()) {
+			logger.info("Reading slices from extracted directory:{}", extractDirectory);
+			return new DirectorySliceArchive(extractDirectory);
+		}
+
+		logger.info("Reading slices directly from archive:{}", archive);
+		return new ZipSliceArchive(new ZipFile(archive, ENTRY_NAME_CHARSET));
+	}
+
+	/**
+	 * @return true if the central directory of the archive can be read, so it doesn't need to be extracted
+	 */
+	public static boolean canReadInPlace(File archive) {
+		try {
+			new ZipFile(archive, ENTRY_NAME_CHARSET).close();
+			return true;
+		} catch (IOException e) {
+			logger.warn("Archive can't be read in place, it will be extracted instead:{}", archive, e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return the name of every file in the archive, in the order they are stored
+	 */
+	public abstract List<String> getEntryNames();
+
+	public abstract boolean hasEntry(String entryName);
+
+	public abstract InputStream getInputStream(String entryName) throws IOException;
+
+	/**
+	 * @return the names of the files with the extension, ignoring case
+	 */
+	public List<String> findEntries(String extension) {
+		List<String> entries = new ArrayList<String>();
+		for (String entryName : getEntryNames()) {
+			if (FilenameUtils.getExtension(entryName).equalsIgnoreCase(extension)) {
+				entries.add(entryName);
+			}
+		}
+		return entries;
+	}
+
+	public BufferedImage readImage(String entryName) throws IOException {
+		InputStream stream = getInputStream(entryName);
+		try {
+			return SlicePngDecoder.read(stream).getImage();
+		} catch (IOException e) {
+			throw new IOException("Couldn't read image:" + entryName, e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static class ZipSliceArchive extends SliceArchive {
+		private ZipFile zipFile;
+		private Map<String, ZipEntry> entries = new LinkedHashMap<String, ZipEntry>();
+
+		public ZipSliceArchive(ZipFile zipFile) {
+			this.zipFile = zipFile;
+
+			//Only the central directory is read here, none of the entries are inflated until they are needed
+			Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+			while (zipEntries.hasMoreElements()) {
+				ZipEntry entry = zipEntries.nextElement();
+				if (!entry.isDirectory()) {
+					entries.put(entry.getName(), entry);
+				}
+			}
+		}
+
+		@Override
+		public List<String> getEntryNames() {
+			return Collections.unmodifiableList(new ArrayList<String>(entries.keySet()));
+		}
+
+		@Override
+		public boolean hasEntry(String entryName) {
+			return entries.containsKey(entryName);
+		}
+
+		@Override
+		public InputStream getInputStream(String entryName) throws IOException {
+			ZipEntry entry = entries.get(entryName);
+			if (entry == null) {
+				throw new FileNotFoundException("No entry named:" + entryName + " in archive:" + zipFile.getName());
+			}
+			return zipFile.getInputStream(entry);
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipFile.close();
+		}
+	}
+
+	private static class DirectorySliceArchive extends SliceArchive {
+		private File directory;
+
+		public DirectorySliceArchive(File directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public List<String> getEntryNames() {
+			List<String> entryNames = new ArrayList<String>();
+			for (File file : FileUtils.listFiles(directory, null, true)) {
+				entryNames.add(directory.toURI().relativize(file.toURI()).getPath());
+			}
+			return entryNames;
+		}
+
+		@Override
+		public boolean hasEntry(String entryName) {
+			return new File(directory, entryName).isFile();
+		}
+
+		@Override
+		public InputStream getInputStream(String entryName) throws IOException {
+			return new FileInputStream(new File(directory, entryName));
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package org.area515.resinprinter.job;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.area515.resinprinter.job.render.ImageBufferPool;
+
+/**
+ * Decodes and transforms the images of upcoming slices in the background, so that showing the next slice is nothing more
+ * than handing over an image that's already been prepared.
+ *
+ * The slices are known ahead of time because the whole gcode file is scanned for slice lines before the print starts.
+ * Slices are expected to be taken in that order, but a slice that wasn't prepared ahead of time is simply prepared on
+ * the spot. Only the thread that runs the print should use this.
+ *
+ * Images that were prepared for slices that are skipped or cancelled go back to the ImageBufferPool, including the ones
+ * that finish preparing after they've been thrown away.
+ */
+public class SliceImageLookahead {
+	public static interface ImagePreparer {
+		public BufferedImage prepareImage(String imageName) throws Exception;
+	}
+
+	private static class PreparedImage {
+		private String imageName;
+		private Future<BufferedImage> image;
+		private BufferedImage finishedImage;
+		private boolean discarded;
+
+		public PreparedImage(String imageName) {
+			this.imageName = imageName;
+		}
+
+		//Called from the executor once the image is ready, hands it straight back to the pool if nobody wants it anymore
+		private synchronized BufferedImage finish(BufferedImage image) {
+			if (discarded) {
+				ImageBufferPool.release(image);
+				return null;
+			}
+			finishedImage = image;
+			return image;
+		}
+
+		public synchronized void discard() {
+			discarded = true;
+			image.cancel(true);
+			ImageBufferPool.release(finishedImage);
+			finishedImage = null;
+		}
+	}
+
+	private List<String> upcomingImages;
+	private int nextImageToQueue;
+	private int lookahead;
+	private ExecutorService executor;
+	private ImagePreparer preparer;
+	private ArrayDeque<PreparedImage> queuedImages = new ArrayDeque<PreparedImage>();
+
+	public SliceImageLookahead(List<String> upcomingImages, int lookahead, ExecutorService executor, ImagePreparer preparer) {
+		this.upcomingImages = upcomingImages;
+		this.lookahead = Math.max(1, lookahead);
+		this.executor = executor;
+		this.preparer = preparer;
+		fillLookahead();
+	}
+
+	private void fillLookahead() {
+		while (queuedImages.size() < lookahead && nextImageToQueue < upcomingImages.size()) {
+			final PreparedImage preparedImage = new PreparedImage(upcomingImages.get(nextImageToQueue++));
+			preparedImage.image = executor.submit(new Callable<BufferedImage>() {
+				@Override
+				public BufferedImage call() throws Exception {
+					return preparedImage.finish(preparer.prepareImage(preparedImage.imageName));
+				}
+			});
+			queuedImages.add(preparedImage);
+		}
+	}
+
+	/**
+	 * Returns the prepared image and starts preparing the ones after it. Images that were prepared for slices that have
+	 * been skipped over are given back to the ImageBufferPool.
+	 */
+	public BufferedImage takeImage(String imageName) throws Exception {
+		Future<BufferedImage> preparedImage = null;
+		Iterator<PreparedImage> queuedImageIter = queuedImages.iterator();
+		while (queuedImageIter.hasNext()) {
+			if (queuedImageIter.next().imageName.equals(imageName)) {
+				while (preparedImage == null) {
+					PreparedImage skippedImage = queuedImages.remove();
+					if (skippedImage.imageName.equals(imageName)) {
+						preparedImage = skippedImage.image;
+					} else {
+						skippedImage.discard();
+					}
+				}
+				break;
+			}
+		}
+
+		if (preparedImage == null) {
+			//Skip past the slice if it's further ahead than what has been queued so far
+			int skippedImages = upcomingImages.subList(nextImageToQueue, upcomingImages.size()).indexOf(imageName);
+			if (skippedImages >= 0) {
+				discardQueuedImages();
+				nextImageToQueue += skippedImages + 1;
+			}
+			BufferedImage image = preparer.prepareImage(imageName);
+			fillLookahead();
+			return image;
+		}
+
+		fillLookahead();
+		try {
+			return preparedImage.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void discardQueuedImages() {
+		for (PreparedImage queuedImage : queuedImages) {
+			queuedImage.discard();
+		}
+		queuedImages.clear();
+	}
+
+	public void cancel() {
+		discardQueuedImages();
+		nextImageToQueue = upcomingImages.size();
+	}
+}
@@ -3,7 +3,6 @@ package org.area515.resinprinter.job;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -18,12 +17,13 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.exception.NoPrinterFoundException;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.area515.resinprinter.job.render.ImageBufferPool;
 import org.area515.resinprinter.job.render.StandaloneImageData;
 import org.area515.resinprinter.job.render.StandaloneImageRenderer;
 import org.area515.resinprinter.printer.SlicingProfile;
 import org.area515.resinprinter.printer.Printer;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.services.PrinterService;
 
 import se.sawano.java.text.AlphanumericComparator;
@@ -79,23 +79,24 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor i
 
 	@Override
 	public JobStatus processFile(PrintJob printJob) throws Exception {
+		SliceArchive archive = openSliceArchive(printJob.getJobFile());
 		try {
 			DataAid dataAid = initializeDataAid(printJob);
 	
-			SortedMap<String, File> imageFiles = findImages(printJob.getJobFile());
+			SortedMap<String, String> imageFiles = findImages(archive);
 			
 			printJob.setTotalSlices(imageFiles.size());
 	
 			performHeader(dataAid);
 	
-			Iterator<File> imgIter = imageFiles.values().iterator();
+			Iterator<String> imgIter = imageFiles.values().iterator();
 	
 			// Preload first image then loop
 			if (imgIter.hasNext()) {
-				File imageFile = imgIter.next();
+				String imageFile = imgIter.next();
 				
 				Future<StandaloneImageData> prepareImage =
-						Main.GLOBAL_EXECUTOR.submit(new StandaloneImageRenderer(dataAid, imageFile, this));
+						HostExecutors.getRenderingExecutor().submit(new StandaloneImageRenderer(dataAid, archive, imageFile, this));
 				boolean slicePending = true;
 				
 				do {
@@ -111,13 +112,13 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor i
 					
 					if (oldImage != null) {
 						synchronized (oldImage) {
-							oldImage.getImage().flush();
+							ImageBufferPool.release(oldImage.getImage());
 						}
 					}
 					
 					if (imgIter.hasNext()) {
 						imageFile = imgIter.next();
-						prepareImage = Main.GLOBAL_EXECUTOR.submit(new StandaloneImageRenderer(dataAid, imageFile, this));
+						prepareImage = HostExecutors.getRenderingExecutor().submit(new StandaloneImageRenderer(dataAid, archive, imageFile, this));
 					} else {
 						slicePending = false;
 					}
@@ -137,7 +138,13 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor i
 			
 			return performFooter(dataAid);
 		} finally {
-			currentImageByJob.remove(printJob);
+			StandaloneImageData imageData = currentImageByJob.remove(printJob);
+			if (imageData != null) {
+				synchronized (imageData) {
+					ImageBufferPool.release(imageData.getImage());
+				}
+			}
+			archive.close();
 		}
 	}
 
@@ -176,23 +183,28 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor i
 			if (customizer.getOrigSliceCache() == null) {
 				prepareEnvironment(jobFile, printJob);
 				
-				SortedMap<String, File> imageFiles = findImages(jobFile);
-				
-				printJob.setTotalSlices(imageFiles.size());
-		
-				// performHeader(dataAid);
-		
-				Iterator<File> imgIter = imageFiles.values().iterator();
-		
-				// Preload first image then loop
-				if (!imgIter.hasNext()) {
-					throw new IOException("No Image Found");
+				SliceArchive archive = openSliceArchive(jobFile);
+				try {
+					SortedMap<String, String> imageFiles = findImages(archive);
+					
+					printJob.setTotalSlices(imageFiles.size());
+			
+					// performHeader(dataAid);
+			
+					Iterator<String> imgIter = imageFiles.values().iterator();
+			
+					// Preload first image then loop
+					if (!imgIter.hasNext()) {
+						throw new IOException("No Image Found");
+					}
+					String imageFile = imgIter.next();
+					
+					StandaloneImageRenderer renderer = new StandaloneImageRenderer(dataAid, archive, imageFile, this);
+					StandaloneImageData stdImage = renderer.call();
+					image = stdImage.getImage();
+				} finally {
+					archive.close();
 				}
-				File imageFile = imgIter.next();
-				
-				StandaloneImageRenderer renderer = new StandaloneImageRenderer(dataAid, imageFile, this);
-				StandaloneImageData stdImage = renderer.call();
-				image = stdImage.getImage();
 				
 				if (customizer.getAffineTransformSettings().isIdentity()) {
 					image = convertTo3BGR(image);
@@ -233,18 +245,11 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor i
 		return "Zip of Slice Images";
 	}
 	
-	private SortedMap<String, File> findImages(File jobFile) throws JobManagerException {
-		String [] extensions = {"png", "PNG"};
-		boolean recursive = true;
-		
-		Collection<File> files =
-				FileUtils.listFiles(buildExtractionDirectory(jobFile.getName()),
-				extensions, recursive);
-
-		TreeMap<String, File> images = new TreeMap<>(new AlphanumericComparator());
+	private SortedMap<String, String> findImages(SliceArchive archive) throws JobManagerException {
+		TreeMap<String, String> images = new TreeMap<>(new AlphanumericComparator());
 
-		for (File file : files) {
-			images.put(file.getName(), file);
+		for (String entryName : archive.findEntries("png")) {
+			images.put(FilenameUtils.getName(entryName), entryName);
 		}
 		
 		return images;
@@ -33,11 +33,13 @@ public abstract class CurrentImageRenderer implements Callable<BufferedImage> {
 		lock.lock();
 		try {
 			RenderingFileData.ImageData imageData = data.get(imageIndexToBuild);
-			BufferedImage image = data.getCurrentImage();
+			//Render into the image that belongs to this pointer, the current image could still be exposing
+			BufferedImage image = imageData.getImage();
 			Graphics2D graphics = (Graphics2D)image.getGraphics();
 			renderImage(image, graphics, imageData);
 			// processor.applyBulbMask(aid, graphics, width, height);
 			BufferedImage after = processor.applyImageTransforms(aid, image, width, height);
+			imageData.setTransformedImage(after != image ? after : null);
 			// Lock currentLock = data.getCurrentLock();
 			// currentLock.lock();
 			// try {
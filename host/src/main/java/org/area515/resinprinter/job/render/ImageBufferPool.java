@@ -0,0 +1,107 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * The slice images of every printer on this host, kept around between layers so that printing doesn't allocate a new
+ * full screen image for each one.
+ *
+ * A print acquires an image of the width, height and type that it needs and releases it once the image can't be on the
+ * screen anymore. Acquired images are always black (or transparent), just like a new BufferedImage. At most
+ * maxIdleImages released images are held onto at once. When there are more than that, the image that was released
+ * the longest time ago is let go of, which also takes care of images that were left behind by a resolution change.
+ *
+ * Images that are never released are simply garbage collected, so a caller that hands an image off to something it
+ * doesn't control, like a preview, doesn't need to release it.
+ */
+public class ImageBufferPool {
+	public static final int DEFAULT_MAX_IDLE_IMAGES = 4;
+
+	private static int maxIdleImages = DEFAULT_MAX_IDLE_IMAGES;
+	//Most recently released first
+	private static ArrayDeque<BufferedImage> idleImages = new ArrayDeque<BufferedImage>();
+	private static long allocatedImages;
+	private static long reusedImages;
+
+	/**
+	 * @param maxIdleImages the number of released images to hold onto, zero or less turns pooling off
+	 */
+	public static synchronized void setMaxIdleImages(int maxIdleImages) {
+		ImageBufferPool.maxIdleImages = Math.max(0, maxIdleImages);
+		trimIdleImages();
+	}
+
+	public static BufferedImage acquire(int width, int height, int type) {
+		BufferedImage image = takeIdleImage(width, height, type);
+		if (image == null) {
+			return new BufferedImage(width, height, type);
+		}
+
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setComposite(AlphaComposite.Clear);
+			graphics.fillRect(0, 0, width, height);
+		} finally {
+			graphics.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Gives an image back to the pool. Nothing may draw into or display the image after this, null is ignored.
+	 */
+	public static synchronized void release(BufferedImage image) {
+		if (image == null || maxIdleImages == 0) {
+			return;
+		}
+
+		for (BufferedImage idleImage : idleImages) {
+			if (idleImage == image) {
+				return;
+			}
+		}
+		idleImages.addFirst(image);
+		trimIdleImages();
+	}
+
+	public static synchronized void clear() {
+		idleImages.clear();
+	}
+
+	public static synchronized int getIdleImageCount() {
+		return idleImages.size();
+	}
+
+	public static synchronized long getAllocatedImageCount() {
+		return allocatedImages;
+	}
+
+	public static synchronized long getReusedImageCount() {
+		return reusedImages;
+	}
+
+	private static synchronized BufferedImage takeIdleImage(int width, int height, int type) {
+		Iterator<BufferedImage> images = idleImages.iterator();
+		while (images.hasNext()) {
+			BufferedImage image = images.next();
+			if (image.getWidth() == width && image.getHeight() == height && image.getType() == type) {
+				images.remove();
+				reusedImages++;
+				return image;
+			}
+		}
+
+		allocatedImages++;
+		return null;
+	}
+
+	private static void trimIdleImages() {
+		while (idleImages.size() > maxIdleImages) {
+			idleImages.removeLast().flush();
+		}
+	}
+}
@@ -0,0 +1,648 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.RecursiveAction;
+
+import org.area515.resinprinter.slice.SlicingExecutor;
+
+/**
+ * The affine transform and bulb mask of a print job, worked out once so that every layer can be transformed and masked
+ * in a single pass over its rows.
+ *
+ * Transforming a layer with AffineTransformOp and then filling the bulb mask Paint over it went over the whole frame
+ * twice and ran the Paint for every pixel of every layer, even though neither changes during a job. A plan instead
+ * keeps:
+ * <ul>
+ * <li>An integer mapping from each pixel back to its source pixel, for translations, flips and quarter turns.</li>
+ * <li>The source columns, rows and bilinear weights of every pixel, when the transform only scales and translates.</li>
+ * <li>The inverse transform, which is worked out pixel by pixel for everything else.</li>
+ * <li>The mask, painted once and premultiplied.</li>
+ * </ul>
+ * Each row is transformed and then masked while it's still in cache, and the rows are split between the slicing threads.
+ * The results match AffineTransformOp with TYPE_BILINEAR followed by a SrcOver fill of the mask to within a level of
+ * rounding. Only TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_INT_ARGB_PRE, TYPE_3BYTE_BGR and TYPE_BYTE_GRAY images are
+ * supported, anything else has to be transformed the old way.
+ */
+public class ImageTransformPlan {
+	private static final int ROWS_PER_TASK = 32;
+	private static final int WEIGHT_ONE = 256;
+	private static final double EPSILON = 1e-9;
+
+	private enum Mapping {
+		Identity,
+		Integer,
+		Separable,
+		General
+	}
+
+	private int width;
+	private int height;
+	private int type;
+	private int channels;
+	private Mapping mapping;
+
+	//Integer mapping, the source of (x, y) is (sourceXPerX * x + sourceXPerY * y + sourceX, sourceYPerX * x + sourceYPerY * y + sourceY)
+	private int sourceXPerX;
+	private int sourceXPerY;
+	private int sourceX;
+	private int sourceYPerX;
+	private int sourceYPerY;
+	private int sourceY;
+
+	//Separable mapping, the two source columns/rows of each pixel and the weight of the second one. -1 means there is no source.
+	private int[] firstColumns;
+	private int[] secondColumns;
+	private int[] columnWeights;
+	private int[] firstRows;
+	private int[] secondRows;
+	private int[] rowWeights;
+
+	//General mapping
+	private AffineTransform inverse;
+
+	//Premultiplied ARGB, or premultiplied gray in the low byte for TYPE_BYTE_GRAY. null if there's no mask.
+	private int[] mask;
+	//The mask as straight ARGB for TYPE_INT_ARGB, which is what a transparent pixel becomes
+	private int[] straightMask;
+
+	private ImageTransformPlan(int width, int height, int type) {
+		this.width = width;
+		this.height = height;
+		this.type = type;
+		this.channels = type == BufferedImage.TYPE_3BYTE_BGR ? 3 : 1;
+	}
+
+	public static boolean isSupportedType(int type) {
+		switch (type) {
+		case BufferedImage.TYPE_INT_RGB :
+		case BufferedImage.TYPE_INT_ARGB :
+		case BufferedImage.TYPE_INT_ARGB_PRE :
+		case BufferedImage.TYPE_3BYTE_BGR :
+		case BufferedImage.TYPE_BYTE_GRAY :
+			return true;
+		default :
+			return false;
+		}
+	}
+
+	/**
+	 * @param transform the transform to apply, which can be the identity when there's only a mask
+	 * @param maskPaint the bulb mask to fill over the transformed image or null for none
+	 * @return null if images of this type aren't supported or the transform can't be inverted
+	 */
+	public static ImageTransformPlan compile(AffineTransform transform, Paint maskPaint, int width, int height, int type) {
+		if (!isSupportedType(type) || width <= 0 || height <= 0) {
+			return null;
+		}
+
+		ImageTransformPlan plan = new ImageTransformPlan(width, height, type);
+		try {
+			plan.compileMapping(transform);
+		} catch (NoninvertibleTransformException e) {
+			return null;
+		}
+		if (maskPaint != null) {
+			plan.compileMask(maskPaint);
+		}
+		return plan;
+	}
+
+	private void compileMapping(AffineTransform transform) throws NoninvertibleTransformException {
+		if (transform.isIdentity()) {
+			mapping = Mapping.Identity;
+			return;
+		}
+
+		//Pixel centers are what get mapped, which is what AffineTransformOp does too
+		inverse = transform.createInverse();
+		double[] matrix = new double[6];
+		inverse.getMatrix(matrix);
+		Point2D firstSource = inverse.transform(new Point2D.Double(0.5, 0.5), null);
+		double firstSourceX = firstSource.getX() - 0.5;
+		double firstSourceY = firstSource.getY() - 0.5;
+
+		if (isUnitOrZero(matrix[0]) && isUnitOrZero(matrix[1]) && isUnitOrZero(matrix[2]) && isUnitOrZero(matrix[3]) &&
+				Math.abs(Math.round(matrix[0]) * Math.round(matrix[3]) - Math.round(matrix[1]) * Math.round(matrix[2])) == 1 &&
+				isInteger(firstSourceX) && isInteger(firstSourceY)) {
+			mapping = Mapping.Integer;
+			sourceXPerX = (int)Math.round(matrix[0]);
+			sourceYPerX = (int)Math.round(matrix[1]);
+			sourceXPerY = (int)Math.round(matrix[2]);
+			sourceYPerY = (int)Math.round(matrix[3]);
+			sourceX = (int)Math.round(firstSourceX);
+			sourceY = (int)Math.round(firstSourceY);
+			return;
+		}
+
+		if (Math.abs(matrix[1]) < EPSILON && Math.abs(matrix[2]) < EPSILON) {
+			mapping = Mapping.Separable;
+			firstColumns = new int[width];
+			secondColumns = new int[width];
+			columnWeights = new int[width];
+			for (int x = 0; x < width; x++) {
+				sampleAxis(matrix[0] * (x + 0.5) + matrix[4], width, x, firstColumns, secondColumns, columnWeights);
+			}
+			firstRows = new int[height];
+			secondRows = new int[height];
+			rowWeights = new int[height];
+			for (int y = 0; y < height; y++) {
+				sampleAxis(matrix[3] * (y + 0.5) + matrix[5], height, y, firstRows, secondRows, rowWeights);
+			}
+			return;
+		}
+
+		mapping = Mapping.General;
+	}
+
+	private static boolean isUnitOrZero(double value) {
+		return Math.abs(value) < EPSILON || Math.abs(Math.abs(value) - 1) < EPSILON;
+	}
+
+	private static boolean isInteger(double value) {
+		return Math.abs(value - Math.round(value)) < EPSILON;
+	}
+
+	//Finds the two source pixels on either side of a mapped pixel center, the edge pixels stand in for anything past the edge
+	private static void sampleAxis(double sourceCenter, int size, int index, int[] firsts, int[] seconds, int[] weights) {
+		if (sourceCenter < 0 || sourceCenter >= size) {
+			firsts[index] = -1;
+			return;
+		}
+
+		double source = sourceCenter - 0.5;
+		int first = (int)Math.floor(source);
+		weights[index] = (int)Math.round((source - first) * WEIGHT_ONE);
+		seconds[index] = Math.min(size - 1, first + 1);
+		firsts[index] = Math.max(0, first);
+	}
+
+	private void compileMask(Paint maskPaint) {
+		BufferedImage maskImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D graphics = maskImage.createGraphics();
+		try {
+			graphics.setPaint(maskPaint);
+			graphics.fillRect(0, 0, width, height);
+		} finally {
+			graphics.dispose();
+		}
+
+		mask = ((DataBufferInt)maskImage.getRaster().getDataBuffer()).getData();
+		boolean visible = false;
+		for (int t = 0; t < mask.length; t++) {
+			int argb = mask[t];
+			if (type == BufferedImage.TYPE_BYTE_GRAY) {
+				mask[t] = argb & 0xff000000 | ((77 * (argb >> 16 & 0xff) + 150 * (argb >> 8 & 0xff) + 29 * (argb & 0xff) + 128) >> 8);
+			}
+			visible |= argb >>> 24 != 0;
+		}
+		if (!visible) {
+			mask = null;
+			return;
+		}
+
+		if (type == BufferedImage.TYPE_INT_ARGB) {
+			straightMask = new int[mask.length];
+			for (int t = 0; t < mask.length; t++) {
+				straightMask[t] = unpremultiply(mask[t]);
+			}
+		}
+	}
+
+	public boolean isCompiledFor(int width, int height, int type) {
+		return this.width == width && this.height == height && this.type == type;
+	}
+
+	public boolean isIdentity() {
+		return mapping == Mapping.Identity;
+	}
+
+	public boolean hasMask() {
+		return mask != null;
+	}
+
+	/**
+	 * @return true if this plan was compiled for images like this one
+	 */
+	public boolean canApply(BufferedImage image) {
+		if (image.getWidth() != width || image.getHeight() != height || image.getType() != type) {
+			return false;
+		}
+
+		//The data has to start at the first pixel with no padding at the ends of the rows, which is how new images are laid out
+		WritableRaster raster = image.getRaster();
+		if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0 || raster.getDataBuffer().getNumBanks() != 1) {
+			return false;
+		}
+		if (raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			return ((SinglePixelPackedSampleModel)raster.getSampleModel()).getScanlineStride() == width && raster.getDataBuffer().getOffset() == 0;
+		}
+		if (raster.getSampleModel() instanceof ComponentSampleModel) {
+			return ((ComponentSampleModel)raster.getSampleModel()).getScanlineStride() == width * channels && raster.getDataBuffer().getOffset() == 0;
+		}
+		return false;
+	}
+
+	/**
+	 * Transforms source into target and fills the mask over target. target has to be black wherever the transform
+	 * doesn't reach, like a new image or one from the ImageBufferPool. An identity plan masks source in place and
+	 * target must be source.
+	 */
+	public void apply(BufferedImage source, BufferedImage target) {
+		if (!canApply(source) || !canApply(target)) {
+			throw new IllegalArgumentException("This plan is for " + width + "x" + height + " images of type:" + type);
+		}
+		if (isIdentity() != (source == target)) {
+			throw new IllegalArgumentException("Only an identity plan can be applied in place");
+		}
+		if (isIdentity() && mask == null) {
+			return;
+		}
+
+		Object sourceData = getData(source);
+		Object targetData = getData(target);
+		if (height <= ROWS_PER_TASK) {
+			applyRows(sourceData, targetData, 0, height);
+		} else {
+			SlicingExecutor.getPool().invoke(new RowWork(sourceData, targetData, 0, height));
+		}
+	}
+
+	private static Object getData(BufferedImage image) {
+		if (image.getRaster().getDataBuffer() instanceof DataBufferInt) {
+			return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		}
+		return ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+	}
+
+	private class RowWork extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private Object sourceData;
+		private Object targetData;
+		private int firstRow;
+		private int endRow;
+
+		public RowWork(Object sourceData, Object targetData, int firstRow, int endRow) {
+			this.sourceData = sourceData;
+			this.targetData = targetData;
+			this.firstRow = firstRow;
+			this.endRow = endRow;
+		}
+
+		@Override
+		protected void compute() {
+			if (endRow - firstRow <= ROWS_PER_TASK) {
+				applyRows(sourceData, targetData, firstRow, endRow);
+				return;
+			}
+
+			int middleRow = (firstRow + endRow) >>> 1;
+			invokeAll(new RowWork(sourceData, targetData, firstRow, middleRow), new RowWork(sourceData, targetData, middleRow, endRow));
+		}
+	}
+
+	void applyRows(Object sourceData, Object targetData, int firstRow, int endRow) {
+		for (int y = firstRow; y < endRow; y++) {
+			if (targetData instanceof int[]) {
+				transformRow(y, (int[])sourceData, (int[])targetData);
+				maskRow(y, (int[])targetData);
+			} else {
+				transformRow(y, (byte[])sourceData, (byte[])targetData);
+				maskRow(y, (byte[])targetData);
+			}
+		}
+	}
+
+	private void transformRow(int y, int[] source, int[] target) {
+		int pixel = y * width;
+		switch (mapping) {
+		case Identity :
+			break;
+		case Integer :
+			int sourceColumn = sourceXPerY * y + sourceX;
+			int sourceRow = sourceYPerY * y + sourceY;
+			if (sourceYPerX == 0) {
+				//The row comes from a single source row, either as it is or reversed
+				if (sourceRow < 0 || sourceRow >= height) {
+					break;
+				}
+				int firstX = sourceXPerX > 0 ? Math.max(0, -sourceColumn) : Math.max(0, sourceColumn - width + 1);
+				int endX = sourceXPerX > 0 ? Math.min(width, width - sourceColumn) : Math.min(width, sourceColumn + 1);
+				if (sourceXPerX > 0) {
+					System.arraycopy(source, sourceRow * width + sourceColumn + firstX, target, pixel + firstX, Math.max(0, endX - firstX));
+				} else {
+					for (int x = firstX, sourcePixel = sourceRow * width + sourceColumn - firstX; x < endX; x++, sourcePixel--) {
+						target[pixel + x] = source[sourcePixel];
+					}
+				}
+				break;
+			}
+			for (int x = 0; x < width; x++, pixel++, sourceColumn += sourceXPerX, sourceRow += sourceYPerX) {
+				if (sourceColumn >= 0 && sourceColumn < width && sourceRow >= 0 && sourceRow < height) {
+					target[pixel] = source[sourceRow * width + sourceColumn];
+				}
+			}
+			break;
+		case Separable :
+			if (firstRows[y] < 0) {
+				break;
+			}
+			int firstRow = firstRows[y] * width;
+			int secondRow = secondRows[y] * width;
+			int rowWeight = rowWeights[y];
+			for (int x = 0; x < width; x++, pixel++) {
+				int firstColumn = firstColumns[x];
+				if (firstColumn >= 0) {
+					int secondColumn = secondColumns[x];
+					target[pixel] = interpolate(source[firstRow + firstColumn], source[firstRow + secondColumn], source[secondRow + firstColumn], source[secondRow + secondColumn], columnWeights[x], rowWeight);
+				}
+			}
+			break;
+		case General :
+			double[] point = new double[2];
+			for (int x = 0; x < width; x++, pixel++) {
+				if (mapGeneral(x, y, point)) {
+					int first = (int)Math.floor(point[0]);
+					int top = (int)Math.floor(point[1]);
+					int columnWeight = (int)Math.round((point[0] - first) * WEIGHT_ONE);
+					int generalRowWeight = (int)Math.round((point[1] - top) * WEIGHT_ONE);
+					int second = Math.min(width - 1, first + 1);
+					int bottom = Math.min(height - 1, top + 1) * width;
+					first = Math.max(0, first);
+					top = Math.max(0, top) * width;
+					target[pixel] = interpolate(source[top + first], source[top + second], source[bottom + first], source[bottom + second], columnWeight, generalRowWeight);
+				}
+			}
+			break;
+		}
+	}
+
+	private void transformRow(int y, byte[] source, byte[] target) {
+		int sample = y * width * channels;
+		switch (mapping) {
+		case Identity :
+			break;
+		case Integer :
+			int sourceColumn = sourceXPerY * y + sourceX;
+			int sourceRow = sourceYPerY * y + sourceY;
+			if (sourceYPerX == 0) {
+				if (sourceRow < 0 || sourceRow >= height) {
+					break;
+				}
+				int firstX = sourceXPerX > 0 ? Math.max(0, -sourceColumn) : Math.max(0, sourceColumn - width + 1);
+				int endX = sourceXPerX > 0 ? Math.min(width, width - sourceColumn) : Math.min(width, sourceColumn + 1);
+				if (sourceXPerX > 0) {
+					System.arraycopy(source, (sourceRow * width + sourceColumn + firstX) * channels, target, sample + firstX * channels, Math.max(0, endX - firstX) * channels);
+				} else if (channels == 1) {
+					for (int x = firstX, sourcePixel = sourceRow * width + sourceColumn - firstX; x < endX; x++, sourcePixel--) {
+						target[sample + x] = source[sourcePixel];
+					}
+				} else {
+					for (int x = firstX, sourcePixel = sourceRow * width + sourceColumn - firstX; x < endX; x++, sourcePixel--) {
+						for (int channel = 0; channel < channels; channel++) {
+							target[sample + x * channels + channel] = source[sourcePixel * channels + channel];
+						}
+					}
+				}
+				break;
+			}
+			for (int x = 0; x < width; x++, sample += channels, sourceColumn += sourceXPerX, sourceRow += sourceYPerX) {
+				if (sourceColumn >= 0 && sourceColumn < width && sourceRow >= 0 && sourceRow < height) {
+					int sourceSample = (sourceRow * width + sourceColumn) * channels;
+					for (int channel = 0; channel < channels; channel++) {
+						target[sample + channel] = source[sourceSample + channel];
+					}
+				}
+			}
+			break;
+		case Separable :
+			if (firstRows[y] < 0) {
+				break;
+			}
+			int firstRow = firstRows[y] * width;
+			int secondRow = secondRows[y] * width;
+			int rowWeight = rowWeights[y];
+			if (channels == 1) {
+				interpolateGrayRow(source, target, sample, firstRow, secondRow, rowWeight);
+				break;
+			}
+			for (int x = 0; x < width; x++, sample += channels) {
+				int firstColumn = firstColumns[x];
+				if (firstColumn >= 0) {
+					int secondColumn = secondColumns[x];
+					interpolate(source, target, sample, firstRow + firstColumn, firstRow + secondColumn, secondRow + firstColumn, secondRow + secondColumn, columnWeights[x], rowWeight);
+				}
+			}
+			break;
+		case General :
+			double[] point = new double[2];
+			for (int x = 0; x < width; x++, sample += channels) {
+				if (mapGeneral(x, y, point)) {
+					int first = (int)Math.floor(point[0]);
+					int top = (int)Math.floor(point[1]);
+					int columnWeight = (int)Math.round((point[0] - first) * WEIGHT_ONE);
+					int generalRowWeight = (int)Math.round((point[1] - top) * WEIGHT_ONE);
+					int second = Math.min(width - 1, first + 1);
+					int bottom = Math.min(height - 1, top + 1) * width;
+					first = Math.max(0, first);
+					top = Math.max(0, top) * width;
+					interpolate(source, target, sample, top + first, top + second, bottom + first, bottom + second, columnWeight, generalRowWeight);
+				}
+			}
+			break;
+		}
+	}
+
+	//Gray gets a loop of its own since most CWS slices are gray
+	private void interpolateGrayRow(byte[] source, byte[] target, int sample, int firstRow, int secondRow, int rowWeight) {
+		for (int x = 0; x < width; x++, sample++) {
+			int firstColumn = firstColumns[x];
+			if (firstColumn < 0) {
+				continue;
+			}
+
+			int secondColumn = secondColumns[x];
+			byte topLeft = source[firstRow + firstColumn];
+			byte topRight = source[firstRow + secondColumn];
+			byte bottomLeft = source[secondRow + firstColumn];
+			byte bottomRight = source[secondRow + secondColumn];
+			if (topLeft == topRight && topLeft == bottomLeft && topLeft == bottomRight) {
+				target[sample] = topLeft;
+				continue;
+			}
+
+			int columnWeight = columnWeights[x];
+			int top = (topLeft & 0xff) * (WEIGHT_ONE - columnWeight) + (topRight & 0xff) * columnWeight;
+			int bottom = (bottomLeft & 0xff) * (WEIGHT_ONE - columnWeight) + (bottomRight & 0xff) * columnWeight;
+			target[sample] = (byte)((top * (WEIGHT_ONE - rowWeight) + bottom * rowWeight + WEIGHT_ONE * WEIGHT_ONE / 2) >>> 16);
+		}
+	}
+
+	//Puts the source point of a pixel, less half a pixel, into point. false if the pixel center maps outside the source.
+	private boolean mapGeneral(int x, int y, double[] point) {
+		point[0] = x + 0.5;
+		point[1] = y + 0.5;
+		inverse.transform(point, 0, point, 0, 1);
+		if (point[0] < 0 || point[0] >= width || point[1] < 0 || point[1] >= height) {
+			return false;
+		}
+		point[0] -= 0.5;
+		point[1] -= 0.5;
+		return true;
+	}
+
+	//Interpolates the four 8 bit channels of packed pixels separately
+	private static int interpolate(int topLeft, int topRight, int bottomLeft, int bottomRight, int columnWeight, int rowWeight) {
+		//Most of a slice is the inside or outside of a shape, where there is nothing to interpolate
+		if ((columnWeight == 0 && rowWeight == 0) || (topLeft == topRight && topLeft == bottomLeft && topLeft == bottomRight)) {
+			return topLeft;
+		}
+
+		int topLeftWeight = (WEIGHT_ONE - columnWeight) * (WEIGHT_ONE - rowWeight);
+		int topRightWeight = columnWeight * (WEIGHT_ONE - rowWeight);
+		int bottomLeftWeight = (WEIGHT_ONE - columnWeight) * rowWeight;
+		int bottomRightWeight = columnWeight * rowWeight;
+		int pixel = 0;
+		for (int shift = 0; shift < 32; shift += 8) {
+			int value = (topLeft >>> shift & 0xff) * topLeftWeight + (topRight >>> shift & 0xff) * topRightWeight +
+					(bottomLeft >>> shift & 0xff) * bottomLeftWeight + (bottomRight >>> shift & 0xff) * bottomRightWeight;
+			pixel |= ((value + WEIGHT_ONE * WEIGHT_ONE / 2) >>> 16) << shift;
+		}
+		return pixel;
+	}
+
+	private void interpolate(byte[] source, byte[] target, int sample, int topLeft, int topRight, int bottomLeft, int bottomRight, int columnWeight, int rowWeight) {
+		int topLeftWeight = (WEIGHT_ONE - columnWeight) * (WEIGHT_ONE - rowWeight);
+		int topRightWeight = columnWeight * (WEIGHT_ONE - rowWeight);
+		int bottomLeftWeight = (WEIGHT_ONE - columnWeight) * rowWeight;
+		int bottomRightWeight = columnWeight * rowWeight;
+		topLeft *= channels;
+		topRight *= channels;
+		bottomLeft *= channels;
+		bottomRight *= channels;
+		if (channels == 1 && source[topLeft] == source[topRight] && source[topLeft] == source[bottomLeft] && source[topLeft] == source[bottomRight]) {
+			target[sample] = source[topLeft];
+			return;
+		}
+		for (int channel = 0; channel < channels; channel++) {
+			int value = (source[topLeft + channel] & 0xff) * topLeftWeight + (source[topRight + channel] & 0xff) * topRightWeight +
+					(source[bottomLeft + channel] & 0xff) * bottomLeftWeight + (source[bottomRight + channel] & 0xff) * bottomRightWeight;
+			target[sample + channel] = (byte)((value + WEIGHT_ONE * WEIGHT_ONE / 2) >>> 16);
+		}
+	}
+
+	private void maskRow(int y, int[] target) {
+		if (mask == null) {
+			return;
+		}
+
+		int pixel = y * width;
+		for (int x = 0; x < width; x++, pixel++) {
+			int maskPixel = mask[pixel];
+			int maskAlpha = maskPixel >>> 24;
+			if (maskAlpha == 0) {
+				continue;
+			}
+
+			int remaining = 255 - maskAlpha;
+			int targetPixel = target[pixel];
+			switch (type) {
+			case BufferedImage.TYPE_INT_ARGB :
+				int targetAlpha = targetPixel >>> 24;
+				if (targetAlpha == 0) {
+					target[pixel] = straightMask[pixel];
+					break;
+				}
+				if (targetAlpha == 255) {
+					target[pixel] = blend(maskPixel, targetPixel, remaining, 32);
+					break;
+				}
+				
+				//The target isn't premultiplied, so it's premultiplied to blend and divided back out afterwards
+				int alpha = maskAlpha + multiply(targetAlpha, remaining);
+				int blended = alpha << 24;
+				for (int shift = 0; shift < 24; shift += 8) {
+					int premultiplied = (maskPixel >>> shift & 0xff) + multiply(multiply(targetPixel >>> shift & 0xff, targetAlpha), remaining);
+					blended |= Math.min(255, (premultiplied * 255 + alpha / 2) / alpha) << shift;
+				}
+				target[pixel] = blended;
+				break;
+			case BufferedImage.TYPE_INT_ARGB_PRE :
+				target[pixel] = blend(maskPixel, targetPixel, remaining, 32);
+				break;
+			default :
+				target[pixel] = blend(maskPixel, targetPixel, remaining, 24);
+				break;
+			}
+		}
+	}
+
+	private void maskRow(int y, byte[] target) {
+		if (mask == null) {
+			return;
+		}
+
+		int pixel = y * width;
+		if (channels == 1) {
+			for (int x = 0; x < width; x++, pixel++) {
+				int maskPixel = mask[pixel];
+				int maskAlpha = maskPixel >>> 24;
+				if (maskAlpha != 0) {
+					target[pixel] = (byte)((maskPixel & 0xff) + multiply(target[pixel] & 0xff, 255 - maskAlpha));
+				}
+			}
+			return;
+		}
+
+		int sample = pixel * channels;
+		for (int x = 0; x < width; x++, pixel++, sample += channels) {
+			int maskPixel = mask[pixel];
+			int maskAlpha = maskPixel >>> 24;
+			if (maskAlpha == 0) {
+				continue;
+			}
+
+			int remaining = 255 - maskAlpha;
+			//Both gray and BGR samples are in the same order as the low bytes of the mask, blue first
+			for (int channel = 0; channel < channels; channel++) {
+				target[sample + channel] = (byte)((maskPixel >>> (channel * 8) & 0xff) + multiply(target[sample + channel] & 0xff, remaining));
+			}
+		}
+	}
+
+	private static int blend(int maskPixel, int targetPixel, int remaining, int bits) {
+		int blended = 0;
+		for (int shift = 0; shift < bits; shift += 8) {
+			blended |= ((maskPixel >>> shift & 0xff) + multiply(targetPixel >>> shift & 0xff, remaining)) << shift;
+		}
+		return blended;
+	}
+
+	private static int unpremultiply(int premultiplied) {
+		int alpha = premultiplied >>> 24;
+		if (alpha == 0) {
+			return 0;
+		}
+
+		int straight = alpha << 24;
+		for (int shift = 0; shift < 24; shift += 8) {
+			straight |= Math.min(255, ((premultiplied >>> shift & 0xff) * 255 + alpha / 2) / alpha) << shift;
+		}
+		return straight;
+	}
+
+	//Multiplies two 8 bit values where 255 is one
+	private static int multiply(int value, int factor) {
+		int product = value * factor + 128;
+		return (product + (product >>> 8)) >>> 8;
+	}
+}
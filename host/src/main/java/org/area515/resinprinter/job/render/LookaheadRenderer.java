@@ -0,0 +1,83 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Renders up to lookahead layers ahead of the layer that is currently being exposed.
+ *
+ * Every layer is rendered into its own image out of a ring of lookahead + 1 images that are reused for the whole print.
+ * The extra image is the one that's being exposed, so a layer that's still rendering never draws over it. Layers are
+ * rendered in parallel and can finish in any order, but they are always handed back in the order they were queued.
+ *
+ * Layers are only queued by the thread that runs the exposure loop, so nothing new is rendered while a print is paused
+ * and cancel() throws away whatever hasn't been exposed yet.
+ */
+public class LookaheadRenderer {
+	public static interface RendererFactory {
+		public CurrentImageRenderer createRenderer(Integer imageIndexToBuild, int layer);
+	}
+
+	private RenderingFileData data;
+	private ExecutorService executor;
+	private RendererFactory factory;
+	private int lookahead;
+	private int queuedLayerCount;
+	private Integer currentImageIndex;
+	private ArrayDeque<Integer> queuedImageIndexes = new ArrayDeque<Integer>();
+	private ArrayDeque<Future<BufferedImage>> queuedImages = new ArrayDeque<Future<BufferedImage>>();
+
+	public LookaheadRenderer(RenderingFileData data, int lookahead, ExecutorService executor, RendererFactory factory) {
+		this.data = data;
+		this.lookahead = Math.max(1, lookahead);
+		this.executor = executor;
+		this.factory = factory;
+		this.currentImageIndex = 0;
+		data.setCurrentRenderingPointer(currentImageIndex);
+	}
+
+	/**
+	 * @return the number of images in the ring, one more than the number of layers that can be rendering at once
+	 */
+	public int getImageCount() {
+		return lookahead + 1;
+	}
+
+	public boolean isFull() {
+		return queuedImages.size() >= lookahead;
+	}
+
+	public void queueLayer(int layer) {
+		Integer imageIndexToBuild = queuedLayerCount++ % getImageCount();
+		CurrentImageRenderer renderer = factory.createRenderer(imageIndexToBuild, layer);
+		queuedImageIndexes.add(imageIndexToBuild);
+		queuedImages.add(executor.submit(renderer));
+	}
+
+	/**
+	 * Waits for the oldest queued layer to finish rendering and makes it the current image.
+	 */
+	public BufferedImage takeLayer() throws InterruptedException, ExecutionException {
+		Future<BufferedImage> image = queuedImages.remove();
+		Integer imageIndex = queuedImageIndexes.remove();
+		BufferedImage renderedImage = image.get();
+		currentImageIndex = imageIndex;
+		data.setCurrentRenderingPointer(imageIndex);
+		return renderedImage;
+	}
+
+	public Integer getCurrentImageIndex() {
+		return currentImageIndex;
+	}
+
+	public void cancel() {
+		for (Future<BufferedImage> image : queuedImages) {
+			image.cancel(true);
+		}
+		queuedImages.clear();
+		queuedImageIndexes.clear();
+	}
+}
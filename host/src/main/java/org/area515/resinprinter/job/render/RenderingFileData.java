@@ -1,19 +1,22 @@
 package org.area515.resinprinter.job.render;
 
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.area515.resinprinter.slice.ZSlicer;
 
 public class RenderingFileData {
-	private Map<Object, RenderingFileData.ImageData> imageSync = new HashMap<>();
+	//Renderers look up their images from other threads while new images are still being initialized
+	private Map<Object, RenderingFileData.ImageData> imageSync = new ConcurrentHashMap<>();
 	public ZSlicer slicer;
-	private Boolean currentImagePointer = Boolean.TRUE;
+	//Images are keyed by whatever the processor uses to tell them apart, the ring index for STL prints and a Boolean for 2D prints
+	private volatile Object currentImagePointer = Boolean.TRUE;
 	
 	public static class ImageData {
 		private BufferedImage image;
+		private BufferedImage transformedImage;
 		private double area;
 		private ReentrantLock lock = new ReentrantLock();
 		
@@ -25,6 +28,18 @@ public class RenderingFileData {
 		public void setArea(double area) {
 			this.area = area;
 		}
+		
+		public BufferedImage getImage() {
+			return image;
+		}
+		
+		//The image that was transformed out of this one for the last layer is off the screen by the time this one is rendered again
+		void setTransformedImage(BufferedImage transformedImage) {
+			if (this.transformedImage != null && this.transformedImage != transformedImage) {
+				ImageBufferPool.release(this.transformedImage);
+			}
+			this.transformedImage = transformedImage;
+		}
 	}
 
 	public ImageData get(Object imageToBuild) {
@@ -34,11 +49,27 @@ public class RenderingFileData {
 	public void initialize(Object imageToBuild, int width, int height) {
 		ImageData imageData = imageSync.get(imageToBuild);
 		if (imageData == null) {
-			imageData = new ImageData(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), 0.0);
+			imageData = new ImageData(ImageBufferPool.acquire(width, height, BufferedImage.TYPE_INT_ARGB), 0.0);
 			imageSync.put(imageToBuild, imageData);
 		}
 	}
 	
+	/**
+	 * Gives every image back to the ImageBufferPool once the print is over and none of them can be rendered or shown again.
+	 */
+	public void releaseImages() {
+		for (ImageData imageData : imageSync.values()) {
+			imageData.lock.lock();
+			try {
+				ImageBufferPool.release(imageData.image);
+				ImageBufferPool.release(imageData.transformedImage);
+			} finally {
+				imageData.lock.unlock();
+			}
+		}
+		imageSync.clear();
+	}
+	
 	public ReentrantLock getSpecificLock(Object lockPointer) {
 		return imageSync.get(lockPointer).lock;
 	}
@@ -55,15 +86,11 @@ public class RenderingFileData {
 		return imageSync.get(currentImagePointer).area;
 	}
 	
-	public Object getNextRenderingPointer() {
-		return !currentImagePointer;
-	}
-	
 	public Object getCurrentRenderingPointer() {
 		return currentImagePointer;
 	}
 	
 	public void setCurrentRenderingPointer(Object pointer) {
-		currentImagePointer = (Boolean)pointer;
+		currentImagePointer = pointer;
 	}
 }
\ No newline at end of file
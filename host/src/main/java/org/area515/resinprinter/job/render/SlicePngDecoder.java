@@ -0,0 +1,340 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes the kind of PNGs that slicers write, grayscale and palette images of 8 bits or less, faster than ImageIO.
+ *
+ * Each row is inflated into a buffer that is reused for every image a thread decodes, unfiltered in place and then
+ * written straight into the byte array behind a TYPE_BYTE_GRAY image (or TYPE_3BYTE_BGR for a palette with color in it)
+ * that comes out of the ImageBufferPool.
+ * The lit pixels are counted in the same pass, and a byte of a 1, 2 or 4 bit row that's all black is skipped over
+ * without unpacking it, which is most of a slice. ImageIO also hands 1 bit slices back as TYPE_BYTE_BINARY, which
+ * the renderers can't count the area of.
+ *
+ * Everything else, like interlaced, 16 bit, color and transparent PNGs, is handed to ImageIO, in which case the area
+ * isn't counted.
+ */
+public class SlicePngDecoder {
+	private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+	private static final int IHDR = 0x49484452;
+	private static final int PLTE = 0x504c5445;
+	private static final int TRNS = 0x74524e53;
+	private static final int IDAT = 0x49444154;
+	private static final int IEND = 0x49454e44;
+	private static final int COLOR_TYPE_GRAY = 0;
+	private static final int COLOR_TYPE_PALETTE = 3;
+	private static final ThreadLocal<SlicePngDecoder> decoders = new ThreadLocal<SlicePngDecoder>() {
+		@Override
+		protected SlicePngDecoder initialValue() {
+			return new SlicePngDecoder();
+		}
+	};
+
+	private byte[] fileBuffer = new byte[64 * 1024];
+	private byte[] currentRow = new byte[0];
+	private byte[] previousRow = new byte[0];
+	private int[] dataChunks = new int[32];
+	private Inflater inflater = new Inflater();
+
+	public static class DecodedSlice {
+		private BufferedImage image;
+		private Long area;
+
+		public DecodedSlice(BufferedImage image, Long area) {
+			this.image = image;
+			this.area = area;
+		}
+
+		public BufferedImage getImage() {
+			return image;
+		}
+
+		/**
+		 * @return the number of pixels that aren't black or null if the image had to be decoded by ImageIO
+		 */
+		public Long getArea() {
+			return area;
+		}
+	}
+
+	/**
+	 * Decodes an image with the decoder that belongs to the current thread. The stream isn't closed.
+	 */
+	public static DecodedSlice read(InputStream stream) throws IOException {
+		return decoders.get().decode(stream);
+	}
+
+	public DecodedSlice decode(InputStream stream) throws IOException {
+		int length = readFully(stream);
+		DecodedSlice slice = decodeSlice(length);
+		if (slice != null) {
+			return slice;
+		}
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(fileBuffer, 0, length));
+		if (image == null) {
+			throw new IOException("Not a readable image");
+		}
+		return new DecodedSlice(image, null);
+	}
+
+	private int readFully(InputStream stream) throws IOException {
+		int length = 0;
+		int bytesRead;
+		while ((bytesRead = stream.read(fileBuffer, length, fileBuffer.length - length)) != -1) {
+			length += bytesRead;
+			if (length == fileBuffer.length) {
+				fileBuffer = Arrays.copyOf(fileBuffer, fileBuffer.length * 2);
+			}
+		}
+		return length;
+	}
+
+	private int readInt(int offset) {
+		return ((fileBuffer[offset] & 0xff) << 24) | ((fileBuffer[offset + 1] & 0xff) << 16) | ((fileBuffer[offset + 2] & 0xff) << 8) | (fileBuffer[offset + 3] & 0xff);
+	}
+
+	//Returns null for anything that should be left to ImageIO
+	private DecodedSlice decodeSlice(int length) throws IOException {
+		if (length < SIGNATURE.length) {
+			return null;
+		}
+		for (int t = 0; t < SIGNATURE.length; t++) {
+			if (fileBuffer[t] != SIGNATURE[t]) {
+				return null;
+			}
+		}
+
+		int width = 0;
+		int height = 0;
+		int bitDepth = 0;
+		int colorType = -1;
+		byte[] palette = null;
+		int dataChunkCount = 0;
+		int offset = SIGNATURE.length;
+		chunks : while (offset + 8 <= length) {
+			int chunkLength = readInt(offset);
+			int chunkType = readInt(offset + 4);
+			int data = offset + 8;
+			if (chunkLength < 0 || data + chunkLength > length) {
+				throw new IOException("PNG chunk runs past the end of the file");
+			}
+
+			switch (chunkType) {
+			case IHDR :
+				width = readInt(data);
+				height = readInt(data + 4);
+				bitDepth = fileBuffer[data + 8];
+				colorType = fileBuffer[data + 9];
+				int interlace = fileBuffer[data + 12];
+				if (interlace != 0 || bitDepth > 8 || (colorType != COLOR_TYPE_GRAY && colorType != COLOR_TYPE_PALETTE)) {
+					return null;
+				}
+				break;
+			case PLTE :
+				palette = Arrays.copyOfRange(fileBuffer, data, data + chunkLength);
+				break;
+			case TRNS :
+				return null;
+			case IDAT :
+				if (dataChunkCount * 2 == dataChunks.length) {
+					dataChunks = Arrays.copyOf(dataChunks, dataChunks.length * 2);
+				}
+				dataChunks[dataChunkCount * 2] = data;
+				dataChunks[dataChunkCount * 2 + 1] = chunkLength;
+				dataChunkCount++;
+				break;
+			case IEND :
+				break chunks;
+			}
+
+			offset = data + chunkLength + 4;
+		}
+
+		if (colorType < 0 || width <= 0 || height <= 0 || dataChunkCount == 0 || (colorType == COLOR_TYPE_PALETTE && palette == null)) {
+			return null;
+		}
+
+		//Every sample value is looked up to find its gray level, or its color when the palette isn't gray
+		int sampleValues = 1 << bitDepth;
+		byte[] gray = new byte[256];
+		byte[] bgr = null;
+		boolean[] lit = new boolean[256];
+		if (colorType == COLOR_TYPE_GRAY) {
+			for (int t = 0; t < sampleValues; t++) {
+				gray[t] = (byte)(t * 255 / (sampleValues - 1));
+				lit[t] = t != 0;
+			}
+		} else {
+			int paletteSize = Math.min(palette.length / 3, sampleValues);
+			for (int t = 0; t < paletteSize; t++) {
+				byte red = palette[t * 3];
+				byte green = palette[t * 3 + 1];
+				byte blue = palette[t * 3 + 2];
+				gray[t] = red;
+				lit[t] = red != 0 || green != 0 || blue != 0;
+				if (red != green || red != blue) {
+					if (bgr == null) {
+						bgr = new byte[256 * 3];
+					}
+				}
+			}
+			if (bgr != null) {
+				for (int t = 0; t < paletteSize; t++) {
+					bgr[t * 3] = palette[t * 3 + 2];
+					bgr[t * 3 + 1] = palette[t * 3 + 1];
+					bgr[t * 3 + 2] = palette[t * 3];
+				}
+			}
+		}
+
+		BufferedImage image = ImageBufferPool.acquire(width, height, bgr == null ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+		byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		int rowLength = (width * bitDepth + 7) / 8;
+		if (currentRow.length < rowLength + 1) {
+			currentRow = new byte[rowLength + 1];
+			previousRow = new byte[rowLength + 1];
+		} else {
+			Arrays.fill(previousRow, 0, rowLength + 1, (byte)0);
+		}
+
+		inflater.reset();
+		int nextDataChunk = 0;
+		boolean blackIsZero = !lit[0];
+		int samplesPerByte = 8 / bitDepth;
+		int sampleMask = sampleValues - 1;
+		long area = 0;
+		try {
+			for (int y = 0; y < height; y++) {
+				//Inflate the filter type and the row, moving on to the next IDAT chunk whenever this one runs dry
+				int inflated = 0;
+				while (inflated < rowLength + 1) {
+					if (inflater.needsInput()) {
+						if (nextDataChunk == dataChunkCount) {
+							throw new IOException("PNG image data ends before the last row");
+						}
+						inflater.setInput(fileBuffer, dataChunks[nextDataChunk * 2], dataChunks[nextDataChunk * 2 + 1]);
+						nextDataChunk++;
+					}
+					int bytesInflated = inflater.inflate(currentRow, inflated, rowLength + 1 - inflated);
+					if (bytesInflated == 0 && (inflater.finished() || inflater.needsDictionary())) {
+						throw new IOException("PNG image data ends before the last row");
+					}
+					inflated += bytesInflated;
+				}
+
+				unfilter(currentRow[0], rowLength);
+
+				int pixel = y * width;
+				if (bitDepth == 8 && colorType == COLOR_TYPE_GRAY) {
+					//Samples are already gray levels
+					System.arraycopy(currentRow, 1, pixels, pixel, rowLength);
+					for (int x = 1; x <= rowLength; x++) {
+						if (currentRow[x] != 0) {
+							area++;
+						}
+					}
+				} else if (bitDepth == 8) {
+					for (int x = 1; x <= rowLength; x++, pixel++) {
+						int sample = currentRow[x] & 0xff;
+						if (lit[sample]) {
+							area++;
+						}
+						writePixel(pixels, pixel, sample, gray, bgr);
+					}
+				} else {
+					int rowEnd = pixel + width;
+					for (int x = 1; x <= rowLength; x++) {
+						int packedSamples = currentRow[x] & 0xff;
+						if (packedSamples == 0 && blackIsZero) {
+							pixel += samplesPerByte;
+							continue;
+						}
+						for (int shift = 8 - bitDepth; shift >= 0 && pixel < rowEnd; shift -= bitDepth, pixel++) {
+							int sample = (packedSamples >>> shift) & sampleMask;
+							if (lit[sample]) {
+								area++;
+							}
+							writePixel(pixels, pixel, sample, gray, bgr);
+						}
+					}
+				}
+
+				byte[] swap = previousRow;
+				previousRow = currentRow;
+				currentRow = swap;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt PNG image data", e);
+		}
+
+		return new DecodedSlice(image, area);
+	}
+
+	private static void writePixel(byte[] pixels, int pixel, int sample, byte[] gray, byte[] bgr) {
+		if (bgr == null) {
+			pixels[pixel] = gray[sample];
+		} else {
+			pixels[pixel * 3] = bgr[sample * 3];
+			pixels[pixel * 3 + 1] = bgr[sample * 3 + 1];
+			pixels[pixel * 3 + 2] = bgr[sample * 3 + 2];
+		}
+	}
+
+	//Every supported format has a single sample of a byte or less per pixel, so the filters always look back one byte
+	private void unfilter(int filterType, int rowLength) throws IOException {
+		byte[] row = currentRow;
+		byte[] prior = previousRow;
+		switch (filterType) {
+		case 0 :
+			break;
+		case 1 :
+			for (int x = 2; x <= rowLength; x++) {
+				row[x] += row[x - 1];
+			}
+			break;
+		case 2 :
+			for (int x = 1; x <= rowLength; x++) {
+				row[x] += prior[x];
+			}
+			break;
+		case 3 :
+			row[1] += (prior[1] & 0xff) >>> 1;
+			for (int x = 2; x <= rowLength; x++) {
+				row[x] += ((row[x - 1] & 0xff) + (prior[x] & 0xff)) >>> 1;
+			}
+			break;
+		case 4 :
+			row[1] += prior[1];
+			for (int x = 2; x <= rowLength; x++) {
+				int left = row[x - 1] & 0xff;
+				int above = prior[x] & 0xff;
+				int upperLeft = prior[x - 1] & 0xff;
+				int estimate = left + above - upperLeft;
+				int leftDistance = Math.abs(estimate - left);
+				int aboveDistance = Math.abs(estimate - above);
+				int upperLeftDistance = Math.abs(estimate - upperLeft);
+				if (leftDistance <= aboveDistance && leftDistance <= upperLeftDistance) {
+					row[x] += left;
+				} else if (aboveDistance <= upperLeftDistance) {
+					row[x] += above;
+				} else {
+					row[x] += upperLeft;
+				}
+			}
+			break;
+		default :
+			throw new IOException("Unknown PNG filter type:" + filterType);
+		}
+	}
+}
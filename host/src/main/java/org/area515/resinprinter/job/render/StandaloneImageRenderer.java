@@ -4,10 +4,11 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.Callable;
 
-import javax.imageio.ImageIO;
 import javax.script.ScriptException;
 
 import org.apache.logging.log4j.LogManager;
@@ -15,11 +16,14 @@ import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.job.JobManagerException;
+import org.area515.resinprinter.job.SliceArchive;
 
 public class StandaloneImageRenderer implements Callable<StandaloneImageData> {
 	private static final Logger logger = LogManager.getLogger();
 
 	private File imageFile;
+	private SliceArchive archive;
+	private String entryName;
 	private AbstractPrintFileProcessor<?,?> processor;
 	private DataAid aid;
 	
@@ -29,13 +33,30 @@ public class StandaloneImageRenderer implements Callable<StandaloneImageData> {
 		this.aid = aid;
 	}
 	
+	public StandaloneImageRenderer(DataAid aid, SliceArchive archive, String entryName, AbstractPrintFileProcessor<?,?> processor) {
+		this.archive = archive;
+		this.entryName = entryName;
+		this.processor = processor;
+		this.aid = aid;
+	}
+	
 	public StandaloneImageData call() throws ScriptException, JobManagerException, IOException {
 		long startTime = System.currentTimeMillis();
-		BufferedImage image = ImageIO.read(imageFile);
-		long pixelArea = computePixelArea(image);
-		logger.info("Loaded {}  with {} non-black pixels in {}ms", imageFile.getName(), pixelArea, System.currentTimeMillis()-startTime);
-		image = processor.applyImageTransforms(aid, image, image.getWidth(), image.getHeight());
-		return new StandaloneImageData(image, pixelArea);
+		InputStream stream = archive != null ? archive.getInputStream(entryName) : new FileInputStream(imageFile);
+		SlicePngDecoder.DecodedSlice slice;
+		try {
+			slice = SlicePngDecoder.read(stream);
+		} finally {
+			stream.close();
+		}
+		BufferedImage image = slice.getImage();
+		long pixelArea = slice.getArea() != null ? slice.getArea() : computePixelArea(image);
+		logger.info("Loaded {}  with {} non-black pixels in {}ms", archive != null ? entryName : imageFile.getName(), pixelArea, System.currentTimeMillis()-startTime);
+		BufferedImage transformedImage = processor.applyImageTransforms(aid, image, image.getWidth(), image.getHeight());
+		if (transformedImage != image) {
+			ImageBufferPool.release(image);
+		}
+		return new StandaloneImageData(transformedImage, pixelArea);
 	}
 	
 	/**
@@ -45,7 +66,7 @@ public class StandaloneImageRenderer implements Callable<StandaloneImageData> {
 	 * @param image
 	 * @return
 	 */
-	private static long computePixelArea(BufferedImage image) throws JobManagerException {
+	static long computePixelArea(BufferedImage image) throws JobManagerException {
 		int type = image.getType();
 		if (type != BufferedImage.TYPE_3BYTE_BGR
 				&& type != BufferedImage.TYPE_4BYTE_ABGR
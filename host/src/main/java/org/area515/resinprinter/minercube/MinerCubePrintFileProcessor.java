@@ -21,7 +21,8 @@ import org.area515.resinprinter.job.AbstractPrintFileProcessor;
 import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.job.render.ImageBufferPool;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.util.Log4jTimer;
 
 public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Object,Object> {
@@ -81,7 +82,7 @@ public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Obje
 					return status;
 				}
 				
-				BufferedImage image = new BufferedImage(data.xResolution, data.yResolution, BufferedImage.TYPE_INT_ARGB_PRE);
+				BufferedImage image = ImageBufferPool.acquire(data.xResolution, data.yResolution, BufferedImage.TYPE_INT_ARGB_PRE);
 				Graphics2D graphics = (Graphics2D)image.getGraphics();
 				graphics.setColor(Color.black);
 				graphics.fillRect(0, 0, data.xResolution, data.yResolution);
@@ -91,11 +92,19 @@ public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Obje
 					graphics.fillRect(currentRect.x, currentRect.y, currentRect.width, currentRect.height);
 				}
 
-				image = applyImageTransforms(data, image, data.xResolution, data.yResolution);
+				graphics.dispose();
+
+				BufferedImage transformedImage = applyImageTransforms(data, image, data.xResolution, data.yResolution);
+				if (transformedImage != image) {
+					ImageBufferPool.release(image);
+				}
 				//applyBulbMask(data, graphics, data.xResolution, data.yResolution);
 				
+				//The last layer was blanked at the end of its exposure, so its image can be used again
+				ImageBufferPool.release(printCube.currentImage);
+				
 				//Performs all of the duties that are common to most print files
-				status = printImageAndPerformPostProcessing(data, printCube.currentImage = image);
+				status = printImageAndPerformPostProcessing(data, printCube.currentImage = transformedImage);
 				if (status != null) {
 					return status;
 				}
@@ -109,7 +118,10 @@ public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Obje
 			
 			return performFooter(data);
 		} finally {
-			minerCubesByPrintJob.remove(printJob);
+			PrintCube printCube = minerCubesByPrintJob.remove(printJob);
+			if (printCube != null) {
+				ImageBufferPool.release(printCube.currentImage);
+			}
 		}
 	}
 	
@@ -120,7 +132,7 @@ public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Obje
 			jaxbContext = JAXBContext.newInstance(MinerCube.class);
 			Unmarshaller jaxbUnMarshaller = jaxbContext.createUnmarshaller();
 			final MinerCube cube = (MinerCube)jaxbUnMarshaller.unmarshal(processingFile);
-			Future<MinerCube> future = Main.GLOBAL_EXECUTOR.submit(new Callable<MinerCube>() {
+			Future<MinerCube> future = HostExecutors.getRenderingExecutor().submit(new Callable<MinerCube>() {
 				@Override
 				public MinerCube call() throws Exception {
 					cube.buildMaze();
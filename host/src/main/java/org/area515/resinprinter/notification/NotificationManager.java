@@ -12,9 +12,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.slice.StlError;
 
 public class NotificationManager {
@@ -41,12 +42,18 @@ public class NotificationManager {
 	}
 	
 	public static Future<?> jobChanged(final Printer printer, final PrintJob job) {
-		return Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		//Once a layer is done this is the next layer, which is the one that the notifiers run alongside of
+		final int layer = job != null?job.getCurrentSlice():0;
+		return HostExecutors.getIOExecutor().submit(new Runnable() {
 			@Override
 			public void run() {
+				long fanOutStart = System.nanoTime();
 				for (Notifier currentNotifier : notifiers) {
 					currentNotifier.jobChanged(printer, job);
 				}
+				if (job != null && job.getMetrics() != null) {
+					job.getMetrics().record(layer, Phase.NotificationFanOut, System.nanoTime() - fanOutStart);
+				}
 			}
 		});
 	}
@@ -58,7 +65,7 @@ public class NotificationManager {
 	}
 	
 	public static Future<?> printerChanged(final Printer printer) {
-		return Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		return HostExecutors.getIOExecutor().submit(new Runnable() {
 			@Override
 			public void run() {
 				for (Notifier currentNotifier : notifiers) {
@@ -133,6 +133,8 @@ public class MachineConfig implements Named {
 	private String pauseOnPrinterResponseRegEx;
 	@XmlElement(name="OverrideModelNormalsWithRightHandRule")
 	private Boolean overrideModelNormalsWithRightHandRule;
+	@XmlElement(name="FirmwareReceiveBufferSize")
+	private Integer firmwareReceiveBufferSize;
 	private String name;
 
 	@XmlTransient
@@ -152,6 +154,18 @@ public class MachineConfig implements Named {
 		this.pauseOnPrinterResponseRegEx = pauseOnPrinterResponseRegEx;
 	}
 
+	/**
+	 * The number of bytes of gcode that the firmware can hold before it has to respond, null or 0 sends each gcode
+	 * only after the one before it was responded to.
+	 */
+	@XmlTransient
+	public Integer getFirmwareReceiveBufferSize() {
+		return firmwareReceiveBufferSize;
+	}
+	public void setFirmwareReceiveBufferSize(Integer firmwareReceiveBufferSize) {
+		this.firmwareReceiveBufferSize = firmwareReceiveBufferSize;
+	}
+
 	@XmlTransient
 	public double getPlatformXSize() {
 		return platformXSize;
@@ -24,11 +24,14 @@ import javax.xml.bind.annotation.XmlTransient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.display.DisplayManager;
+import org.area515.resinprinter.display.FramePresenter;
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.gcode.GCodeControl;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.projector.ProjectorModel;
 import org.area515.resinprinter.serial.SerialCommunicationsPort;
+import org.area515.resinprinter.server.HostExecutors;
+import org.area515.resinprinter.server.HostProperties;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -39,6 +42,7 @@ public class Printer {
 	
 	//For Display
 	private Frame refreshFrame;
+	private FramePresenter framePresenter;
 	private DisplayState displayState = DisplayState.Blank;
 	private int gridSquareSize;
 	private Point calibrationXY;
@@ -66,6 +70,13 @@ public class Printer {
 
 	//Projector model
 	private ProjectorModel projectorModel;
+	//Guards the cached projector status, the serial line is only ever used while holding projectorSerialLock
+	private Object projectorLock = new Object();
+	private Object projectorSerialLock = new Object();
+	private long bulbHoursReadTime;
+	private Boolean projectorPowerStatus;
+	private long projectorPowerStatusReadTime;
+	private boolean projectorStatusRefreshing;
 	
 	public static enum DisplayState {
 		Calibration,
@@ -278,6 +289,7 @@ public class Printer {
 		    refreshFrame.setCursor(invisibleCursor);
 		}
 
+		framePresenter = new FramePresenter(refreshFrame, g -> refreshFrame.paint(g));
 		this.displayDeviceID = device.getIDstring();
 		Rectangle screenSize = refreshFrame.getGraphicsConfiguration().getBounds();
 		getConfiguration().getMachineConfig().getMonitorDriverConfig().setDLP_X_Res(screenSize.width);
@@ -287,29 +299,40 @@ public class Printer {
 	public String getDisplayDeviceID() {
 		return displayDeviceID;
 	}
+	
+	@JsonIgnore
+	@XmlTransient
+	public DisplayState getDisplayState() {
+		return displayState;
+	}
 
-	public void showBlankImage() {
+	/**
+	 * The show methods return once the display is showing the new frame.
+	 * 
+	 * @return the System.nanoTime() at which the frame was shown or FramePresenter.NOT_PRESENTED if the display isn't on the screen
+	 */
+	public long showBlankImage() {
 		displayState = DisplayState.Blank;		
-		refreshFrame.repaint();
+		return framePresenter.present();
 	}
 	
-	public void showCalibrationImage(int xPixels, int yPixels) {
+	public long showCalibrationImage(int xPixels, int yPixels) {
 		displayState = DisplayState.Calibration;
 		calibrationXY = new Point(xPixels, yPixels);
-		refreshFrame.repaint();
+		return framePresenter.present();
 	}
 	
-	public void showGridImage(int pixels) {
+	public long showGridImage(int pixels) {
 		displayState = DisplayState.Grid;
 		gridSquareSize = pixels;
-		refreshFrame.repaint();
+		return framePresenter.present();
 	}
 	
-	public void showImage(BufferedImage image) {
+	public long showImage(BufferedImage image) {
 		sliceNumber++;
 		displayState = DisplayState.CurrentSlice;		
 		displayImage = image;
-		refreshFrame.repaint();
+		return framePresenter.present();
 	}
 	
 	@JsonIgnore
@@ -321,7 +344,12 @@ public class Printer {
 	@JsonIgnore
 	@XmlTransient
 	public void setProjectorModel(ProjectorModel projectorModel) {
-		this.projectorModel = projectorModel;
+		synchronized (projectorLock) {
+			this.projectorModel = projectorModel;
+			bulbHoursReadTime = 0;
+			projectorPowerStatus = null;
+			projectorPowerStatusReadTime = 0;
+		}
 	}
 	@JsonIgnore
 	@XmlTransient
@@ -339,7 +367,92 @@ public class Printer {
 			throw new IOException("Serial port not available for projector.");
 		}
 		
-		projectorModel.setPowerState(powerOn, projectorSerialPort);
+		synchronized (projectorSerialLock) {
+			projectorModel.setPowerState(powerOn, projectorSerialPort);
+			synchronized (projectorLock) {
+				projectorPowerStatus = powerOn;
+				projectorPowerStatusReadTime = System.currentTimeMillis();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the last answer right away. Once it's older than projectorStatusStaleMillis, the projector is asked again
+	 * on the IO executor. If the projector can't tell us its power state, this is the state it was last set to.
+	 * 
+	 * @return null if the power state isn't known yet
+	 */
+	@JsonIgnore
+	public Boolean getProjectorPowerStatus() {
+		synchronized (projectorLock) {
+			refreshProjectorStatusIfStale();
+			return projectorPowerStatus;
+		}
+	}
+	
+	private boolean isProjectorStatusStale(long readTime) {
+		return readTime == 0 || System.currentTimeMillis() - readTime >= HostProperties.Instance().getProjectorStatusStaleMillis();
+	}
+	
+	//Must be called while holding projectorLock, at most one refresh runs at a time
+	private void refreshProjectorStatusIfStale() {
+		if (projectorStatusRefreshing || projectorModel == null || projectorSerialPort == null) {
+			return;
+		}
+		
+		final boolean readBulbHours = isProjectorStatusStale(bulbHoursReadTime);
+		final boolean readPowerStatus = isProjectorStatusStale(projectorPowerStatusReadTime);
+		if (!readBulbHours && !readPowerStatus) {
+			return;
+		}
+		
+		//A projector that doesn't answer isn't asked again until the status is stale again
+		long now = System.currentTimeMillis();
+		if (readBulbHours) {
+			bulbHoursReadTime = now;
+		}
+		if (readPowerStatus) {
+			projectorPowerStatusReadTime = now;
+		}
+		projectorStatusRefreshing = true;
+		final ProjectorModel model = projectorModel;
+		final SerialCommunicationsPort port = projectorSerialPort;
+		HostExecutors.getIOExecutor().execute(() -> refreshProjectorStatus(model, port, readBulbHours, readPowerStatus));
+	}
+	
+	private void refreshProjectorStatus(ProjectorModel model, SerialCommunicationsPort port, boolean readBulbHours, boolean readPowerStatus) {
+		try {
+			synchronized (projectorSerialLock) {
+				if (readBulbHours) {
+					try {
+						Integer hours = model.getBulbHours(port);
+						synchronized (projectorLock) {
+							if (hours != null && model == projectorModel) {
+								bulbHours = hours;
+							}
+						}
+					} catch (IOException e) {
+						logger.error("Failed communicating with projector for bulb hours", e);
+					}
+				}
+				if (readPowerStatus) {
+					try {
+						Boolean powerStatus = model.getPowerState(port);
+						synchronized (projectorLock) {
+							if (model == projectorModel) {
+								projectorPowerStatus = powerStatus;
+							}
+						}
+					} catch (IOException e) {
+						logger.debug("Projector didn't return its power state:{}", e.getMessage());
+					}
+				}
+			}
+		} finally {
+			synchronized (projectorLock) {
+				projectorStatusRefreshing = false;
+			}
+		}
 	}
 
 	public PrinterConfiguration getConfiguration() {
@@ -356,17 +469,18 @@ public class Printer {
 		this.shutterOpen = shutterOpen;
 	}
 
+	/**
+	 * Returns the last answer right away. Once it's older than projectorStatusStaleMillis, the projector is asked again
+	 * on the IO executor.
+	 * 
+	 * @return null if the bulb hours aren't known yet
+	 */
 	@JsonIgnore
 	public Integer getBulbHours() {
-		if (bulbHours == null && projectorModel != null) {
-			try {
-				bulbHours = projectorModel.getBulbHours(projectorSerialPort);
-			} catch (IOException e) {
-				logger.error("Failed communicating with projector for bulb hours", e);
-			}
+		synchronized (projectorLock) {
+			refreshProjectorStatusIfStale();
+			return bulbHours;
 		}
-		
-		return bulbHours;
 	}
 	public void setBulbHours(Integer bulbHours) {
 		this.bulbHours = bulbHours;
@@ -4,7 +4,13 @@ package org.area515.resinprinter.printer;
 import java.awt.GraphicsDevice;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -26,8 +32,9 @@ public class PrinterManager {
 	private ConcurrentHashMap<String, Printer> printersByName = new ConcurrentHashMap<String, Printer>();
 	private ConcurrentHashMap<PrintJob, Printer> printersByJob = new ConcurrentHashMap<PrintJob, Printer>();
 	private ConcurrentHashMap<String, Lock> inProgressLocksByName = new ConcurrentHashMap<String, Lock>();
+	private ConcurrentHashMap<String, PrinterStartupTimings> startupTimingsByName = new ConcurrentHashMap<String, PrinterStartupTimings>();
 	
-	public static PrinterManager Instance() {
+	public static synchronized PrinterManager Instance() {
 		if (INSTANCE == null) {
 			INSTANCE = new PrinterManager();
 		}
@@ -95,7 +102,75 @@ public class PrinterManager {
 		logger.debug("Stopped printer:{}", printer);
 	}
 	
+	/**
+	 * Starts all of the printers at the same time. Each printer spends most of its start waiting on its own display and
+	 * serial ports, so a host with several printers is ready about as soon as its slowest printer is. Printers that
+	 * are after the same display or serial port get it one at a time from the DisplayManager and SerialManager.
+	 * 
+	 * @return the printers that started, the ones that didn't have already been logged
+	 */
+	public List<Printer> startPrinters(List<PrinterConfiguration> configurations, boolean parallel) {
+		List<Printer> printers = new ArrayList<Printer>();
+		if (!parallel || configurations.size() < 2) {
+			for (PrinterConfiguration configuration : configurations) {
+				try {
+					printers.add(startPrinter(configuration));
+				} catch (JobManagerException | AlreadyAssignedException | InappropriateDeviceException e) {
+					//Already logged
+				}
+			}
+			return printers;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(configurations.size(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PrinterStartup");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Printer>> starts = new ArrayList<Future<Printer>>();
+			for (final PrinterConfiguration configuration : configurations) {
+				final PrinterStartupTimings timings = new PrinterStartupTimings(configuration.getName());
+				starts.add(executor.submit(() -> {
+					timings.setWaitMillis(System.currentTimeMillis() - timings.getStartTime());
+					return startPrinter(configuration, timings);
+				}));
+			}
+			
+			for (Future<Printer> start : starts) {
+				try {
+					printers.add(start.get());
+				} catch (ExecutionException e) {
+					//Already logged
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.error("Interrupted while starting printers", e);
+		} finally {
+			executor.shutdown();
+		}
+		return printers;
+	}
+	
+	/**
+	 * @return how long each phase of the last start of every printer took, by printer name
+	 */
+	public List<PrinterStartupTimings> getStartupTimings() {
+		return new ArrayList<PrinterStartupTimings>(new TreeMap<String, PrinterStartupTimings>(startupTimingsByName).values());
+	}
+	
+	public PrinterStartupTimings getStartupTimings(String printerName) {
+		return startupTimingsByName.get(printerName);
+	}
+	
 	public Printer startPrinter(PrinterConfiguration currentConfiguration) throws JobManagerException, AlreadyAssignedException, InappropriateDeviceException {
+		return startPrinter(currentConfiguration, new PrinterStartupTimings(currentConfiguration.getName()));
+	}
+	
+	private Printer startPrinter(PrinterConfiguration currentConfiguration, PrinterStartupTimings timings) throws JobManagerException, AlreadyAssignedException, InappropriateDeviceException {
 		logger.debug("Attempting to start printer:{}", currentConfiguration);
 		
 		Printer printer = null;
@@ -114,7 +189,9 @@ public class PrinterManager {
 			//If the oldLock is still in play, we don't care about the printerLock we just made...
 			printerLock = oldLock;
 		}
+		startupTimingsByName.put(currentConfiguration.getName(), timings);
 		try {
+			long phaseStart = System.currentTimeMillis();
 			printer = new Printer(currentConfiguration);
 			String monitorId = currentConfiguration.getMachineConfig().getOSMonitorID();
 			GraphicsDevice graphicsDevice = null;
@@ -133,6 +210,8 @@ public class PrinterManager {
 			}
 			DisplayManager.Instance().assignDisplay(printer, graphicsDevice);
 			logger.debug("Assigned display:{} to:{}", graphicsDevice, printer);
+			timings.setDisplayMillis(System.currentTimeMillis() - phaseStart);
+			phaseStart = System.currentTimeMillis();
 
 			ComPortSettings settings = printer.getConfiguration().getMachineConfig().getMonitorDriverConfig().getComPortSettings();
 			if (settings != null && settings.getPortName() != null) {
@@ -143,6 +222,8 @@ public class PrinterManager {
 					logger.debug("Assigned projector:{} to:{}", projectorPort, printer);
 				}
 			}
+			timings.setProjectorMillis(System.currentTimeMillis() - phaseStart);
+			phaseStart = System.currentTimeMillis();
 			
 			String firmwareComportId = printer.getConfiguration().getMachineConfig().getMotorsDriverConfig().getComPortSettings().getPortName();
 			SerialCommunicationsPort firmwarePort = SerialManager.Instance().getSerialDevice(firmwareComportId);
@@ -151,12 +232,15 @@ public class PrinterManager {
 			}
 			SerialManager.Instance().assignSerialPortToFirmware(printer, firmwarePort);
 			logger.debug("Assigned 3dprinter firmware:{} to:{}", firmwarePort, printer);
+			timings.setFirmwareMillis(System.currentTimeMillis() - phaseStart);
 			
 			printersByName.put(printer.getName(), printer);
 			printer.setStarted(true);
-			logger.info("Printer started:{}", printer);
+			timings.complete(true, null);
+			logger.info("Printer started:{} in:{}", printer, timings);
 			return printer;
 		} catch (JobManagerException | AlreadyAssignedException | InappropriateDeviceException e) {
+			timings.complete(false, e.getMessage());
 			logger.error("Error starting printer:" + currentConfiguration, e);
 			DisplayManager.Instance().removeAssignment(printer);
 			SerialManager.Instance().removeAssignments(printer);
@@ -165,6 +249,7 @@ public class PrinterManager {
 			}
 			throw e;
 		} catch (Exception e) {
+			timings.complete(false, "Internal error on server");
 			logger.error("Error starting printer:" + currentConfiguration, e);
 			DisplayManager.Instance().removeAssignment(printer);
 			SerialManager.Instance().removeAssignments(printer);
@@ -0,0 +1,85 @@
+package org.area515.resinprinter.printer;
+
+/**
+ * How long each phase of the last start of a printer took, in milliseconds. Phases that weren't reached are zero.
+ */
+public class PrinterStartupTimings {
+	private String printerName;
+	private long startTime;
+	private long waitMillis;
+	private long displayMillis;
+	private long projectorMillis;
+	private long firmwareMillis;
+	private long totalMillis;
+	private boolean started;
+	private String error;
+
+	PrinterStartupTimings(String printerName) {
+		this.printerName = printerName;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	public String getPrinterName() {
+		return printerName;
+	}
+
+	/**
+	 * @return when the start was asked for, in milliseconds since the epoch
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return how long the start waited for a thread when printers are started together
+	 */
+	public long getWaitMillis() {
+		return waitMillis;
+	}
+	void setWaitMillis(long waitMillis) {
+		this.waitMillis = waitMillis;
+	}
+
+	public long getDisplayMillis() {
+		return displayMillis;
+	}
+	void setDisplayMillis(long displayMillis) {
+		this.displayMillis = displayMillis;
+	}
+
+	public long getProjectorMillis() {
+		return projectorMillis;
+	}
+	void setProjectorMillis(long projectorMillis) {
+		this.projectorMillis = projectorMillis;
+	}
+
+	public long getFirmwareMillis() {
+		return firmwareMillis;
+	}
+	void setFirmwareMillis(long firmwareMillis) {
+		this.firmwareMillis = firmwareMillis;
+	}
+
+	public long getTotalMillis() {
+		return totalMillis;
+	}
+
+	public boolean isStarted() {
+		return started;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	void complete(boolean started, String error) {
+		this.started = started;
+		this.error = error;
+		this.totalMillis = System.currentTimeMillis() - startTime;
+	}
+
+	public String toString() {
+		return "{printer:" + printerName + " wait:" + waitMillis + " display:" + displayMillis + " projector:" + projectorMillis + " firmware:" + firmwareMillis + " total:" + totalMillis + " started:" + started + "}";
+	}
+}
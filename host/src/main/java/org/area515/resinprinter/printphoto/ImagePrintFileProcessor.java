@@ -14,7 +14,7 @@ import org.area515.resinprinter.inkdetection.visual.CannyEdgeDetector8BitGray;
 import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.printer.SlicingProfile;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.twodim.TwoDimensionalPlatformPrintFileProcessor;
 
 public class ImagePrintFileProcessor extends TwoDimensionalPlatformPrintFileProcessor<Object,Object> {
@@ -41,7 +41,7 @@ public class ImagePrintFileProcessor extends TwoDimensionalPlatformPrintFileProc
 	
 	@Override
 	public void prepareEnvironment(final File processingFile, final PrintJob printJob) throws JobManagerException {
-		Future<BufferedImage> future = Main.GLOBAL_EXECUTOR.submit(new Callable<BufferedImage>() {
+		Future<BufferedImage> future = HostExecutors.getRenderingExecutor().submit(new Callable<BufferedImage>() {
 			@Override
 			public BufferedImage call() throws Exception {
 				SlicingProfile profile = printJob.getPrinter().getConfiguration().getSlicingProfile();
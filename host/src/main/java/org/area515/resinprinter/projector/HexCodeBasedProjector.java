@@ -1,6 +1,7 @@
 package org.area515.resinprinter.projector;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -13,6 +14,8 @@ import javax.xml.bind.DatatypeConverter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.printer.ComPortSettings;
+import org.area515.resinprinter.projector.ProjectorResponseMatcher.State;
+import org.area515.resinprinter.serial.BlockingSerialCommunicationsPort;
 import org.area515.resinprinter.serial.SerialCommunicationsPort;
 import org.area515.resinprinter.server.HostProperties;
 
@@ -30,6 +33,8 @@ public class HexCodeBasedProjector implements ProjectorModel {
 	}
 	
 	public static class HexCommand {
+		private static final Pattern HEX_AND_SCRIPT = Pattern.compile("([0-9a-fA-F]+)?(s*\\(.*\\)\\s*\\(\\s*\\))?");
+		
 		private String script;
 		private byte[] hex;
 		
@@ -68,8 +73,7 @@ public class HexCodeBasedProjector implements ProjectorModel {
 		
 		public static List<HexCommand> parseHexCommands(String commandString) {
 			List<HexCommand> commands = new ArrayList<HexCommand>();
-			Pattern hexAndScript = Pattern.compile("([0-9a-fA-F]+)?(s*\\(.*\\)\\s*\\(\\s*\\))?");
-			Matcher matcher = hexAndScript.matcher(commandString);
+			Matcher matcher = HEX_AND_SCRIPT.matcher(commandString);
 			while (matcher.find()) {
 				if (matcher.group(1) != null) {
 					commands.add(new HexCommand(DatatypeConverter.parseHexBinary(matcher.group(1))));
@@ -235,8 +239,13 @@ public class HexCodeBasedProjector implements ProjectorModel {
 		this.bulbHoursConversion = bulbHoursConversion;
 	}
 
-	public String findString(SerialCommunicationsPort port, List<HexCommand> writeHex, Pattern responsePattern) {
-		StringBuilder builder = new StringBuilder();
+	/**
+	 * Writes the commands and reads the response until it matches, until it can't match anymore or until PROJECTOR_TIMEOUT.
+	 * 
+	 * @return the bytes of the last group in responsePattern or null if the projector didn't give a matching response
+	 */
+	public byte[] findResponse(SerialCommunicationsPort port, List<HexCommand> writeHex, Pattern responsePattern) {
+		ProjectorResponseMatcher matcher = new ProjectorResponseMatcher(responsePattern);
 		try {
 			for (HexCommand command : writeHex) {
 				byte[] data = command.buildHex();
@@ -247,22 +256,40 @@ public class HexCodeBasedProjector implements ProjectorModel {
 			
 			long start = System.currentTimeMillis();
 			while (true) {
-				byte[] response = port.read();
-				if (response != null) {
-					builder.append(new String(response));
-					Matcher matcher = responsePattern.matcher(builder.toString());
-					if (matcher.matches()) {
-						return matcher.group(matcher.groupCount());
-					}
+				long remainingMillis = PROJECTOR_TIMEOUT - (System.currentTimeMillis() - start);
+				if (remainingMillis <= 0) {
+					logger.debug("Timeout after bytes read \"{}\"", matcher.getResponseHex());
+					return null;
 				}
 				
-				if (System.currentTimeMillis() - start >= PROJECTOR_TIMEOUT) {
-					logger.debug("Timeout after bytes read \"{}\"", DatatypeConverter.printHexBinary(builder.toString().getBytes()));
+				byte[] response = null;
+				if (port instanceof BlockingSerialCommunicationsPort) {
+					response = ((BlockingSerialCommunicationsPort)port).read(remainingMillis);
+				} else {
+					response = port.read();
+				}
+				
+				State state = matcher.offer(response);
+				if (state == State.Matched) {
+					return matcher.getResult();
+				}
+				if (state == State.Mismatched) {
+					logger.debug("Unrecognized response \"{}\"", matcher.getResponseHex());
+					return null;
+				}
+				
+				//Autodetection found the projector on another port
+				if (Thread.currentThread().isInterrupted()) {
+					logger.debug("Interrupted after bytes read \"{}\"", matcher.getResponseHex());
 					return null;
 				}
 			}
+		} catch (InterruptedException e) {
+			logger.debug("Interrupted after bytes read \"{}\"", matcher.getResponseHex());
+			Thread.currentThread().interrupt();
+			return null;
 		} catch (IOException e) {
-			logger.error("Error after bytes read \"" + DatatypeConverter.printHexBinary(builder.toString().getBytes()) + "\"", e);
+			logger.error("Error after bytes read \"" + matcher.getResponseHex() + "\"", e);
 			return null;
 		}
 	}
@@ -273,7 +300,7 @@ public class HexCodeBasedProjector implements ProjectorModel {
 			return false;
 		}
 		
-		return findString(port, detectionHex, detectionResponsePattern) != null;
+		return findResponse(port, detectionHex, detectionResponsePattern) != null;
 	}
 
 	@Override
@@ -301,29 +328,26 @@ public class HexCodeBasedProjector implements ProjectorModel {
 		}
 		
 		int hours = 0;
-		byte[] bytes = null;
-		String bulbResponse = findString(port, bulbHoursHex, bulbHoursResponsePattern);
-		if (bulbResponse == null) {
+		byte[] bytes = findResponse(port, bulbHoursHex, bulbHoursResponsePattern);
+		if (bytes == null) {
 			logger.info("Projector didn't return a recognized bulbHoursResponse.");
 			return null;
 		}
 		
 		switch (bulbHoursConversion == null?Conversion.LittleEndian:bulbHoursConversion) {
 		case BigEndian:
-			bytes = bulbResponse.getBytes();
 			for (int power = 0; power < bytes.length; power++) {
-				hours += bytes[bytes.length - power - 1] << (8*power);
+				hours += (bytes[bytes.length - power - 1] & 0xFF) << (8*power);
 			}
 			return hours;
 		default :
 		case LittleEndian :
-			bytes = bulbResponse.getBytes();
 			for (int power = 0; power < bytes.length; power++) {
-				hours += bytes[power] << (8*power);
+				hours += (bytes[power] & 0xFF) << (8*power);
 			}
 			return hours;
 		case ASCII :
-			return Integer.parseInt(bulbResponse);
+			return Integer.parseInt(new String(bytes, StandardCharsets.ISO_8859_1));
 		}
 	}
 }
@@ -0,0 +1,98 @@
+package org.area515.resinprinter.projector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * Matches a projector's response as its bytes arrive.
+ *
+ * The bytes are kept as they were read and shown to the compiled pattern one char per byte, so binary responses match
+ * the \xNN escapes in the projector's regex no matter what the platform's charset is, and nothing is decoded or copied
+ * between reads. The pattern is only ever matched against the whole response, so once the response stops being the
+ * start of something the pattern could match, the response is known to be wrong without waiting for more bytes.
+ */
+public class ProjectorResponseMatcher {
+	public static enum State {
+		Matched,
+		Incomplete,
+		Mismatched
+	}
+
+	private byte[] buffer = new byte[64];
+	private int length;
+	private Matcher matcher;
+	private State state = State.Incomplete;
+	private CharSequence response = new CharSequence() {
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char)(buffer[index] & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+
+		@Override
+		public String toString() {
+			return subSequence(0, length).toString();
+		}
+	};
+
+	public ProjectorResponseMatcher(Pattern pattern) {
+		this.matcher = pattern.matcher(response);
+	}
+
+	public State offer(byte[] bytes) {
+		if (state != State.Incomplete || bytes == null || bytes.length == 0) {
+			return state;
+		}
+
+		if (length + bytes.length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes.length));
+		}
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+
+		matcher.reset(response);
+		if (matcher.matches()) {
+			state = State.Matched;
+		} else if (!matcher.hitEnd()) {
+			//The pattern gave up before it got to the end of the response, more bytes can't make it match
+			state = State.Mismatched;
+		}
+		return state;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the bytes of the last group of the match, or null if the response hasn't matched
+	 */
+	public byte[] getResult() {
+		if (state != State.Matched) {
+			return null;
+		}
+
+		int group = matcher.groupCount();
+		if (matcher.start(group) < 0) {
+			return null;
+		}
+		return Arrays.copyOfRange(buffer, matcher.start(group), matcher.end(group));
+	}
+
+	public String getResponseHex() {
+		return DatatypeConverter.printHexBinary(Arrays.copyOf(buffer, length));
+	}
+}
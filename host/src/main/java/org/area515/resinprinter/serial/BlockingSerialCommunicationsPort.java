@@ -0,0 +1,15 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+
+/**
+ * A port that is told when data arrives, so a reader can wait for the firmware's response instead of polling for it.
+ */
+public interface BlockingSerialCommunicationsPort extends SerialCommunicationsPort {
+	/**
+	 * Waits until there is data to read or until timeoutMillis has gone by.
+	 *
+	 * @return everything that has been read since the last read or null if nothing arrived in time
+	 */
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException;
+}
@@ -4,7 +4,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.printer.ComPortSettings;
 
-public class ConsoleCommPort implements SerialCommunicationsPort {
+public class ConsoleCommPort implements BlockingSerialCommunicationsPort {
     private static final Logger logger = LogManager.getLogger();
 	public static final String GCODE_RESPONSE_SIMULATION = "GCode response simulation";
 	
@@ -56,6 +56,11 @@ public class ConsoleCommPort implements SerialCommunicationsPort {
 		return "ok\n".getBytes();
 	}
 
+	@Override
+	public byte[] read(long timeoutMillis) {
+		return read();
+	}
+
 	public String toString() {
 		return name;
 	}
@@ -3,6 +3,8 @@ package org.area515.resinprinter.serial;
 import java.io.IOException;
 
 import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
 import jssc.SerialPortException;
 
 import org.apache.logging.log4j.LogManager;
@@ -12,10 +14,11 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.printer.ComPortSettings;
 import org.area515.resinprinter.printer.Printer;
 
-public class JSSCCommPort implements SerialCommunicationsPort {
+public class JSSCCommPort implements BlockingSerialCommunicationsPort, SerialPortEventListener {
     private static final Logger logger = LogManager.getLogger();
 	private SerialPort port;
 	private String cwhName;
+	private SerialReadQueue readQueue = new SerialReadQueue();
 	
 	@Override
 	public void open(String controllingDevice, int timeout,
@@ -67,6 +70,8 @@ public class JSSCCommPort implements SerialCommunicationsPort {
 			if (!port.purgePort(SerialPort.PURGE_RXCLEAR | SerialPort.PURGE_TXCLEAR)) {
 				throw new InappropriateDeviceException("Comm port couldn't be purged:" + settings.getPortName());
 			}
+			readQueue.clear();
+			port.addEventListener(this, SerialPort.MASK_RXCHAR);
 		} catch (SerialPortException e) {
 			if (e.getExceptionType().equals(SerialPortException.TYPE_PORT_BUSY) ||
 				e.getExceptionType().equals(SerialPortException.TYPE_PORT_ALREADY_OPENED)) {
@@ -117,14 +122,24 @@ public class JSSCCommPort implements SerialCommunicationsPort {
 
 	@Override
 	public byte[] read() throws IOException {
+		return readQueue.poll();
+	}
+	
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return readQueue.poll(timeoutMillis);
+	}
+	
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+		if (!event.isRXCHAR() || event.getEventValue() <= 0) {
+			return;
+		}
+		
 		try {
-			if (port.getInputBufferBytesCount() > 0) {
-				return port.readBytes(port.getInputBufferBytesCount());
-			}
-			
-			return null;
+			readQueue.add(port.readBytes(event.getEventValue()));
 		} catch (SerialPortException e) {
-			throw new IOException("Couldn't read bytes from serial port.", e);
+			readQueue.fail(new IOException("Couldn't read bytes from serial port.", e));
 		}
 	}
 	
@@ -5,20 +5,18 @@ import gnu.io.SerialPortEvent;
 import gnu.io.SerialPortEventListener;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.TooManyListenersException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEventListener {
+public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEventListener, BlockingSerialCommunicationsPort {
     private static final Logger logger = LogManager.getLogger();
-	private Lock asynchReadLock = new ReentrantLock();
-	private byte[] buffer;
-	private IOException exceptionThrown;
+	private SerialReadQueue readQueue = new SerialReadQueue();
 	
 	public void init(SerialPort serialPort) throws TooManyListenersException {
+		readQueue.clear();
 		serialPort.addEventListener(this);
 		serialPort.notifyOnDataAvailable(true);
 		serialPort.notifyOnBreakInterrupt(true);
@@ -34,24 +32,12 @@ public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEv
 	
 	@Override
 	public byte[] read() throws IOException {
-		asynchReadLock.lock();
-		try {
-			if (buffer != null) {
-				byte[] returnbuffer = buffer;
-				buffer = null;
-				return returnbuffer;
-			}
-			
-			if (exceptionThrown != null) {
-				IOException throwException = exceptionThrown;
-				exceptionThrown = null;
-				throw throwException;
-			}
-			
-			return null;
-		} finally {
-			asynchReadLock.unlock();
-		}
+		return readQueue.poll();
+	}
+
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return readQueue.poll(timeoutMillis);
 	}
 
 	@Override
@@ -61,14 +47,14 @@ public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEv
 			return;
 		}
 		
-		asynchReadLock.lock();
 		try {
-			buffer = new byte[inputStream.available()];
-			inputStream.read(buffer);
+			byte[] buffer = new byte[inputStream.available()];
+			int bytesRead = inputStream.read(buffer);
+			if (bytesRead > 0) {
+				readQueue.add(bytesRead == buffer.length ? buffer : Arrays.copyOf(buffer, bytesRead));
+			}
 		} catch (IOException e) {
-			exceptionThrown = e;
-		} finally {
-			asynchReadLock.unlock();
+			readQueue.fail(e);
 		}
 	}
 }
@@ -7,6 +7,9 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import jssc.SerialPortList;
 
@@ -17,6 +20,8 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.printer.ComPortSettings;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.projector.ProjectorModel;
+import org.area515.resinprinter.serial.SerialPortDetector.Detection;
+import org.area515.resinprinter.serial.SerialPortDetector.PortProbe;
 import org.area515.resinprinter.server.HostProperties;
 import org.area515.util.IOUtilities;
 
@@ -28,6 +33,7 @@ public class SerialManager {
 	public static final String AUTO_DETECT_PROJECTOR = "Autodetect projector";
 	
 	private ConcurrentHashMap<SerialCommunicationsPort, Printer> printersBySerialPort = new ConcurrentHashMap<SerialCommunicationsPort, Printer>();
+	private SerialPortDetector detector;
 	private enum ComPortReservation {
 		Projector,
 		PrinterFirmware
@@ -49,7 +55,7 @@ public class SerialManager {
 		}
 	}
 	
-	public static SerialManager Instance() {
+	public static synchronized SerialManager Instance() {
 		if (INSTANCE == null) {
 			INSTANCE = new SerialManager();
 		}
@@ -57,6 +63,19 @@ public class SerialManager {
 	}
 	
 	private SerialManager() {
+		ExecutorService probeExecutor = null;
+		if (HostProperties.Instance().isParallelSerialAutodetect()) {
+			//Probes spend nearly all of their time waiting on a port, so every port gets its own thread
+			probeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "SerialPortDetection");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		detector = new SerialPortDetector(new SerialPortFingerprints(SerialPortFingerprints.SYSFS_TTY_DIR, HostProperties.Instance().getSerialPortFingerprintFile()), probeExecutor);
 	}
 	
 	private void mergeSettings(ComPortSettings mergeTo, ComPortSettings mergeFrom) {
@@ -88,6 +107,11 @@ public class SerialManager {
 	public DetectedResources getProjectorModel(SerialCommunicationsPort currentIdentifier, ComPortSettings printerSettings) {
 		DetectedResources resources = null;
 		for (ProjectorModel model : HostProperties.Instance().getAutodetectProjectors()) {
+			//Another port has already been found
+			if (Thread.currentThread().isInterrupted()) {
+				return null;
+			}
+			
 			logger.debug("Are you using projector:{}", model.getName());
 			ComPortSettings newSettings = new ComPortSettings(printerSettings);
 			
@@ -173,41 +197,56 @@ public class SerialManager {
 		if (identifierName.equals(FIRST_AVAILABLE_PORT) || 
 			identifierName.equals(AUTO_DETECT_3D_FIRMWARE) || 
 			identifierName.equals(AUTO_DETECT_PROJECTOR)) {
-			identifier = null;
-			String[] identifiers = SerialManager.Instance().getPortNames();
-			for (String currentIdentifier : identifiers) {
-				logger.debug("Autodetection trying against serial device:{}", currentIdentifier);
-				
-				//Auto detection will continue to override settings that haven't been set on the command line
+			//Printers that start at the same time can find the same port, the first one to claim it gets it and the others look again
+			boolean claimed = false;
+			while (!claimed) {
+				identifier = null;
+				resources = null;
 				currentlyOverridenSettings = new ComPortSettings(printerOverriddenComPortSettings);
-				SerialCommunicationsPort check = getSerialDevice(currentIdentifier);
-				currentlyOverridenSettings.setPortName(check.getName());
-				
-				if (!printersBySerialPort.containsKey(check)) {
-					if (identifierName.equals(FIRST_AVAILABLE_PORT)) {
-						identifier = check;
-						break;
+				List<SerialCommunicationsPort> unassignedPorts = new ArrayList<SerialCommunicationsPort>();
+				for (String currentIdentifier : SerialManager.Instance().getPortNames()) {
+					SerialCommunicationsPort check = getSerialDevice(currentIdentifier);
+					if (!printersBySerialPort.containsKey(check)) {
+						unassignedPorts.add(check);
 					}
-					
-					if (identifierName.equals(AUTO_DETECT_3D_FIRMWARE) && is3dFirmware(check, currentlyOverridenSettings)) {
-						identifier = check;
-						break;
+				}
+				logger.debug("Autodetection trying against serial devices:{}", unassignedPorts);
+				
+				if (identifierName.equals(FIRST_AVAILABLE_PORT)) {
+					if (!unassignedPorts.isEmpty()) {
+						identifier = unassignedPorts.get(0);
+						currentlyOverridenSettings.setPortName(identifier.getName());
 					}
-					
-					if (identifierName.equals(AUTO_DETECT_PROJECTOR)) {
-						identifier = check;
-						resources = getProjectorModel(check, currentlyOverridenSettings);
-						if (resources != null) {
-							break;
+				} else {
+					try {
+						Detection<DetectedResources> detection = detector.detect(reservationStyle.name(), unassignedPorts, new AutodetectProbe(printerOverriddenComPortSettings, reservationStyle));
+						if (detection != null) {
+							identifier = detection.getPort();
+							currentlyOverridenSettings = detection.getDetected().settings;
+							if (reservationStyle == ComPortReservation.Projector) {
+								resources = detection.getDetected();
+							}
 						}
+					} catch (InterruptedException e) {
+						throw new InappropriateDeviceException("Interrupted while autodetecting " + reservationStyle + " for " + identifierName);
 					}
 				}
+				
+				if (identifier == null) {
+					//This next statement isn't required because we aren't overriding the settings anymore.
+					//currentlyOverridenSettings.setPortName(identifierName);
+					throw new InappropriateDeviceException("Failed to assign " + reservationStyle + " for " + identifierName);
+				}
+				
+				claimed = printersBySerialPort.putIfAbsent(identifier, printer) == null;
+				if (!claimed) {
+					logger.info("SerialPort:{} was assigned to another printer while looking for:{}, looking again", identifier, reservationStyle);
+				}
 			}
-			
-			if (identifier == null) {
-				//This next statement isn't required because we aren't overriding the settings anymore.
-				//currentlyOverridenSettings.setPortName(identifierName);
-				throw new InappropriateDeviceException("Failed to assign " + reservationStyle + " for " + identifierName);
+		} else {
+			Printer otherPrintJob = printersBySerialPort.putIfAbsent(identifier, printer);
+			if (otherPrintJob != null) {
+				throw new AlreadyAssignedException("SerialPort already assigned to this job:" + otherPrintJob, otherPrintJob);
 			}
 		}
 		
@@ -216,11 +255,6 @@ public class SerialManager {
 			resources = getProjectorModel(identifier, currentlyOverridenSettings);
 		}
 		
-		Printer otherPrintJob = printersBySerialPort.putIfAbsent(identifier, printer);
-		if (otherPrintJob != null) {
-			throw new AlreadyAssignedException("SerialPort already assigned to this job:" + otherPrintJob, otherPrintJob);
-		}
-		
 		//This means we are firmware and we need to be setup...
 		if (resources == null) {
 			resources = new DetectedResources();
@@ -232,6 +266,69 @@ public class SerialManager {
 		return resources;
 	}
 	
+	//Auto detection will continue to override settings that haven't been set on the command line
+	private class AutodetectProbe implements PortProbe<DetectedResources> {
+		private ComPortSettings printerOverriddenComPortSettings;
+		private ComPortReservation reservationStyle;
+		
+		public AutodetectProbe(ComPortSettings printerOverriddenComPortSettings, ComPortReservation reservationStyle) {
+			this.printerOverriddenComPortSettings = printerOverriddenComPortSettings;
+			this.reservationStyle = reservationStyle;
+		}
+		
+		private ComPortSettings buildSettings(SerialCommunicationsPort port) {
+			ComPortSettings settings = new ComPortSettings(printerOverriddenComPortSettings);
+			settings.setPortName(port.getName());
+			return settings;
+		}
+		
+		private DetectedResources buildFirmwareResources(SerialCommunicationsPort port) {
+			DetectedResources resources = new DetectedResources();
+			resources.comPort = port;
+			resources.settings = buildSettings(port);
+			return resources;
+		}
+		
+		@Override
+		public DetectedResources probe(SerialCommunicationsPort port) {
+			//Another printer got this port while waiting to probe it
+			if (printersBySerialPort.containsKey(port)) {
+				return null;
+			}
+			
+			if (reservationStyle == ComPortReservation.Projector) {
+				return getProjectorModel(port, buildSettings(port));
+			}
+			
+			DetectedResources resources = buildFirmwareResources(port);
+			return is3dFirmware(port, resources.settings) ? resources : null;
+		}
+		
+		@Override
+		public DetectedResources remembered(SerialCommunicationsPort port, String rememberedValue) {
+			if (reservationStyle == ComPortReservation.PrinterFirmware) {
+				return buildFirmwareResources(port);
+			}
+			
+			for (ProjectorModel model : HostProperties.Instance().getAutodetectProjectors()) {
+				if (model.getName().equals(rememberedValue)) {
+					DetectedResources resources = new DetectedResources();
+					resources.comPort = port;
+					resources.model = model;
+					resources.settings = buildSettings(port);
+					mergeSettings(resources.settings, model.getDefaultComPortSettings());
+					return resources;
+				}
+			}
+			return null;
+		}
+		
+		@Override
+		public String remember(DetectedResources detected) {
+			return detected.model != null ? detected.model.getName() : reservationStyle.name();
+		}
+	}
+	
 	public void assignSerialPortToProjector(Printer printer, SerialCommunicationsPort identifier) throws AlreadyAssignedException, InappropriateDeviceException {
 		ComPortSettings settings = printer.getConfiguration().getMachineConfig().getMonitorDriverConfig().getComPortSettings();
 		logger.info("Attempting to assign projector using serialPort:{} with settings:{} to printer:{}", identifier, settings, printer);
@@ -261,6 +358,7 @@ public class SerialManager {
 			logger.info("Completed assignment of projector:{} using serialPort:{} with settings:{} to printer:{}", resources.model, identifier, resources.settings, printer);
 		} catch (AlreadyAssignedException | InappropriateDeviceException e) {
 			printersBySerialPort.remove(resources.comPort);
+			detector.forget(ComPortReservation.Projector.name(), resources.comPort);
 			throw e;
 		}
 	}
@@ -285,6 +383,7 @@ public class SerialManager {
 			logger.info("Completed assignment of firmware using serialPort:{} with settings:{} to printer:{}", identifier, resources.settings, printer);
 		} catch (AlreadyAssignedException | InappropriateDeviceException e) {
 			printersBySerialPort.remove(resources.comPort);
+			detector.forget(ComPortReservation.PrinterFirmware.name(), resources.comPort);
 			throw e;
 		}
 	}
@@ -0,0 +1,189 @@
+package org.area515.resinprinter.serial;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Finds the port that a device is on, either by probing every candidate port at the same time or by probing them one
+ * after another.
+ *
+ * A port is only probed by one detection at a time, so printers that start up together don't open the same port at
+ * once. When probing in parallel, the probes that are still running once a device is found are interrupted. Ports
+ * that a device was found on before are tried first, without probing, when their fingerprint is remembered.
+ */
+public class SerialPortDetector {
+	private static final Logger logger = LogManager.getLogger();
+
+	private SerialPortFingerprints fingerprints;
+	private ExecutorService executor;
+	private ConcurrentHashMap<String, ReentrantLock> portLocks = new ConcurrentHashMap<String, ReentrantLock>();
+
+	public interface PortProbe<T> {
+		/**
+		 * Called with the port locked, implementations should give up when they are interrupted.
+		 *
+		 * @return what was found on the port or null if the device isn't there
+		 */
+		public T probe(SerialCommunicationsPort port);
+
+		/**
+		 * @return what was found on the port the last time, or null to probe the port again
+		 */
+		public T remembered(SerialCommunicationsPort port, String rememberedValue);
+
+		/**
+		 * @return what to remember about the port's device, so remembered() can be given it later
+		 */
+		public String remember(T detected);
+	}
+
+	public static class Detection<T> {
+		private SerialCommunicationsPort port;
+		private T detected;
+
+		private Detection(SerialCommunicationsPort port, T detected) {
+			this.port = port;
+			this.detected = detected;
+		}
+
+		public SerialCommunicationsPort getPort() {
+			return port;
+		}
+
+		public T getDetected() {
+			return detected;
+		}
+	}
+
+	/**
+	 * @param executor runs the probes in parallel or null to probe ports one after another
+	 */
+	public SerialPortDetector(SerialPortFingerprints fingerprints, ExecutorService executor) {
+		this.fingerprints = fingerprints;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the first port the device is found on or null if it isn't on any of them
+	 */
+	public <T> Detection<T> detect(String deviceType, List<SerialCommunicationsPort> ports, PortProbe<T> probe) throws InterruptedException {
+		Map<SerialCommunicationsPort, String> uniqueFingerprints = getUniqueFingerprints(ports);
+		for (Map.Entry<SerialCommunicationsPort, String> entry : uniqueFingerprints.entrySet()) {
+			String rememberedValue = fingerprints.getRemembered(deviceType, entry.getValue());
+			if (rememberedValue == null) {
+				continue;
+			}
+
+			T detected = probe.remembered(entry.getKey(), rememberedValue);
+			if (detected != null) {
+				logger.info("{} remembered on:{} with fingerprint:{}", deviceType, entry.getKey(), entry.getValue());
+				return new Detection<T>(entry.getKey(), detected);
+			}
+		}
+
+		Detection<T> detection = executor == null ? probeOneAtATime(ports, probe) : probeInParallel(ports, probe);
+		if (detection != null) {
+			String fingerprint = uniqueFingerprints.get(detection.port);
+			if (fingerprint != null) {
+				fingerprints.remember(deviceType, fingerprint, probe.remember(detection.detected));
+			}
+		}
+		return detection;
+	}
+
+	/**
+	 * Should be called when the device that was detected on a port couldn't be used, so it's probed for next time.
+	 */
+	public void forget(String deviceType, SerialCommunicationsPort port) {
+		String fingerprint = fingerprints.getFingerprint(port.getName());
+		if (fingerprint != null) {
+			fingerprints.forget(deviceType, fingerprint);
+		}
+	}
+
+	//Adapters without serial numbers all look the same, so none of them can be told apart by their fingerprint
+	private Map<SerialCommunicationsPort, String> getUniqueFingerprints(List<SerialCommunicationsPort> ports) {
+		Map<String, SerialCommunicationsPort> portsByFingerprint = new HashMap<String, SerialCommunicationsPort>();
+		List<String> duplicates = new ArrayList<String>();
+		for (SerialCommunicationsPort port : ports) {
+			String fingerprint = fingerprints.getFingerprint(port.getName());
+			if (fingerprint != null && portsByFingerprint.put(fingerprint, port) != null) {
+				duplicates.add(fingerprint);
+			}
+		}
+
+		Map<SerialCommunicationsPort, String> uniqueFingerprints = new HashMap<SerialCommunicationsPort, String>();
+		for (Map.Entry<String, SerialCommunicationsPort> entry : portsByFingerprint.entrySet()) {
+			if (!duplicates.contains(entry.getKey())) {
+				uniqueFingerprints.put(entry.getValue(), entry.getKey());
+			}
+		}
+		return uniqueFingerprints;
+	}
+
+	private <T> T probeLocked(SerialCommunicationsPort port, PortProbe<T> probe) throws InterruptedException {
+		ReentrantLock lock = portLocks.computeIfAbsent(port.getName(), name -> new ReentrantLock());
+		lock.lockInterruptibly();
+		try {
+			logger.debug("Probing:{}", port);
+			return probe.probe(port);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private <T> Detection<T> probeOneAtATime(List<SerialCommunicationsPort> ports, PortProbe<T> probe) throws InterruptedException {
+		for (SerialCommunicationsPort port : ports) {
+			T detected = probeLocked(port, probe);
+			if (detected != null) {
+				return new Detection<T>(port, detected);
+			}
+		}
+		return null;
+	}
+
+	private <T> Detection<T> probeInParallel(List<SerialCommunicationsPort> ports, final PortProbe<T> probe) throws InterruptedException {
+		CompletionService<Detection<T>> completionService = new ExecutorCompletionService<Detection<T>>(executor);
+		List<Future<Detection<T>>> probes = new ArrayList<Future<Detection<T>>>();
+		try {
+			for (final SerialCommunicationsPort port : ports) {
+				probes.add(completionService.submit(new Callable<Detection<T>>() {
+					@Override
+					public Detection<T> call() throws Exception {
+						T detected = probeLocked(port, probe);
+						return detected != null ? new Detection<T>(port, detected) : null;
+					}
+				}));
+			}
+
+			for (int completed = 0; completed < probes.size(); completed++) {
+				try {
+					Detection<T> detection = completionService.take().get();
+					if (detection != null) {
+						return detection;
+					}
+				} catch (ExecutionException e) {
+					logger.error("Port probe failed", e.getCause());
+				}
+			}
+			return null;
+		} finally {
+			for (Future<Detection<T>> future : probes) {
+				future.cancel(true);
+			}
+		}
+	}
+}
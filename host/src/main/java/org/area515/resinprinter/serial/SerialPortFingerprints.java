@@ -0,0 +1,107 @@
+package org.area515.resinprinter.serial;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Remembers which device was found behind each USB serial adapter, so the next time that adapter is plugged in the
+ * device can be assigned without probing for it.
+ *
+ * An adapter is fingerprinted by the vendor id, product id and serial number that Linux shows for it under
+ * /sys/class/tty. Ports that don't have a fingerprint, like ports on other platforms and the simulated ports, are
+ * always probed. When a file is given, fingerprints are kept in it between restarts of the host.
+ */
+public class SerialPortFingerprints {
+	private static final Logger logger = LogManager.getLogger();
+	public static final File SYSFS_TTY_DIR = new File("/sys/class/tty");
+
+	private File ttyDir;
+	private File fingerprintFile;
+	private Properties remembered = new Properties();
+
+	public SerialPortFingerprints(File ttyDir, File fingerprintFile) {
+		this.ttyDir = ttyDir;
+		this.fingerprintFile = fingerprintFile;
+		if (fingerprintFile != null && fingerprintFile.exists()) {
+			try (InputStream stream = new FileInputStream(fingerprintFile)) {
+				remembered.load(stream);
+			} catch (IOException e) {
+				logger.error("Couldn't load serial port fingerprints from:" + fingerprintFile, e);
+			}
+		}
+	}
+
+	/**
+	 * @return usb:vendor:product:serial for the adapter behind the port, without the serial if the adapter doesn't have one, or null if it isn't a known USB adapter
+	 */
+	public String getFingerprint(String portName) {
+		if (portName == null || ttyDir == null) {
+			return null;
+		}
+
+		File device = new File(new File(ttyDir, new File(portName).getName()), "device");
+		try {
+			//The tty's device is the USB interface, the vendor and product are on the USB device above it
+			for (File current = device.getCanonicalFile(); current != null; current = current.getParentFile()) {
+				String vendor = readAttribute(current, "idVendor");
+				String product = readAttribute(current, "idProduct");
+				if (vendor != null && product != null) {
+					String serial = readAttribute(current, "serial");
+					return "usb:" + vendor + ":" + product + (serial != null ? ":" + serial : "");
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Couldn't fingerprint:{} due to:{}", portName, e.getMessage());
+		}
+		return null;
+	}
+
+	private String readAttribute(File directory, String attribute) throws IOException {
+		File file = new File(directory, attribute);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		String value = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+		return value.length() == 0 ? null : value;
+	}
+
+	public synchronized String getRemembered(String deviceType, String fingerprint) {
+		return remembered.getProperty(deviceType + "@" + fingerprint);
+	}
+
+	public synchronized void remember(String deviceType, String fingerprint, String value) {
+		if (value.equals(remembered.setProperty(deviceType + "@" + fingerprint, value))) {
+			return;
+		}
+		save();
+	}
+
+	public synchronized void forget(String deviceType, String fingerprint) {
+		if (remembered.remove(deviceType + "@" + fingerprint) != null) {
+			save();
+		}
+	}
+
+	private void save() {
+		if (fingerprintFile == null) {
+			return;
+		}
+
+		try (OutputStream stream = new FileOutputStream(fingerprintFile)) {
+			remembered.store(stream, "Devices found behind USB serial adapters");
+		} catch (IOException e) {
+			logger.error("Couldn't save serial port fingerprints to:" + fingerprintFile, e);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Hands the bytes that a port's event thread reads over to the thread that is waiting for them.
+ *
+ * Nothing that's been added is ever overwritten, every read takes all of the chunks that have arrived since the last
+ * one. An IOException from the event thread is thrown to the reader once the data that came before it has been read.
+ */
+public class SerialReadQueue {
+	private ArrayDeque<Object> chunks = new ArrayDeque<Object>();
+	private int pendingBytes;
+
+	public synchronized void add(byte[] data) {
+		if (data == null || data.length == 0) {
+			return;
+		}
+
+		chunks.addLast(data);
+		pendingBytes += data.length;
+		notifyAll();
+	}
+
+	public synchronized void fail(IOException e) {
+		chunks.addLast(e);
+		notifyAll();
+	}
+
+	public synchronized void clear() {
+		chunks.clear();
+		pendingBytes = 0;
+	}
+
+	/**
+	 * @return the bytes that have arrived or null if there aren't any
+	 */
+	public synchronized byte[] poll() throws IOException {
+		if (chunks.isEmpty()) {
+			return null;
+		}
+
+		if (chunks.peekFirst() instanceof IOException) {
+			throw (IOException)chunks.removeFirst();
+		}
+
+		if (chunks.size() == 1) {
+			byte[] data = (byte[])chunks.removeFirst();
+			pendingBytes -= data.length;
+			return data;
+		}
+
+		byte[] data = new byte[pendingBytes];
+		int offset = 0;
+		while (!chunks.isEmpty() && chunks.peekFirst() instanceof byte[]) {
+			byte[] chunk = (byte[])chunks.removeFirst();
+			System.arraycopy(chunk, 0, data, offset, chunk.length);
+			offset += chunk.length;
+		}
+		pendingBytes -= offset;
+		return offset == data.length ? data : Arrays.copyOf(data, offset);
+	}
+
+	/**
+	 * Waits up to timeoutMillis for bytes to arrive.
+	 *
+	 * @return the bytes that have arrived or null if nothing arrived in time
+	 */
+	public synchronized byte[] poll(long timeoutMillis) throws IOException, InterruptedException {
+		long waitUntil = System.currentTimeMillis() + timeoutMillis;
+		long waitMillis = timeoutMillis;
+		while (chunks.isEmpty() && waitMillis > 0) {
+			wait(waitMillis);
+			waitMillis = waitUntil - System.currentTimeMillis();
+		}
+
+		return poll();
+	}
+}
@@ -0,0 +1,82 @@
+package org.area515.resinprinter.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The thread pools that the host runs its work in.
+ *
+ * Print jobs, and the closers that wait for them to finish, run for as long as the print does. When they shared three
+ * threads with rendering and notifications, a second printer was enough to starve everything else. Work is now split by
+ * what it waits on:
+ * <ul>
+ * <li>Every printer gets its own job threads, so printers never wait on each other to start or finish a job.</li>
+ * <li>Rendering is CPU bound, so it gets a pool that is bounded by the renderingThreads property.</li>
+ * <li>Notifications, uploads and media streaming spend their time waiting on I/O, so they get a pool of their own that
+ * is sized by the ioThreads property.</li>
+ * </ul>
+ * The host sizes the pools from the properties at startup, and tools that run without a host get the defaults.
+ */
+public class HostExecutors {
+	private static final Logger logger = LogManager.getLogger();
+	public static final int DEFAULT_IO_THREADS = 4;
+	//A job thread and the closer that waits for the job
+	private static final int JOB_THREADS_PER_PRINTER = 2;
+	private static final long JOB_THREAD_IDLE_SECONDS = 60;
+
+	private static int renderingThreads;
+	private static int ioThreads = DEFAULT_IO_THREADS;
+	private static MonitoredExecutor renderingExecutor;
+	private static MonitoredExecutor ioExecutor;
+	private static Map<String, MonitoredExecutor> jobExecutors = new ConcurrentHashMap<String, MonitoredExecutor>();
+
+	/**
+	 * @param renderingThreads the number of threads to render with, zero or less means one per core
+	 * @param ioThreads the number of threads for notifications, uploads and media, zero or less means the default
+	 */
+	public static synchronized void setThreads(int renderingThreads, int ioThreads) {
+		if (renderingExecutor != null || ioExecutor != null) {
+			logger.warn("Executors have already been started, new thread counts will be used after a restart");
+		}
+		HostExecutors.renderingThreads = renderingThreads;
+		HostExecutors.ioThreads = ioThreads > 0 ? ioThreads : DEFAULT_IO_THREADS;
+	}
+
+	public static synchronized ScheduledExecutorService getRenderingExecutor() {
+		if (renderingExecutor == null) {
+			renderingExecutor = new MonitoredExecutor("RenderingThread", renderingThreads > 0 ? renderingThreads : Runtime.getRuntime().availableProcessors(), 0);
+		}
+		return renderingExecutor;
+	}
+
+	public static synchronized ScheduledExecutorService getIOExecutor() {
+		if (ioExecutor == null) {
+			ioExecutor = new MonitoredExecutor("IOThread", ioThreads, 0);
+		}
+		return ioExecutor;
+	}
+
+	/**
+	 * Job threads are let go of when a printer has been idle for a while and are started up again for its next job.
+	 */
+	public static ScheduledExecutorService getJobExecutor(String printerName) {
+		return jobExecutors.computeIfAbsent(printerName, name -> new MonitoredExecutor("PrintJobProcessorThread-" + name, JOB_THREADS_PER_PRINTER, JOB_THREAD_IDLE_SECONDS));
+	}
+
+	public static List<MonitoredExecutor.Metrics> getMetrics() {
+		List<MonitoredExecutor.Metrics> metrics = new ArrayList<MonitoredExecutor.Metrics>();
+		metrics.add(((MonitoredExecutor)getRenderingExecutor()).getMetrics());
+		metrics.add(((MonitoredExecutor)getIOExecutor()).getMetrics());
+		for (MonitoredExecutor executor : new TreeMap<String, MonitoredExecutor>(jobExecutors).values()) {
+			metrics.add(executor.getMetrics());
+		}
+		return metrics;
+	}
+}
@@ -36,6 +36,7 @@ import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.display.AlreadyAssignedException;
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.PrintFileProcessor;
+import org.area515.resinprinter.job.render.ImageBufferPool;
 import org.area515.resinprinter.network.LinuxNetworkManager;
 import org.area515.resinprinter.network.NetworkManager;
 import org.area515.resinprinter.notification.NotificationManager;
@@ -78,6 +79,18 @@ public class HostProperties {
 	private boolean removeJobOnCompletion = true;
 	private boolean forceCalibrationOnFirstUse = false;
 	private boolean limitLiveStreamToOneCPU = false;
+	private boolean sweepPlaneSlicing = false;
+	private int sliceLookahead = 1;
+	private boolean extractSliceArchives = false;
+	private File sliceCacheDir;
+	private int slicingThreads = 0;
+	private int renderingThreads = 0;
+	private int ioThreads = HostExecutors.DEFAULT_IO_THREADS;
+	private int imageBufferPoolSize = ImageBufferPool.DEFAULT_MAX_IDLE_IMAGES;
+	private boolean parallelSerialAutodetect = true;
+	private boolean parallelPrinterStartup = true;
+	private long projectorStatusStaleMillis = 60000;
+	private File serialPortFingerprintFile;
 	private ConcurrentHashMap<String, PrinterConfiguration> configurations;
 	private List<Class<Feature>> featureClasses = new ArrayList<Class<Feature>>();
 	private List<Class<Notifier>> notificationClasses = new ArrayList<Class<Notifier>>();
@@ -287,6 +300,24 @@ public class HostProperties {
 		removeJobOnCompletion = new Boolean(configurationProperties.getProperty("removeJobOnCompletion", "true"));
 		forceCalibrationOnFirstUse = new Boolean(configurationProperties.getProperty("forceCalibrationOnFirstUse", "false"));
 		limitLiveStreamToOneCPU = new Boolean(configurationProperties.getProperty("limitLiveStreamToOneCPU", "false"));
+		sweepPlaneSlicing = new Boolean(configurationProperties.getProperty("sweepPlaneSlicing", "false"));
+		sliceLookahead = Math.max(1, new Integer(configurationProperties.getProperty("sliceLookahead", "1")));
+		extractSliceArchives = new Boolean(configurationProperties.getProperty("extractSliceArchives", "false"));
+		slicingThreads = new Integer(configurationProperties.getProperty("slicingThreads", "0"));
+		renderingThreads = new Integer(configurationProperties.getProperty("renderingThreads", "0"));
+		ioThreads = new Integer(configurationProperties.getProperty("ioThreads", HostExecutors.DEFAULT_IO_THREADS + ""));
+		imageBufferPoolSize = new Integer(configurationProperties.getProperty("imageBufferPoolSize", ImageBufferPool.DEFAULT_MAX_IDLE_IMAGES + ""));
+		String sliceCacheDirString = configurationProperties.getProperty("sliceCacheDir");
+		if (sliceCacheDirString != null && sliceCacheDirString.trim().length() > 0) {
+			sliceCacheDir = new File(sliceCacheDirString.trim());
+		}
+		parallelSerialAutodetect = new Boolean(configurationProperties.getProperty("parallelSerialAutodetect", "true"));
+		parallelPrinterStartup = new Boolean(configurationProperties.getProperty("parallelPrinterStartup", "true"));
+		projectorStatusStaleMillis = new Long(configurationProperties.getProperty("projectorStatusStaleMillis", "60000"));
+		String serialPortFingerprintFileString = configurationProperties.getProperty("serialPortFingerprintFile");
+		if (serialPortFingerprintFileString != null && serialPortFingerprintFileString.trim().length() > 0) {
+			serialPortFingerprintFile = new File(serialPortFingerprintFileString.trim());
+		}
 		scriptEngineLanguage = configurationProperties.getProperty("scriptEngineLanguage", "js");
 		printerProfileRepo = configurationProperties.getProperty("printerProfileRepo", "WesGilster/Creation-Workshop-Host");
 		
@@ -540,6 +571,88 @@ public class HostProperties {
 		return limitLiveStreamToOneCPU;
 	}
 
+	/**
+	 * @return true if a slicer that visits every layer in order should use a sweep plane. STL prints only have a slicer like
+	 * that when sliceLookahead is 1, with more lookahead the layers are spread over several slicers that use the z index.
+	 */
+	public boolean isSweepPlaneSlicing() {
+		return sweepPlaneSlicing;
+	}
+
+	public int getSliceLookahead() {
+		return sliceLookahead;
+	}
+
+	/**
+	 * @return true if CWS and image zips should always be extracted into the working directory instead of being read in place
+	 */
+	public boolean isExtractSliceArchives() {
+		return extractSliceArchives;
+	}
+
+	/**
+	 * @return the number of threads every slicer on this host shares, zero or less means one per core
+	 */
+	public int getSlicingThreads() {
+		return slicingThreads;
+	}
+
+	/**
+	 * @return the number of threads that every printer on this host renders its layers with, zero or less means one per core
+	 */
+	public int getRenderingThreads() {
+		return renderingThreads;
+	}
+
+	/**
+	 * @return the number of threads for notifications, uploads and media streaming
+	 */
+	public int getIOThreads() {
+		return ioThreads;
+	}
+
+	/**
+	 * @return the number of released slice images to keep for the next layers, zero or less means images aren't reused
+	 */
+	public int getImageBufferPoolSize() {
+		return imageBufferPoolSize;
+	}
+
+	/**
+	 * @return the directory where sliced STL layers are kept between prints or null if slices shouldn't be cached
+	 */
+	public File getSliceCacheDir() {
+		return sliceCacheDir;
+	}
+
+	/**
+	 * @return true if every serial port should be probed at the same time when autodetecting firmware and projectors
+	 */
+	public boolean isParallelSerialAutodetect() {
+		return parallelSerialAutodetect;
+	}
+
+	/**
+	 * @return true if the printers that are autostarted should all be started at the same time
+	 */
+	public boolean isParallelPrinterStartup() {
+		return parallelPrinterStartup;
+	}
+
+	/**
+	 * @return how long the bulb hours and power state that were read from a projector are used before it's asked again
+	 */
+	public long getProjectorStatusStaleMillis() {
+		return projectorStatusStaleMillis;
+	}
+
+	/**
+	 * @return the file where autodetected devices are remembered between restarts or null if they are only remembered until the host stops
+	 */
+	public File getSerialPortFingerprintFile() {
+		return serialPortFingerprintFile;
+	}
+
 	public List<String> getVisibleCards() {
 		return visibleCards;
 	}
@@ -3,23 +3,22 @@ package org.area515.resinprinter.server;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.websocket.server.ServerContainer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.render.ImageBufferPool;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.plugin.FeatureManager;
 import org.area515.resinprinter.printer.PrinterConfiguration;
+import org.area515.resinprinter.printer.PrinterManager;
 import org.area515.resinprinter.security.JettySecurityUtils;
 import org.area515.resinprinter.security.UserManagementFeature;
-import org.area515.resinprinter.services.PrinterService;
+import org.area515.resinprinter.slice.SlicingExecutor;
 import org.area515.resinprinter.stream.ProgressiveDownloadServlet;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.RedirectRegexRule;
@@ -48,16 +47,6 @@ public class Main {
     private static final Logger logger = LogManager.getLogger();
     
     public static final String AUTHENTICATION_SCHEME = Constraint.__BASIC_AUTH;
-	public static ScheduledExecutorService GLOBAL_EXECUTOR = new ScheduledThreadPoolExecutor(3, new ThreadFactory() {
-		private AtomicInteger threads = new AtomicInteger();
-		@Override
-		public Thread newThread(Runnable r) {
-			Thread thread = new Thread(r, "PrintJobProcessorThread-" + threads.incrementAndGet());
-			thread.setDaemon(true);
-			return thread;
-		}
-	});
-	
 	public static void setupAuthentication(ServletContextHandler context, UserManagementFeature loginService) {
         //All below is user based security
         Constraint constraint = new Constraint();
@@ -96,6 +85,9 @@ public class Main {
 		logger.info("=================================================================");
 
 		int port = HostProperties.Instance().getPrinterHostPort();
+		SlicingExecutor.setThreads(HostProperties.Instance().getSlicingThreads());
+		HostExecutors.setThreads(HostProperties.Instance().getRenderingThreads(), HostProperties.Instance().getIOThreads());
+		ImageBufferPool.setMaxIdleImages(HostProperties.Instance().getImageBufferPoolSize());
 		/*
 		 * Sequence
 		 * Setup ResourceHandler for html files
@@ -219,12 +211,13 @@ public class Main {
 		});
 		
 		//Startup all printers that should be autostarted
-		List<PrinterConfiguration> configurations = HostProperties.Instance().getPrinterConfigurations();
-		for (PrinterConfiguration configuration : configurations) {
+		List<PrinterConfiguration> autoStartConfigurations = new ArrayList<PrinterConfiguration>();
+		for (PrinterConfiguration configuration : HostProperties.Instance().getPrinterConfigurations()) {
 			if (configuration.isAutoStart()) {
-				PrinterService.INSTANCE.startPrinter(configuration.getName());
+				autoStartConfigurations.add(configuration);
 			}
 		}
+		PrinterManager.Instance().startPrinters(autoStartConfigurations, HostProperties.Instance().isParallelPrinterStartup());
 
 		//At this point we can safely say that a startup is officially complete.
 		HostProperties.Instance().hostStartupComplete();
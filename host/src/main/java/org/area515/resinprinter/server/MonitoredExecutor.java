@@ -0,0 +1,155 @@
+package org.area515.resinprinter.server;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduled executor that keeps track of how long its tasks wait in the queue and how long they take to run.
+ *
+ * Every task submitted to a ScheduledThreadPoolExecutor is a Delayed that was due the moment it was submitted (or the
+ * moment it was scheduled for), so the amount of time it's overdue when a thread picks it up is the time it sat in the
+ * queue.
+ */
+public class MonitoredExecutor extends ScheduledThreadPoolExecutor {
+	private static final double NANOS_PER_MILLI = 1000000d;
+
+	private String name;
+	private AtomicLong tasksRun = new AtomicLong();
+	private AtomicLong totalQueueNanos = new AtomicLong();
+	private AtomicLong maxQueueNanos = new AtomicLong();
+	private AtomicLong totalRunNanos = new AtomicLong();
+	private AtomicLong maxRunNanos = new AtomicLong();
+	private ThreadLocal<Long> runStartTime = new ThreadLocal<Long>();
+
+	public static class Metrics {
+		private String name;
+		private int threads;
+		private int activeThreads;
+		private int queueLength;
+		private long completedTasks;
+		private double averageQueueMillis;
+		private double maxQueueMillis;
+		private double averageRunMillis;
+		private double maxRunMillis;
+
+		private Metrics() {}
+
+		private Metrics(MonitoredExecutor executor) {
+			name = executor.name;
+			threads = executor.getPoolSize();
+			activeThreads = executor.getActiveCount();
+			queueLength = executor.getQueue().size();
+			completedTasks = executor.tasksRun.get();
+			if (completedTasks > 0) {
+				averageQueueMillis = executor.totalQueueNanos.get() / NANOS_PER_MILLI / completedTasks;
+				averageRunMillis = executor.totalRunNanos.get() / NANOS_PER_MILLI / completedTasks;
+			}
+			maxQueueMillis = executor.maxQueueNanos.get() / NANOS_PER_MILLI;
+			maxRunMillis = executor.maxRunNanos.get() / NANOS_PER_MILLI;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public int getActiveThreads() {
+			return activeThreads;
+		}
+
+		/**
+		 * @return the number of tasks waiting for a thread, including periodic tasks that are waiting for their next run
+		 */
+		public int getQueueLength() {
+			return queueLength;
+		}
+
+		public long getCompletedTasks() {
+			return completedTasks;
+		}
+
+		public double getAverageQueueMillis() {
+			return averageQueueMillis;
+		}
+
+		public double getMaxQueueMillis() {
+			return maxQueueMillis;
+		}
+
+		public double getAverageRunMillis() {
+			return averageRunMillis;
+		}
+
+		public double getMaxRunMillis() {
+			return maxRunMillis;
+		}
+	}
+
+	/**
+	 * @param idleTimeoutSeconds how long an idle thread is kept around, zero or less keeps every thread forever
+	 */
+	public MonitoredExecutor(final String name, int threads, long idleTimeoutSeconds) {
+		super(threads, new ThreadFactory() {
+			private AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.name = name;
+		setRemoveOnCancelPolicy(true);
+		if (idleTimeoutSeconds > 0) {
+			setKeepAliveTime(idleTimeoutSeconds, TimeUnit.SECONDS);
+			allowCoreThreadTimeOut(true);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	protected void beforeExecute(Thread thread, Runnable task) {
+		super.beforeExecute(thread, task);
+		if (task instanceof Delayed) {
+			long queueNanos = Math.max(0, -((Delayed)task).getDelay(TimeUnit.NANOSECONDS));
+			totalQueueNanos.addAndGet(queueNanos);
+			updateMax(maxQueueNanos, queueNanos);
+		}
+		runStartTime.set(System.nanoTime());
+	}
+
+	@Override
+	protected void afterExecute(Runnable task, Throwable error) {
+		Long startTime = runStartTime.get();
+		if (startTime != null) {
+			long runNanos = System.nanoTime() - startTime;
+			totalRunNanos.addAndGet(runNanos);
+			updateMax(maxRunNanos, runNanos);
+			runStartTime.remove();
+		}
+		tasksRun.incrementAndGet();
+		super.afterExecute(task, error);
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	public Metrics getMetrics() {
+		return new Metrics(this);
+	}
+}
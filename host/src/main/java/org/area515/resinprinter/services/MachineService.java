@@ -68,9 +68,11 @@ import org.area515.resinprinter.printer.SlicingProfile;
 import org.area515.resinprinter.serial.SerialCommunicationsPort;
 import org.area515.resinprinter.serial.SerialManager;
 import org.area515.resinprinter.server.CwhEmailSettings;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostInformation;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.MonitoredExecutor;
+import org.area515.resinprinter.slice.SlicingExecutor;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.IOUtilities;
 import org.area515.util.MailUtilities;
@@ -179,7 +181,7 @@ public class MachineService {
 			
 			final NetworkInterface iFace = NetworkInterface.getByInetAddress(InetAddress.getByName(ipAddress));
 			final long startTime = System.currentTimeMillis();
-			restartProcess = Main.GLOBAL_EXECUTOR.submit(new Callable<Boolean>() {
+			restartProcess = HostExecutors.getIOExecutor().submit(new Callable<Boolean>() {
 				@Override
 				public Boolean call() throws Exception {
 					boolean iFaceUp = true;
@@ -478,4 +480,26 @@ public class MachineService {
 	 public List<SlicingProfile> getSlicingProfiles() {
 		 return HostProperties.Instance().getConfigurations(HostProperties.Instance().PROFILES_DIR, HostProperties.PROFILES_EXTENSION, SlicingProfile.class);
 	 }
+	 
+    @ApiOperation(value = "Shows how busy the thread pool that every printer on the Photonic 3D host slices with is.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+	 @GET
+	 @Path("slicingExecutor/metrics")
+	 @Produces(MediaType.APPLICATION_JSON)
+	 public SlicingExecutor.Metrics getSlicingExecutorMetrics() {
+		 return SlicingExecutor.getMetrics();
+	 }
+
+    @ApiOperation(value = "Shows the queue lengths and latencies of the rendering, I/O and per printer job thread pools on the Photonic 3D host.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+	 @GET
+	 @Path("executors/metrics")
+	 @Produces(MediaType.APPLICATION_JSON)
+	 public List<MonitoredExecutor.Metrics> getExecutorMetrics() {
+		 return HostExecutors.getMetrics();
+	 }
 }
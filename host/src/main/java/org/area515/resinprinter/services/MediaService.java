@@ -33,8 +33,8 @@ import javax.ws.rs.core.StreamingOutput;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.Log4jTimer;
 
@@ -111,7 +111,7 @@ public class MediaService {
 				liveStreamerModificationLock.lock();//TODO: Can we can eliminate this critical section?
 				try {
 					if (mjpegStreamerClients.size() > 0) {
-						nextLiveStreamImage = Main.GLOBAL_EXECUTOR.submit(new SourceImageReader(x, y, timeBetweenFrames, false));
+						nextLiveStreamImage = HostExecutors.getIOExecutor().submit(new SourceImageReader(x, y, timeBetweenFrames, false));
 					}
 				} finally {
 					liveStreamerModificationLock.unlock();
@@ -413,7 +413,7 @@ public class MediaService {
 			stream = new ClientStream(clientId);
 			
 			if (mjpegStreamerClients.size() == 0) {
-				nextLiveStreamImage = Main.GLOBAL_EXECUTOR.submit(new SourceImageReader(x, y, 1000, true));
+				nextLiveStreamImage = HostExecutors.getIOExecutor().submit(new SourceImageReader(x, y, 1000, true));
 			}
 			mjpegStreamerClients.put(clientId, stream);
 		} finally {
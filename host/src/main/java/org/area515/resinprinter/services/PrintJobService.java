@@ -8,6 +8,7 @@ import io.swagger.annotations.ApiResponses;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.List;
 import java.util.UUID;
 
@@ -19,6 +20,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -33,8 +35,13 @@ import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.job.PrintJobManager;
+import org.area515.resinprinter.job.PrintJobMetrics;
+import org.area515.resinprinter.job.PrintTimeSimulator;
+import org.area515.resinprinter.job.PrintTimeSimulator.PrintTimeEstimate;
 import org.area515.resinprinter.job.Customizer;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.printer.PrinterManager;
+import org.area515.resinprinter.server.HostProperties;
 import org.area515.resinprinter.slice.StlError;
 import org.area515.resinprinter.stl.Triangle3d;
 import org.area515.resinprinter.util.security.PhotonicUser;
@@ -395,4 +402,132 @@ public class PrintJobService {
 			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Couldn't convert geometry to JSON").build();
 		}
 	}
+    
+    @ApiOperation(value="Predicts how long each of the remaining layers of the PrintJob designated by the specified job id will take, "
+    		+ "by running the slicing profile's calculator scripts and gcode templates without sending anything to the printer. "
+    		+ "The milliseconds it takes to render each layer's image default to what the render waits of the layers printed so far show. "
+    		+ "Jobs that bring their own gcode, like Creation Workshop scenes, can't be simulated.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Invalid job id"),
+            @ApiResponse(code = 400, message = "Job not found"),
+            @ApiResponse(code = 400, message = "There isn't a printer assigned to this job"),
+            @ApiResponse(code = 400, message = "The job's gcode doesn't come from the slicing profile"),
+            @ApiResponse(code = 400, message = "(A script or template problem)")
+            })
+	@GET
+	@Path("estimate/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response estimateRemainingTime(@PathParam("jobId") String jobId, @QueryParam("renderTime") Long renderTime) {
+		UUID uuid = null;
+		PrintJob printJob = null;
+		try {
+			uuid = UUID.fromString(jobId);
+			printJob = PrintJobManager.Instance().getJob(uuid);
+		} catch (IllegalArgumentException e) {
+			return Response.status(Status.BAD_REQUEST).entity("Invalid jobId: "+ jobId).build();
+		}
+		if (printJob == null) {
+			return Response.status(Status.BAD_REQUEST).entity("Job not found: "+ jobId).build();
+		}
+		if (printJob.getPrinter() == null) {
+			return Response.status(Status.BAD_REQUEST).entity("There isn't a printer assigned to job: "+ jobId).build();
+		}
+		try {
+			PrintTimeSimulator simulator = new PrintTimeSimulator(printJob.getPrinter(), HostProperties.Instance().buildScriptEngine());
+			if (renderTime != null) {
+				simulator.setRenderTime(renderTime);
+			}
+			PrintTimeEstimate estimate = simulator.simulateRemainder(printJob);
+			return Response.status(Status.OK).entity(estimate).build();
+		} catch (Exception e) {
+			logger.error("Job:" + jobId, e);
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
+		}
+	}
+    
+    @ApiOperation(value="Predicts how long each layer of a print with the specified number of layers would take on the specified printer, "
+    		+ "header and footer included. The milliseconds it takes to render each layer's image and the build area that the calculator scripts see can be given, "
+    		+ "since neither is known until a file is printed. A layer is render bound when its image takes longer to render than the layer before it takes to expose and lift.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Printer not found"),
+            @ApiResponse(code = 400, message = "(A script or template problem)")
+            })
+	@GET
+	@Path("simulate/{printerName}/{totalSlices}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response simulatePrint(@PathParam("printerName") String printerName, @PathParam("totalSlices") int totalSlices, @QueryParam("renderTime") Long renderTime, @QueryParam("buildAreaMM") Double buildAreaMM) {
+		Printer printer = PrinterManager.Instance().getPrinter(printerName);
+		if (printer == null) {
+			return Response.status(Status.BAD_REQUEST).entity("Printer not found: "+ printerName).build();
+		}
+		try {
+			PrintTimeSimulator simulator = new PrintTimeSimulator(printer, HostProperties.Instance().buildScriptEngine());
+			if (renderTime != null) {
+				simulator.setRenderTime(renderTime);
+			}
+			simulator.setBuildAreaMM(buildAreaMM);
+			PrintTimeEstimate estimate = simulator.simulate(totalSlices);
+			return Response.status(Status.OK).entity(estimate).build();
+		} catch (Exception e) {
+			logger.error("Printer:" + printerName, e);
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
+		}
+	}
+    
+    @ApiOperation(value="Returns where the time of each layer of the PrintJob designated by the specified job id has gone so far. "
+    		+ "Each phase of a layer has a histogram for the whole job and the milliseconds spent in it for every layer.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Invalid job id"),
+            @ApiResponse(code = 400, message = "Job not found")
+            })
+	@GET
+	@Path("metrics/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getMetrics(@PathParam("jobId") String jobId) {
+		UUID uuid = null;
+		PrintJob printJob = null;
+		try {
+			uuid = UUID.fromString(jobId);
+			printJob = PrintJobManager.Instance().getJob(uuid);
+		} catch (IllegalArgumentException e) {
+			return Response.status(Status.BAD_REQUEST).entity("Invalid jobId: "+ jobId).build();
+		}
+		if (printJob == null) {
+			return Response.status(Status.BAD_REQUEST).entity("Job not found: "+ jobId).build();
+		}
+		return Response.status(Status.OK).entity(printJob.getMetrics()).build();
+	}
+    
+    @ApiOperation(value="Downloads the milliseconds spent in each phase of every layer of the PrintJob designated by the specified job id as a CSV file.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Invalid job id"),
+            @ApiResponse(code = 400, message = "Job not found")
+            })
+	@GET
+	@Path("metrics/{jobId}/csv")
+	@Produces("text/csv")
+	public Response getMetricsCSV(@PathParam("jobId") String jobId) {
+		UUID uuid = null;
+		PrintJob printJob = null;
+		try {
+			uuid = UUID.fromString(jobId);
+			printJob = PrintJobManager.Instance().getJob(uuid);
+		} catch (IllegalArgumentException e) {
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Invalid jobId: "+ jobId).build();
+		}
+		if (printJob == null) {
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Job not found: "+ jobId).build();
+		}
+		final PrintJobMetrics metrics = printJob.getMetrics();
+		return Response.status(Status.OK).entity(new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException, WebApplicationException {
+				metrics.writeCSV(new OutputStreamWriter(output, "UTF-8"));
+			}
+		}).header("Content-Disposition", "attachment; filename=\"" + jobId + "-metrics.csv\"").build();
+	}
 }
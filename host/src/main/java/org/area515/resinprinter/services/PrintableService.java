@@ -51,8 +51,8 @@ import org.area515.resinprinter.job.Printable;
 import org.area515.resinprinter.job.Customizer;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.PrintFileFilter;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
@@ -365,7 +365,7 @@ public class PrintableService {
 			        CloseableHttpResponse response = httpclient.execute(httpget);
 			        
 					final InputStream stream = response.getEntity().getContent();
-			        Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+			        HostExecutors.getIOExecutor().submit(new Runnable() {
 						@Override
 						public void run() {
 							try {
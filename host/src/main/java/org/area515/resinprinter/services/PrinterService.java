@@ -51,6 +51,7 @@ import org.area515.resinprinter.printer.MachineConfig.MotorsDriverConfig;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.PrinterConfiguration;
 import org.area515.resinprinter.printer.PrinterManager;
+import org.area515.resinprinter.printer.PrinterStartupTimings;
 import org.area515.resinprinter.printer.SlicingProfile;
 import org.area515.resinprinter.printer.SlicingProfile.Font;
 import org.area515.resinprinter.printer.SlicingProfile.InkConfig;
@@ -267,6 +268,28 @@ public class PrinterService {
 		}
 	}	 
 	 
+    @ApiOperation(value="Returns how long each phase of the last start of every printer took.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+	@GET
+	@Path("startupTimings")
+	@Produces(MediaType.APPLICATION_JSON)
+	public List<PrinterStartupTimings> getStartupTimings() {
+		return PrinterManager.Instance().getStartupTimings();
+	}
+	 
+    @ApiOperation(value="Returns how long each phase of the last start of the Printer specified by the printername took.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+	@GET
+	@Path("startupTimings/{printername}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public PrinterStartupTimings getStartupTimings(@PathParam("printername") String printerName) {
+		return PrinterManager.Instance().getStartupTimings(printerName);
+	}
+	 
     @ApiOperation(value="Stops the Printer specified by the printername.")
     @ApiResponses(value = {
             @ApiResponse(code = 200, response=MachineResponse.class, message = SwaggerMetadata.MACHINE_RESPONSE),
@@ -768,6 +791,31 @@ public class PrinterService {
 			return new MachineResponse("stopProjector", false, e.getMessage());
 		}
 	}
+	 
+    @ApiOperation(value="Returns whether the projector(if it's supported) for the Printer specified by the printername is on. "
+    		+ "Projectors that can't report their power state return the state they were last started or stopped with. "
+    		+ "The last answer is always returned right away, the projector is asked again in the background once it's older than projectorStatusStaleMillis.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, response=MachineResponse.class, message = SwaggerMetadata.MACHINE_RESPONSE),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+	@GET
+	@Path("projectorPowerStatus/{printername}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public MachineResponse getProjectorPowerStatus(@PathParam("printername") String printerName) {
+		Printer printer = PrinterManager.Instance().getPrinter(printerName);
+		if (printer == null) {
+			return new MachineResponse("projectorPowerStatus", false, "Printer:" + printerName + " not started");
+		}
+		if (!printer.isProjectorPowerControlSupported()) {
+			return new MachineResponse("projectorPowerStatus", false, "Projector model couldn't be detected");
+		}
+		
+		Boolean powerStatus = printer.getProjectorPowerStatus();
+		if (powerStatus == null) {
+			return new MachineResponse("projectorPowerStatus", false, "Projector power state isn't known.");
+		}
+		return new MachineResponse("projectorPowerStatus", true, powerStatus ? "Projector is on." : "Projector is off.");
+	}
 	
     @ApiOperation(value="Starts a print with the specified Printable fileName and Printer name. "
     		+ "This method is only necessary if there is more than one printer running since you need to designate which Printer you would like to print to. ")
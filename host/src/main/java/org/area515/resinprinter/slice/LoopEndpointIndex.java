@@ -0,0 +1,205 @@
+package org.area515.resinprinter.slice;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Triangle3d;
+
+/**
+ * Hash index over the open ends of the working loops that ZSlicer joins line segments into.
+ *
+ * Both ends of every loop are hashed into a grid of cells that are larger than Triangle3d.EQUAL_TOLERANCE, so any point
+ * that pointEquals() an end has to be in the same cell or one of its eight neighbors. Finding the loops a segment could
+ * join is then a handful of hash lookups instead of a scan over every working loop. The index only narrows down the
+ * candidates, the caller still decides with pointEquals() just like it did before.
+ *
+ * Loops are handed back in the order they were added, which is the order the linear scan visited them in, so the same
+ * loop wins when more than one loop could be joined.
+ */
+public class LoopEndpointIndex {
+	//Any cell that is at least as large as the tolerance works, a bigger cell keeps the cell numbers small
+	private static final double CELL_SIZE = Triangle3d.EQUAL_TOLERANCE * 1024;
+
+	private Map<Long, List<WorkingLoop>> cells = new HashMap<Long, List<WorkingLoop>>();
+	private List<WorkingLoop> loopsInOrder = new ArrayList<WorkingLoop>();
+	private int firstLoop;
+	private int loopCount;
+	private int searchStamp;
+
+	public static class WorkingLoop {
+		private List<Line3d> lines;
+		private int order;
+		private boolean removed;
+		private int searchStamp = -1;
+		private Point3d indexedHead;
+		private Point3d indexedTail;
+
+		private WorkingLoop(List<Line3d> lines, int order) {
+			this.lines = lines;
+			this.order = order;
+		}
+
+		public List<Line3d> getLines() {
+			return lines;
+		}
+
+		public Point3d getHead() {
+			return lines.get(0).getPointOne();
+		}
+
+		public Point3d getTail() {
+			return lines.get(lines.size() - 1).getPointTwo();
+		}
+	}
+
+	private static long cell(double value) {
+		return (long)Math.floor(value / CELL_SIZE);
+	}
+
+	private static Long key(long cellX, long cellY) {
+		return cellX * 0x9E3779B97F4A7C15L + cellY;
+	}
+
+	private void addToCell(Point3d point, WorkingLoop loop) {
+		Long key = key(cell(point.x), cell(point.y));
+		List<WorkingLoop> loops = cells.get(key);
+		if (loops == null) {
+			loops = new ArrayList<WorkingLoop>(2);
+			cells.put(key, loops);
+		}
+		loops.add(loop);
+	}
+
+	private void removeFromCell(Point3d point, WorkingLoop loop) {
+		Long key = key(cell(point.x), cell(point.y));
+		List<WorkingLoop> loops = cells.get(key);
+		if (loops == null) {
+			return;
+		}
+		for (int t = 0; t < loops.size(); t++) {
+			if (loops.get(t) == loop) {
+				loops.remove(t);
+				break;
+			}
+		}
+		if (loops.isEmpty()) {
+			cells.remove(key);
+		}
+	}
+
+	private void index(WorkingLoop loop) {
+		loop.indexedHead = loop.getHead();
+		loop.indexedTail = loop.getTail();
+		addToCell(loop.indexedHead, loop);
+		addToCell(loop.indexedTail, loop);
+	}
+
+	private void unindex(WorkingLoop loop) {
+		removeFromCell(loop.indexedHead, loop);
+		removeFromCell(loop.indexedTail, loop);
+	}
+
+	public WorkingLoop add(List<Line3d> lines) {
+		WorkingLoop loop = new WorkingLoop(lines, loopsInOrder.size());
+		loopsInOrder.add(loop);
+		loopCount++;
+		index(loop);
+		return loop;
+	}
+
+	public void remove(WorkingLoop loop) {
+		if (loop.removed) {
+			return;
+		}
+		unindex(loop);
+		loop.removed = true;
+		loopCount--;
+	}
+
+	/**
+	 * Must be called after lines have been added to either end of a loop.
+	 */
+	public void reindex(WorkingLoop loop) {
+		unindex(loop);
+		index(loop);
+	}
+
+	public int size() {
+		return loopCount;
+	}
+
+	public boolean isEmpty() {
+		return loopCount == 0;
+	}
+
+	/**
+	 * @return the loop that was added first and hasn't been removed yet
+	 */
+	public WorkingLoop getFirst() {
+		while (firstLoop < loopsInOrder.size() && loopsInOrder.get(firstLoop).removed) {
+			firstLoop++;
+		}
+		return firstLoop < loopsInOrder.size() ? loopsInOrder.get(firstLoop) : null;
+	}
+
+	/**
+	 * @return the lines of every loop that hasn't been removed, in the order the loops were added
+	 */
+	public List<List<Line3d>> getLoops() {
+		List<List<Line3d>> loops = new ArrayList<List<Line3d>>(loopCount);
+		for (int t = firstLoop; t < loopsInOrder.size(); t++) {
+			if (!loopsInOrder.get(t).removed) {
+				loops.add(loopsInOrder.get(t).lines);
+			}
+		}
+		return loops;
+	}
+
+	/**
+	 * Finds every loop with an end that could be within tolerance of either point.
+	 *
+	 * @param excluded a loop to leave out of the results, or null
+	 * @return the candidates in the order they were added
+	 */
+	public List<WorkingLoop> findLoopsNear(Point3d first, Point3d second, WorkingLoop excluded) {
+		searchStamp++;
+		List<WorkingLoop> candidates = new ArrayList<WorkingLoop>(4);
+		collectLoopsNear(first, excluded, candidates);
+		collectLoopsNear(second, excluded, candidates);
+
+		//There are rarely more than a couple of candidates, so an insertion sort puts them back in order
+		for (int t = 1; t < candidates.size(); t++) {
+			WorkingLoop candidate = candidates.get(t);
+			int insert = t - 1;
+			while (insert >= 0 && candidates.get(insert).order > candidate.order) {
+				candidates.set(insert + 1, candidates.get(insert));
+				insert--;
+			}
+			candidates.set(insert + 1, candidate);
+		}
+		return candidates;
+	}
+
+	private void collectLoopsNear(Point3d point, WorkingLoop excluded, List<WorkingLoop> candidates) {
+		long cellX = cell(point.x);
+		long cellY = cell(point.y);
+		for (long x = cellX - 1; x <= cellX + 1; x++) {
+			for (long y = cellY - 1; y <= cellY + 1; y++) {
+				List<WorkingLoop> loops = cells.get(key(x, y));
+				if (loops == null) {
+					continue;
+				}
+				for (WorkingLoop loop : loops) {
+					if (loop != excluded && loop.searchStamp != searchStamp) {
+						loop.searchStamp = searchStamp;
+						candidates.add(loop);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable 1 bit layer that is stored as runs of lit pixels on each row.
+ *
+ * Every row is a sorted array of [start, end) pairs that never touch or overlap, so a 1920x1080 layer of a typical print
+ * takes a few kilobytes instead of the 8MB of an ARGB image. The area of a layer is known without scanning any pixels and
+ * layers can be combined row by row without ever being rasterized.
+ */
+public class RunLengthLayer {
+	private static final int[] NO_RUNS = new int[0];
+	private static final int UNION = 0;
+	private static final int INTERSECTION = 1;
+	private static final int DIFFERENCE = 2;
+
+	public static final RunLengthLayer EMPTY = new RunLengthLayer(0, new int[0][]);
+
+	private int minY;
+	private int[][] rows;
+	private long area;
+
+	/**
+	 * Collects runs for the rows between minY and maxY in any order. Runs that touch or overlap are merged when the layer is built.
+	 */
+	public static class Builder {
+		private int minY;
+		private int[][] rows;
+		private int[] runCounts;
+
+		public Builder(int minY, int maxY) {
+			this.minY = minY;
+			int rowCount = Math.max(0, maxY - minY + 1);
+			rows = new int[rowCount][];
+			runCounts = new int[rowCount];
+		}
+
+		/**
+		 * @param startX first lit pixel
+		 * @param endX the pixel just after the last lit pixel
+		 */
+		public Builder addRun(int y, int startX, int endX) {
+			if (endX <= startX) {
+				return this;
+			}
+
+			int row = y - minY;
+			if (row < 0 || row >= rows.length) {
+				throw new IllegalArgumentException("Row:" + y + " is outside of this layer");
+			}
+
+			int count = runCounts[row];
+			if (rows[row] == null) {
+				rows[row] = new int[8];
+			} else if (count * 2 == rows[row].length) {
+				rows[row] = Arrays.copyOf(rows[row], count * 4);
+			}
+			rows[row][count * 2] = startX;
+			rows[row][count * 2 + 1] = endX;
+			runCounts[row] = count + 1;
+			return this;
+		}
+
+		public RunLengthLayer build() {
+			int[][] builtRows = new int[rows.length][];
+			for (int row = 0; row < rows.length; row++) {
+				builtRows[row] = mergeRuns(rows[row], runCounts[row]);
+			}
+			return new RunLengthLayer(minY, builtRows);
+		}
+
+		private static int[] mergeRuns(int[] runs, int count) {
+			if (count == 0) {
+				return NO_RUNS;
+			}
+
+			//Rows rarely have more than a handful of runs, so an insertion sort on the starting pixel is all that's needed
+			for (int t = 1; t < count; t++) {
+				int start = runs[t * 2];
+				int end = runs[t * 2 + 1];
+				int insert = t - 1;
+				while (insert >= 0 && runs[insert * 2] > start) {
+					runs[insert * 2 + 2] = runs[insert * 2];
+					runs[insert * 2 + 3] = runs[insert * 2 + 1];
+					insert--;
+				}
+				runs[insert * 2 + 2] = start;
+				runs[insert * 2 + 3] = end;
+			}
+
+			int merged = 0;
+			for (int t = 1; t < count; t++) {
+				if (runs[t * 2] <= runs[merged * 2 + 1]) {
+					runs[merged * 2 + 1] = Math.max(runs[merged * 2 + 1], runs[t * 2 + 1]);
+				} else {
+					merged++;
+					runs[merged * 2] = runs[t * 2];
+					runs[merged * 2 + 1] = runs[t * 2 + 1];
+				}
+			}
+			return Arrays.copyOf(runs, (merged + 1) * 2);
+		}
+	}
+
+	private RunLengthLayer(int minY, int[][] rows) {
+		this.minY = minY;
+		this.rows = rows;
+		for (int[] runs : rows) {
+			for (int t = 0; t < runs.length; t += 2) {
+				area += runs[t + 1] - runs[t];
+			}
+		}
+	}
+
+	/**
+	 * Builds a layer out of every pixel in the image that isn't black.
+	 */
+	public static RunLengthLayer fromImage(BufferedImage image) {
+		int width = image.getWidth();
+		Builder builder = new Builder(0, image.getHeight() - 1);
+		int[] row = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			int runStart = -1;
+			for (int x = 0; x < width; x++) {
+				boolean lit = (row[x] & 0xffffff) != 0;
+				if (lit && runStart < 0) {
+					runStart = x;
+				} else if (!lit && runStart >= 0) {
+					builder.addRun(y, runStart, x);
+					runStart = -1;
+				}
+			}
+			if (runStart >= 0) {
+				builder.addRun(y, runStart, width);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the number of lit pixels
+	 */
+	public long getArea() {
+		return area;
+	}
+
+	public int getMinY() {
+		return minY;
+	}
+
+	public int getMaxY() {
+		return minY + rows.length - 1;
+	}
+
+	/**
+	 * @return the [start, end) pairs of the row, which must not be modified
+	 */
+	public int[] getRuns(int y) {
+		int row = y - minY;
+		if (row < 0 || row >= rows.length) {
+			return NO_RUNS;
+		}
+		return rows[row];
+	}
+
+	public RunLengthLayer union(RunLengthLayer other) {
+		return combine(other, UNION);
+	}
+
+	public RunLengthLayer intersection(RunLengthLayer other) {
+		return combine(other, INTERSECTION);
+	}
+
+	public RunLengthLayer difference(RunLengthLayer other) {
+		return combine(other, DIFFERENCE);
+	}
+
+	/**
+	 * Unions any number of layers in a single pass, which is much cheaper than a chain of union() calls when the layers
+	 * each cover a different band of rows.
+	 */
+	public static RunLengthLayer union(List<RunLengthLayer> layers) {
+		int combinedMinY = Integer.MAX_VALUE;
+		int combinedMaxY = Integer.MIN_VALUE;
+		for (RunLengthLayer layer : layers) {
+			if (layer.rows.length > 0) {
+				combinedMinY = Math.min(combinedMinY, layer.minY);
+				combinedMaxY = Math.max(combinedMaxY, layer.getMaxY());
+			}
+		}
+		if (combinedMinY > combinedMaxY) {
+			return EMPTY;
+		}
+
+		int[][] combinedRows = new int[combinedMaxY - combinedMinY + 1][];
+		Arrays.fill(combinedRows, NO_RUNS);
+		for (RunLengthLayer layer : layers) {
+			for (int row = 0; row < layer.rows.length; row++) {
+				int combinedRow = layer.minY + row - combinedMinY;
+				combinedRows[combinedRow] = combineRuns(combinedRows[combinedRow], layer.rows[row], UNION);
+			}
+		}
+		return new RunLengthLayer(combinedMinY, combinedRows);
+	}
+
+	private RunLengthLayer combine(RunLengthLayer other, int operation) {
+		if (rows.length == 0 && operation != UNION) {
+			return this;
+		}
+		if (other.rows.length == 0) {
+			return operation == INTERSECTION ? other : this;
+		}
+		if (rows.length == 0) {
+			return other;
+		}
+
+		int combinedMinY = Math.min(minY, other.minY);
+		int combinedMaxY = Math.max(getMaxY(), other.getMaxY());
+		int[][] combinedRows = new int[combinedMaxY - combinedMinY + 1][];
+		for (int y = combinedMinY; y <= combinedMaxY; y++) {
+			combinedRows[y - combinedMinY] = combineRuns(getRuns(y), other.getRuns(y), operation);
+		}
+		return new RunLengthLayer(combinedMinY, combinedRows);
+	}
+
+	//Walks the boundaries of both rows in order and emits a boundary every time the combined state flips
+	private static int[] combineRuns(int[] first, int[] second, int operation) {
+		if (first.length == 0 && second.length == 0) {
+			return NO_RUNS;
+		}
+		if (operation == UNION && (first.length == 0 || second.length == 0)) {
+			return first.length == 0 ? second : first;
+		}
+
+		int[] combined = new int[first.length + second.length];
+		int count = 0;
+		int firstIndex = 0;
+		int secondIndex = 0;
+		boolean inFirst = false;
+		boolean inSecond = false;
+		boolean inCombined = false;
+		while (firstIndex < first.length || secondIndex < second.length) {
+			int x;
+			if (secondIndex >= second.length || (firstIndex < first.length && first[firstIndex] <= second[secondIndex])) {
+				x = first[firstIndex];
+			} else {
+				x = second[secondIndex];
+			}
+
+			if (firstIndex < first.length && first[firstIndex] == x) {
+				inFirst = !inFirst;
+				firstIndex++;
+			}
+			if (secondIndex < second.length && second[secondIndex] == x) {
+				inSecond = !inSecond;
+				secondIndex++;
+			}
+
+			boolean lit;
+			switch (operation) {
+			case UNION :
+				lit = inFirst || inSecond;
+				break;
+			case INTERSECTION :
+				lit = inFirst && inSecond;
+				break;
+			default :
+				lit = inFirst && !inSecond;
+			}
+
+			if (lit != inCombined) {
+				combined[count++] = x;
+				inCombined = lit;
+			}
+		}
+
+		return count == 0 ? NO_RUNS : Arrays.copyOf(combined, count);
+	}
+
+	/**
+	 * Fills every run with the current color of the graphics.
+	 */
+	public void paint(Graphics2D g) {
+		for (int row = 0; row < rows.length; row++) {
+			int[] runs = rows[row];
+			for (int t = 0; t < runs.length; t += 2) {
+				g.fillRect(runs[t], minY + row, runs[t + 1] - runs[t], 1);
+			}
+		}
+	}
+
+	/**
+	 * Copies the lit pixels straight into the pixels of the image, anything outside of the image is clipped.
+	 * Images that aren't backed by a plain int array are painted through their graphics instead.
+	 */
+	public void drawInto(BufferedImage image, int argb) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int type = image.getType();
+		boolean intImage = type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB_PRE;
+		if (!intImage || image.getRaster().getParent() != null || image.getRaster().getDataBuffer().getNumBanks() != 1) {
+			Graphics2D g = image.createGraphics();
+			try {
+				g.setColor(new Color(argb, true));
+				paint(g);
+			} finally {
+				g.dispose();
+			}
+			return;
+		}
+
+		int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		int firstRow = Math.max(0, -minY);
+		int lastRow = Math.min(rows.length - 1, height - 1 - minY);
+		for (int row = firstRow; row <= lastRow; row++) {
+			int[] runs = rows[row];
+			int rowOffset = (minY + row) * width;
+			for (int t = 0; t < runs.length; t += 2) {
+				int start = Math.max(0, runs[t]);
+				int end = Math.min(width, runs[t + 1]);
+				if (start < end) {
+					Arrays.fill(pixels, rowOffset + start, rowOffset + end, argb);
+				}
+			}
+		}
+	}
+}
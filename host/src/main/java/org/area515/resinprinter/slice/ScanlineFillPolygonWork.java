@@ -1,6 +1,7 @@
 package org.area515.resinprinter.slice;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -18,9 +19,13 @@ import org.area515.resinprinter.stl.XYComparatord;
 public class ScanlineFillPolygonWork extends RecursiveTask<ScanlineFillPolygonWork> {
 	private static final Logger logger = LogManager.getLogger();
 	private static final long serialVersionUID = 217859858236513212L;
-	public static final int SMALLEST_UNIT_OF_WORK = 20;
+	/**
+	 * A band of rows is split in half for as long as it's worth more than this many edge and row combinations. Bands that
+	 * cross a lot of edges end up smaller than bands that only cross a few, so every task costs roughly the same.
+	 */
+	public static final int SPLIT_THRESHOLD = 4096;
+	public static final int SMALLEST_UNIT_OF_WORK = 2;
 	private List<Line3d> potentialLinesInRange;
-	private List<Line3d> scanLines = new ArrayList<Line3d>();
 	private Set<Face3d> insideOutPolygons = new HashSet<Face3d>();
 	private List<Triangle3d> watchedTriangles;
 	private int buildArea;
@@ -28,8 +33,15 @@ public class ScanlineFillPolygonWork extends RecursiveTask<ScanlineFillPolygonWo
 	private int stop;
 	private int z;
 	private List<Integer> watchedYs;
+	private RunLengthLayer layer;
+	private long splitThreshold;
 	
 	public ScanlineFillPolygonWork(List<Line3d> potentialLinesInRange, List<Triangle3d> watchedTriangles, List<Integer> watchedYs, int start, int stop, int z) {
+		this(potentialLinesInRange, watchedTriangles, watchedYs, start, stop, z, SPLIT_THRESHOLD);
+	}
+	
+	ScanlineFillPolygonWork(List<Line3d> potentialLinesInRange, List<Triangle3d> watchedTriangles, List<Integer> watchedYs, int start, int stop, int z, long splitThreshold) {
+		this.splitThreshold = splitThreshold;
 		this.potentialLinesInRange = potentialLinesInRange;
 		this.watchedTriangles = watchedTriangles;
 		this.watchedYs = watchedYs;
@@ -42,17 +54,51 @@ public class ScanlineFillPolygonWork extends RecursiveTask<ScanlineFillPolygonWo
 		return insideOutPolygons;
 	}
 	
-	public List<Line3d> getScanLines() {
-		return scanLines;
+	/**
+	 * @return the filled spans of every row this work covered, each span covers the same pixels drawLine() would have
+	 */
+	public RunLengthLayer getLayer() {
+		return layer;
 	}
 	
 	public int getBuildArea() {
 		return buildArea;
 	}
 	
+	private List<Line3d> getLinesInRange(int low, int high) {
+		List<Line3d> linesInRange = new ArrayList<Line3d>();
+		for (Line3d currentLine : potentialLinesInRange) {
+			if (currentLine.getMaxY() >= low && currentLine.getMinY() <= high) {
+				linesInRange.add(currentLine);
+			}
+		}
+		return linesInRange;
+	}
+	
 	@Override
 	protected ScanlineFillPolygonWork compute() {
+		int rows = stop - start + 1;
+		if (rows < SMALLEST_UNIT_OF_WORK * 2 || (long)rows * potentialLinesInRange.size() <= splitThreshold) {
+			return fillRows();
+		}
+		
+		int middle = start + (rows / 2) - 1;
+		ScanlineFillPolygonWork firstHalf = new ScanlineFillPolygonWork(getLinesInRange(start, middle), watchedTriangles, watchedYs, start, middle, z, splitThreshold);
+		ScanlineFillPolygonWork secondHalf = new ScanlineFillPolygonWork(getLinesInRange(middle + 1, stop), watchedTriangles, watchedYs, middle + 1, stop, z, splitThreshold);
+		secondHalf.fork();
+		firstHalf.compute();
+		secondHalf.join();
+		
+		layer = RunLengthLayer.union(Arrays.asList(firstHalf.layer, secondHalf.layer));
+		buildArea = firstHalf.buildArea + secondHalf.buildArea;
+		insideOutPolygons.addAll(firstHalf.insideOutPolygons);
+		insideOutPolygons.addAll(secondHalf.insideOutPolygons);
+		return this;
+	}
+	
+	private ScanlineFillPolygonWork fillRows() {
 			 boolean watch = false;
+			 RunLengthLayer.Builder layerBuilder = new RunLengthLayer.Builder(start, stop);
 	         for (int y = start; y <= stop; y++) {
 		    	 Set<Point3d> intersectedPoints = new TreeSet<Point3d>(new XYComparatord(Triangle3d.EQUAL_TOLERANCE));
 	        	 for (Line3d currentLine : potentialLinesInRange) {
@@ -110,7 +156,7 @@ public class ScanlineFillPolygonWork extends RecursiveTask<ScanlineFillPolygonWo
 	        			 if (drawingValue > 0) {
 	        				 insideOutPolygons.add(intersectedPoint.getOriginatingShape());
 	        			 } else if (drawingValue == 0) {
-	        				 scanLines.add(new Line3d(firstPoint, intersectedPoint, null, null, false));
+	        				 layerBuilder.addRun(y, (int)Math.round(firstPoint.x), (int)Math.round(intersectedPoint.x) + 1);
 	        				 buildArea += intersectedPoint.x - firstPoint.x;
 	        				 firstPoint = null;
 	        			 }
@@ -118,6 +164,7 @@ public class ScanlineFillPolygonWork extends RecursiveTask<ScanlineFillPolygonWo
 	        	 }
 	         }
 	         
+	         layer = layerBuilder.build();
 	         return this;
 	}
 }
@@ -0,0 +1,356 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.slice.StlError.ErrorType;
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Triangle3d;
+
+/**
+ * On disk cache of sliced STL layers so that a model that is printed over and over again only has to be sliced once.
+ *
+ * Layers are cached exactly as the slicer paints them, before the affine transform and bulb mask are applied. A sliced
+ * layer is nothing but the slicer's white fill on black with the outlines of its polygons drawn on top, so every row is
+ * stored as alternating black and white run lengths and the whole layer is gzipped along with the outlines and its build
+ * area. The runs come straight from the slicer, so a layer is never read back out of the image to be cached. The STL
+ * errors that the slicer found on the layer are stored with it, so a print from the cache still tells users that their
+ * model is broken. Since the transforms and mask are applied to the cached layer
+ * afterwards, they don't have to be part of the key and changing them doesn't throw the cache away.
+ *
+ * Every layer is its own file that's renamed into place once it's completely written, so a print that is cancelled
+ * halfway through leaves a partial cache that the next print picks up and finishes. A cache is never allowed to fail a
+ * print, so every problem reading or writing a layer is logged and treated as a cache miss.
+ */
+public class SliceCache {
+	private static final Logger logger = LogManager.getLogger();
+	private static final int MAGIC = 0x50534c43;
+	private static final int FORMAT_VERSION = 3;
+	private static final int WHITE = 0xffffffff;
+	private static final Map<String, String> modelHashes = new ConcurrentHashMap<String, String>();
+
+	private File layerDirectory;
+
+	public SliceCache(File layerDirectory) {
+		this.layerDirectory = layerDirectory;
+	}
+
+	/**
+	 * Opens the cache for a model and the settings that it will be sliced with. Every setting that changes the way the
+	 * slicer paints a layer needs to be part of the settings.
+	 */
+	public static SliceCache open(File cacheDirectory, File modelFile, Object... sliceSettings) throws IOException {
+		StringBuilder key = new StringBuilder(getModelHash(modelFile));
+		key.append(FORMAT_VERSION);
+		for (Object setting : sliceSettings) {
+			key.append('|').append(setting);
+		}
+
+		File layerDirectory = new File(cacheDirectory, toHex(digest(key.toString().getBytes("UTF-8"))));
+		if (!layerDirectory.isDirectory() && !layerDirectory.mkdirs()) {
+			throw new IOException("Couldn't create slice cache directory:" + layerDirectory);
+		}
+		return new SliceCache(layerDirectory);
+	}
+
+	//Hashing a model means reading the whole thing, so the hash is remembered for as long as the file doesn't change
+	private static String getModelHash(File modelFile) throws IOException {
+		String fileKey = modelFile.getAbsolutePath() + "|" + modelFile.length() + "|" + modelFile.lastModified();
+		String hash = modelHashes.get(fileKey);
+		if (hash != null) {
+			return hash;
+		}
+
+		MessageDigest digest = newDigest();
+		InputStream stream = new FileInputStream(modelFile);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int bytesRead;
+			while ((bytesRead = stream.read(buffer)) != -1) {
+				digest.update(buffer, 0, bytesRead);
+			}
+		} finally {
+			stream.close();
+		}
+
+		hash = toHex(digest.digest());
+		modelHashes.put(fileKey, hash);
+		return hash;
+	}
+
+	private static byte[] digest(byte[] data) {
+		return newDigest().digest(data);
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is required by every JVM", e);
+		}
+	}
+
+	private static String toHex(byte[] data) {
+		StringBuilder hex = new StringBuilder(data.length * 2);
+		for (byte current : data) {
+			hex.append(String.format("%02x", current & 0xff));
+		}
+		return hex.toString();
+	}
+
+	public File getLayerDirectory() {
+		return layerDirectory;
+	}
+
+	private File getLayerFile(int layer) {
+		return new File(layerDirectory, "layer" + layer + ".rle.gz");
+	}
+
+	public boolean hasLayer(int layer) {
+		return getLayerFile(layer).isFile();
+	}
+
+	/**
+	 * Paints a cached layer into the image.
+	 *
+	 * @param errors the STL errors of the layer are added to this, unless it's null
+	 * @return the build area of the layer or null if the layer isn't in the cache, in which case the image and errors are left alone
+	 */
+	public Double readLayer(int layer, BufferedImage image, List<StlError> errors) {
+		File layerFile = getLayerFile(layer);
+		if (!layerFile.isFile()) {
+			return null;
+		}
+
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(layerFile), 16 * 1024)));
+			try {
+				if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+					logger.warn("Ignoring slice cache file with an unknown format:{}", layerFile);
+					return null;
+				}
+
+				int width = input.readInt();
+				int height = input.readInt();
+				if (width != image.getWidth() || height != image.getHeight()) {
+					logger.warn("Ignoring slice cache file that is {}x{} instead of {}x{}:{}", width, height, image.getWidth(), image.getHeight(), layerFile);
+					return null;
+				}
+
+				double area = input.readDouble();
+				RunLengthLayer.Builder slice = new RunLengthLayer.Builder(0, height - 1);
+				for (int y = 0; y < height; y++) {
+					int x = 0;
+					boolean white = false;
+					int runCount = input.readInt();
+					for (int run = 0; run < runCount; run++) {
+						int runEnd = x + input.readInt();
+						if (runEnd > width) {
+							throw new IOException("Run is longer than the row it's in");
+						}
+						if (white) {
+							slice.addRun(y, x, runEnd);
+						}
+						x = runEnd;
+						white = !white;
+					}
+				}
+
+				int outlineCount = input.readInt();
+				Polygon[] outlines = new Polygon[outlineCount];
+				for (int outline = 0; outline < outlineCount; outline++) {
+					int pointCount = input.readInt();
+					int[] xPoints = new int[pointCount];
+					int[] yPoints = new int[pointCount];
+					for (int point = 0; point < pointCount; point++) {
+						xPoints[point] = input.readInt();
+						yPoints[point] = input.readInt();
+					}
+					outlines[outline] = new Polygon(xPoints, yPoints, pointCount);
+				}
+
+				int errorCount = input.readInt();
+				List<StlError> layerErrors = new ArrayList<StlError>(errorCount);
+				for (int error = 0; error < errorCount; error++) {
+					layerErrors.add(readError(input));
+				}
+				if (errors != null) {
+					errors.addAll(layerErrors);
+				}
+
+				Graphics2D graphics = image.createGraphics();
+				try {
+					graphics.setBackground(Color.black);
+					graphics.clearRect(0, 0, width, height);
+					slice.build().drawInto(image, WHITE);
+					
+					//Drawn the same way ZSlicer.paintSlice() draws them so the pixels come out the same
+					graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+					graphics.setColor(Color.white);
+					for (Polygon outline : outlines) {
+						graphics.drawPolygon(outline);
+					}
+				} finally {
+					graphics.dispose();
+				}
+				return area;
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Couldn't read slice cache file:{}", layerFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a layer that was just sliced, as ZSlicer.paintSlice() would paint it into a width x height image.
+	 *
+	 * @param slice the filled pixels of the layer, anything outside of the image is clipped
+	 * @param outlines the polygons that are drawn around the fill, or null if there aren't any
+	 * @param errors the STL errors that the slicer found on the layer, or null if there aren't any
+	 */
+	public void writeLayer(int layer, RunLengthLayer slice, List<Polygon> outlines, List<StlError> errors, int width, int height, double area) {
+		File layerFile = getLayerFile(layer);
+		File temporaryFile = new File(layerDirectory, layerFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporaryFile), 16 * 1024)));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(FORMAT_VERSION);
+				output.writeInt(width);
+				output.writeInt(height);
+				output.writeDouble(area);
+
+				//Rows alternate between black and white run lengths, starting with black and ending at the edge of the image
+				int[] clippedRuns = new int[0];
+				for (int y = 0; y < height; y++) {
+					int[] runs = slice.getRuns(y);
+					if (clippedRuns.length < runs.length) {
+						clippedRuns = new int[runs.length];
+					}
+					int runCount = 0;
+					for (int run = 0; run < runs.length; run += 2) {
+						int start = Math.max(0, runs[run]);
+						int end = Math.min(width, runs[run + 1]);
+						if (start < end) {
+							clippedRuns[runCount++] = start;
+							clippedRuns[runCount++] = end;
+						}
+					}
+					
+					int x = 0;
+					output.writeInt(runCount + 1);
+					for (int run = 0; run < runCount; run++) {
+						output.writeInt(clippedRuns[run] - x);
+						x = clippedRuns[run];
+					}
+					output.writeInt(width - x);
+				}
+
+				output.writeInt(outlines == null ? 0 : outlines.size());
+				if (outlines != null) {
+					for (Polygon outline : outlines) {
+						output.writeInt(outline.npoints);
+						for (int point = 0; point < outline.npoints; point++) {
+							output.writeInt(outline.xpoints[point]);
+							output.writeInt(outline.ypoints[point]);
+						}
+					}
+				}
+
+				output.writeInt(errors == null ? 0 : errors.size());
+				if (errors != null) {
+					for (StlError error : errors) {
+						writeError(output, error);
+					}
+				}
+			} finally {
+				output.close();
+			}
+
+			Files.move(temporaryFile.toPath(), layerFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Couldn't write slice cache file:{}", layerFile, e);
+			temporaryFile.delete();
+		}
+	}
+
+	//Users are only ever shown the index of a broken triangle, the rest is kept so that the error reads the same as a sliced one
+	private static void writeError(DataOutputStream output, StlError error) throws IOException {
+		Triangle3d triangle = error.getTriangle();
+		output.writeInt(error.getType().ordinal());
+		output.writeInt(triangle.getOriginalIndex() == null ? -1 : triangle.getOriginalIndex());
+		for (Point3d point : triangle.getPoints()) {
+			writePoint(output, point);
+		}
+		writePoint(output, triangle.getNormal());
+
+		Line3d edge = error.getNonManifoldEdge();
+		output.writeBoolean(edge != null);
+		if (edge != null) {
+			writePoint(output, edge.getPointOne());
+			writePoint(output, edge.getPointTwo());
+			writePoint(output, edge.getNormal());
+		}
+	}
+
+	private static StlError readError(DataInputStream input) throws IOException {
+		int type = input.readInt();
+		if (type < 0 || type >= ErrorType.values().length) {
+			throw new IOException("Unknown STL error type:" + type);
+		}
+
+		int originalIndex = input.readInt();
+		Point3d[] points = new Point3d[]{readPoint(input), readPoint(input), readPoint(input)};
+		Triangle3d triangle = new Triangle3d(points, readPoint(input), null, null, originalIndex < 0 ? null : originalIndex);
+		if (!input.readBoolean()) {
+			return new StlError(triangle, ErrorType.values()[type]);
+		}
+
+		StlError error = new StlError(triangle, new Line3d(readPoint(input), readPoint(input), readPoint(input), triangle, false));
+		error.setType(ErrorType.values()[type]);
+		return error;
+	}
+
+	private static void writePoint(DataOutputStream output, Point3d point) throws IOException {
+		output.writeBoolean(point != null);
+		if (point != null) {
+			output.writeDouble(point.x);
+			output.writeDouble(point.y);
+			output.writeDouble(point.z);
+		}
+	}
+
+	private static Point3d readPoint(DataInputStream input) throws IOException {
+		if (!input.readBoolean()) {
+			return null;
+		}
+		return new Point3d(input.readDouble(), input.readDouble(), input.readDouble());
+	}
+}
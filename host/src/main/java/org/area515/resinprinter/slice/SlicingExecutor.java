@@ -0,0 +1,112 @@
+package org.area515.resinprinter.slice;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Host wide pool that every slicer fills its scanlines in.
+ *
+ * Creating a ForkJoinPool for every layer spun up and tore down a thread per core per layer, and two printers slicing at
+ * the same time would each get a full set of threads. All slicers share this pool instead. The host sizes it from the
+ * slicingThreads property at startup, and tools that slice without a host get one thread per core.
+ */
+public class SlicingExecutor {
+	private static final Logger logger = LogManager.getLogger();
+	private static ForkJoinPool pool;
+	private static int threads;
+
+	public static class Metrics {
+		private int parallelism;
+		private int poolSize;
+		private int activeThreads;
+		private int runningThreads;
+		private int queuedSubmissions;
+		private long queuedTasks;
+		private long stealCount;
+
+		private Metrics() {}
+
+		private Metrics(ForkJoinPool pool) {
+			parallelism = pool.getParallelism();
+			poolSize = pool.getPoolSize();
+			activeThreads = pool.getActiveThreadCount();
+			runningThreads = pool.getRunningThreadCount();
+			queuedSubmissions = pool.getQueuedSubmissionCount();
+			queuedTasks = pool.getQueuedTaskCount();
+			stealCount = pool.getStealCount();
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public int getActiveThreads() {
+			return activeThreads;
+		}
+
+		public int getRunningThreads() {
+			return runningThreads;
+		}
+
+		public int getQueuedSubmissions() {
+			return queuedSubmissions;
+		}
+
+		public long getQueuedTasks() {
+			return queuedTasks;
+		}
+
+		public long getStealCount() {
+			return stealCount;
+		}
+	}
+
+	/**
+	 * @param threads the number of threads to slice with, zero or less means one per core
+	 */
+	public static synchronized void setThreads(int threads) {
+		if (pool != null && threads != SlicingExecutor.threads) {
+			logger.warn("Slicing has already started with {} threads, the new thread count will be used after a restart", pool.getParallelism());
+		}
+		SlicingExecutor.threads = threads;
+	}
+
+	public static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), new ForkJoinWorkerThreadFactory() {
+				private AtomicInteger threadCount = new AtomicInteger();
+
+				@Override
+				public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+					ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+					thread.setName("SlicingThread-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			}, null, false);
+		}
+
+		return pool;
+	}
+
+	//Lets the next slice start a pool with the current thread count
+	static synchronized void shutdownPool() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	public static Metrics getMetrics() {
+		return new Metrics(getPool());
+	}
+}
@@ -12,6 +12,7 @@ package org.area515.resinprinter.slice;
    limitations under the License.
 */
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -20,6 +21,8 @@ import java.io.Reader;
 import java.nio.ByteBuffer;
 // New from JDK 1.4 for endian related problems
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
@@ -57,10 +60,15 @@ import org.area515.resinprinter.stl.Point3d;
 
 public abstract class StlFile<T> {
   private static final Logger logger = LogManager.getLogger();
+  private static final int BINARY_HEADER_SIZE = 84;               // 80 byte comment and the number of faces
+  private static final int BINARY_FACET_SIZE = 50;                // Normal, 3 verticies and 2 bytes of attributes
+  private static final int FACES_PER_WINDOW = 1024 * 1024;        // 50MB mapped at a time
+  private static final int FACES_PER_CHUNK = 16 * 1024;           // 800KB read at a time
 
   //private int flag;                         // Needed cause implements Loader
   private boolean Ascii = true;             // File type Ascii -> true o binary -> false
   private boolean rewriteNormalsWithRightHandRule = false;
+  private double[] facet = new double[12];
   
   protected Set<T> triangles;
   protected double zmin = Double.MAX_VALUE;
@@ -202,14 +210,13 @@ public abstract class StlFile<T> {
 		
 		parser.nextToken();
 		double[] normal = read3d(parser, "normal", true);
-		Point3d normalPoint = new Point3d(normal[0], normal[1], normal[2]);
+		System.arraycopy(normal, 0, facet, 0, 3);
 		parser.nextToken();
 		readToken(parser, "outer");
 		
-		double triangle[][] = new double[3][];
 		for (int i = 0; i < 3; i++) {
 			parser.nextToken();
-			triangle[i] = read3d(parser, "vertex", false);
+			System.arraycopy(read3d(parser, "vertex", false), 0, facet, 3 + i * 3, 3);
 		}
 
 		parser.nextToken();
@@ -218,11 +225,8 @@ public abstract class StlFile<T> {
 		parser.nextToken();
 		readToken(parser, "endfacet");
 		
-		fixNormalIfBadSTLFile(normalPoint, triangle[0], triangle[1], triangle[2]);
-		buildTriangle(new Point3d[]{
-				buildPoint(triangle[0][0], triangle[0][1], triangle[0][2]), 
-				buildPoint(triangle[1][0], triangle[1][1], triangle[1][2]), 
-				buildPoint(triangle[2][0], triangle[2][1], triangle[2][2])}, normalPoint);
+		fixNormalIfBadSTLFile(facet);
+		buildFacet(facet);
   }// End of readFacet
 
   protected abstract void buildTriangle(Point3d[] points, Point3d normal);
@@ -230,22 +234,34 @@ public abstract class StlFile<T> {
   protected abstract Set<T> createSet();
   protected abstract T getFirstTriangle();
 
-  private void fixNormalIfBadSTLFile(Point3d normal, double[] p1, double[] p2, double[] p3) {
-		if ((normal.x == 0 && normal.y == 0 && normal.z == 0) || rewriteNormalsWithRightHandRule) {
+  /**
+   * Called once for every facet in the file. The facet array holds the normal followed by the three verticies and is reused
+   * for the next facet, so subclasses that can store the facet directly should override this instead of buildTriangle.
+   * 
+   * @param facet nx, ny, nz, x1, y1, z1, x2, y2, z2, x3, y3, z3 exactly as they were read from the file
+   */
+  protected void buildFacet(double[] facet) {
+		buildTriangle(new Point3d[]{
+				buildPoint(facet[3], facet[4], facet[5]), 
+				buildPoint(facet[6], facet[7], facet[8]), 
+				buildPoint(facet[9], facet[10], facet[11])}, new Point3d(facet[0], facet[1], facet[2]));
+  }
+
+  private void fixNormalIfBadSTLFile(double[] facet) {
+		if ((facet[0] == 0 && facet[1] == 0 && facet[2] == 0) || rewriteNormalsWithRightHandRule) {
 			/*normal.x = (p3[1] - p2[1]) * (p2[2] - p1[2]) - (p3[2] - p2[2]) * (p2[1] - p1[1]);
 			normal.y = (p3[2] - p2[2]) * (p2[0] - p1[0]) - (p3[0] - p2[0]) * (p2[2] - p1[2]);
 			normal.z = (p3[0] - p2[0]) * (p2[1] - p1[1]) - (p3[1] - p2[1]) * (p2[0] - p1[0]);*/
-			normal.x = (p3[2] - p2[2]) * (p2[1] - p1[1]) - (p3[1] - p2[1]) * (p2[2] - p1[2]);
-			normal.y = (p3[0] - p2[0]) * (p2[2] - p1[2]) - (p3[2] - p2[2]) * (p2[0] - p1[0]);
-			normal.z = (p3[1] - p2[1]) * (p2[0] - p1[0]) - (p3[0] - p2[0]) * (p2[1] - p1[1]);
+			facet[0] = (facet[11] - facet[8]) * (facet[7] - facet[4]) - (facet[10] - facet[7]) * (facet[8] - facet[5]);
+			facet[1] = (facet[9] - facet[6]) * (facet[8] - facet[5]) - (facet[11] - facet[8]) * (facet[6] - facet[3]);
+			facet[2] = (facet[10] - facet[7]) * (facet[6] - facet[3]) - (facet[9] - facet[6]) * (facet[7] - facet[4]);
 		}
   }
   
   /**
    * Method that reads a face in binary files
    * All binary versions of the methods end by 'B'
-   * As in binary files we can read the number of faces, we don't need
-   * to use coordArray and normArray (reading binary files should be faster)
+   * The facet is decoded straight into the reusable facet array, so nothing is allocated per facet
    *
    * @param in The ByteBuffer with the data of the object.
    * @param index The facet index
@@ -253,93 +269,130 @@ public abstract class StlFile<T> {
    * @throws IOException
    */
   public void readFacetB(ByteBuffer dataBuffer, int index) throws IOException {
-	    // Read the Normal
-		Point3d normal = new Point3d(
-			dataBuffer.getFloat(), 
-			dataBuffer.getFloat(), 
-			dataBuffer.getFloat());
-
-	    // Read vertex1
-		double p1[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
-		double p2[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
-		double p3[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
-		
-		Point3d[] triangle = new Point3d[3];
-		triangle[0] = buildPoint(p1[0], p1[1], p1[2]);
-		triangle[1] = buildPoint(p2[0], p2[1], p2[2]);
-		triangle[2] = buildPoint(p3[0], p3[1], p3[2]);
+		// Read the Normal and then the three verticies
+		for (int t = 0; t < facet.length; t++) {
+			facet[t] = dataBuffer.getFloat();
+		}
 		
-		fixNormalIfBadSTLFile(normal, p1, p2, p3);
+		fixNormalIfBadSTLFile(facet);
 		
-		buildTriangle(triangle, normal);
+		buildFacet(facet);
 		
 		//TODO: After each facet there are 2 bytes that can be used for color information, we should add those two bytes to the triangle.
-        dataBuffer.get();
-        dataBuffer.get();
+        dataBuffer.getShort();
 	  }
   
   /**
-   * Method for reading binary files
-   * Execution is completly different
-   * It uses ByteBuffer for reading data and ByteOrder for retrieving the machine's endian
-   * (Needs JDK 1.4)
+   * Method for reading binary files that are on disk
+   * The facets are decoded directly out of memory mapped windows of the file so the file is never copied onto the heap.
+   * The windows are kept small enough that even a 32 bit JVM can map a file far larger than its address space.
    *
-   * TO-DO:
-   *  1.-Be able to read files over Internet
-   *  2.-If the amount of data expected is bigger than what is on the file then
-   *  the program will block forever
+   * @param channel The channel of the file
+   * @param start Where the STL begins in the channel
    *
-   * @param file The name of the file
+   * @throws IOException
+   */
+  private void readBinaryFile(FileChannel channel, long start) throws IOException {
+	long fileSize = channel.size() - start;
+	if (fileSize < BINARY_HEADER_SIZE) {
+		logger.error("Format Error: {} bytes expected", BINARY_HEADER_SIZE);
+		throw new IOException("STL Format Error: " + BINARY_HEADER_SIZE + " bytes expected");
+	}
+	
+	ByteBuffer dataBuffer = channel.map(MapMode.READ_ONLY, start, BINARY_HEADER_SIZE);
+	dataBuffer.order(ByteOrder.nativeOrder());
+	long numberOfFaces = readFaceCount(dataBuffer, fileSize);
+	
+	long position = start + BINARY_HEADER_SIZE;
+	int index = 0;
+	while (index < numberOfFaces) {
+		int facesInWindow = (int)Math.min(numberOfFaces - index, FACES_PER_WINDOW);
+		dataBuffer = channel.map(MapMode.READ_ONLY, position, (long)facesInWindow * BINARY_FACET_SIZE);
+		dataBuffer.order(ByteOrder.nativeOrder());
+		for (int t = 0; t < facesInWindow; t++, index++) {
+			readFacetB(dataBuffer, index);
+		}
+		position += (long)facesInWindow * BINARY_FACET_SIZE;
+	}
+  }
+  
+  /**
+   * Method for reading binary files from a stream
+   * The stream is read in fixed size chunks so that only a single chunk is ever on the heap
+   *
+   * @param data The stream positioned at the start of the STL
    *
    * @throws IOException
    */
   private void readBinaryFile(InputStream data) throws IOException {
-    ByteBuffer dataBuffer;                // For reading in the correct endian
-    byte[] Info=new byte[80];             // Header data
-    byte[] Array_number= new byte[4];     // Holds the number of faces
-    byte[] Temp_Info;                     // Intermediate array
-
-    int Number_faces; // First info (after the header) on the file
-
-
-      // First 80 bytes aren't important
-      if(80 != data.read(Info)) { // File is incorrect
-    	logger.error("Format Error: 80 bytes expected");
-        throw new IOException("STL Format Error: 80 bytes expected");
-      } else { // We must first read the number of faces -> 4 bytes int
-        // It depends on the endian so..
-
-        data.read(Array_number);                      // We get the 4 bytes
-        dataBuffer = ByteBuffer.wrap(Array_number);   // ByteBuffer for reading correctly the int
-        dataBuffer.order(ByteOrder.nativeOrder());    // Set the right order
-        Number_faces = dataBuffer.getInt();
-
-        Temp_Info = new byte[50*Number_faces];        // Each face has 50 bytes of data
-
-        data.read(Temp_Info);                         // We get the rest of the file
-
-        dataBuffer = ByteBuffer.wrap(Temp_Info);      // Now we have all the data in this ByteBuffer
-        dataBuffer.order(ByteOrder.nativeOrder());
-
-        // We can create that array directly as we know how big it's going to be
-        //coordArray = new Point3f[Number_faces*3]; // Each face has 3 vertex
-        //normArray = new Vector3f[Number_faces];
-        //stripCounts = new int[Number_faces];
-
-        for(int i=0;i<Number_faces;i++) {
-          //stripCounts[i]=3;
-          try {
-            readFacetB(dataBuffer,i);
-            
-          } catch (IOException e) {
-            // Quitar
-            logger.error("Format Error: iteration number " + i, e);
-            throw new IOException("Format Error: iteration number " + i, e);
-          }
-        }//End for
-      }// End file reading
-  }// End of readBinaryFile
-
+	byte[] header = new byte[BINARY_HEADER_SIZE];
+	if (readFully(data, header, header.length) != header.length) {
+		logger.error("Format Error: {} bytes expected", BINARY_HEADER_SIZE);
+		throw new IOException("STL Format Error: " + BINARY_HEADER_SIZE + " bytes expected");
+	}
+	
+	ByteBuffer dataBuffer = ByteBuffer.wrap(header);
+	dataBuffer.order(ByteOrder.nativeOrder());
+	long numberOfFaces = readFaceCount(dataBuffer, -1);
+	
+	byte[] chunk = new byte[(int)Math.min(numberOfFaces, FACES_PER_CHUNK) * BINARY_FACET_SIZE];
+	dataBuffer = ByteBuffer.wrap(chunk);
+	dataBuffer.order(ByteOrder.nativeOrder());
+	int index = 0;
+	while (index < numberOfFaces) {
+		int facesInChunk = (int)Math.min(numberOfFaces - index, FACES_PER_CHUNK);
+		int bytesRead = readFully(data, chunk, facesInChunk * BINARY_FACET_SIZE);
+		if (bytesRead != facesInChunk * BINARY_FACET_SIZE) {
+			throw new IOException("STL Format Error: expected " + numberOfFaces + " facets but the file ended after " + (index + bytesRead / BINARY_FACET_SIZE));
+		}
+		
+		dataBuffer.clear();
+		for (int t = 0; t < facesInChunk; t++, index++) {
+			readFacetB(dataBuffer, index);
+		}
+	}
+  }
+  
+  /**
+   * Reads the number of faces that follows the 80 byte header and makes sure the file is actually big enough to hold them
+   * 
+   * @param header The header positioned at the start of the STL
+   * @param fileSize The size of the STL or -1 if it isn't known yet
+   */
+  private long readFaceCount(ByteBuffer header, long fileSize) throws IOException {
+	header.position(BINARY_HEADER_SIZE - 4);
+	long numberOfFaces = header.getInt() & 0xffffffffL;
+	if (numberOfFaces > Integer.MAX_VALUE) {
+		throw new IOException("STL Format Error: " + numberOfFaces + " facets is more than can be loaded");
+	}
+	
+	if (fileSize >= 0) {
+		long expectedSize = BINARY_HEADER_SIZE + numberOfFaces * BINARY_FACET_SIZE;
+		if (fileSize < expectedSize) {
+			throw new IOException("STL Format Error: header claims " + numberOfFaces + " facets which needs " + expectedSize + " bytes, but the file is only " + fileSize + " bytes");
+		}
+		if (fileSize > expectedSize) {
+			logger.warn("Ignoring {} bytes after the last facet", fileSize - expectedSize);
+		}
+	}
+	
+	return numberOfFaces;
+  }
+  
+  //Unlike InputStream.read(), this keeps reading until the buffer is full or the stream ends
+  private static int readFully(InputStream data, byte[] buffer, int length) throws IOException {
+	int totalRead = 0;
+	while (totalRead < length) {
+		int bytesRead = data.read(buffer, totalRead, length - totalRead);
+		if (bytesRead < 0) {
+			break;
+		}
+		totalRead += bytesRead;
+	}
+	
+	return totalRead;
+  }
+  
   private void readASCIIFile(InputStream inputStream) throws IOException {
 		setAscii(true);
 		
@@ -370,8 +423,9 @@ public abstract class StlFile<T> {
   
   private boolean isASCIIFile(PushbackInputStream pushStream, int determinantSize) throws IOException {
 		byte sampleSize[] = new byte[determinantSize];
-		int bytesRead = pushStream.read(sampleSize);
-		pushStream.unread(sampleSize);
+		int bytesRead = readFully(pushStream, sampleSize, sampleSize.length);
+		//Only push back what was actually read, otherwise a short file would be padded out with zeros
+		pushStream.unread(sampleSize, 0, bytesRead);
 		
 		//If less than 80 bytes, that breaks the binary spec
 		if (bytesRead < 80) {
@@ -420,12 +474,17 @@ public abstract class StlFile<T> {
   public void load(InputStream inputStream, boolean rewriteNormalsWithRightHandRule) throws IOException {
 	this.rewriteNormalsWithRightHandRule = rewriteNormalsWithRightHandRule;
 	int determinantSize = 2048;
+	//Remember where the file starts before anything is read so a binary file can be mapped instead of read
+	FileChannel channel = inputStream instanceof FileInputStream?((FileInputStream)inputStream).getChannel():null;
+	long start = channel != null?channel.position():0;
 	PushbackInputStream pushStream = new PushbackInputStream(inputStream, determinantSize);
 	triangles = createSet();
 	
 	try {
 		if (isASCIIFile(pushStream, determinantSize)) {
 			readASCIIFile(pushStream);
+		} else if (channel != null) {
+			readBinaryFile(channel, start);
 		} else {
 			readBinaryFile(pushStream);
 		}
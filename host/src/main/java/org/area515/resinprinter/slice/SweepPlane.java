@@ -0,0 +1,190 @@
+package org.area515.resinprinter.slice;
+
+import java.util.Arrays;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Shape3d;
+import org.area515.resinprinter.stl.Triangle3d;
+import org.area515.resinprinter.stl.TriangleMesh;
+
+/**
+ * Active triangle table for slicing layers in order.
+ *
+ * Instead of asking which triangles intersect every new z from scratch, the sweep only looks at the triangles whose zmin
+ * or zmax was crossed since the last layer. Those triangles enter or leave the active table and every other active
+ * triangle is carried over untouched. The cross section of an active triangle is only computed for the two edges that
+ * straddle the plane, which avoids building a plane and testing all three edges for every triangle on every layer.
+ * The Triangle3d view of a face is built when it enters the table and let go when it leaves.
+ *
+ * The sweep works in either direction and tolerates jumps, but it's only cheaper than the ZIntervalIndex when the
+ * layers are visited sequentially. This class is not thread safe.
+ */
+public class SweepPlane {
+	private TriangleMesh mesh;
+	private int[] faces;
+	private Triangle3d[] triangles;
+	private double[] zmin;
+	private double[] zmax;
+	private int[] byZMin;
+	private double[] sortedZMin;
+	private int[] byZMax;
+	private double[] sortedZMax;
+
+	private boolean[] active;
+	private int[] activeTriangles = new int[0];
+	private int[] enteringTriangles = new int[16];
+	private Double currentZ;
+
+	/**
+	 * @param faces the mesh faces to slice, every other array and every triangle index is in the order of this array
+	 */
+	public SweepPlane(TriangleMesh mesh, int[] faces, double[] zmin, double[] zmax) {
+		this.mesh = mesh;
+		this.faces = faces;
+		this.zmin = zmin;
+		this.zmax = zmax;
+		this.triangles = new Triangle3d[faces.length];
+		this.active = new boolean[faces.length];
+		byZMin = ZIntervalIndex.sortFaces(zmin);
+		byZMax = ZIntervalIndex.sortFaces(zmax);
+		sortedZMin = new double[faces.length];
+		sortedZMax = new double[faces.length];
+		for (int t = 0; t < faces.length; t++) {
+			sortedZMin[t] = zmin[byZMin[t]];
+			sortedZMax[t] = zmax[byZMax[t]];
+		}
+	}
+
+	/**
+	 * Moves the plane to z and returns every triangle where zmin <= z <= zmax in load order.
+	 * The returned array is owned by the sweep and is only valid until the next call.
+	 */
+	public int[] advanceTo(double z) {
+		int enteringCount = 0;
+		boolean anyLeft = false;
+		double fromZ = currentZ == null ? Double.NEGATIVE_INFINITY : currentZ;
+		double low = Math.min(fromZ, z);
+		double high = Math.max(fromZ, z);
+
+		//Only triangles with a zmin or zmax between the last plane and this plane could have changed state
+		for (int pass = 0; pass < 2; pass++) {
+			int[] order = pass == 0 ? byZMin : byZMax;
+			double[] sorted = pass == 0 ? sortedZMin : sortedZMax;
+			for (int t = lowerBound(sorted, low); t < sorted.length && sorted[t] <= high; t++) {
+				int triangle = order[t];
+				boolean intersects = z >= zmin[triangle] && z <= zmax[triangle];
+				if (intersects == active[triangle]) {
+					continue;
+				}
+
+				active[triangle] = intersects;
+				triangles[triangle] = intersects?mesh.getTriangle(faces[triangle]):null;
+				if (intersects) {
+					if (enteringCount == enteringTriangles.length) {
+						enteringTriangles = Arrays.copyOf(enteringTriangles, enteringCount * 2);
+					}
+					enteringTriangles[enteringCount++] = triangle;
+				} else {
+					anyLeft = true;
+				}
+			}
+		}
+
+		currentZ = z;
+		if (enteringCount == 0 && !anyLeft) {
+			return activeTriangles;
+		}
+
+		//Merge the survivors with the new arrivals so that the table stays in load order
+		Arrays.sort(enteringTriangles, 0, enteringCount);
+		int[] merged = new int[activeTriangles.length + enteringCount];
+		int mergedCount = 0;
+		int entering = 0;
+		for (int t = 0; t < activeTriangles.length; t++) {
+			int triangle = activeTriangles[t];
+			if (!active[triangle]) {
+				continue;
+			}
+			while (entering < enteringCount && enteringTriangles[entering] < triangle) {
+				merged[mergedCount++] = enteringTriangles[entering++];
+			}
+			merged[mergedCount++] = triangle;
+		}
+		while (entering < enteringCount) {
+			merged[mergedCount++] = enteringTriangles[entering++];
+		}
+
+		activeTriangles = mergedCount == merged.length ? merged : Arrays.copyOf(merged, mergedCount);
+		return activeTriangles;
+	}
+
+	/**
+	 * @return the Triangle3d view of an active triangle
+	 */
+	public Triangle3d getTriangle(int triangleIndex) {
+		return triangles[triangleIndex];
+	}
+
+	public int getActiveCount() {
+		return activeTriangles.length;
+	}
+
+	/**
+	 * Equivalent of Triangle3d.getZIntersection() for an active triangle. A triangle that is cut cleanly through two
+	 * of its edges only intersects those two edges, and it does so with the same math so the loops that get linked
+	 * afterwards are identical. Anything that touches a vertex or lies flat on the plane is handed back to Triangle3d
+	 * since those cases need its tolerance handling.
+	 */
+	public Shape3d getZIntersection(int triangleIndex, double z) {
+		Triangle3d triangle = triangles[triangleIndex];
+		Point3d[] points = triangle.getBrokenEnds();
+		for (int t = 0; t < 3; t++) {
+			double distance = points[t].z - z;
+			if (distance <= Triangle3d.EQUAL_TOLERANCE && distance >= -Triangle3d.EQUAL_TOLERANCE) {
+				return triangle.getZIntersection(z);
+			}
+		}
+
+		Point3d first = null;
+		Point3d second = null;
+		for (int t = 0; t < 3; t++) {
+			Point3d start = points[t];
+			Point3d end = points[t < 2 ? t + 1 : 0];
+			if ((start.z < z) == (end.z < z)) {
+				continue;
+			}
+
+			Point3d intersection = triangle.getEdgeZIntersection(t, z);
+			if (intersection == null) {
+				return triangle.getZIntersection(z);
+			}
+			if (first == null) {
+				first = intersection;
+			} else {
+				second = intersection;
+			}
+		}
+
+		if (second == null) {
+			return triangle.getZIntersection(z);
+		}
+
+		return new Line3d(first, second, triangle.getNormal(), triangle, true);
+	}
+
+	private static int lowerBound(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sorted[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
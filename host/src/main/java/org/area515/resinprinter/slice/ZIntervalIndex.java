@@ -0,0 +1,180 @@
+package org.area515.resinprinter.slice;
+
+import java.util.Arrays;
+
+/**
+ * Static interval index over the [zmin, zmax] extents of a set of faces.
+ *
+ * Faces are sorted by zmin and a max-zmax tree is laid over that sorted order. A query walks the prefix of faces whose
+ * zmin is below the plane and prunes every subtree whose largest zmax is still below the plane, so a slice only visits
+ * the faces that actually straddle it instead of the entire model.
+ *
+ * The tree is implicit, the subtree of faces low to high is kept at the face in the middle of them, so it has exactly one
+ * node per face. Its maximums are floats rounded up, which can only keep a subtree that could have been pruned, never
+ * prune one that has a straddling face. The zmin and zmax arrays are sorted in place and kept rather than copied.
+ *
+ * The index is immutable once built and can be queried from several threads at once.
+ */
+public class ZIntervalIndex {
+	private static final int[] NO_CANDIDATES = new int[0];
+
+	private int[] sortedFaces;
+	private double[] sortedZMin;
+	private double[] sortedZMax;
+	private float[] subtreeZMax;
+
+	/**
+	 * The index takes over zmin and zmax and reorders them, so they mustn't be used by the caller afterwards.
+	 */
+	public ZIntervalIndex(double[] zmin, double[] zmax) {
+		if (zmin.length != zmax.length) {
+			throw new IllegalArgumentException("There must be exactly one zmax for every zmin");
+		}
+
+		int size = zmin.length;
+		sortedFaces = sortFaces(zmin);
+		sortedZMin = permute(zmin, sortedFaces);
+		sortedZMax = permute(zmax, sortedFaces);
+
+		subtreeZMax = new float[size];
+		if (size > 0) {
+			buildSubtree(0, size - 1);
+		}
+	}
+
+	//Only one temporary array is alive at a time
+	private static double[] permute(double[] values, int[] order) {
+		double[] sorted = new double[values.length];
+		for (int t = 0; t < order.length; t++) {
+			sorted[t] = values[order[t]];
+		}
+		System.arraycopy(sorted, 0, values, 0, values.length);
+		return values;
+	}
+
+	/**
+	 * Stable sort of face indexes by the given key. This is done without boxing since it needs to work on models with millions of faces.
+	 */
+	static int[] sortFaces(double[] keys) {
+		int[] faces = new int[keys.length];
+		for (int t = 0; t < faces.length; t++) {
+			faces[t] = t;
+		}
+		sortFaces(faces, new int[faces.length], keys, 0, faces.length);
+		return faces;
+	}
+
+	private static void sortFaces(int[] faces, int[] scratch, double[] keys, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		sortFaces(faces, scratch, keys, from, middle);
+		sortFaces(faces, scratch, keys, middle, to);
+		if (keys[faces[middle - 1]] <= keys[faces[middle]]) {
+			return;
+		}
+
+		System.arraycopy(faces, from, scratch, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int t = from; t < to; t++) {
+			if (right >= to || (left < middle && keys[scratch[left]] <= keys[scratch[right]])) {
+				faces[t] = scratch[left++];
+			} else {
+				faces[t] = scratch[right++];
+			}
+		}
+	}
+
+	private float buildSubtree(int low, int high) {
+		int middle = (low + high) >>> 1;
+		float max = roundUp(sortedZMax[middle]);
+		if (low < middle) {
+			max = Math.max(max, buildSubtree(low, middle - 1));
+		}
+		if (middle < high) {
+			max = Math.max(max, buildSubtree(middle + 1, high));
+		}
+
+		subtreeZMax[middle] = max;
+		return max;
+	}
+
+	private static float roundUp(double value) {
+		float rounded = (float)value;
+		return rounded < value ? Math.nextUp(rounded) : rounded;
+	}
+
+	public int size() {
+		return sortedFaces.length;
+	}
+
+	/**
+	 * Finds every face where zmin <= z <= zmax, which is the same inclusive test as Triangle3d.intersectsZ().
+	 *
+	 * @param z height of the slicing plane
+	 * @return the original face indexes in ascending order so that callers visit faces in their load order
+	 */
+	public int[] findIntersecting(double z) {
+		int prefixLength = upperBound(z);
+		if (prefixLength == 0) {
+			return NO_CANDIDATES;
+		}
+
+		int[] candidates = new int[16];
+		int found = 0;
+		int[] stack = new int[64];
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+		stack[stackSize++] = sortedFaces.length - 1;
+		while (stackSize > 0) {
+			int high = stack[--stackSize];
+			int low = stack[--stackSize];
+			int middle = (low + high) >>> 1;
+			if (low >= prefixLength || subtreeZMax[middle] < z) {
+				continue;
+			}
+
+			if (middle < prefixLength && sortedZMax[middle] >= z) {
+				if (found == candidates.length) {
+					candidates = Arrays.copyOf(candidates, found * 2);
+				}
+				candidates[found++] = sortedFaces[middle];
+			}
+
+			if (stackSize + 4 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			if (low < middle) {
+				stack[stackSize++] = low;
+				stack[stackSize++] = middle - 1;
+			}
+			if (middle < high) {
+				stack[stackSize++] = middle + 1;
+				stack[stackSize++] = high;
+			}
+		}
+
+		candidates = Arrays.copyOf(candidates, found);
+		Arrays.sort(candidates);
+		return candidates;
+	}
+
+	//Number of faces where zmin <= z
+	private int upperBound(double z) {
+		int low = 0;
+		int high = sortedZMin.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedZMin[middle] <= z) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
@@ -9,15 +9,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
@@ -29,6 +26,7 @@ import org.area515.resinprinter.stl.Line3d;
 import org.area515.resinprinter.stl.Point3d;
 import org.area515.resinprinter.stl.Shape3d;
 import org.area515.resinprinter.stl.Triangle3d;
+import org.area515.resinprinter.stl.TriangleMesh;
 import org.area515.resinprinter.stl.XYComparatord;
 import org.area515.util.Log4jTimer;
 
@@ -51,11 +49,16 @@ public class ZSlicer {
 	 private boolean keepTrackOfErrors = false;
 	 private boolean rewriteNormalsWithRightHandRule = false;
 	 private PolygonMendingMechanism fixBrokenLoops;
+	 private TriangleMesh mesh;
+	 private int[] slicedFaces;
+	 private ZIntervalIndex zIndex;
+	 private boolean sweepPlaneSlicing = false;
+	 private SweepPlane sweepPlane;
 	 
 	 //These are the variables per z
 	 private List<StlError> errors = new ArrayList<StlError>();
 	 private List<Polygon> fillInPolygons = null;
-	 private List<Line3d> fillInScanLines = null;
+	 private RunLengthLayer sliceLayer = null;
 	 private int z = 0;
 	 private int sliceMaxX;
 	 private int sliceMaxY;
@@ -77,9 +80,6 @@ public class ZSlicer {
 		 this.fixBrokenLoops = fixBrokenLoops;
 		 
 		 stlFile = new StlFile<Triangle3d>() {
-			private Triangle3d lastTriangle;
-			private Triangle3d firstTriangle;
-			
 			@Override
 			protected Point3d buildPoint(double x, double y, double z) {
 				return new Point3d(
@@ -90,16 +90,18 @@ public class ZSlicer {
 			
 			@Override
 			public Set<Triangle3d> createSet() {
-				return new TreeSet<Triangle3d>();
+				//The facets are stored in the mesh instead, Triangle3d objects are only built when they are needed
+				mesh = new TriangleMesh();
+				return Collections.emptySet();
 			}
 			
 			@Override
 			protected void buildTriangle(Point3d[] triangle, Point3d normal) {
-				Triangle3d newTriangle = new Triangle3d(triangle, normal, null, null, triangles.size());
-				if (lastTriangle != null) {
-					lastTriangle.setNextTriangle(newTriangle);
-				}
-			    triangles.add(newTriangle);
+				mesh.addFace(
+						mesh.addVertex(triangle[0].x, triangle[0].y, triangle[0].z), 
+						mesh.addVertex(triangle[1].x, triangle[1].y, triangle[1].z), 
+						mesh.addVertex(triangle[2].x, triangle[2].y, triangle[2].z), 
+						normal.x, normal.y, normal.z);
 			    
 			    zmin = Math.min(triangle[0].z, Math.min(triangle[1].z, Math.min(triangle[2].z, zmin)));
 			    zmax = Math.max(triangle[0].z, Math.max(triangle[1].z, Math.max(triangle[2].z, zmax)));
@@ -107,14 +109,30 @@ public class ZSlicer {
 			    xmax = Math.max(triangle[0].x, Math.max(triangle[1].x, Math.max(triangle[2].x, xmax)));
 			    ymin = Math.min(triangle[0].y, Math.min(triangle[1].y, Math.min(triangle[2].y, ymin)));
 			    ymax = Math.max(triangle[0].y, Math.max(triangle[1].y, Math.max(triangle[2].y, ymax)));
-			    lastTriangle = newTriangle;
-			    if (firstTriangle == null) {
-			    	firstTriangle = newTriangle;
-			    }
+			}
+			
+			@Override
+			protected void buildFacet(double[] facet) {
+				//Decode straight into the mesh instead of building points that would just be thrown away
+				double scale = ZSlicer.this.precisionScaler * ZSlicer.this.stlScale;
+				int vertex1 = addVertex(facet[3] * scale, facet[4] * scale, facet[5] * scale);
+				int vertex2 = addVertex(facet[6] * scale, facet[7] * scale, facet[8] * scale);
+				int vertex3 = addVertex(facet[9] * scale, facet[10] * scale, facet[11] * scale);
+				mesh.addFace(vertex1, vertex2, vertex3, facet[0], facet[1], facet[2]);
+			}
+			
+			private int addVertex(double x, double y, double z) {
+			    zmin = Math.min(z, zmin);
+			    zmax = Math.max(z, zmax);
+			    xmin = Math.min(x, xmin);
+			    xmax = Math.max(x, xmax);
+			    ymin = Math.min(y, ymin);
+			    ymax = Math.max(y, ymax);
+				return mesh.addVertex(x, y, z);
 			}
 			
 			public Triangle3d getFirstTriangle() {
-				return firstTriangle;
+				return mesh == null || mesh.getFaceCount() == 0?null:mesh.getTriangle(0);
 			}
 		  };
 	 }
@@ -338,12 +356,8 @@ public class ZSlicer {
 		  return polygons;
 	 }
 	 
-	 public Triangle3d getFirstTriangle() {
-		 return stlFile.getFirstTriangle();
-	 }
-	 
-	 public Set<Triangle3d> getAllTriangles() {
-		 return stlFile.getTriangles();
+	 public TriangleMesh getTriangleMesh() {
+		 return mesh;
 	 }
 	 
 	 private boolean isIntersecting(Line3d line, int x, int y) {
@@ -426,13 +440,12 @@ public class ZSlicer {
 	 //NOT used in org.area515.resinprinter.job.STLImageRenderer.STLImageRenderer
 	 private List<Shape3d> getPolygonsOnSlice() {
 		 List<Shape3d> shapes = new ArrayList<Shape3d>();
-		  for (Triangle3d triangle : stlFile.getTriangles()) {
-			  //if (triangle.intersectsZ(z + zOffset)) {
-				  Shape3d shape = triangle.getZIntersection(z * precisionScaler * sliceResolution + zOffset);
-				  if (shape != null) {
-					  shapes.add(shape);
-				  }
-			  //}
+		  double actualZ = z * precisionScaler * sliceResolution + zOffset;
+		  for (int triangleIndex : zIndex.findIntersecting(actualZ)) {
+			  Shape3d shape = mesh.getTriangle(slicedFaces[triangleIndex]).getZIntersection(actualZ);
+			  if (shape != null) {
+				  shapes.add(shape);
+			  }
 		  }
 		  
 		  return shapes;
@@ -497,12 +510,10 @@ public class ZSlicer {
 		  }
 		  
 		  //Red alpha
-		  if (fillInScanLines != null) {
+		  if (sliceLayer != null) {
 			  g.setColor(new Color(0xff, 0xff/2, 0xff/2, 75));
 			  g.setBackground(new Color(0xff, 0xff/2, 0xff/2, 75));
-			  for (Line3d currentLine : fillInScanLines) {
-				  g.drawLine((int)currentLine.getPointOne().x, (int)currentLine.getPointOne().y, (int)currentLine.getPointTwo().x, (int)currentLine.getPointTwo().y);
-			  }
+			  sliceLayer.paint(g);
 		  }
 	 }
 	 
@@ -520,19 +531,9 @@ public class ZSlicer {
 	    Kernel kernel = new Kernel(3, 3, data);
 	    ConvolveOp convolve = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
 	    */
-		if (fillInScanLines != null) {
-			for (Line3d currentLine : fillInScanLines) {
-				int x1 = (int)Math.round(currentLine.getPointOne().x);
-				int y1 = (int)Math.round(currentLine.getPointOne().y);
-				int x2 = (int)Math.round(currentLine.getPointTwo().x);
-				int y2 = (int)Math.round(currentLine.getPointTwo().y);
-				
-				g.setColor(Color.white);
-				g.drawLine(x1, y1, x2, y2);
-				//g.setColor(Color.darkGray);
-				//g.drawLine(x1, y1, x1, y1);
-				//g.drawLine(x2, y2, x2, y2);
-			}
+		if (sliceLayer != null) {
+			g.setColor(Color.white);
+			sliceLayer.paint(g);
 		}
 		
 		if (fillInPolygons != null) {
@@ -597,7 +598,6 @@ public class ZSlicer {
 		  sliceMaxY = -Integer.MAX_VALUE;
 		  sliceMinX = Integer.MAX_VALUE;
 		  sliceMinY = Integer.MAX_VALUE;
-		  ForkJoinPool pool = new ForkJoinPool();
 		  List<Face3d> trianglesAndBrokenFacesForMazeTraversal = new ArrayList<Face3d>();
 		  List<List<Line3d>> completedFillInLoops = new ArrayList<List<Line3d>>();
 		  List<List<Line3d>> brokenLoops = new ArrayList<List<Line3d>>();
@@ -610,16 +610,21 @@ public class ZSlicer {
 		  logger.info("===================");
 		  logger.info("ZSlice started", ()->Log4jTimer.startTimer("sliceTime"));
 		  Set<Line3d> zIntersectionsBySortedX = new TreeSet<Line3d>(new XYComparatord(Triangle3d.EQUAL_TOLERANCE));
-		  for (Triangle3d triangle : stlFile.getTriangles()) {
+		  double actualZ = (double)z * precisionScaler * sliceResolution + zOffset;
+		  
+		  //Only the triangles that straddle this z are visited, the rest of the model is never touched
+		  SweepPlane sweep = getSweepPlane();
+		  int[] candidateTriangles = sweep != null?sweep.advanceTo(actualZ):zIndex.findIntersecting(actualZ);
+		  for (int triangleIndex : candidateTriangles) {
+			  Triangle3d triangle = sweep != null?sweep.getTriangle(triangleIndex):mesh.getTriangle(slicedFaces[triangleIndex]);
 			  if (watchedTriangles != null && watchedTriangles.contains(triangle)) {
 				  logger.debug("Watched triangle:{}", ()-> translateTriangle(triangle));
 			  }
 			  /*if (triangle.onZeroZ())  {
 				  logger.debug("on z");//123456
 			  }*/
-			  double actualZ = (double)z * precisionScaler * sliceResolution + zOffset;
 			  if (triangle.intersectsZ(actualZ)) {
-				  Shape3d shape = triangle.getZIntersection(actualZ);
+				  Shape3d shape = sweep != null?sweep.getZIntersection(triangleIndex, actualZ):triangle.getZIntersection(actualZ);
 				  if (shape instanceof Triangle3d) {
 					  //TODO: This is experimental
 					  //placeIntoCompletedLoopList(((Triangle3d)shape).getLines(), completedFillInLoops);
@@ -640,29 +645,25 @@ public class ZSlicer {
 			  }//*/
 		  }
 		  
-		  logger.info("IntersectionTime:{}", ()->Log4jTimer.splitTimer("sliceTime"));
+		  logger.info("IntersectionTime:{} candidates:{}/{}", ()->Log4jTimer.splitTimer("sliceTime"), ()->candidateTriangles.length, ()->slicedFaces.length);
 		  logger.debug("===================");
 		  logger.debug("zIntersectionsBySortedX:{}", zIntersectionsBySortedX.size());
 		  logger.debug("completedFillInLoops:{}", completedFillInLoops.size());
 		  logger.debug("===================");
 		  
-		  //Even though this algorithm is structured to be n^2 it executes in (n * constant) time because of the comparator
 		  //We join a set of loose lines into working loops of lines
+		  //The endpoint index only hands back the loops with an end near the line, so this runs in (n * constant) time
 		  //This algorithm is slightly more efficient than the below algorithm since reversals are less expensive
-		  List<List<Line3d>> workingLoops = new ArrayList<List<Line3d>>();
-		  Iterator<Line3d> lineIterator = zIntersectionsBySortedX.iterator();
-		  nextLine : while (lineIterator.hasNext()) {
-			  Line3d currentLine = lineIterator.next();
-			  
-			  Iterator<List<Line3d>> workingLoopIter = workingLoops.iterator();
-			  while (workingLoopIter.hasNext()) {
-				  List<Line3d> currentWorkingLoop = workingLoopIter.next();
-				  switch (findLinkage(currentWorkingLoop, currentLine)) {
+		  LoopEndpointIndex workingLoops = new LoopEndpointIndex();
+		  nextLine : for (Line3d currentLine : zIntersectionsBySortedX) {
+			  for (LoopEndpointIndex.WorkingLoop currentWorkingLoop : workingLoops.findLoopsNear(currentLine.getPointOne(), currentLine.getPointTwo(), null)) {
+				  switch (findLinkage(currentWorkingLoop.getLines(), currentLine)) {
 				  case FoundCompletion :
-					  placeIntoCompletedLoopList(currentWorkingLoop, completedFillInLoops);
-					  workingLoopIter.remove();
+					  placeIntoCompletedLoopList(currentWorkingLoop.getLines(), completedFillInLoops);
+					  workingLoops.remove(currentWorkingLoop);
 					  continue nextLine;
 				  case FoundLink :
+					  workingLoops.reindex(currentWorkingLoop);
 					  continue nextLine;
 				  }
 			  }
@@ -685,7 +686,7 @@ public class ZSlicer {
 			  logger.debug("completedFillInLoops lines:{}", value);
 			  logger.debug("workingLoops count:{}", + workingLoops.size());
 			  value = 0;
-			  for (List<Line3d> loop : workingLoops) {
+			  for (List<Line3d> loop : workingLoops.getLoops()) {
 				  value += loop.size();
 			  }
 			  logger.debug("workingLoops lines:{}", value);
@@ -696,27 +697,26 @@ public class ZSlicer {
 		  //Empirically I've found that about half of all loops need to be joined with this method
 		  //Now combine workingLoops into completedLoops. This algorithm is a bit more inefficient
 		  //but there shouldn't be that many stray loops left to connect...
-		  nextWorkingLoop : while (workingLoops.size() > 0) {
-			  List<Line3d> currentWorkingLoop = workingLoops.get(0);
+		  nextWorkingLoop : while (!workingLoops.isEmpty()) {
+			  LoopEndpointIndex.WorkingLoop currentWorkingLoop = workingLoops.getFirst();
 
-			  for (int otherIndex = 1; otherIndex < workingLoops.size(); otherIndex++) {
-				  List<Line3d> otherWorkingLoop = workingLoops.get(otherIndex);
-				  
-				  switch (findLinkage(currentWorkingLoop, otherWorkingLoop)) {
+			  for (LoopEndpointIndex.WorkingLoop otherWorkingLoop : workingLoops.findLoopsNear(currentWorkingLoop.getHead(), currentWorkingLoop.getTail(), currentWorkingLoop)) {
+				  switch (findLinkage(currentWorkingLoop.getLines(), otherWorkingLoop.getLines())) {
 				  case FoundCompletion :
-					  placeIntoCompletedLoopList(currentWorkingLoop, completedFillInLoops);
-					  workingLoops.remove(otherIndex);
-					  workingLoops.remove(0);
+					  placeIntoCompletedLoopList(currentWorkingLoop.getLines(), completedFillInLoops);
+					  workingLoops.remove(otherWorkingLoop);
+					  workingLoops.remove(currentWorkingLoop);
 					  continue nextWorkingLoop;
 				  case FoundLink :
-					  workingLoops.remove(otherIndex);
+					  workingLoops.remove(otherWorkingLoop);
+					  workingLoops.reindex(currentWorkingLoop);
 					  continue nextWorkingLoop;
 				  }
 			  }
 			  
-			  logger.debug("Broken loop discovered[{}]:{}", currentWorkingLoop.size(), currentWorkingLoop);
-			  brokenLoops.add(currentWorkingLoop);
-			  workingLoops.remove(0);
+			  logger.debug("Broken loop discovered[{}]:{}", currentWorkingLoop.getLines().size(), currentWorkingLoop.getLines());
+			  brokenLoops.add(currentWorkingLoop.getLines());
+			  workingLoops.remove(currentWorkingLoop);
 		  }
 		  
 		  logger.info("Secondary linkage search:{}", ()->Log4jTimer.splitTimer("sliceTime"));
@@ -732,7 +732,7 @@ public class ZSlicer {
 			  logger.debug("completedFillInLoops lines:{}", value);
 			  logger.debug("workingLoops count:{}", workingLoops.size());
 			  value = 0;
-			  for (List<Line3d> loop : workingLoops) {
+			  for (List<Line3d> loop : workingLoops.getLoops()) {
 				  value += loop.size();
 			  }
 			  logger.debug("workingLoops lines:{}", value);
@@ -844,67 +844,34 @@ public class ZSlicer {
 			  logger.info("Broken loop mending:{}", ()->Log4jTimer.splitTimer("sliceTime"));
 		  }
 		  
-		  //Preperation work for the Scanline algorithm
-		  Map<Integer, List<Line3d>> inRangeLines = new HashMap<Integer, List<Line3d>>();
-		  int breakupSize = (sliceMaxY - sliceMinY) / ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK;
-		  if (completedFillInLoops.size() % ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK > 0) {
-			  breakupSize++;
-		  }
+		  //Preperation work for the Scanline algorithm, the work splits itself up based on how many edges each band of rows crosses
+		  List<Line3d> fillInLines = new ArrayList<Line3d>();
 		  for (List<Line3d> currentPolygon : completedFillInLoops) {
-			 for (Line3d currentLine : currentPolygon) {
-				 double minY = currentLine.getMinY();
-				 double maxY = currentLine.getMaxY();
-				 for (int t = 0; t < breakupSize; t++) {
-					 if (minY <= (double)(t + 1) * ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK + sliceMinY  &&
-					     maxY >= (double)t * ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK + sliceMinY) {
-						 List<Line3d> range = inRangeLines.get(t);
-						 if (range == null) {
-							 range = new ArrayList<Line3d>();
-							 inRangeLines.put(t, range);
-						 }
-						 
-						 range.add(currentLine); 
-					 }
-				 }
-			 }
-		  }
-		  logger.info("Break scanline up into pieces:{}", ()->Log4jTimer.splitTimer("sliceTime"));
-
-		  List<Future<ScanlineFillPolygonWork>> completedWork = new ArrayList<Future<ScanlineFillPolygonWork>>();
-		  for (int y = 0; y < breakupSize; y++) {
-			  List<Line3d> inRange = inRangeLines.get(y);
-			  if (inRange == null) {
-				  continue;
-			  }
-			  
-			  ScanlineFillPolygonWork work = new ScanlineFillPolygonWork(
-					  inRange, 
-					  watchedTriangles,
-					  watchedYs,
-					  y * ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK + sliceMinY,
-					  (y + 1) * ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK + sliceMinY - 1,
-					  z);
-			  completedWork.add(pool.submit(work));
+			  fillInLines.addAll(currentPolygon);
 		  }
+		  Future<ScanlineFillPolygonWork> completedWork = SlicingExecutor.getPool().submit(new ScanlineFillPolygonWork(
+				  fillInLines, 
+				  watchedTriangles,
+				  watchedYs,
+				  sliceMinY,
+				  sliceMaxY,
+				  z));
 		  logger.info("Submit scanline work:{}", ()->Log4jTimer.splitTimer("sliceTime"));
 		  
-		  fillInScanLines = new ArrayList<Line3d>();
+		  sliceLayer = RunLengthLayer.EMPTY;
 		  buildArea = 0;
-		  for (Future<ScanlineFillPolygonWork> currentWork : completedWork) {
-			  ScanlineFillPolygonWork work;
-				try {
-					work = currentWork.get();
-					if (keepTrackOfErrors) {
-						  for (Face3d currentInsideOutPolygon : work.getInsideOutPolygons()) {
-							  errors.add(new StlError((Triangle3d)currentInsideOutPolygon, ErrorType.Insideout));
-						  }
-					}
-					
-					fillInScanLines.addAll(work.getScanLines());
-					buildArea += work.getBuildArea();
-				} catch (InterruptedException | ExecutionException e) {
-					logger.error("Error in executing polygon work", e);
-				}
+		  try {
+			  ScanlineFillPolygonWork work = completedWork.get();
+			  if (keepTrackOfErrors) {
+				  for (Face3d currentInsideOutPolygon : work.getInsideOutPolygons()) {
+					  errors.add(new StlError((Triangle3d)currentInsideOutPolygon, ErrorType.Insideout));
+				  }
+			  }
+			  
+			  sliceLayer = work.getLayer();
+			  buildArea = work.getBuildArea();
+		  } catch (InterruptedException | ExecutionException e) {
+			  logger.error("Error in executing polygon work", e);
 		  }
 		  logger.info("Wait for scanline work:{}", ()->Log4jTimer.splitTimer("sliceTime"));
 		  
@@ -925,18 +892,85 @@ public class ZSlicer {
 				  }
 				  logger.debug("");
 			  }
-			  logger.debug("Working Loops({}):{}",workingLoops.size(), workingLoops);
+			  logger.debug("Working Loops({}):{}",workingLoops.size(), workingLoops.getLoops());
 			  logger.debug("======");//*/
 			  logger.debug("Print working loops:{}", ()->Log4jTimer.splitTimer("sliceTime"));
 		  }
-		  pool.shutdown();
 		  logger.info("ZSlice complete:{}", ()->Log4jTimer.completeTimer("sliceTime"));
 		  return completedFillInLoops;
 	 }
 	 
+	 /**
+	  * Sweep plane slicing keeps an active triangle table between layers instead of querying the z index for every layer.
+	  * It's the faster choice when layers are sliced in order, like they are during a print.
+	  */
+	 public void setSweepPlaneSlicing(boolean sweepPlaneSlicing) {
+		 this.sweepPlaneSlicing = sweepPlaneSlicing;
+		 if (!sweepPlaneSlicing) {
+			 sweepPlane = null;
+		 }
+	 }
+	 
+	 public boolean isSweepPlaneSlicing() {
+		 return sweepPlaneSlicing;
+	 }
+	 
+	 private SweepPlane getSweepPlane() {
+		 if (!sweepPlaneSlicing) {
+			 return null;
+		 }
+		 
+		 if (sweepPlane == null) {
+			 double[] triangleZMin = new double[slicedFaces.length];
+			 double[] triangleZMax = new double[slicedFaces.length];
+			 for (int t = 0; t < slicedFaces.length; t++) {
+				 triangleZMin[t] = mesh.getMinZ(slicedFaces[t]);
+				 triangleZMax[t] = mesh.getMaxZ(slicedFaces[t]);
+			 }
+			 sweepPlane = new SweepPlane(mesh, slicedFaces, triangleZMin, triangleZMax);
+		 }
+		 
+		 return sweepPlane;
+	 }
+	 
+	 /**
+	  * Creates a slicer that shares the model this slicer has already loaded, but keeps its own layer state. The loaded model
+	  * is never modified once loadFile() returns, so each fork can slice a different layer at the same time as the others.
+	  * Forks always find their triangles with the shared z index. A fork only slices some of the layers, so a sweep plane
+	  * of its own would never move one layer at a time and would be another copy of the largest structure of the model.
+	  */
+	 public ZSlicer forkSlicer() {
+		 ZSlicer fork = new ZSlicer(stlScale, pixelsPerMMX, pixelsPerMMY, sliceResolution, zOffset, keepTrackOfErrors, rewriteNormalsWithRightHandRule, fixBrokenLoops);
+		 fork.precisionScaler = precisionScaler;
+		 fork.imageOffsetX = imageOffsetX;
+		 fork.imageOffsetY = imageOffsetY;
+		 fork.stlFile = stlFile;
+		 fork.mesh = mesh;
+		 fork.slicedFaces = slicedFaces;
+		 fork.zIndex = zIndex;
+		 fork.z = z;
+		 return fork;
+	 }
+	 
 	 public void loadFile(InputStream stream, Double buildPlatformXPixels, Double buildPlatformYPixels) throws IOException {
 		  logger.info("Load file start", ()->Log4jTimer.startTimer("fileLoadTime"));
 		  stlFile.load(stream, rewriteNormalsWithRightHandRule);
+		  
+		  mesh.trimToSize();
+		  logger.info("Mesh faces:{} vertices:{}", mesh.getFaceCount(), mesh.getVertexCount());
+		  
+		  //Build the z interval index in the same order a sorted set of triangles would have visited them so slicing visits them in the same order it always has
+		  //The index sorts the extents in place and keeps them, so they aren't held here as well
+		  slicedFaces = mesh.getDistinctFaces();
+		  double[] triangleZMin = new double[slicedFaces.length];
+		  double[] triangleZMax = new double[slicedFaces.length];
+		  for (int t = 0; t < slicedFaces.length; t++) {
+			  triangleZMin[t] = mesh.getMinZ(slicedFaces[t]);
+			  triangleZMax[t] = mesh.getMaxZ(slicedFaces[t]);
+		  }
+		  zIndex = new ZIntervalIndex(triangleZMin, triangleZMax);
+		  sweepPlane = null;
+		  logger.info("Z index built:{}", ()->Log4jTimer.splitTimer("fileLoadTime"));
  
 		if (imageOffsetX == null) {
 			if (buildPlatformXPixels != null) {
@@ -964,13 +998,27 @@ public class ZSlicer {
      public void setZIndex(int z) {
  		this.z = z;
 		fillInPolygons = null;
-		fillInScanLines = null;
+		sliceLayer = null;
 		buildArea = 0;
 	 }
 	
 	 public int getBuildArea() {
 		return buildArea;
 	}
+	
+	 /**
+	  * @return the filled pixels of the current slice, which is null until colorizePolygons() has been called
+	  */
+	 public RunLengthLayer getSliceLayer() {
+		return sliceLayer;
+	}
+	 
+	 /**
+	  * @return the outlines that paintSlice() draws around the slice layer, which is null until colorizePolygons() has been called
+	  */
+	 public List<Polygon> getSliceOutlines() {
+		return fillInPolygons;
+	}
 
 	public double getSliceResolution() {
 		return sliceResolution;
@@ -10,6 +10,7 @@ import java.util.Set;
 import org.apache.commons.math3.geometry.euclidean.threed.Line;
 import org.apache.commons.math3.geometry.euclidean.threed.Plane;
 import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import org.apache.commons.math3.util.FastMath;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -99,6 +100,10 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		return min[2];
 	}	
 	
+	public double getMaxZ() {
+		return max[2];
+	}
+	
 	public double getMinY() {
 		return min[1];
 	}
@@ -155,6 +160,29 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		return null;
 	}
 	
+	/**
+	 * Intersection of a single edge with the plane at z. This is the same math Plane.intersection(Line) performs, so it
+	 * produces exactly the same point getZIntersection() would have, without building a plane for every call.
+	 * 
+	 * @return null if the edge is degenerate or parallel to the plane
+	 */
+	public Point3d getEdgeZIntersection(int edge, double z) {
+		Line line = lines[edge];
+		if (line == null) {
+			return null;
+		}
+		
+		Vector3D direction = line.getDirection();
+		if (FastMath.abs(direction.getZ()) < 1.0e-10) {
+			return null;
+		}
+		
+		Vector3D origin = line.getOrigin();
+		double k = -(-z + origin.getZ()) / direction.getZ();
+		Vector3D point = new Vector3D(1.0, origin, k, direction);
+		return new Point3d(point.getX(), point.getY(), z, null, this);
+	}
+	
 	@Override
 	public int compareTo(Triangle3d o) {
 		boolean equals = true;
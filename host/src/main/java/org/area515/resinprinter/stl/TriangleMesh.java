@@ -0,0 +1,228 @@
+package org.area515.resinprinter.stl;
+
+import java.util.Arrays;
+
+/**
+ * Compact triangle mesh that keeps the whole model in a handful of primitive arrays.
+ *
+ * Vertices are shared between faces, so a closed mesh stores roughly half as many vertices as it has faces, and a face is
+ * nothing more than three vertex indexes and a normal. Building a Triangle3d for every facet costs close to a kilobyte of
+ * heap per facet, which a multi million facet model on a Raspberry Pi can't afford. Triangle3d objects are only built on
+ * demand with getTriangle() for the faces that are actually being looked at.
+ *
+ * Vertices are only shared when their coordinates are exactly the same, so slicing from the mesh is identical to slicing
+ * from the original facets. This class is not thread safe while it's being built.
+ */
+public class TriangleMesh {
+	private static final int EMPTY = -1;
+
+	private double[] vertices = new double[3 * 64];
+	private int vertexCount;
+	private int[] faces = new int[3 * 64];
+	private double[] normals = new double[3 * 64];
+	private int faceCount;
+	private int[] vertexTable = newVertexTable(128);
+
+	/**
+	 * @return the index of the vertex at x, y, z which is shared with every other face that uses exactly the same vertex
+	 */
+	public int addVertex(double x, double y, double z) {
+		if (vertexTable == null || vertexCount * 2 >= vertexTable.length) {
+			rebuildVertexTable(Math.max(128, Integer.highestOneBit(Math.max(1, vertexCount)) * 4));
+		}
+
+		int mask = vertexTable.length - 1;
+		int slot = hash(x, y, z) & mask;
+		while (vertexTable[slot] != EMPTY) {
+			int vertex = vertexTable[slot] * 3;
+			if (Double.doubleToLongBits(vertices[vertex]) == Double.doubleToLongBits(x) &&
+				Double.doubleToLongBits(vertices[vertex + 1]) == Double.doubleToLongBits(y) &&
+				Double.doubleToLongBits(vertices[vertex + 2]) == Double.doubleToLongBits(z)) {
+				return vertexTable[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (vertexCount * 3 == vertices.length) {
+			vertices = Arrays.copyOf(vertices, vertices.length * 2);
+		}
+		vertices[vertexCount * 3] = x;
+		vertices[vertexCount * 3 + 1] = y;
+		vertices[vertexCount * 3 + 2] = z;
+		vertexTable[slot] = vertexCount;
+		return vertexCount++;
+	}
+
+	/**
+	 * @return the index of the new face, faces are numbered in the order they were added
+	 */
+	public int addFace(int vertex1, int vertex2, int vertex3, double normalX, double normalY, double normalZ) {
+		if (faceCount * 3 == faces.length) {
+			faces = Arrays.copyOf(faces, faces.length * 2);
+			normals = Arrays.copyOf(normals, normals.length * 2);
+		}
+
+		faces[faceCount * 3] = vertex1;
+		faces[faceCount * 3 + 1] = vertex2;
+		faces[faceCount * 3 + 2] = vertex3;
+		normals[faceCount * 3] = normalX;
+		normals[faceCount * 3 + 1] = normalY;
+		normals[faceCount * 3 + 2] = normalZ;
+		return faceCount++;
+	}
+
+	/**
+	 * Releases the spare capacity and the vertex lookup table once the model is completely loaded.
+	 */
+	public void trimToSize() {
+		vertices = Arrays.copyOf(vertices, vertexCount * 3);
+		faces = Arrays.copyOf(faces, faceCount * 3);
+		normals = Arrays.copyOf(normals, faceCount * 3);
+		vertexTable = null;
+	}
+
+	public int getFaceCount() {
+		return faceCount;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public double getVertexX(int face, int corner) {
+		return vertices[faces[face * 3 + corner] * 3];
+	}
+
+	public double getVertexY(int face, int corner) {
+		return vertices[faces[face * 3 + corner] * 3 + 1];
+	}
+
+	public double getVertexZ(int face, int corner) {
+		return vertices[faces[face * 3 + corner] * 3 + 2];
+	}
+
+	public double getMinZ(int face) {
+		return Math.min(getVertexZ(face, 0), Math.min(getVertexZ(face, 1), getVertexZ(face, 2)));
+	}
+
+	public double getMaxZ(int face) {
+		return Math.max(getVertexZ(face, 0), Math.max(getVertexZ(face, 1), getVertexZ(face, 2)));
+	}
+
+	/**
+	 * Builds a Triangle3d view of a face. The view is a copy, so it's up to the caller to hold onto it for as long as it's needed.
+	 */
+	public Triangle3d getTriangle(int face) {
+		Point3d[] points = new Point3d[3];
+		for (int t = 0; t < 3; t++) {
+			points[t] = new Point3d(getVertexX(face, t), getVertexY(face, t), getVertexZ(face, t));
+		}
+
+		Point3d normal = new Point3d(normals[face * 3], normals[face * 3 + 1], normals[face * 3 + 2]);
+		return new Triangle3d(points, normal, null, null, face);
+	}
+
+	/**
+	 * Returns the faces in the same order a TreeSet of Triangle3d would hold them, dropping every face that Triangle3d.compareTo()
+	 * considers a duplicate of an earlier face.
+	 */
+	public int[] getDistinctFaces() {
+		int[] sortedFaces = new int[faceCount];
+		for (int t = 0; t < faceCount; t++) {
+			sortedFaces[t] = t;
+		}
+		sortFaces(sortedFaces, new int[faceCount], 0, faceCount);
+
+		int distinctCount = 0;
+		for (int t = 0; t < sortedFaces.length; t++) {
+			if (distinctCount > 0 && compareFaces(sortedFaces[distinctCount - 1], sortedFaces[t]) == 0) {
+				continue;
+			}
+			sortedFaces[distinctCount++] = sortedFaces[t];
+		}
+
+		return distinctCount == sortedFaces.length ? sortedFaces : Arrays.copyOf(sortedFaces, distinctCount);
+	}
+
+	//Stable merge sort so that the first face loaded survives when duplicates are dropped, just like TreeSet.add()
+	private void sortFaces(int[] sortedFaces, int[] scratch, int from, int to) {
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		sortFaces(sortedFaces, scratch, from, middle);
+		sortFaces(sortedFaces, scratch, middle, to);
+		if (compareFaces(sortedFaces[middle - 1], sortedFaces[middle]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(sortedFaces, from, scratch, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int t = from; t < to; t++) {
+			if (right >= to || (left < middle && compareFaces(scratch[left], scratch[right]) <= 0)) {
+				sortedFaces[t] = scratch[left++];
+			} else {
+				sortedFaces[t] = scratch[right++];
+			}
+		}
+	}
+
+	//Same ordering as Triangle3d.compareTo()
+	private int compareFaces(int first, int second) {
+		boolean equals = true;
+		for (int t = 0; t < 3 && equals; t++) {
+			equals = Math.abs(getVertexX(first, t) - getVertexX(second, t)) <= Triangle3d.EQUAL_TOLERANCE &&
+					Math.abs(getVertexY(first, t) - getVertexY(second, t)) <= Triangle3d.EQUAL_TOLERANCE &&
+					Math.abs(getVertexZ(first, t) - getVertexZ(second, t)) <= Triangle3d.EQUAL_TOLERANCE;
+		}
+
+		if (equals) {
+			return 0;
+		}
+
+		for (int t = 0; t < 3; t++) {
+			double diff = getVertexX(first, t) - getVertexX(second, t);
+			if (diff == 0) {
+				diff = getVertexY(first, t) - getVertexY(second, t);
+			}
+			if (diff == 0) {
+				diff = getVertexZ(first, t) - getVertexZ(second, t);
+			}
+			if (diff > 0) {
+				return 1;
+			} else if (diff < 0) {
+				return -1;
+			}
+		}
+
+		return first - second;
+	}
+
+	private void rebuildVertexTable(int size) {
+		vertexTable = newVertexTable(size);
+		int mask = size - 1;
+		for (int vertex = 0; vertex < vertexCount; vertex++) {
+			int slot = hash(vertices[vertex * 3], vertices[vertex * 3 + 1], vertices[vertex * 3 + 2]) & mask;
+			while (vertexTable[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			vertexTable[slot] = vertex;
+		}
+	}
+
+	private static int[] newVertexTable(int size) {
+		int[] table = new int[size];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	private static int hash(double x, double y, double z) {
+		long bits = Double.doubleToLongBits(x);
+		bits = bits * 31 + Double.doubleToLongBits(y);
+		bits = bits * 31 + Double.doubleToLongBits(z);
+		int hash = (int)(bits ^ (bits >>> 32));
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -17,7 +17,7 @@ import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.job.render.RenderingFileData;
 import org.area515.resinprinter.printer.SlicingProfile.TwoDimensionalSettings;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.services.PrinterService;
 import org.area515.util.Log4jTimer;
 
@@ -37,6 +37,11 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 		public void cacheExtrusionImage(DataAid aid) throws ExecutionException, InterruptedException {
 			this.twoDimensionalImage = buildExtrusionImage(aid);
 		}
+		
+		//2D prints ping pong between two images, one that is being exposed and one that is being rendered
+		public Boolean getNextRenderingPointer() {
+			return !Boolean.TRUE.equals(getCurrentRenderingPointer());
+		}
 	}
 	
 	@Override
@@ -83,7 +88,7 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 			
 			printState.cacheExtrusionImage(dataAid);
 			Object nextRenderingPointer = printState.getCurrentRenderingPointer();
-			Future<BufferedImage> currentImage = Main.GLOBAL_EXECUTOR.submit(new RenderPlatformImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution, totalPlatformSlices));
+			Future<BufferedImage> currentImage = HostExecutors.getRenderingExecutor().submit(new RenderPlatformImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution, totalPlatformSlices));
 			while (platformSlices > 0 || extrusionSlices > 0) {
 				
 				//Performs all of the duties that are common to most print files
@@ -103,9 +108,9 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 				
 				//Render the next image while we are waiting for the current image to cure
 				if (platformSlices > 0) {
-					currentImage = Main.GLOBAL_EXECUTOR.submit(new RenderPlatformImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution, totalPlatformSlices));
+					currentImage = HostExecutors.getRenderingExecutor().submit(new RenderPlatformImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution, totalPlatformSlices));
 				} else if (extrusionSlices > 1) {
-					currentImage = Main.GLOBAL_EXECUTOR.submit(new RenderExtrusionImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution));
+					currentImage = HostExecutors.getRenderingExecutor().submit(new RenderExtrusionImage(dataAid, this, printState, nextRenderingPointer, dataAid.xResolution, dataAid.yResolution));
 				}
 
 				//Performs all of the duties that are common to most print files
@@ -123,7 +128,10 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 			
 			return performFooter(dataAid);
 		} finally {
-			twoDimensionalPrintDataByJob.remove(dataAid.printJob);
+			TwoDimensionalPrintState printState = twoDimensionalPrintDataByJob.remove(dataAid.printJob);
+			if (printState != null) {
+				printState.releaseImages();
+			}
 		}
 	}
 	
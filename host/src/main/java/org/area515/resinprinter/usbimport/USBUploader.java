@@ -14,8 +14,8 @@ import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.plugin.Feature;
+import org.area515.resinprinter.server.HostExecutors;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.services.PrintableService;
 import org.area515.util.PrintFileFilter;
 
@@ -41,7 +41,7 @@ public class USBUploader implements Feature {
 			masterRoots.put(root.getAbsolutePath(), root);
 		}
 		
-		future = Main.GLOBAL_EXECUTOR.scheduleWithFixedDelay(new Runnable(){
+		future = HostExecutors.getIOExecutor().scheduleWithFixedDelay(new Runnable(){
 			@Override
 			public void run() {
 				Map<String, File> negativeList = new HashMap<>();
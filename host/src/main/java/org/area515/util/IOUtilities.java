@@ -19,6 +19,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.serial.BlockingSerialCommunicationsPort;
 import org.area515.resinprinter.serial.SerialCommunicationsPort;
 
 import com.google.common.io.ByteStreams;
@@ -186,6 +187,14 @@ public class IOUtilities {
 	
 	public static String readWithTimeout(SerialCommunicationsPort currentIdentifier, int timeoutMillis, int cpuLimitingDelay) throws IOException, InterruptedException {
 		StringBuilder builder = new StringBuilder();
+		if (currentIdentifier instanceof BlockingSerialCommunicationsPort) {
+			byte[] data;
+			while ((data = ((BlockingSerialCommunicationsPort)currentIdentifier).read(timeoutMillis)) != null) {
+				builder.append(new String(data));
+			}
+			return builder.toString();
+		}
+		
 		long start = System.currentTimeMillis();
 		while (System.currentTimeMillis() - start < timeoutMillis) {
 			byte[] data = currentIdentifier.read();
@@ -224,8 +233,8 @@ public class IOUtilities {
 	public static ParseState readLine(Printer printer, SerialCommunicationsPort serialPort, StringBuilder builder, int parseLocation, int timeoutMillis, int cpuLimitingDelay) throws IOException {
 		long startTime = System.currentTimeMillis();
 		boolean workPerformed = false;
+		byte[] newBuffer = serialPort.read();
 		while (true) {
-			byte[] newBuffer = serialPort.read();
 			if (newBuffer != null) {
 				builder.append(new String(newBuffer));
 			}
@@ -257,15 +266,22 @@ public class IOUtilities {
 				return state;
 			}
 			
-			if (!workPerformed) {
-				try {
-					Thread.sleep(cpuLimitingDelay);
-				} catch (InterruptedException e) {
-					ParseState state = new ParseState();
-					state.currentLine = null;
-					state.parseLocation = parseLocation;
-					return state;
+			try {
+				if (serialPort instanceof BlockingSerialCommunicationsPort) {
+					//Wakes up as soon as the firmware responds, or after the cpu limiting delay to notice a print that was stopped
+					long waitMillis = Math.min(cpuLimitingDelay, timeoutMillis - (System.currentTimeMillis() - startTime) + 1);
+					newBuffer = ((BlockingSerialCommunicationsPort)serialPort).read(Math.max(waitMillis, 1));
+				} else {
+					if (!workPerformed) {
+						Thread.sleep(cpuLimitingDelay);
+					}
+					newBuffer = serialPort.read();
 				}
+			} catch (InterruptedException e) {
+				ParseState state = new ParseState();
+				state.currentLine = null;
+				state.parseLocation = parseLocation;
+				return state;
 			}
 		}
 	}	
@@ -1,6 +1,7 @@
 package org.area515.util;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Date;
@@ -17,9 +18,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.printer.SlicingProfile;
+import org.area515.resinprinter.printer.SlicingProfile.InkConfig;
 import org.area515.resinprinter.server.HostProperties;
 
-import freemarker.cache.StringTemplateLoader;
 import freemarker.core.Environment;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
@@ -28,7 +30,6 @@ import freemarker.template.TemplateExceptionHandler;
 
 public class TemplateEngine {
     private static final Logger logger = LogManager.getLogger();
-	private static StringTemplateLoader templateLoader = new StringTemplateLoader();
 	private static Configuration config = null;
 	
 	public static final TemplateExceptionHandler INFO_IGNORE_HANDLER = new TemplateExceptionHandler() {
@@ -62,15 +63,31 @@ public class TemplateEngine {
 		return template;
 	}
 	
-	public static String buildData(PrintJob job, Printer printer, String templateString) throws IOException, TemplateException {
+	private static synchronized Configuration getConfiguration() {
 		if (config == null) {
 	        config = new Configuration(Configuration.VERSION_2_3_21);
 	        config.setDefaultEncoding("UTF-8");
 	        config.setTemplateExceptionHandler(INFO_IGNORE_HANDLER);
-	        config.setTemplateLoader(templateLoader);
 	        config.setBooleanFormat("yes,no");
 		}
 		
+		return config;
+	}
+	
+	/**
+	 * Parses a template without caching it anywhere, whoever compiles it holds onto it for as long as they need it.
+	 */
+	public static Template compileTemplate(String templateString) throws IOException {
+        Template template = new Template(null, new StringReader(templateString), getConfiguration());
+        template.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        return template;
+	}
+	
+	/**
+	 * Builds every variable that a template can use. The ones that don't change during a print are only looked up
+	 * here, updateLayerVariables() refreshes the rest.
+	 */
+	public static Map<String, Object> buildVariables(PrintJob job, Printer printer) {
 		//com.cfs.daq.script.SharedInterpreter has similar stuff in it...
         Map<String, Object> root = new HashMap<String, Object>();
         /*
@@ -88,34 +105,38 @@ public class TemplateEngine {
         	$NumFirstLayers// number of first layers
         */
 
+		SlicingProfile slicingProfile = printer.getConfiguration().getSlicingProfile();
+		InkConfig inkConfig = slicingProfile.getSelectedInkConfig();
+		root.put("LayerThickness", inkConfig.getSliceHeight());
+		root.put("ZDir", slicingProfile.getDirection().getVector());
+		root.put("LayerTime", inkConfig.getExposureTime());
+		root.put("FirstLayerTime", inkConfig.getFirstLayerExposureTime());
+		root.put("NumFirstLayers", inkConfig.getNumberOfFirstLayers());
+		root.put("SlideTiltVal", slicingProfile.getSlideTiltValue());
+		root.put("buildPlatformXPixels", slicingProfile.getxResolution());
+		root.put("buildPlatformYPixels", slicingProfile.getyResolution());
+		root.put("hostProperties", HostProperties.Instance());
+		root.put("job", job);
+		root.put("printer", printer);
+		updateLayerVariables(root, job, printer);
+		return root;
+	}
+	
+	public static void updateLayerVariables(Map<String, Object> root, PrintJob job, Printer printer) {
 		root.put("now", new Date());
 		root.put("shutterOpen", printer.isShutterOpen());
 		root.put("bulbHours", printer.getCachedBulbHours());
 		root.put("CURSLICE", job.getCurrentSlice());
-		root.put("LayerThickness", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getSliceHeight());
-		root.put("ZDir", printer.getConfiguration().getSlicingProfile().getDirection().getVector());
 		root.put("ZLiftRate", job.getZLiftSpeed());
 		root.put("ZLiftDist", job.getZLiftDistance());
 		Double buildArea = job.getPrintFileProcessor().getBuildAreaMM(job);
 		root.put("buildAreaMM", buildArea == null || buildArea < 0?null:buildArea);
-		root.put("LayerTime", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getExposureTime());
-		root.put("FirstLayerTime", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getFirstLayerExposureTime());
-		root.put("NumFirstLayers", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getNumberOfFirstLayers());
-		root.put("SlideTiltVal", printer.getConfiguration().getSlicingProfile().getSlideTiltValue());
-		root.put("buildPlatformXPixels", printer.getConfiguration().getSlicingProfile().getxResolution());
-		root.put("buildPlatformYPixels", printer.getConfiguration().getSlicingProfile().getyResolution());
-		root.put("hostProperties", HostProperties.Instance());
-		root.put("job", job);
-		root.put("printer", printer);
-		
-        /* Get the template (uses cache internally) */
-        Object source = templateLoader.findTemplateSource(templateString);
-        if (source == null) {
-        	templateLoader.putTemplate(templateString, templateString);
-        }
-        Template template = config.getTemplate(templateString);
-        template.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-        
+	}
+	
+	/**
+	 * @return the processed template or null if it uses a variable that this printer doesn't support
+	 */
+	public static String processTemplate(Template template, Map<String, Object> root, Printer printer, String templateString) throws IOException, TemplateException {
         try {
 	        Writer out = new StringWriter();
 	        template.process(root, out);
@@ -140,6 +161,10 @@ public class TemplateEngine {
         }
 	}
 	
+	public static String buildData(PrintJob job, Printer printer, String templateString) throws IOException, TemplateException {
+		return processTemplate(compileTemplate(templateString), buildVariables(job, printer), printer, templateString);
+	}
+	
 	public static Object runScript(PrintJob job, Printer printer, ScriptEngine engine, String script, String scriptName, Map<String, Object> overrides) throws ScriptException {
 		Bindings bindings = engine.createBindings();
 		bindings.put("now", new Date());
@@ -0,0 +1,88 @@
+package org.area515.resinprinter.display;
+
+import java.awt.BufferCapabilities;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.ImageCapabilities;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FramePresenterTest {
+	/**
+	 * Like a slow framebuffer, the frame only gets to the screen showMillis after it's asked to be shown.
+	 */
+	private static class SlowFramebufferStrategy extends BufferStrategy {
+		private BufferedImage backBuffer = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		private BufferedImage screen = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		private long showMillis;
+		private int lostFrames;
+		private int shows;
+		private long shownAt;
+
+		public SlowFramebufferStrategy(long showMillis, int lostFrames) {
+			this.showMillis = showMillis;
+			this.lostFrames = lostFrames;
+		}
+
+		@Override
+		public BufferCapabilities getCapabilities() {
+			return new BufferCapabilities(new ImageCapabilities(false), new ImageCapabilities(false), null);
+		}
+
+		@Override
+		public Graphics getDrawGraphics() {
+			return backBuffer.createGraphics();
+		}
+
+		@Override
+		public boolean contentsLost() {
+			return shows <= lostFrames;
+		}
+
+		@Override
+		public boolean contentsRestored() {
+			return false;
+		}
+
+		@Override
+		public void show() {
+			try {
+				Thread.sleep(showMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			screen.getGraphics().drawImage(backBuffer, 0, 0, null);
+			shows++;
+			shownAt = System.nanoTime();
+		}
+	}
+
+	@Test
+	public void returnsOnceTheFrameIsOnTheScreen() {
+		SlowFramebufferStrategy strategy = new SlowFramebufferStrategy(100, 0);
+		FramePresenter presenter = new FramePresenter(strategy, g -> {
+			g.setBackground(Color.WHITE);
+			g.clearRect(0, 0, 10, 10);
+		});
+
+		long start = System.nanoTime();
+		long presentedAt = presenter.present();
+		Assert.assertEquals(Color.WHITE.getRGB(), strategy.screen.getRGB(5, 5));
+		Assert.assertTrue(presentedAt >= strategy.shownAt);
+		Assert.assertTrue(presentedAt - start >= 100 * 1000000L);
+	}
+
+	@Test
+	public void framesThatAreLostArePaintedAgain() {
+		SlowFramebufferStrategy strategy = new SlowFramebufferStrategy(0, 1);
+		int[] paints = new int[1];
+		FramePresenter presenter = new FramePresenter(strategy, g -> paints[0]++);
+
+		presenter.present();
+		Assert.assertEquals(2, paints[0]);
+		Assert.assertEquals(2, strategy.shows);
+	}
+}
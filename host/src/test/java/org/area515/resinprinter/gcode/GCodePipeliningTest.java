@@ -0,0 +1,114 @@
+package org.area515.resinprinter.gcode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.serial.SerialCommunicationsPort;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class GCodePipeliningTest {
+	//Responds to the oldest gcode it's holding each time it's read, and keeps track of how much it had to hold at once
+	private static class BufferingFirmware {
+		private List<String> received = new ArrayList<String>();
+		private ArrayDeque<String> buffered = new ArrayDeque<String>();
+		private int bufferedBytes;
+		private int mostBufferedBytes;
+		private int mostBufferedGCodes;
+		//Each of these fails the next time it's received
+		private List<String> failingGCodes = new ArrayList<String>();
+		private boolean echoGCodes;
+
+		public BufferingFirmware(PrintJob printJob) throws Exception {
+			SerialCommunicationsPort port = printJob.getPrinter().getPrinterFirmwareSerialPort();
+			Mockito.doAnswer(new Answer<Void>() {
+				@Override
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					String gcode = new String((byte[])invocation.getArguments()[0]);
+					received.add(gcode.trim());
+					buffered.addLast(gcode);
+					bufferedBytes += gcode.length();
+					mostBufferedBytes = Math.max(mostBufferedBytes, bufferedBytes);
+					mostBufferedGCodes = Math.max(mostBufferedGCodes, buffered.size());
+					return null;
+				}
+			}).when(port).write(Mockito.any(byte[].class));
+			Mockito.when(port.read()).then(new Answer<byte[]>() {
+				@Override
+				public byte[] answer(InvocationOnMock invocation) throws Throwable {
+					if (buffered.isEmpty()) {
+						return null;
+					}
+
+					String gcode = buffered.removeFirst();
+					bufferedBytes -= gcode.length();
+					if (failingGCodes.remove(gcode.trim())) {
+						return "error:Limit switch\n".getBytes();
+					}
+					return ((echoGCodes ? "[" + gcode.trim() + "]\n" : "") + "ok\n").getBytes();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void keepsTheFirmwareBufferFullWithoutOverflowingIt() throws Exception {
+		PrintJob printJob = FirmwareResponseSimulation.buildTestPrintJob();
+		Printer printer = printJob.getPrinter();
+		Mockito.when(printer.isPrintActive()).thenReturn(true);
+		BufferingFirmware firmware = new BufferingFirmware(printJob);
+		GCodeControl control = new eGENERICGCodeControl(printer);
+
+		List<String> gcodes = Arrays.asList("G1 Z5 F50", "G1 Z-4.9 F50", "M18", "G4 P0");
+		String responses = control.sendGcodesAndRespectPrinter(printJob, gcodes, 24);
+		Assert.assertEquals(gcodes, firmware.received);
+		Assert.assertEquals("ok\nok\nok\nok\n", responses);
+		Assert.assertTrue(firmware.mostBufferedBytes <= 24);
+		Assert.assertEquals(3, firmware.mostBufferedGCodes);
+	}
+
+	@Test
+	public void pausesOnErrorsAndRetriesTheFailedGCodesInOrder() throws Exception {
+		PrintJob printJob = FirmwareResponseSimulation.buildTestPrintJob();
+		Printer printer = printJob.getPrinter();
+		Mockito.when(printer.isPrintActive()).thenReturn(true);
+		Mockito.when(printer.waitForPauseIfRequired()).thenReturn(true);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getPauseOnPrinterResponseRegEx()).thenReturn(".*Limit.*");
+		BufferingFirmware firmware = new BufferingFirmware(printJob);
+		firmware.failingGCodes.addAll(Arrays.asList("G1 Z-4.9 F50", "M18"));
+		//Feedback messages don't count as a response to a gcode
+		firmware.echoGCodes = true;
+		GCodeControl control = new eGENERICGCodeControl(printer);
+
+		String responses = control.sendGcodesAndRespectPrinter(printJob, Arrays.asList("G1 Z5 F50", "G1 Z-4.9 F50", "M18", "G4 P0"), 128);
+		Assert.assertEquals(Arrays.asList("G1 Z5 F50", "G1 Z-4.9 F50", "M18", "G4 P0", "G1 Z-4.9 F50", "M18"), firmware.received);
+		Assert.assertEquals("[G1 Z5 F50]\nok\nerror:Limit switch\nerror:Limit switch\n[G4 P0]\nok\n[G1 Z-4.9 F50]\nok\n[M18]\nok\n", responses);
+		Mockito.verify(printJob).setErrorDescription("Limit switch");
+		Mockito.verify(printer).waitForPauseIfRequired();
+	}
+
+	@Test
+	public void sendsOneGCodeAtATimeAfterAnError() throws Exception {
+		PrintJob printJob = FirmwareResponseSimulation.buildTestPrintJob();
+		Printer printer = printJob.getPrinter();
+		Mockito.when(printer.isPrintActive()).thenReturn(true);
+		Mockito.when(printer.waitForPauseIfRequired()).thenReturn(true);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getPauseOnPrinterResponseRegEx()).thenReturn(".*Limit.*");
+		BufferingFirmware firmware = new BufferingFirmware(printJob);
+		firmware.failingGCodes.addAll(Arrays.asList("G1 Z5 F50", "G1 Z5 F50"));
+		GCodeControl control = new eGENERICGCodeControl(printer);
+
+		//The second failure is seen before anything after it is sent
+		String responses = control.sendGcodesAndRespectPrinter(printJob, Arrays.asList("G1 Z5 F50", "G1 Z-4.9 F50", "M18"), 128);
+		Assert.assertEquals(Arrays.asList("G1 Z5 F50", "G1 Z-4.9 F50", "M18", "G1 Z5 F50", "G1 Z5 F50"), firmware.received);
+		Assert.assertEquals("error:Limit switch\nok\nok\nerror:Limit switch\nok\n", responses);
+		Mockito.verify(printer, Mockito.times(2)).waitForPauseIfRequired();
+	}
+}
@@ -0,0 +1,55 @@
+package org.area515.resinprinter.gcode;
+
+import java.util.List;
+
+import org.area515.resinprinter.gcode.GCodeProgram.GCodeLine;
+import org.area515.resinprinter.job.AbstractPrintFileProcessor;
+import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.PrintJob;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class GCodeProgramTest {
+	@Test
+	public void plainGCodeIsOnlySplitOnce() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		GCodeProgram program = GCodeProgram.compile(printJob, "G1 Z5 F50 ;Lift\r\n\n;<Delay> 1500\nM18");
+
+		List<GCodeLine> lines = program.buildLines();
+		Assert.assertSame(lines, program.buildLines());
+		Assert.assertEquals(3, lines.size());
+		Assert.assertEquals("G1 Z5 F50 ", lines.get(0).getGCode());
+		Assert.assertEquals(";Lift", lines.get(0).getComment());
+		Assert.assertNull(lines.get(0).getDelay());
+		Assert.assertNull(lines.get(1).getGCode());
+		Assert.assertEquals(Integer.valueOf(1500), lines.get(1).getDelay());
+		Assert.assertEquals("M18", lines.get(2).getGCode());
+		Mockito.verify(printJob, Mockito.never()).getCurrentSlice();
+	}
+
+	@Test
+	public void onlyLayerVariablesAreLookedUpForEachLayer() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		Mockito.when(printJob.getZLiftDistance()).thenReturn(5.0);
+		Mockito.when(printJob.getCurrentSlice()).thenReturn(1).thenReturn(2);
+		GCodeProgram program = GCodeProgram.compile(printJob, "G1 Z${ZLiftDist}\n;<Delay> ${CURSLICE * 100}");
+
+		List<GCodeLine> lines = program.buildLines();
+		Assert.assertEquals("G1 Z5", lines.get(0).getGCode());
+		Assert.assertEquals(Integer.valueOf(100), lines.get(1).getDelay());
+		lines = program.buildLines();
+		Assert.assertEquals(Integer.valueOf(200), lines.get(1).getDelay());
+		Mockito.verify(printJob.getPrinter().getConfiguration().getSlicingProfile(), Mockito.times(1)).getSelectedInkConfig();
+	}
+
+	@Test
+	public void unsupportedBuildAreaBuildsNothing() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		Mockito.when(printJob.getPrintFileProcessor().getBuildAreaMM(Mockito.any(PrintJob.class))).thenReturn(null);
+		Assert.assertNull(GCodeProgram.compile(printJob, "G1 Z${buildAreaMM}").buildLines());
+	}
+}
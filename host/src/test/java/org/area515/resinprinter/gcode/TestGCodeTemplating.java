@@ -5,7 +5,11 @@ import javax.script.ScriptException;
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor;
 import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.ExposureClock;
+import org.area515.resinprinter.job.ExposureClockTest;
 import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.job.PrintJobMetrics;
+import org.area515.resinprinter.printer.Printer.DisplayState;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -45,5 +49,28 @@ public class TestGCodeTemplating {
 			});
 		printJob.getPrinter().getGCodeControl().executeGCodeWithTemplating(printJob, gcodes);
 	}
-}
 
+	@Test
+	public void onlyDelaysWhileASliceIsShownAreExposures() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		PrintJobMetrics metrics = new PrintJobMetrics();
+		Mockito.when(printJob.getMetrics()).thenReturn(metrics);
+		Mockito.when(printJob.getCurrentSlice()).thenReturn(2);
+		GCodeControl gCode = printJob.getPrinter().getGCodeControl();
+		Mockito.when(gCode.sendGcodeAndRespectPrinter(Mockito.any(PrintJob.class), Mockito.any(String.class))).thenReturn("ok");
+		//Every sleep comes back 5ms late, so a 10ms delay ends 3ms after its deadline
+		ExposureClockTest.FakeClock clock = new ExposureClockTest.FakeClock(5000000);
+		Mockito.when(gCode.getExposureClock()).thenReturn(new ExposureClock(clock, 2000000));
+
+		Mockito.when(printJob.getPrinter().getDisplayState()).thenReturn(DisplayState.Blank);
+		gCode.executeGCodeWithTemplating(printJob, "G1 Z5\n;<Delay> 10");
+		Assert.assertEquals(0, metrics.getExposureErrors().getCount());
+
+		Mockito.when(printJob.getPrinter().getDisplayState()).thenReturn(DisplayState.CurrentSlice);
+		gCode.executeGCodeWithTemplating(printJob, ";<Delay> 10");
+		Assert.assertEquals(1, metrics.getExposureErrors().getCount());
+		Assert.assertEquals(3.0, metrics.getLayers().get(0).getExposureErrorMillis(), 0.0001);
+		Assert.assertEquals(1000 + 20000000 + 3000000 * 2, clock.now);
+	}
+}
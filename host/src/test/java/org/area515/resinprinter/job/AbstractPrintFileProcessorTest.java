@@ -5,7 +5,9 @@ import java.awt.image.BufferedImage;
 
 import javax.script.ScriptException;
 
+import org.area515.resinprinter.display.FramePresenter;
 import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.gcode.GCodeProgram;
 import org.area515.resinprinter.gcode.eGENERICGCodeControl;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.printer.BuildDirection;
@@ -31,7 +33,7 @@ public class AbstractPrintFileProcessorTest {
 	private BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_4BYTE_ABGR);
 	
 	public static PrintJob createTestPrintJob(PrintFileProcessor processor) throws InappropriateDeviceException, Exception {
-		PrintJob printJob = Mockito.mock(PrintJob.class);
+		final PrintJob printJob = Mockito.mock(PrintJob.class);
 		Printer printer = Mockito.mock(Printer.class);
 		PrinterConfiguration printerConfiguration = Mockito.mock(PrinterConfiguration.class);
 		SlicingProfile slicingProfile = Mockito.mock(SlicingProfile.class);
@@ -53,8 +55,15 @@ public class AbstractPrintFileProcessorTest {
 		Mockito.when(printer.getGCodeControl()).thenReturn(gCode);
 		Mockito.when(slicingProfile.getgCodeLift()).thenReturn("Lift z");
 		Mockito.doCallRealMethod().when(gCode).executeGCodeWithTemplating(Mockito.any(PrintJob.class), Mockito.anyString());
+		Mockito.when(gCode.getExposureClock()).thenReturn(ExposureClock.SYSTEM);
 		Mockito.when(printer.getConfiguration().getMachineConfig()).thenReturn(machine);
 		Mockito.when(printer.getConfiguration().getMachineConfig().getMonitorDriverConfig()).thenReturn(monitorConfig);
+		Mockito.when(printJob.buildGCodeProgram(Mockito.anyString())).then(new Answer<GCodeProgram>() {
+			@Override
+			public GCodeProgram answer(InvocationOnMock invocation) throws Throwable {
+				return GCodeProgram.compile(printJob, (String)invocation.getArguments()[0]);
+			}
+		});
 		return printJob;
 	}
 
@@ -167,7 +176,8 @@ public class AbstractPrintFileProcessorTest {
 		Mockito.when(printJob.getPrinter().getConfiguration().getSlicingProfile().getZLiftDistanceGCode()).thenReturn("G99 ${1 + buildAreaMM * 2} ;dependent on buildArea");
 		try {
 			processor.printImageAndPerformPostProcessing(aid, image);
-			Mockito.verify(printJob.getPrintFileProcessor(), Mockito.times(5)).getBuildAreaMM(Mockito.any(PrintJob.class));
+			//The lift gcode doesn't use FreeMarker so it never looks up the build area
+			Mockito.verify(printJob.getPrintFileProcessor(), Mockito.times(4)).getBuildAreaMM(Mockito.any(PrintJob.class));
 		} catch (InappropriateDeviceException e) {
 			Assert.fail("Should not throw InappropriateDeviceException");
 		}
@@ -185,7 +195,8 @@ public class AbstractPrintFileProcessorTest {
 			processor.printImageAndPerformPostProcessing(aid, image);
 			Assert.fail("Must throw InappropriateDeviceException");
 		} catch (InappropriateDeviceException e) {
-			Mockito.verify(printJob.getPrintFileProcessor(), Mockito.times(2)).getBuildAreaMM(Mockito.any(PrintJob.class));
+			//A template that can't be parsed never gets as far as looking up variables
+			Mockito.verify(printJob.getPrintFileProcessor(), Mockito.times(1)).getBuildAreaMM(Mockito.any(PrintJob.class));
 		}
 	}
 
@@ -217,4 +228,53 @@ public class AbstractPrintFileProcessorTest {
 		});
 		processor.printImageAndPerformPostProcessing(aid, image);
 	}
+
+	@Test
+	public void exposureIsHeldToItsDeadline() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = createTestPrintJob(processor);
+		PrintJobMetrics metrics = new PrintJobMetrics();
+		Mockito.when(printJob.getMetrics()).thenReturn(metrics);
+		Mockito.when(printJob.getExposureTime()).thenReturn(2000);
+		Mockito.when(printJob.getCurrentSlice()).thenReturn(4);
+		DataAid aid = processor.initializeDataAid(printJob);
+		ExposureClockTest.FakeClock clock = new ExposureClockTest.FakeClock(1000000);
+		aid.exposureClock = new ExposureClock(clock, ExposureClock.DEFAULT_PARK_NANOS);
+		processor.printImageAndPerformPostProcessing(aid, image);
+
+		Assert.assertEquals(2000.0, metrics.getHistograms().get(PrintJobMetrics.Phase.Exposure).getTotalMillis(), 0.0001);
+		Assert.assertEquals(0.0, metrics.getLayers().get(0).getExposureErrorMillis(), 0.0001);
+		Assert.assertEquals(4, metrics.getLayers().get(0).getLayer());
+	}
+
+	@Test
+	public void exposureStartsWhenTheSliceIsShown() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = createTestPrintJob(processor);
+		Mockito.when(printJob.getExposureTime()).thenReturn(2000);
+		//The display takes a while to say that the slice is up
+		Mockito.when(printJob.getPrinter().showImage(image)).then(new Answer<Long>() {
+			@Override
+			public Long answer(InvocationOnMock invocation) throws Throwable {
+				long shownAt = System.nanoTime();
+				Thread.sleep(50);
+				return shownAt;
+			}
+		});
+		DataAid aid = processor.initializeDataAid(printJob);
+		ExposureClockTest.FakeClock clock = new ExposureClockTest.FakeClock(0);
+		aid.exposureClock = new ExposureClock(clock, ExposureClock.DEFAULT_PARK_NANOS);
+		long start = clock.now;
+		processor.printImageAndPerformPostProcessing(aid, image);
+
+		long waited = clock.now - start;
+		Assert.assertTrue("Waited:" + waited, waited <= 1950 * 1000000L);
+		Assert.assertTrue("Waited:" + waited, waited > 0);
+
+		//A slice that didn't make it to the display yet is exposed for all of its time from here on
+		Mockito.when(printJob.getPrinter().showImage(image)).thenReturn(FramePresenter.NOT_PRESENTED);
+		start = clock.now;
+		processor.printImageAndPerformPostProcessing(aid, image);
+		Assert.assertEquals(2000 * 1000000L, clock.now - start);
+	}
 }
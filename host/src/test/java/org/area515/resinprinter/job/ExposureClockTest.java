@@ -0,0 +1,88 @@
+package org.area515.resinprinter.job;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExposureClockTest {
+	/**
+	 * Time only moves when the clock sleeps or parks, and every sleep comes back lateNanos late like a busy machine.
+	 */
+	public static class FakeClock implements ExposureClock.Clock {
+		public long now = 1000;
+		public long lateNanos;
+		public int sleeps;
+		public int parks;
+		public long longestSleep;
+
+		public FakeClock(long lateNanos) {
+			this.lateNanos = lateNanos;
+		}
+
+		@Override
+		public long nanoTime() {
+			return now;
+		}
+
+		@Override
+		public void sleep(long nanos) {
+			sleeps++;
+			longestSleep = Math.max(longestSleep, nanos);
+			now += nanos + lateNanos;
+		}
+
+		@Override
+		public void park(long nanos) {
+			parks++;
+			now += nanos;
+		}
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	@Test
+	public void lateSleepsAreMadeUpByParking() throws Exception {
+		FakeClock fake = new FakeClock(millis(1));
+		ExposureClock clock = new ExposureClock(fake, millis(2));
+		long deadline = fake.now + millis(1000);
+
+		Assert.assertEquals(0, clock.waitUntil(deadline, null));
+		Assert.assertEquals(deadline, fake.now);
+		Assert.assertTrue(fake.parks > 0);
+		//Short sleeps let a cancel be noticed quickly
+		Assert.assertTrue(fake.longestSleep <= millis(50));
+	}
+
+	@Test
+	public void reportsHowLateItWas() throws Exception {
+		FakeClock fake = new FakeClock(millis(30));
+		ExposureClock clock = new ExposureClock(fake, millis(2));
+		long deadline = fake.now + millis(10);
+
+		Assert.assertEquals(millis(30) - millis(2), clock.waitUntil(deadline, null));
+	}
+
+	@Test
+	public void stopsEarlyWhenToldTo() throws Exception {
+		final FakeClock fake = new FakeClock(0);
+		ExposureClock clock = new ExposureClock(fake, millis(2));
+		final long cancelAt = fake.now + millis(300);
+		long deadline = fake.now + millis(1000);
+
+		long error = clock.waitUntil(deadline, () -> fake.now < cancelAt);
+		Assert.assertTrue(error < 0);
+		Assert.assertEquals(fake.now - deadline, error);
+		Assert.assertTrue(fake.now - cancelAt <= millis(50));
+	}
+
+	@Test(expected=InterruptedException.class)
+	public void interruptsStopTheWait() throws Exception {
+		FakeClock fake = new FakeClock(0);
+		ExposureClock clock = new ExposureClock(fake, millis(2));
+		Thread.currentThread().interrupt();
+		clock.waitUntil(fake.now + millis(10), null);
+	}
+}
@@ -0,0 +1,53 @@
+package org.area515.resinprinter.job;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.area515.resinprinter.job.PrintJobMetrics.Histogram;
+import org.area515.resinprinter.job.PrintJobMetrics.LayerTiming;
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrintJobMetricsTest {
+	@Test
+	public void timingsAreRecordedForTheJobAndTheirLayer() {
+		PrintJobMetrics metrics = new PrintJobMetrics();
+		metrics.record(1, Phase.GCodeRoundTrip, 2000000);
+		metrics.record(1, Phase.GCodeRoundTrip, 4000000);
+		metrics.record(0, Phase.Exposure, 1000000000);
+		metrics.record(1, Phase.Exposure, 1000000000);
+
+		Histogram roundTrips = metrics.getHistograms().get(Phase.GCodeRoundTrip);
+		Assert.assertEquals(2, roundTrips.getCount());
+		Assert.assertEquals(3.0, roundTrips.getMeanMillis(), 0.0001);
+		Assert.assertEquals(2.0, roundTrips.getMinMillis(), 0.0001);
+		Assert.assertEquals(4.0, roundTrips.getMaxMillis(), 0.0001);
+		//2ms falls into the 1024-2048 microsecond bucket and percentiles are never more than the longest timing
+		Assert.assertEquals(2.048, roundTrips.getMedianMillis(), 0.0001);
+		Assert.assertEquals(4.0, roundTrips.getP99Millis(), 0.0001);
+		Assert.assertEquals(0, metrics.getHistograms().get(Phase.Pause).getCount());
+
+		List<LayerTiming> layers = metrics.getLayers();
+		Assert.assertEquals(2, layers.size());
+		Assert.assertEquals(0, layers.get(0).getLayer());
+		Assert.assertEquals(1, layers.get(1).getLayer());
+		Assert.assertEquals(6.0, layers.get(1).getMillis().get(Phase.GCodeRoundTrip), 0.0001);
+		Assert.assertEquals(Integer.valueOf(2), layers.get(1).getCounts().get(Phase.GCodeRoundTrip));
+	}
+
+	@Test
+	public void csvHasARowForEveryLayer() throws Exception {
+		PrintJobMetrics metrics = new PrintJobMetrics();
+		metrics.record(3, Phase.RenderWait, 1500000);
+		metrics.record(3, Phase.GCodeRoundTrip, 250000);
+		metrics.recordExposureError(3, -750000);
+
+		StringWriter writer = new StringWriter();
+		metrics.writeCSV(writer);
+		String[] rows = writer.toString().split("\n");
+		Assert.assertEquals(2, rows.length);
+		Assert.assertEquals("layer,RenderWaitMillis,TransformAndMaskMillis,DisplaySwitchMillis,ExposureMillis,GCodeRoundTripMillis,PauseMillis,NotificationFanOutMillis,gCodes,exposureErrorMillis", rows[0]);
+		Assert.assertEquals("3,1.500,0.000,0.000,0.000,0.250,0.000,0.000,1,-0.750", rows[1]);
+	}
+}
@@ -0,0 +1,106 @@
+package org.area515.resinprinter.job;
+
+import org.area515.resinprinter.job.PrintJobMetrics.Phase;
+import org.area515.resinprinter.job.PrintTimeSimulator.PrintTimeEstimate;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.printer.SlicingProfile;
+import org.area515.resinprinter.printer.SlicingProfile.InkConfig;
+import org.area515.resinprinter.server.HostProperties;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class PrintTimeSimulatorTest {
+	private Printer createTestPrinter() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		Printer printer = AbstractPrintFileProcessorTest.createTestPrintJob(processor).getPrinter();
+		SlicingProfile slicingProfile = printer.getConfiguration().getSlicingProfile();
+		InkConfig inkConfig = slicingProfile.getSelectedInkConfig();
+		Mockito.when(inkConfig.getExposureTime()).thenReturn(1000);
+		Mockito.when(inkConfig.getFirstLayerExposureTime()).thenReturn(5000);
+		Mockito.when(inkConfig.getNumberOfFirstLayers()).thenReturn(2);
+		Mockito.when(slicingProfile.getExposureTimeCalculator()).thenReturn("$CURSLICE < $NumFirstLayers ? $FirstLayerTime : $LayerTime");
+		Mockito.when(slicingProfile.getgCodeHeader()).thenReturn("G21\n;<Delay> 500");
+		//performHeader() reads the lift distance from the lift feed rate and the other way around
+		Mockito.when(slicingProfile.getLiftFeedRate()).thenReturn(5.0);
+		Mockito.when(slicingProfile.getLiftDistance()).thenReturn(60.0);
+		return printer;
+	}
+
+	@Test
+	public void simulatesHeaderAndEveryLayer() throws Exception {
+		PrintTimeSimulator simulator = new PrintTimeSimulator(createTestPrinter(), HostProperties.Instance().buildScriptEngine());
+		simulator.setResponseTime(50);
+		simulator.setRenderTime(200);
+		PrintTimeEstimate estimate = simulator.simulate(3);
+
+		Assert.assertEquals(550, estimate.getHeaderTime());
+		Assert.assertEquals(3, estimate.getLayers().size());
+		Assert.assertEquals(5000, estimate.getLayers().get(0).getExposureTime());
+		Assert.assertEquals(5000, estimate.getLayers().get(1).getExposureTime());
+		Assert.assertEquals(1000, estimate.getLayers().get(2).getExposureTime());
+		//Moving 5mm up and back down at 60mm/minute takes longer than getting a response to the lift gcode
+		Assert.assertEquals(10000, estimate.getLayers().get(0).getLiftTime());
+		Assert.assertEquals(1, estimate.getLayers().get(0).getGCodes());
+		//Each image renders while the header or the layer before it runs
+		Assert.assertEquals(15000, estimate.getLayers().get(0).getTotalTime());
+		Assert.assertEquals(550 + 15000, estimate.getLayers().get(1).getStartTime());
+		Assert.assertEquals(550 + 15000 + 15000 + 11000, estimate.getTotalTime());
+		Assert.assertEquals(0, estimate.getRenderBoundLayers());
+
+		//Longer than the header and the short exposures take, but not the long first exposures
+		simulator.setRenderTime(12000);
+		estimate = simulator.simulate(4);
+		Assert.assertEquals(2, estimate.getRenderBoundLayers());
+		Assert.assertEquals(12000 - 550, estimate.getLayers().get(0).getRenderWait());
+		Assert.assertFalse(estimate.getLayers().get(1).isRenderBound());
+		Assert.assertFalse(estimate.getLayers().get(2).isRenderBound());
+		Assert.assertEquals(12000 - 11000, estimate.getLayers().get(3).getRenderWait());
+		Assert.assertEquals(12000, estimate.getLayers().get(3).getRenderTime());
+	}
+
+	@Test
+	public void remainderStartsFromTheJobsCurrentLayer() throws Exception {
+		Printer printer = createTestPrinter();
+		PrintJob printJob = Mockito.mock(PrintJob.class);
+		Mockito.when(printJob.getTotalSlices()).thenReturn(4);
+		Mockito.when(printJob.getCurrentSlice()).thenReturn(2);
+		Mockito.when(printJob.getExposureTime()).thenReturn(800);
+		Mockito.when(printJob.isExposureTimeOverriden()).thenReturn(true);
+		Mockito.when(printJob.getZLiftDistance()).thenReturn(5.0);
+		Mockito.when(printJob.getZLiftSpeed()).thenReturn(600.0);
+
+		//Layer 1 had 1500ms to render in and was waited on for another 800ms, layer 0 was never waited on
+		PrintJobMetrics metrics = new PrintJobMetrics();
+		metrics.record(0, Phase.Exposure, 1000000000L);
+		metrics.record(0, Phase.GCodeRoundTrip, 500000000L);
+		metrics.record(1, Phase.RenderWait, 800000000L);
+		metrics.record(1, Phase.Exposure, 1000000000L);
+		Mockito.when(printJob.getMetrics()).thenReturn(metrics);
+
+		PrintTimeSimulator simulator = new PrintTimeSimulator(printer, HostProperties.Instance().buildScriptEngine());
+		PrintTimeEstimate estimate = simulator.simulateRemainder(printJob);
+		Assert.assertEquals(0, estimate.getHeaderTime());
+		Assert.assertEquals(2, estimate.getLayers().size());
+		Assert.assertEquals(3, estimate.getLayers().get(0).getLayer());
+		Assert.assertEquals(800, estimate.getLayers().get(0).getExposureTime());
+		Assert.assertEquals(2300, estimate.getLayers().get(0).getRenderTime());
+		//The image of the layer that's printing is already rendered
+		Assert.assertFalse(estimate.getLayers().get(0).isRenderBound());
+		Assert.assertEquals(2300 - (800 + 1000), estimate.getLayers().get(1).getRenderWait());
+		Assert.assertEquals(800 + 1000 + 500 + 800 + 1000, estimate.getTotalTime());
+	}
+
+	@Test
+	public void creationWorkshopScenesAreNotSimulated() throws Exception {
+		PrintJob printJob = Mockito.mock(PrintJob.class);
+		Mockito.doReturn(Mockito.mock(CreationWorkshopSceneFileProcessor.class)).when(printJob).getPrintFileProcessor();
+
+		PrintTimeSimulator simulator = new PrintTimeSimulator(createTestPrinter(), HostProperties.Instance().buildScriptEngine());
+		try {
+			simulator.simulateRemainder(printJob);
+			Assert.fail("The scene's gcode file would have been ignored");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
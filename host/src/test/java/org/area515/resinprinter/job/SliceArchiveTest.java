@@ -0,0 +1,113 @@
+package org.area515.resinprinter.job;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceArchiveTest {
+	private File buildArchive(File directory) throws IOException {
+		File archiveFile = new File(directory, "scene.cws");
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archiveFile));
+		try {
+			zip.putNextEntry(new ZipEntry("scene/"));
+			zip.putNextEntry(new ZipEntry("scene/scene.gcode"));
+			zip.write(";Number of Slices = 2\n".getBytes("UTF-8"));
+			for (int t = 0; t < 2; t++) {
+				BufferedImage image = new BufferedImage(7, 5, BufferedImage.TYPE_3BYTE_BGR);
+				image.setRGB(t, t, 0xffffffff);
+				zip.putNextEntry(new ZipEntry("scene/scene000" + t + ".png"));
+				ImageIO.write(image, "png", zip);
+			}
+		} finally {
+			zip.close();
+		}
+		return archiveFile;
+	}
+
+	private void assertArchiveContents(SliceArchive archive) throws IOException {
+		Assert.assertEquals(3, archive.getEntryNames().size());
+		Assert.assertEquals(1, archive.findEntries("gcode").size());
+		Assert.assertEquals("scene/scene.gcode", archive.findEntries("GCODE").get(0));
+		Assert.assertEquals(2, archive.findEntries("png").size());
+		Assert.assertTrue(archive.hasEntry("scene/scene0001.png"));
+		Assert.assertFalse(archive.hasEntry("scene/scene0002.png"));
+
+		InputStream stream = archive.getInputStream("scene/scene.gcode");
+		try {
+			Assert.assertEquals(";Number of Slices = 2\n", IOUtils.toString(stream, "UTF-8"));
+		} finally {
+			stream.close();
+		}
+
+		BufferedImage image = archive.readImage("scene/scene0001.png");
+		Assert.assertEquals(0xffffffff, image.getRGB(1, 1));
+		Assert.assertEquals(0xff000000, image.getRGB(0, 0));
+		Assert.assertEquals(0xffffffff, archive.readImage("scene/scene0000.png").getRGB(0, 0));
+	}
+
+	@Test
+	public void readsTheSameEntriesInPlaceAndExtracted() throws IOException {
+		File directory = Files.createTempDirectory("sliceArchive").toFile();
+		try {
+			File archiveFile = buildArchive(directory);
+			File extractDirectory = new File(directory, "extract");
+			Assert.assertTrue(SliceArchive.canReadInPlace(archiveFile));
+
+			SliceArchive archive = SliceArchive.open(archiveFile, extractDirectory);
+			try {
+				assertArchiveContents(archive);
+
+				for (String entryName : archive.getEntryNames()) {
+					InputStream stream = archive.getInputStream(entryName);
+					try {
+						FileUtils.copyInputStreamToFile(stream, new File(extractDirectory, entryName));
+					} finally {
+						stream.close();
+					}
+				}
+			} finally {
+				archive.close();
+			}
+
+			archive = SliceArchive.open(archiveFile, extractDirectory);
+			try {
+				assertArchiveContents(archive);
+			} finally {
+				archive.close();
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void truncatedArchivesCantBeReadInPlace() throws IOException {
+		File directory = Files.createTempDirectory("sliceArchive").toFile();
+		try {
+			File archiveFile = buildArchive(directory);
+			RandomAccessFile file = new RandomAccessFile(archiveFile, "rw");
+			try {
+				//Chops off the central directory but leaves the local headers
+				file.setLength(file.length() - 30);
+			} finally {
+				file.close();
+			}
+			Assert.assertFalse(SliceArchive.canReadInPlace(archiveFile));
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+}
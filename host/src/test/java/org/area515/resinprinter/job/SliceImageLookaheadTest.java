@@ -0,0 +1,140 @@
+package org.area515.resinprinter.job;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.area515.resinprinter.job.render.ImageBufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceImageLookaheadTest {
+	private List<String> preparedImages = new CopyOnWriteArrayList<String>();
+
+	private SliceImageLookahead.ImagePreparer preparer = new SliceImageLookahead.ImagePreparer() {
+		@Override
+		public BufferedImage prepareImage(String imageName) throws Exception {
+			preparedImages.add(imageName);
+			BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+			image.setRGB(0, 0, Integer.parseInt(imageName));
+			return image;
+		}
+	};
+
+	@Test
+	public void preparesImagesAheadInOrder() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			SliceImageLookahead lookahead = new SliceImageLookahead(Arrays.asList("1", "2", "3", "4", "5", "6"), 2, executor, preparer);
+			Assert.assertEquals(1, lookahead.takeImage("1").getRGB(0, 0));
+			Assert.assertEquals(2, lookahead.takeImage("2").getRGB(0, 0));
+
+			//3 was already queued, 4 gets thrown away
+			Assert.assertEquals(5, lookahead.takeImage("5").getRGB(0, 0));
+			Assert.assertEquals(6, lookahead.takeImage("6").getRGB(0, 0));
+
+			//Slices that were never scanned are prepared on the spot
+			Assert.assertEquals(9, lookahead.takeImage("9").getRGB(0, 0));
+			lookahead.cancel();
+
+			//Nothing is ever prepared twice
+			Assert.assertEquals(preparedImages.size(), new HashSet<String>(preparedImages).size());
+			Assert.assertTrue(preparedImages.containsAll(Arrays.asList("1", "2", "5", "6", "9")));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	//Each image is as wide as its name, so the pool hands the same image back when asked for that width
+	private static class PooledPreparer implements SliceImageLookahead.ImagePreparer {
+		private Map<String, BufferedImage> preparedImages = new ConcurrentHashMap<String, BufferedImage>();
+		private CountDownLatch finishSlowImage = new CountDownLatch(1);
+		private String slowImage;
+
+		public PooledPreparer(String slowImage) {
+			this.slowImage = slowImage;
+		}
+
+		@Override
+		public BufferedImage prepareImage(String imageName) throws Exception {
+			if (imageName.equals(slowImage)) {
+				//Keeps going after it's been cancelled, like a decode that doesn't check for interrupts
+				while (true) {
+					try {
+						finishSlowImage.await();
+						break;
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+			BufferedImage image = ImageBufferPool.acquire(Integer.parseInt(imageName), 1, BufferedImage.TYPE_INT_ARGB);
+			preparedImages.put(imageName, image);
+			return image;
+		}
+
+		public void waitForImage(String imageName) throws InterruptedException {
+			long giveUp = System.currentTimeMillis() + 5000;
+			while (!preparedImages.containsKey(imageName) && System.currentTimeMillis() < giveUp) {
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(imageName + " was never prepared", preparedImages.containsKey(imageName));
+		}
+
+		public void assertReleased(String imageName) {
+			Assert.assertSame(preparedImages.get(imageName), ImageBufferPool.acquire(Integer.parseInt(imageName), 1, BufferedImage.TYPE_INT_ARGB));
+		}
+	}
+
+	@Test
+	public void skippedImagesGoBackToThePool() throws Exception {
+		ImageBufferPool.clear();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			PooledPreparer pooledPreparer = new PooledPreparer("3");
+			SliceImageLookahead lookahead = new SliceImageLookahead(Arrays.asList("1", "2", "3", "4", "5", "6"), 3, executor, pooledPreparer);
+			lookahead.takeImage("1");
+			pooledPreparer.waitForImage("2");
+
+			//2 is finished, 3 is still being prepared and 4 hasn't started
+			lookahead.takeImage("5");
+			pooledPreparer.assertReleased("2");
+
+			pooledPreparer.finishSlowImage.countDown();
+			lookahead.cancel();
+			executor.shutdown();
+			Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+			pooledPreparer.assertReleased("3");
+			Assert.assertFalse(pooledPreparer.preparedImages.containsKey("4"));
+		} finally {
+			executor.shutdownNow();
+			ImageBufferPool.clear();
+		}
+	}
+
+	@Test
+	public void cancelGivesFinishedImagesBackToThePool() throws Exception {
+		ImageBufferPool.clear();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			PooledPreparer pooledPreparer = new PooledPreparer(null);
+			SliceImageLookahead lookahead = new SliceImageLookahead(Arrays.asList("1", "2", "3"), 2, executor, pooledPreparer);
+			pooledPreparer.waitForImage("1");
+			pooledPreparer.waitForImage("2");
+
+			lookahead.cancel();
+			pooledPreparer.assertReleased("1");
+			pooledPreparer.assertReleased("2");
+		} finally {
+			executor.shutdownNow();
+			ImageBufferPool.clear();
+		}
+	}
+}
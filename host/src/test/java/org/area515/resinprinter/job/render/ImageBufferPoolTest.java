@@ -0,0 +1,73 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImageBufferPoolTest {
+	@Before
+	public void emptyPool() {
+		ImageBufferPool.setMaxIdleImages(2);
+		ImageBufferPool.clear();
+	}
+
+	@After
+	public void restorePool() {
+		ImageBufferPool.setMaxIdleImages(ImageBufferPool.DEFAULT_MAX_IDLE_IMAGES);
+		ImageBufferPool.clear();
+	}
+
+	@Test
+	public void reusesReleasedImagesOfTheSameShape() {
+		BufferedImage image = ImageBufferPool.acquire(40, 30, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(5, 5, 0xffffffff);
+		ImageBufferPool.release(image);
+		ImageBufferPool.release(image);
+		Assert.assertEquals(1, ImageBufferPool.getIdleImageCount());
+
+		Assert.assertNotSame(image, ImageBufferPool.acquire(40, 30, BufferedImage.TYPE_INT_RGB));
+		Assert.assertNotSame(image, ImageBufferPool.acquire(41, 30, BufferedImage.TYPE_INT_ARGB));
+
+		long reused = ImageBufferPool.getReusedImageCount();
+		BufferedImage reusedImage = ImageBufferPool.acquire(40, 30, BufferedImage.TYPE_INT_ARGB);
+		Assert.assertSame(image, reusedImage);
+		Assert.assertEquals(reused + 1, ImageBufferPool.getReusedImageCount());
+		Assert.assertEquals(0, reusedImage.getRGB(5, 5));
+		Assert.assertEquals(0, ImageBufferPool.getIdleImageCount());
+	}
+
+	@Test
+	public void letsGoOfTheOldestImagesFirst() {
+		BufferedImage oldest = ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+		BufferedImage middle = ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+		BufferedImage newest = ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+		ImageBufferPool.release(oldest);
+		ImageBufferPool.release(middle);
+		ImageBufferPool.release(newest);
+		Assert.assertEquals(2, ImageBufferPool.getIdleImageCount());
+
+		Assert.assertSame(newest, ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertSame(middle, ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertNotSame(oldest, ImageBufferPool.acquire(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+	}
+
+	@Test
+	public void ringImagesGoBackToThePool() {
+		RenderingFileData data = new RenderingFileData();
+		data.initialize(Boolean.TRUE, 20, 10);
+		data.initialize(Boolean.FALSE, 20, 10);
+		BufferedImage current = data.getCurrentImage();
+		data.releaseImages();
+		Assert.assertEquals(2, ImageBufferPool.getIdleImageCount());
+		Assert.assertNull(data.get(Boolean.TRUE));
+
+		RenderingFileData nextPrint = new RenderingFileData();
+		nextPrint.initialize(Boolean.TRUE, 20, 10);
+		nextPrint.initialize(Boolean.FALSE, 20, 10);
+		Assert.assertEquals(0, ImageBufferPool.getIdleImageCount());
+		Assert.assertTrue(current == nextPrint.get(Boolean.TRUE).getImage() || current == nextPrint.get(Boolean.FALSE).getImage());
+	}
+}
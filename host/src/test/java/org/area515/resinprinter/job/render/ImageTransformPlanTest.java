@@ -0,0 +1,146 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageTransformPlanTest {
+	//Tall enough that the rows are split between threads
+	private static final int WIDTH = 97;
+	private static final int HEIGHT = 131;
+	private static final int[] TYPES = {
+		BufferedImage.TYPE_INT_RGB,
+		BufferedImage.TYPE_INT_ARGB,
+		BufferedImage.TYPE_INT_ARGB_PRE,
+		BufferedImage.TYPE_3BYTE_BGR,
+		BufferedImage.TYPE_BYTE_GRAY};
+
+	private static BufferedImage buildSlice(int type) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+		Random random = new Random(515);
+		Graphics2D graphics = image.createGraphics();
+		for (int t = 0; t < 20; t++) {
+			graphics.setColor(new Color(random.nextInt(), type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE));
+			graphics.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(WIDTH / 2) + 1, random.nextInt(HEIGHT / 2) + 1);
+		}
+		graphics.dispose();
+		return image;
+	}
+
+	private static Paint buildMask() {
+		return new RadialGradientPaint(WIDTH / 2f, HEIGHT / 2f, WIDTH / 2f, new float[]{0f, 1f}, new Color[]{new Color(0, 0, 0, 0), new Color(40, 20, 0, 200)});
+	}
+
+	//This is how every layer was transformed and masked before there were plans
+	private static BufferedImage transformTheOldWay(BufferedImage image, AffineTransform transform, Paint mask) {
+		BufferedImage after = image;
+		if (!transform.isIdentity()) {
+			after = new BufferedImage(WIDTH, HEIGHT, image.getType());
+			after = new AffineTransformOp(transform, AffineTransformOp.TYPE_BILINEAR).filter(image, after);
+		}
+		if (mask != null) {
+			Graphics2D graphics = after.createGraphics();
+			graphics.setPaint(mask);
+			graphics.fillRect(0, 0, WIDTH, HEIGHT);
+			graphics.dispose();
+		}
+		return after;
+	}
+
+	//Masked colors that are almost transparent can't be compared, Java2D rounds them differently depending on the Paint
+	private static BufferedImage premultiply(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB) {
+			return image;
+		}
+
+		BufferedImage premultiplied = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D graphics = premultiplied.createGraphics();
+		graphics.setComposite(AlphaComposite.Src);
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return premultiplied;
+	}
+
+	private static void assertTransformsTheOldWay(AffineTransform transform, Paint mask, int maxDifference) {
+		for (int type : TYPES) {
+			ImageTransformPlan plan = ImageTransformPlan.compile(transform, mask, WIDTH, HEIGHT, type);
+			BufferedImage source = buildSlice(type);
+			BufferedImage actual = plan.isIdentity() ? source : new BufferedImage(WIDTH, HEIGHT, type);
+			plan.apply(source, actual);
+			BufferedImage expectedImage = transformTheOldWay(buildSlice(type), transform, mask);
+			if (mask != null) {
+				expectedImage = premultiply(expectedImage);
+				actual = premultiply(actual);
+			}
+
+			Raster expected = expectedImage.getRaster();
+			Raster actualRaster = actual.getRaster();
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					for (int band = 0; band < expected.getNumBands(); band++) {
+						int difference = Math.abs(expected.getSample(x, y, band) - actualRaster.getSample(x, y, band));
+						if (difference > maxDifference) {
+							Assert.fail("Type:" + type + " differs by " + difference + " in band " + band + " at:" + x + "," + y);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void flipsAndQuarterTurnsCopyPixelsExactly() {
+		AffineTransform flip = new AffineTransform();
+		flip.translate(WIDTH - 3, 2);
+		flip.scale(-1, 1);
+		assertTransformsTheOldWay(flip, null, 0);
+
+		AffineTransform quarterTurn = new AffineTransform();
+		quarterTurn.translate(20, -10);
+		quarterTurn.quadrantRotate(1);
+		assertTransformsTheOldWay(quarterTurn, null, 0);
+	}
+
+	@Test
+	public void scalesLikeAffineTransformOp() {
+		AffineTransform scale = new AffineTransform();
+		scale.scale(1.07, 0.93);
+		scale.translate(-3.3, 4.6);
+		assertTransformsTheOldWay(scale, null, 1);
+
+		AffineTransform rotate = new AffineTransform();
+		rotate.rotate(0.3, WIDTH / 2, HEIGHT / 2);
+		rotate.scale(0.9, 1.1);
+		assertTransformsTheOldWay(rotate, null, 1);
+	}
+
+	@Test
+	public void masksLikeAFilledPaint() {
+		assertTransformsTheOldWay(new AffineTransform(), buildMask(), 2);
+
+		AffineTransform scale = new AffineTransform();
+		scale.scale(0.95, 0.95);
+		scale.translate(2.5, 2.5);
+		assertTransformsTheOldWay(scale, buildMask(), 2);
+	}
+
+	@Test
+	public void onlyAppliesToImagesItWasCompiledFor() {
+		ImageTransformPlan plan = ImageTransformPlan.compile(AffineTransform.getScaleInstance(-1, 1), null, WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		Assert.assertTrue(plan.canApply(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB)));
+		Assert.assertFalse(plan.canApply(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB)));
+		Assert.assertFalse(plan.canApply(new BufferedImage(WIDTH + 1, HEIGHT, BufferedImage.TYPE_INT_ARGB)));
+		Assert.assertFalse(plan.canApply(new BufferedImage(WIDTH + 1, HEIGHT, BufferedImage.TYPE_INT_ARGB).getSubimage(1, 0, WIDTH, HEIGHT)));
+		Assert.assertNull(ImageTransformPlan.compile(new AffineTransform(), null, WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR));
+	}
+}
@@ -0,0 +1,108 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LookaheadRendererTest {
+	private static class BlockingFactory implements LookaheadRenderer.RendererFactory {
+		private RenderingFileData data;
+		private List<CountDownLatch> finishLayer = new ArrayList<CountDownLatch>();
+		private CountDownLatch started = new CountDownLatch(1);
+		private CountDownLatch interrupted = new CountDownLatch(1);
+
+		public BlockingFactory(RenderingFileData data) {
+			this.data = data;
+		}
+
+		@Override
+		public CurrentImageRenderer createRenderer(final Integer imageIndexToBuild, int layer) {
+			final CountDownLatch finish = new CountDownLatch(1);
+			finishLayer.add(finish);
+			return new CurrentImageRenderer(null, null, data, imageIndexToBuild, 1, 1) {
+				@Override
+				public BufferedImage call() {
+					started.countDown();
+					try {
+						finish.await();
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+						return null;
+					}
+					return data.get(imageIndexToBuild).getImage();
+				}
+
+				@Override
+				public void renderImage(BufferedImage image, Graphics2D graphics, RenderingFileData.ImageData imageData) {
+				}
+			};
+		}
+	}
+
+	@Test
+	public void layersThatFinishOutOfOrderAreTakenInOrder() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			RenderingFileData data = new RenderingFileData();
+			BlockingFactory factory = new BlockingFactory(data);
+			LookaheadRenderer renderer = new LookaheadRenderer(data, 3, executor, factory);
+			Assert.assertEquals(4, renderer.getImageCount());
+
+			for (int layer = 0; layer < 3; layer++) {
+				Assert.assertFalse(renderer.isFull());
+				renderer.queueLayer(layer);
+			}
+			Assert.assertTrue(renderer.isFull());
+
+			for (int layer = 2; layer >= 0; layer--) {
+				factory.finishLayer.get(layer).countDown();
+			}
+
+			for (int imageIndex = 0; imageIndex < 3; imageIndex++) {
+				Assert.assertSame(data.get(imageIndex).getImage(), renderer.takeLayer());
+				Assert.assertEquals(Integer.valueOf(imageIndex), renderer.getCurrentImageIndex());
+				Assert.assertEquals(imageIndex, data.getCurrentRenderingPointer());
+			}
+
+			//The ring wraps around to the image that was handed out first
+			renderer.queueLayer(3);
+			renderer.queueLayer(4);
+			factory.finishLayer.get(3).countDown();
+			factory.finishLayer.get(4).countDown();
+			Assert.assertSame(data.get(3).getImage(), renderer.takeLayer());
+			Assert.assertSame(data.get(0).getImage(), renderer.takeLayer());
+			Assert.assertEquals(0, data.getCurrentRenderingPointer());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void cancelInterruptsLayersThatArentTaken() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			RenderingFileData data = new RenderingFileData();
+			BlockingFactory factory = new BlockingFactory(data);
+			LookaheadRenderer renderer = new LookaheadRenderer(data, 2, executor, factory);
+			renderer.queueLayer(0);
+			renderer.queueLayer(1);
+			Assert.assertTrue(renderer.isFull());
+			Assert.assertTrue(factory.started.await(5, TimeUnit.SECONDS));
+
+			renderer.cancel();
+			Assert.assertTrue(factory.interrupted.await(5, TimeUnit.SECONDS));
+			Assert.assertFalse(renderer.isFull());
+			Assert.assertEquals(Integer.valueOf(0), renderer.getCurrentImageIndex());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.area515.resinprinter.job.JobManagerException;
+import org.area515.resinprinter.job.SliceArchive;
+
+/**
+ * Times SlicePngDecoder against ImageIO on a real set of slices and checks that both decode the same area.
+ *
+ * Usage: SlicePngDecoderBenchmark [rounds] <png, directory of pngs, cws or zip>...
+ */
+public class SlicePngDecoderBenchmark {
+	private static void addSlices(File file, List<byte[]> slices) throws IOException {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			Arrays.sort(files);
+			for (File child : files) {
+				addSlices(child, slices);
+			}
+		} else if (FilenameUtils.getExtension(file.getName()).equalsIgnoreCase("png")) {
+			InputStream stream = new FileInputStream(file);
+			try {
+				slices.add(IOUtils.toByteArray(stream));
+			} finally {
+				stream.close();
+			}
+		} else {
+			SliceArchive archive = SliceArchive.open(file, null);
+			try {
+				for (String entryName : archive.findEntries("png")) {
+					InputStream stream = archive.getInputStream(entryName);
+					try {
+						slices.add(IOUtils.toByteArray(stream));
+					} finally {
+						stream.close();
+					}
+				}
+			} finally {
+				archive.close();
+			}
+		}
+	}
+
+	//ImageIO hands back 1 bit slices as TYPE_BYTE_BINARY, which the renderer can't count, so those are counted here
+	private static long computeArea(BufferedImage image) {
+		try {
+			return StandaloneImageRenderer.computePixelArea(image);
+		} catch (JobManagerException e) {
+			long area = 0;
+			if (image.getType() == BufferedImage.TYPE_BYTE_BINARY && image.getColorModel().getPixelSize() == 1 && (image.getColorModel().getRGB(0) & 0xffffff) == 0) {
+				for (byte packedPixels : ((DataBufferByte)image.getRaster().getDataBuffer()).getData()) {
+					area += Integer.bitCount(packedPixels & 0xff);
+				}
+				return area;
+			}
+
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					area += (image.getRGB(x, y) & 0xffffff) != 0 ? 1 : 0;
+				}
+			}
+			return area;
+		}
+	}
+
+	private static long timeImageIO(List<byte[]> slices, long[] areas) throws Exception {
+		long start = System.nanoTime();
+		for (int t = 0; t < slices.size(); t++) {
+			BufferedImage image = ImageIO.read(new ByteArrayInputStream(slices.get(t)));
+			areas[t] = computeArea(image);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static long timeDecoder(List<byte[]> slices, long[] areas) throws Exception {
+		long start = System.nanoTime();
+		for (int t = 0; t < slices.size(); t++) {
+			SlicePngDecoder.DecodedSlice slice = SlicePngDecoder.read(new ByteArrayInputStream(slices.get(t)));
+			areas[t] = slice.getArea() != null ? slice.getArea() : computeArea(slice.getImage());
+		}
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int rounds = 5;
+		int firstPath = 0;
+		if (args.length > 0 && args[0].matches("\\d+")) {
+			rounds = Integer.parseInt(args[0]);
+			firstPath = 1;
+		}
+		if (args.length <= firstPath) {
+			System.out.println("Usage: SlicePngDecoderBenchmark [rounds] <png, directory of pngs, cws or zip>...");
+			return;
+		}
+
+		List<byte[]> slices = new ArrayList<byte[]>();
+		for (int t = firstPath; t < args.length; t++) {
+			addSlices(new File(args[t]), slices);
+		}
+		BufferedImage first = ImageIO.read(new ByteArrayInputStream(slices.get(0)));
+		System.out.println("Slices:" + slices.size() + " size:" + first.getWidth() + "x" + first.getHeight() + " ImageIO type:" + first.getType());
+
+		long[] imageIOAreas = new long[slices.size()];
+		long[] decoderAreas = new long[slices.size()];
+		//The first round warms up both decoders and isn't counted
+		timeImageIO(slices, imageIOAreas);
+		timeDecoder(slices, decoderAreas);
+		long imageIONanos = 0;
+		long decoderNanos = 0;
+		for (int round = 0; round < rounds; round++) {
+			imageIONanos += timeImageIO(slices, imageIOAreas);
+			decoderNanos += timeDecoder(slices, decoderAreas);
+		}
+
+		for (int t = 0; t < slices.size(); t++) {
+			if (imageIOAreas[t] != decoderAreas[t]) {
+				throw new IllegalStateException("Slice " + t + " has an area of " + imageIOAreas[t] + " with ImageIO and " + decoderAreas[t] + " with SlicePngDecoder");
+			}
+		}
+
+		double decodes = (double)rounds * slices.size();
+		System.out.println(String.format("ImageIO:         %8.3fms per slice", imageIONanos / 1000000d / decodes));
+		System.out.println(String.format("SlicePngDecoder: %8.3fms per slice", decoderNanos / 1000000d / decodes));
+		System.out.println(String.format("Speedup:         %8.2fx", (double)imageIONanos / decoderNanos));
+	}
+}
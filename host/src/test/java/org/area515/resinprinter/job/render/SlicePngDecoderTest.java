@@ -0,0 +1,111 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SlicePngDecoderTest {
+	private static final int WIDTH = 203;
+	private static final int HEIGHT = 117;
+
+	//Ovals give rows that compress with every filter type, and anti aliasing gives gray levels in between
+	private static void paintSlice(BufferedImage image, boolean antialias) {
+		Random random = new Random(515);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.black);
+		graphics.fillRect(0, 0, WIDTH, HEIGHT);
+		if (antialias) {
+			graphics.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
+		}
+		for (int t = 0; t < 15; t++) {
+			graphics.setColor(new Color(random.nextInt(0xffffff)));
+			graphics.fillOval(random.nextInt(WIDTH), random.nextInt(HEIGHT), random.nextInt(WIDTH / 2) + 1, random.nextInt(HEIGHT / 2) + 1);
+		}
+		graphics.dispose();
+	}
+
+	private static byte[] writePng(BufferedImage image) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Assert.assertTrue(ImageIO.write(image, "png", output));
+		return output.toByteArray();
+	}
+
+	//Drawing copies gray levels straight across, unlike getRGB() on a gray image
+	private static BufferedImage toRGB(BufferedImage image) {
+		BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = rgb.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return rgb;
+	}
+
+	private static void assertDecodesLikeImageIO(byte[] png, boolean fastPath) throws IOException {
+		BufferedImage expected = toRGB(ImageIO.read(new ByteArrayInputStream(png)));
+		SlicePngDecoder.DecodedSlice slice = SlicePngDecoder.read(new ByteArrayInputStream(png));
+		BufferedImage actual = toRGB(slice.getImage());
+		Assert.assertEquals(fastPath, slice.getArea() != null);
+
+		long area = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals("Pixel at:" + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+				area += (expected.getRGB(x, y) & 0xffffff) != 0 ? 1 : 0;
+			}
+		}
+		if (fastPath) {
+			Assert.assertEquals(area, slice.getArea().longValue());
+		}
+	}
+
+	private static BufferedImage packedImage(int bitDepth, boolean gray) {
+		int colors = 1 << bitDepth;
+		byte[] red = new byte[colors];
+		byte[] green = new byte[colors];
+		byte[] blue = new byte[colors];
+		for (int t = 1; t < colors; t++) {
+			red[t] = (byte)(t * 255 / (colors - 1));
+			green[t] = gray ? red[t] : (byte)(255 - t * 40);
+			blue[t] = gray ? red[t] : (byte)(t * 30);
+		}
+		return new BufferedImage(WIDTH, HEIGHT, bitDepth == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY, new IndexColorModel(bitDepth, colors, red, green, blue));
+	}
+
+	@Test
+	public void decodesGrayscaleLikeImageIO() throws IOException {
+		BufferedImage gray = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY);
+		paintSlice(gray, true);
+		assertDecodesLikeImageIO(writePng(gray), true);
+
+		BufferedImage mono = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+		paintSlice(mono, false);
+		assertDecodesLikeImageIO(writePng(mono), true);
+	}
+
+	@Test
+	public void decodesPalettesLikeImageIO() throws IOException {
+		for (int bitDepth : new int[]{1, 2, 4, 8}) {
+			for (boolean gray : new boolean[]{true, false}) {
+				BufferedImage image = packedImage(bitDepth, gray);
+				paintSlice(image, true);
+				assertDecodesLikeImageIO(writePng(image), true);
+			}
+		}
+	}
+
+	@Test
+	public void leavesColorImagesToImageIO() throws IOException {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		paintSlice(image, true);
+		assertDecodesLikeImageIO(writePng(image), false);
+	}
+}
@@ -0,0 +1,150 @@
+package org.area515.resinprinter.printer;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.area515.resinprinter.projector.ProjectorModel;
+import org.area515.resinprinter.serial.SerialCommunicationsPort;
+import org.area515.resinprinter.server.HostProperties;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+public class ProjectorStatusCacheTest {
+	private static final long STALE_MILLIS = 200;
+
+	private long originalStaleMillis;
+	private SerialCommunicationsPort port;
+	private ProjectorModel projectorModel;
+	private Printer printer;
+
+	@Before
+	public void createPrinter() throws Exception {
+		originalStaleMillis = HostProperties.Instance().getProjectorStatusStaleMillis();
+		Whitebox.setInternalState(HostProperties.Instance(), "projectorStatusStaleMillis", STALE_MILLIS);
+
+		port = Mockito.mock(SerialCommunicationsPort.class);
+		projectorModel = Mockito.mock(ProjectorModel.class);
+		printer = Whitebox.invokeConstructor(Printer.class);
+		printer.setProjectorSerialPort(port);
+		printer.setProjectorModel(projectorModel);
+	}
+
+	@After
+	public void restoreStaleMillis() {
+		Whitebox.setInternalState(HostProperties.Instance(), "projectorStatusStaleMillis", originalStaleMillis);
+	}
+
+	//The status is read on the IO executor, so the cached value only changes a little after it's asked for
+	private <T> T waitFor(Callable<T> status, T expected) throws Exception {
+		long giveUp = System.currentTimeMillis() + 5000;
+		T value = status.call();
+		while ((expected == null ? value != null : !expected.equals(value)) && System.currentTimeMillis() < giveUp) {
+			Thread.sleep(10);
+			value = status.call();
+		}
+		return value;
+	}
+
+	@Test
+	public void bulbHoursAreOnlyReadOnceTheyAreStale() throws Exception {
+		Mockito.when(projectorModel.getBulbHours(port)).thenReturn(100, 101);
+
+		Assert.assertEquals(Integer.valueOf(100), waitFor(() -> printer.getBulbHours(), 100));
+		Assert.assertEquals(Integer.valueOf(100), printer.getBulbHours());
+		Mockito.verify(projectorModel, Mockito.times(1)).getBulbHours(port);
+
+		Thread.sleep(STALE_MILLIS + 50);
+		Assert.assertEquals(Integer.valueOf(100), printer.getBulbHours());
+		Assert.assertEquals(Integer.valueOf(101), waitFor(() -> printer.getBulbHours(), 101));
+		Mockito.verify(projectorModel, Mockito.times(2)).getBulbHours(port);
+	}
+
+	@Test
+	public void bulbHoursAreKeptWhenTheProjectorDoesntAnswer() throws Exception {
+		Mockito.when(projectorModel.getBulbHours(port)).thenReturn(100).thenReturn(null).thenThrow(new IOException("Timeout"));
+
+		Assert.assertEquals(Integer.valueOf(100), waitFor(() -> printer.getBulbHours(), 100));
+		Thread.sleep(STALE_MILLIS + 50);
+		printer.getBulbHours();
+		Mockito.verify(projectorModel, Mockito.timeout(5000).times(2)).getBulbHours(port);
+		Thread.sleep(STALE_MILLIS + 50);
+		printer.getBulbHours();
+		Mockito.verify(projectorModel, Mockito.timeout(5000).times(3)).getBulbHours(port);
+		Assert.assertEquals(Integer.valueOf(100), printer.getBulbHours());
+	}
+
+	@Test
+	public void powerStatusFallsBackToTheLastStateThatWasSet() throws Exception {
+		Mockito.when(projectorModel.getPowerState(port)).thenThrow(new IOException("This feature isn't implemented yet"));
+
+		Assert.assertNull(printer.getProjectorPowerStatus());
+		Mockito.verify(projectorModel, Mockito.timeout(5000).times(1)).getPowerState(port);
+		printer.setProjectorPowerStatus(true);
+		Assert.assertEquals(Boolean.TRUE, printer.getProjectorPowerStatus());
+
+		Thread.sleep(STALE_MILLIS + 50);
+		Assert.assertEquals(Boolean.TRUE, printer.getProjectorPowerStatus());
+		Mockito.verify(projectorModel, Mockito.timeout(5000).times(2)).getPowerState(port);
+		Assert.assertEquals(Boolean.TRUE, printer.getProjectorPowerStatus());
+	}
+
+	@Test
+	public void powerStatusIsReadAgainOnceItIsStale() throws Exception {
+		Mockito.when(projectorModel.getPowerState(port)).thenReturn(true, false);
+
+		Assert.assertEquals(Boolean.TRUE, waitFor(() -> printer.getProjectorPowerStatus(), true));
+		Assert.assertEquals(Boolean.TRUE, printer.getProjectorPowerStatus());
+		Mockito.verify(projectorModel, Mockito.times(1)).getPowerState(port);
+
+		Thread.sleep(STALE_MILLIS + 50);
+		Assert.assertEquals(Boolean.FALSE, waitFor(() -> printer.getProjectorPowerStatus(), false));
+	}
+
+	@Test
+	public void aSlowProjectorNeverHoldsUpTheCaller() throws Exception {
+		final CountDownLatch answer = new CountDownLatch(1);
+		Mockito.when(projectorModel.getBulbHours(port)).then(new Answer<Integer>() {
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				answer.await();
+				return 100;
+			}
+		});
+
+		try {
+			for (int poll = 0; poll < 10; poll++) {
+				Assert.assertNull(printer.getBulbHours());
+				Assert.assertNull(printer.getProjectorPowerStatus());
+			}
+			//Only one refresh was started while the projector was busy answering
+			Mockito.verify(projectorModel, Mockito.timeout(5000).times(1)).getBulbHours(port);
+		} finally {
+			answer.countDown();
+		}
+		Assert.assertEquals(Integer.valueOf(100), waitFor(() -> printer.getBulbHours(), 100));
+		Mockito.verify(projectorModel, Mockito.times(1)).getBulbHours(port);
+	}
+
+	@Test
+	public void newProjectorModelForgetsTheCachedStatus() throws Exception {
+		Mockito.when(projectorModel.getBulbHours(port)).thenReturn(100);
+		Mockito.when(projectorModel.getPowerState(port)).thenReturn(true);
+		Assert.assertEquals(Integer.valueOf(100), waitFor(() -> printer.getBulbHours(), 100));
+		Assert.assertEquals(Boolean.TRUE, waitFor(() -> printer.getProjectorPowerStatus(), true));
+
+		ProjectorModel otherModel = Mockito.mock(ProjectorModel.class);
+		Mockito.when(otherModel.getBulbHours(port)).thenReturn(7);
+		Mockito.when(otherModel.getPowerState(port)).thenReturn(false);
+		printer.setProjectorModel(otherModel);
+		Assert.assertNull(printer.getProjectorPowerStatus());
+		Assert.assertEquals(Integer.valueOf(7), waitFor(() -> printer.getBulbHours(), 7));
+		Assert.assertEquals(Boolean.FALSE, waitFor(() -> printer.getProjectorPowerStatus(), false));
+	}
+}
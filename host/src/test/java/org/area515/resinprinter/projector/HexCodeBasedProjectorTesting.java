@@ -55,4 +55,51 @@ public class HexCodeBasedProjectorTesting {
     		}
     	}
     }
+    
+    @Test
+    public void bulbHoursArriveInPiecesWithHighBytes() throws IOException {
+    	long expectedHours = 400;//=0x90 0x01
+		SerialCommunicationsPort serial = org.mockito.Mockito.mock(SerialCommunicationsPort.class);
+		Mockito.when(serial.read())
+			.thenReturn(new byte[]{0x05, 0x14, 0x00})
+			.thenReturn(null)
+			.thenReturn(new byte[]{0x06, 0x00, 0x00, 0x00, (byte)0x90})
+			.thenReturn(new byte[]{0x01, 0x00, 0x00, (byte)0xA7})
+			.thenThrow(new IllegalArgumentException("The read method should never have been called this time."));
+		
+    	for (ProjectorModel model : projectors) {
+    		if (model.getName().contains("pjd7820hd")) {
+    			Assert.assertEquals(expectedHours, model.getBulbHours(serial).longValue());
+    		}
+    	}
+    }
+    
+    @Test
+    public void wrongResponseFailsWithoutWaitingForTimeout() throws IOException {
+		SerialCommunicationsPort serial = org.mockito.Mockito.mock(SerialCommunicationsPort.class);
+		Mockito.when(serial.read())
+			.thenReturn(new byte[]{0x06, 0x14})
+			.thenThrow(new IllegalArgumentException("The read method should never have been called this time."));
+		
+    	for (ProjectorModel model : projectors) {
+    		if (model.getName().contains("pjd7820hd")) {
+    			long start = System.currentTimeMillis();
+    			Assert.assertNull(model.getBulbHours(serial));
+    			Assert.assertTrue(System.currentTimeMillis() - start < HexCodeBasedProjector.PROJECTOR_TIMEOUT);
+    		}
+    	}
+    }
+    
+    @Test
+    public void responseMatcherWaitsForTheWholeResponse() {
+    	ProjectorResponseMatcher matcher = new ProjectorResponseMatcher(Pattern.compile("[^\\d]*(\\d+)\\x0D"));
+    	Assert.assertEquals(ProjectorResponseMatcher.State.Incomplete, matcher.offer("OK ".getBytes()));
+    	Assert.assertEquals(ProjectorResponseMatcher.State.Incomplete, matcher.offer("12".getBytes()));
+    	Assert.assertNull(matcher.getResult());
+    	Assert.assertEquals(ProjectorResponseMatcher.State.Matched, matcher.offer("34\r".getBytes()));
+    	Assert.assertEquals("1234", new String(matcher.getResult()));
+    	
+    	matcher = new ProjectorResponseMatcher(Pattern.compile("[^\\d]*(\\d+)\\x0D"));
+    	Assert.assertEquals(ProjectorResponseMatcher.State.Mismatched, matcher.offer("12x".getBytes()));
+    }
 }
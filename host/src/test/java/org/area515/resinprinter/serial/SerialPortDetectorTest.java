@@ -0,0 +1,230 @@
+package org.area515.resinprinter.serial;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.area515.resinprinter.printer.ComPortSettings;
+import org.area515.resinprinter.serial.SerialPortDetector.Detection;
+import org.area515.resinprinter.serial.SerialPortDetector.PortProbe;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerialPortDetectorTest {
+	private ExecutorService executor = Executors.newCachedThreadPool();
+
+	/**
+	 * Like a ConsoleCommPort, but it takes latencyMillis to answer a probe and only the device port answers it.
+	 */
+	public static class ScriptedLatencyPort implements SerialCommunicationsPort {
+		private String name;
+		private long latencyMillis;
+		private boolean device;
+
+		public ScriptedLatencyPort(String name, long latencyMillis, boolean device) {
+			this.name = name;
+			this.latencyMillis = latencyMillis;
+			this.device = device;
+		}
+
+		@Override
+		public void open(String controllingDevice, int timeout, ComPortSettings settings) {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void write(byte[] gcode) {
+		}
+
+		@Override
+		public byte[] read() {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class ScriptedProbe implements PortProbe<String> {
+		private AtomicInteger probes = new AtomicInteger();
+		private AtomicInteger interrupted = new AtomicInteger();
+		private AtomicInteger maxConcurrentProbes = new AtomicInteger();
+		private ConcurrentHashMap<String, AtomicInteger> probesByPort = new ConcurrentHashMap<String, AtomicInteger>();
+
+		@Override
+		public String probe(SerialCommunicationsPort port) {
+			ScriptedLatencyPort scriptedPort = (ScriptedLatencyPort)port;
+			AtomicInteger concurrentProbes = probesByPort.computeIfAbsent(port.getName(), name -> new AtomicInteger());
+			maxConcurrentProbes.accumulateAndGet(concurrentProbes.incrementAndGet(), Math::max);
+			probes.incrementAndGet();
+			try {
+				Thread.sleep(scriptedPort.latencyMillis);
+				return scriptedPort.device ? "Firmware" : null;
+			} catch (InterruptedException e) {
+				interrupted.incrementAndGet();
+				return null;
+			} finally {
+				concurrentProbes.decrementAndGet();
+			}
+		}
+
+		@Override
+		public String remembered(SerialCommunicationsPort port, String rememberedValue) {
+			return rememberedValue;
+		}
+
+		@Override
+		public String remember(String detected) {
+			return detected;
+		}
+	}
+
+	private static class PortNameFingerprints extends SerialPortFingerprints {
+		public PortNameFingerprints() {
+			super(null, null);
+		}
+
+		@Override
+		public String getFingerprint(String portName) {
+			return "usb:0403:6001:" + portName;
+		}
+	}
+
+	private List<SerialCommunicationsPort> buildPorts(int count, int devicePort, long latencyMillis) {
+		List<SerialCommunicationsPort> ports = new ArrayList<SerialCommunicationsPort>();
+		for (int port = 0; port < count; port++) {
+			ports.add(new ScriptedLatencyPort("/dev/ttyUSB" + port, port == devicePort ? latencyMillis : latencyMillis * 10, port == devicePort));
+		}
+		return ports;
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void probesEveryPortAtOnceAndCancelsTheRest() throws Exception {
+		SerialPortDetector detector = new SerialPortDetector(new SerialPortFingerprints(null, null), executor);
+		ScriptedProbe probe = new ScriptedProbe();
+		long start = System.currentTimeMillis();
+		Detection<String> detection = detector.detect("PrinterFirmware", buildPorts(8, 5, 200), probe);
+
+		Assert.assertEquals("/dev/ttyUSB5", detection.getPort().getName());
+		Assert.assertEquals("Firmware", detection.getDetected());
+		//One after another this would take 200ms plus 2 seconds for each of the five ports before it
+		Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+		Assert.assertEquals(8, probe.probes.get());
+		executor.shutdown();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+		Assert.assertEquals(7, probe.interrupted.get());
+	}
+
+	@Test
+	public void probesOneAtATimeWithoutAnExecutor() throws Exception {
+		SerialPortDetector detector = new SerialPortDetector(new SerialPortFingerprints(null, null), null);
+		ScriptedProbe probe = new ScriptedProbe();
+		Detection<String> detection = detector.detect("PrinterFirmware", buildPorts(3, 1, 10), probe);
+		Assert.assertEquals("/dev/ttyUSB1", detection.getPort().getName());
+		Assert.assertEquals(2, probe.probes.get());
+		Assert.assertNull(detector.detect("PrinterFirmware", buildPorts(3, 3, 10), probe));
+	}
+
+	@Test
+	public void aPortIsOnlyProbedByOneDetectionAtATime() throws Exception {
+		final SerialPortDetector detector = new SerialPortDetector(new SerialPortFingerprints(null, null), executor);
+		final ScriptedProbe probe = new ScriptedProbe();
+		final List<SerialCommunicationsPort> ports = buildPorts(4, 4, 20);
+		List<Future<Detection<String>>> detections = new ArrayList<Future<Detection<String>>>();
+		ExecutorService printers = Executors.newFixedThreadPool(3);
+		try {
+			for (int printer = 0; printer < 3; printer++) {
+				detections.add(printers.submit(() -> detector.detect("Projector", ports, probe)));
+			}
+			for (Future<Detection<String>> detection : detections) {
+				Assert.assertNull(detection.get());
+			}
+		} finally {
+			printers.shutdownNow();
+		}
+
+		Assert.assertEquals(12, probe.probes.get());
+		Assert.assertEquals(1, probe.maxConcurrentProbes.get());
+	}
+
+	@Test
+	public void rememberedPortsAreNotProbed() throws Exception {
+		SerialPortDetector detector = new SerialPortDetector(new PortNameFingerprints(), executor);
+		ScriptedProbe probe = new ScriptedProbe();
+		Assert.assertEquals("/dev/ttyUSB2", detector.detect("PrinterFirmware", buildPorts(4, 2, 10), probe).getPort().getName());
+		Assert.assertEquals(4, probe.probes.get());
+
+		probe = new ScriptedProbe();
+		Detection<String> detection = detector.detect("PrinterFirmware", buildPorts(4, 2, 10), probe);
+		Assert.assertEquals("/dev/ttyUSB2", detection.getPort().getName());
+		Assert.assertEquals("Firmware", detection.getDetected());
+		Assert.assertEquals(0, probe.probes.get());
+
+		//A projector was never found behind that adapter
+		probe = new ScriptedProbe();
+		Assert.assertNull(detector.detect("Projector", buildPorts(4, 4, 10), probe));
+		Assert.assertEquals(4, probe.probes.get());
+
+		detector.forget("PrinterFirmware", detection.getPort());
+		probe = new ScriptedProbe();
+		detector.detect("PrinterFirmware", buildPorts(4, 2, 10), probe);
+		Assert.assertEquals(4, probe.probes.get());
+	}
+
+	@Test
+	public void adaptersAreFingerprintedFromSysfs() throws Exception {
+		File root = Files.createTempDirectory("sysfs").toFile();
+		try {
+			File usbDevice = new File(root, "devices/usb1/1-1");
+			File usbInterface = new File(usbDevice, "1-1:1.0/ttyUSB0");
+			usbInterface.mkdirs();
+			FileUtils.writeStringToFile(new File(usbDevice, "idVendor"), "0403\n");
+			FileUtils.writeStringToFile(new File(usbDevice, "idProduct"), "6001\n");
+			FileUtils.writeStringToFile(new File(usbDevice, "serial"), "A9007Kx\n");
+			File tty = new File(root, "class/tty/ttyUSB0");
+			tty.mkdirs();
+			Files.createSymbolicLink(new File(tty, "device").toPath(), usbInterface.getParentFile().toPath());
+			new File(root, "class/tty/ttyS0").mkdirs();
+
+			File fingerprintFile = new File(root, "fingerprints.properties");
+			SerialPortFingerprints fingerprints = new SerialPortFingerprints(new File(root, "class/tty"), fingerprintFile);
+			Assert.assertEquals("usb:0403:6001:A9007Kx", fingerprints.getFingerprint("/dev/ttyUSB0"));
+			Assert.assertNull(fingerprints.getFingerprint("/dev/ttyS0"));
+			Assert.assertNull(fingerprints.getFingerprint("/dev/ttyACM0"));
+
+			fingerprints.remember("Projector", "usb:0403:6001:A9007Kx", "Acer");
+			Assert.assertEquals("Acer", new SerialPortFingerprints(null, fingerprintFile).getRemembered("Projector", "usb:0403:6001:A9007Kx"));
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+
+import org.area515.resinprinter.display.AlreadyAssignedException;
+import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.printer.ComPortSettings;
+import org.area515.util.IOUtilities;
+import org.area515.util.IOUtilities.ParseState;
+
+/**
+ * Times how long IOUtilities.readLine takes to hand back the firmware's "ok" for a gcode, with ConsoleCommPort's
+ * instant responses as the baseline, for a firmware that polls for its response and one that waits for it.
+ *
+ * Usage: SerialReadLatencyBenchmark [gcodes] [firmware response millis]
+ */
+public class SerialReadLatencyBenchmark {
+	//Hides that the port can be waited on so that readLine has to poll it
+	private static class PollingPort implements SerialCommunicationsPort {
+		private SerialCommunicationsPort port;
+
+		public PollingPort(SerialCommunicationsPort port) {
+			this.port = port;
+		}
+
+		@Override
+		public void open(String controllingDevice, int timeout, ComPortSettings settings) throws AlreadyAssignedException, InappropriateDeviceException {
+			port.open(controllingDevice, timeout, settings);
+		}
+
+		@Override
+		public void close() {
+			port.close();
+		}
+
+		@Override
+		public void setName(String name) {
+			port.setName(name);
+		}
+
+		@Override
+		public String getName() {
+			return port.getName();
+		}
+
+		@Override
+		public void write(byte[] data) throws IOException {
+			port.write(data);
+		}
+
+		@Override
+		public byte[] read() throws IOException {
+			return port.read();
+		}
+	}
+
+	private static void time(String name, SerialCommunicationsPort port, int gcodes, long responseMillis) throws Exception {
+		port.open(name, 0, null);
+		StringBuilder builder = new StringBuilder();
+		long worstMillis = 0;
+		long start = System.nanoTime();
+		for (int t = 0; t < gcodes; t++) {
+			long gcodeStart = System.nanoTime();
+			port.write("G1 Z1\n".getBytes());
+			ParseState state = IOUtilities.readLine(null, port, builder, 0, 10000, IOUtilities.CPU_LIMITING_DELAY);
+			if (state.currentLine == null) {
+				throw new IllegalStateException(name + " timed out");
+			}
+			worstMillis = Math.max(worstMillis, (System.nanoTime() - gcodeStart) / 1000000 - responseMillis);
+		}
+		double averageMillis = (System.nanoTime() - start) / 1000000.0 / gcodes - responseMillis;
+		port.close();
+		System.out.println(String.format("%-30s %8.2fms average %6dms worst latency after the response", name, averageMillis, worstMillis));
+	}
+
+	public static void main(String[] args) throws Exception {
+		int gcodes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		long responseMillis = args.length > 1 ? Long.parseLong(args[1]) : 15;
+
+		time("ConsoleCommPort", new ConsoleCommPort(), gcodes, 0);
+
+		time("Polled firmware", new PollingPort(new SimulatedFirmwarePort(responseMillis)), gcodes, responseMillis);
+		time("Event driven firmware", new SimulatedFirmwarePort(responseMillis), gcodes, responseMillis);
+	}
+}
@@ -0,0 +1,51 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+
+import org.area515.util.IOUtilities;
+import org.area515.util.IOUtilities.ParseState;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerialReadQueueTest {
+	@Test
+	public void nothingThatArrivesIsLost() throws Exception {
+		SerialReadQueue queue = new SerialReadQueue();
+		Assert.assertNull(queue.poll());
+		Assert.assertNull(queue.poll(5));
+
+		queue.add("o".getBytes());
+		queue.add("k\n".getBytes());
+		queue.fail(new IOException("Unplugged"));
+		queue.add("wait".getBytes());
+		Assert.assertEquals("ok\n", new String(queue.poll(5)));
+		try {
+			queue.poll();
+			Assert.fail("The failure should have been thrown once the data before it was read");
+		} catch (IOException e) {
+			Assert.assertEquals("Unplugged", e.getMessage());
+		}
+		Assert.assertEquals("wait", new String(queue.poll()));
+		Assert.assertNull(queue.poll());
+	}
+
+	@Test
+	public void readLineWakesUpWhenTheFirmwareResponds() throws Exception {
+		int cpuLimitingDelay = 2000;
+		SimulatedFirmwarePort port = new SimulatedFirmwarePort(20);
+		port.write("G1 Z1\n".getBytes());
+
+		long start = System.currentTimeMillis();
+		ParseState state = IOUtilities.readLine(null, port, new StringBuilder(), 0, 5000, cpuLimitingDelay);
+		long elapsed = System.currentTimeMillis() - start;
+		Assert.assertEquals("ok\n", state.currentLine);
+		Assert.assertTrue("Took " + elapsed + "ms to read the response", elapsed < cpuLimitingDelay / 2);
+
+		//A timeout is still honored even though it's shorter than the cpu limiting delay
+		start = System.currentTimeMillis();
+		state = IOUtilities.readLine(null, port, new StringBuilder(), 0, 50, cpuLimitingDelay);
+		elapsed = System.currentTimeMillis() - start;
+		Assert.assertNull(state.currentLine);
+		Assert.assertTrue("Took " + elapsed + "ms to time out", elapsed < cpuLimitingDelay / 2);
+	}
+}
@@ -0,0 +1,71 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.area515.resinprinter.printer.ComPortSettings;
+
+/**
+ * A port whose firmware answers every write with "ok" after responseMillis, from another thread just like a serial
+ * port event thread would.
+ */
+public class SimulatedFirmwarePort implements BlockingSerialCommunicationsPort {
+	private static final ScheduledExecutorService firmware = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "SimulatedFirmware");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private SerialReadQueue readQueue = new SerialReadQueue();
+	private String name = "Simulated firmware";
+	private long responseMillis;
+
+	public SimulatedFirmwarePort(long responseMillis) {
+		this.responseMillis = responseMillis;
+	}
+
+	@Override
+	public void open(String controllingDevice, int timeout, ComPortSettings settings) {
+		readQueue.clear();
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void write(byte[] data) {
+		firmware.schedule(new Runnable() {
+			@Override
+			public void run() {
+				readQueue.add("ok\n".getBytes());
+			}
+		}, responseMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public byte[] read() throws IOException {
+		return readQueue.poll();
+	}
+
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return readQueue.poll(timeoutMillis);
+	}
+}
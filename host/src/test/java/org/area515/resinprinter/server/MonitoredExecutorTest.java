@@ -0,0 +1,53 @@
+package org.area515.resinprinter.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MonitoredExecutorTest {
+	@Test
+	public void measuresQueueAndRunTime() throws Exception {
+		MonitoredExecutor executor = new MonitoredExecutor("TestThread", 1, 0);
+		try {
+			final CountDownLatch started = new CountDownLatch(1);
+			final CountDownLatch blocker = new CountDownLatch(1);
+			Future<?> blocking = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						blocker.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			Future<?> waiting = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+
+			started.await();
+			Assert.assertEquals(1, executor.getMetrics().getQueueLength());
+			Thread.sleep(50);
+			blocker.countDown();
+			blocking.get();
+			waiting.get();
+			executor.shutdown();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+
+			MonitoredExecutor.Metrics metrics = executor.getMetrics();
+			Assert.assertEquals("TestThread", metrics.getName());
+			Assert.assertEquals(2, metrics.getCompletedTasks());
+			Assert.assertEquals(0, metrics.getQueueLength());
+			Assert.assertTrue("The second task waited behind the first:" + metrics.getMaxQueueMillis(), metrics.getMaxQueueMillis() >= 40);
+			Assert.assertTrue("The first task ran until it was released:" + metrics.getMaxRunMillis(), metrics.getMaxRunMillis() >= 40);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
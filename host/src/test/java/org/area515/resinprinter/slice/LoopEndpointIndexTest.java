@@ -0,0 +1,56 @@
+package org.area515.resinprinter.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Triangle3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoopEndpointIndexTest {
+	private List<Line3d> loop(double x1, double y1, double x2, double y2) {
+		List<Line3d> lines = new ArrayList<Line3d>();
+		lines.add(new Line3d(new Point3d(x1, y1, 0), new Point3d(x2, y2, 0), null, null, false));
+		return lines;
+	}
+
+	@Test
+	public void findsEndsWithinToleranceAcrossCells() {
+		LoopEndpointIndex index = new LoopEndpointIndex();
+		//Both ends sit right at the edge of a cell so that a point within tolerance lands in the next cell over
+		double edge = Triangle3d.EQUAL_TOLERANCE * 1024 * 7;
+		LoopEndpointIndex.WorkingLoop first = index.add(loop(5, 5, edge - Triangle3d.EQUAL_TOLERANCE / 2, edge - Triangle3d.EQUAL_TOLERANCE / 2));
+		LoopEndpointIndex.WorkingLoop far = index.add(loop(20, 20, 30, 30));
+		LoopEndpointIndex.WorkingLoop second = index.add(loop(edge, edge, 9, 9));
+
+		Point3d probe = new Point3d(edge, edge, 0);
+		List<LoopEndpointIndex.WorkingLoop> candidates = index.findLoopsNear(probe, new Point3d(-1, -1, 0), null);
+		Assert.assertEquals(2, candidates.size());
+		Assert.assertSame(first, candidates.get(0));
+		Assert.assertSame(second, candidates.get(1));
+		Assert.assertTrue(probe.pointEquals(first.getTail()));
+
+		candidates = index.findLoopsNear(probe, first.getHead(), first);
+		Assert.assertEquals(1, candidates.size());
+		Assert.assertSame(second, candidates.get(0));
+
+		index.remove(first);
+		Assert.assertSame(far, index.getFirst());
+		Assert.assertEquals(2, index.size());
+		Assert.assertEquals(1, index.findLoopsNear(probe, probe, null).size());
+	}
+
+	@Test
+	public void reindexFollowsTheEndsOfTheLoop() {
+		LoopEndpointIndex index = new LoopEndpointIndex();
+		LoopEndpointIndex.WorkingLoop loop = index.add(loop(0, 0, 1, 1));
+		loop.getLines().add(new Line3d(new Point3d(1, 1, 0), new Point3d(2, 2, 0), null, null, false));
+		index.reindex(loop);
+
+		Assert.assertTrue(index.findLoopsNear(new Point3d(1, 1, 0), new Point3d(1, 1, 0), null).isEmpty());
+		Assert.assertSame(loop, index.findLoopsNear(new Point3d(2, 2, 0), new Point3d(2, 2, 0), null).get(0));
+		Assert.assertEquals(1, index.getLoops().size());
+	}
+}
@@ -0,0 +1,107 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RunLengthLayerTest {
+	private static final int WIDTH = 97;
+	private static final int HEIGHT = 41;
+
+	private boolean[][] randomPixels(Random random, RunLengthLayer.Builder builder) {
+		boolean[][] pixels = new boolean[HEIGHT][WIDTH];
+		for (int t = 0; t < 200; t++) {
+			int y = random.nextInt(HEIGHT);
+			int start = random.nextInt(WIDTH);
+			int end = start + random.nextInt(WIDTH - start + 1);
+			builder.addRun(y, start, end);
+			for (int x = start; x < end; x++) {
+				pixels[y][x] = true;
+			}
+		}
+		return pixels;
+	}
+
+	private void assertPixels(boolean[][] expected, RunLengthLayer layer) {
+		long area = 0;
+		for (int y = 0; y < HEIGHT; y++) {
+			boolean[] row = new boolean[WIDTH];
+			int[] runs = layer.getRuns(y);
+			for (int t = 0; t < runs.length; t += 2) {
+				Assert.assertTrue("Runs must be sorted and apart", t == 0 || runs[t] > runs[t - 1]);
+				for (int x = runs[t]; x < runs[t + 1]; x++) {
+					row[x] = true;
+				}
+			}
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals("Pixel at:" + x + "," + y, expected[y][x], row[x]);
+				area += expected[y][x] ? 1 : 0;
+			}
+		}
+		Assert.assertEquals(area, layer.getArea());
+	}
+
+	@Test
+	public void booleanOperationsMatchBitmaps() {
+		Random random = new Random(515);
+		RunLengthLayer.Builder firstBuilder = new RunLengthLayer.Builder(0, HEIGHT - 1);
+		boolean[][] first = randomPixels(random, firstBuilder);
+		RunLengthLayer.Builder secondBuilder = new RunLengthLayer.Builder(0, HEIGHT - 1);
+		boolean[][] second = randomPixels(random, secondBuilder);
+		RunLengthLayer firstLayer = firstBuilder.build();
+		RunLengthLayer secondLayer = secondBuilder.build();
+
+		boolean[][] union = new boolean[HEIGHT][WIDTH];
+		boolean[][] intersection = new boolean[HEIGHT][WIDTH];
+		boolean[][] difference = new boolean[HEIGHT][WIDTH];
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				union[y][x] = first[y][x] || second[y][x];
+				intersection[y][x] = first[y][x] && second[y][x];
+				difference[y][x] = first[y][x] && !second[y][x];
+			}
+		}
+
+		assertPixels(first, firstLayer);
+		assertPixels(union, firstLayer.union(secondLayer));
+		assertPixels(intersection, firstLayer.intersection(secondLayer));
+		assertPixels(difference, firstLayer.difference(secondLayer));
+		assertPixels(first, firstLayer.union(RunLengthLayer.EMPTY));
+	}
+
+	@Test
+	public void drawingMatchesPaintingAndImage() {
+		Random random = new Random(42);
+		RunLengthLayer.Builder builder = new RunLengthLayer.Builder(-3, HEIGHT + 3);
+		for (int t = 0; t < 300; t++) {
+			int start = random.nextInt(WIDTH + 20) - 10;
+			builder.addRun(random.nextInt(HEIGHT + 7) - 3, start, start + random.nextInt(30));
+		}
+		RunLengthLayer layer = builder.build();
+
+		BufferedImage painted = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = painted.createGraphics();
+		graphics.setColor(Color.white);
+		layer.paint(graphics);
+		graphics.dispose();
+
+		BufferedImage drawn = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		layer.drawInto(drawn, Color.white.getRGB());
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				Assert.assertEquals("Pixel at:" + x + "," + y, painted.getRGB(x, y), drawn.getRGB(x, y));
+			}
+		}
+
+		RunLengthLayer clipped = RunLengthLayer.fromImage(drawn);
+		RunLengthLayer.Builder window = new RunLengthLayer.Builder(0, HEIGHT - 1);
+		for (int y = 0; y < HEIGHT; y++) {
+			window.addRun(y, 0, WIDTH);
+		}
+		Assert.assertEquals(layer.intersection(window.build()).getArea(), clipped.getArea());
+	}
+}
@@ -0,0 +1,58 @@
+package org.area515.resinprinter.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScanlineFillPolygonWorkTest {
+	private static final int HEIGHT = 300;
+
+	//Lots of small round islands, so every row crosses a lot of edges
+	private List<Line3d> buildDenseLayer() {
+		Random random = new Random(515);
+		List<Line3d> lines = new ArrayList<Line3d>();
+		for (int island = 0; island < 60; island++) {
+			double centerX = 20 + random.nextDouble() * 360;
+			double centerY = 20 + random.nextDouble() * (HEIGHT - 40);
+			double radius = 3 + random.nextDouble() * 15;
+			int sides = 48;
+			for (int side = 0; side < sides; side++) {
+				double angle = Math.PI * 2 * side / sides;
+				double nextAngle = Math.PI * 2 * (side + 1) / sides;
+				double middleAngle = (angle + nextAngle) / 2;
+				Point3d one = new Point3d(centerX + Math.cos(angle) * radius, centerY + Math.sin(angle) * radius, 0);
+				Point3d two = new Point3d(centerX + Math.cos(nextAngle) * radius, centerY + Math.sin(nextAngle) * radius, 0);
+				lines.add(new Line3d(one, two, new Point3d(Math.cos(middleAngle), Math.sin(middleAngle), 0), null, true));
+			}
+		}
+		return lines;
+	}
+
+	@Test
+	public void splitFillMatchesTheUnsplitFill() {
+		SlicingExecutor.setThreads(3);
+		SlicingExecutor.shutdownPool();
+		try {
+			Assert.assertEquals(3, SlicingExecutor.getMetrics().getParallelism());
+
+			List<Line3d> lines = buildDenseLayer();
+			ScanlineFillPolygonWork unsplit = SlicingExecutor.getPool().invoke(new ScanlineFillPolygonWork(lines, null, null, 0, HEIGHT - 1, 0, Long.MAX_VALUE));
+			ScanlineFillPolygonWork split = SlicingExecutor.getPool().invoke(new ScanlineFillPolygonWork(lines, null, null, 0, HEIGHT - 1, 0, 1));
+
+			Assert.assertTrue(unsplit.getBuildArea() > 0);
+			Assert.assertEquals(unsplit.getBuildArea(), split.getBuildArea());
+			Assert.assertEquals(unsplit.getLayer().getArea(), split.getLayer().getArea());
+			for (int y = 0; y < HEIGHT; y++) {
+				Assert.assertArrayEquals("Row:" + y, unsplit.getLayer().getRuns(y), split.getLayer().getRuns(y));
+			}
+		} finally {
+			SlicingExecutor.setThreads(0);
+			SlicingExecutor.shutdownPool();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.area515.resinprinter.slice.StlError.ErrorType;
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Triangle3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceCacheTest {
+	private BufferedImage paintRandomSlice(int width, int height) {
+		Random random = new Random(515);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setBackground(Color.black);
+		graphics.clearRect(0, 0, width, height);
+		graphics.setColor(Color.white);
+		for (int t = 0; t < 40; t++) {
+			graphics.fillOval(random.nextInt(width), random.nextInt(height), random.nextInt(width / 2) + 1, random.nextInt(height / 2) + 1);
+		}
+		//Make sure runs that touch both edges of a row survive
+		graphics.drawLine(0, 0, width - 1, 0);
+		graphics.drawLine(width - 1, 0, width - 1, height - 1);
+		graphics.dispose();
+		return image;
+	}
+
+	@Test
+	public void cachedLayersAreIdentical() throws IOException {
+		File cacheDirectory = Files.createTempDirectory("sliceCache").toFile();
+		SliceCache cache = new SliceCache(cacheDirectory);
+		BufferedImage slice = paintRandomSlice(301, 157);
+		//Runs that hang off of the image are clipped the same way they are when the slicer paints them
+		RunLengthLayer fill = RunLengthLayer.fromImage(slice).union(new RunLengthLayer.Builder(-3, 160)
+				.addRun(-3, 10, 20)
+				.addRun(50, -40, 5)
+				.addRun(60, 290, 400)
+				.addRun(160, 0, 301)
+				.build());
+		List<Polygon> outlines = Arrays.asList(
+				new Polygon(new int[]{20, 280, 150}, new int[]{140, 140, 20}, 3),
+				new Polygon(new int[]{-10, 100, 320}, new int[]{5, 170, 80}, 3));
+
+		Graphics2D graphics = slice.createGraphics();
+		graphics.setColor(Color.white);
+		graphics.fillRect(0, 50, 5, 1);
+		graphics.fillRect(290, 60, 11, 1);
+		graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		for (Polygon outline : outlines) {
+			graphics.drawPolygon(outline);
+		}
+		graphics.dispose();
+
+		Assert.assertFalse(cache.hasLayer(3));
+		Triangle3d triangle = new Triangle3d(new Point3d[]{new Point3d(1, 2, 3), new Point3d(4, 5, 6), new Point3d(7, 8, 10)}, new Point3d(0, 0, 1), null, null, 42);
+		List<StlError> errors = Arrays.asList(
+				new StlError(triangle, new Line3d(new Point3d(1, 2, 3), new Point3d(4, 5, 6), null, triangle, false)),
+				new StlError(triangle, ErrorType.Insideout));
+
+		Assert.assertNull(cache.readLayer(3, new BufferedImage(301, 157, BufferedImage.TYPE_INT_ARGB), null));
+		cache.writeLayer(3, fill, outlines, errors, 301, 157, 1234.0);
+		Assert.assertTrue(cache.hasLayer(3));
+
+		BufferedImage cached = new BufferedImage(301, 157, BufferedImage.TYPE_INT_ARGB);
+		List<StlError> cachedErrors = new ArrayList<StlError>();
+		Assert.assertEquals(1234.0, cache.readLayer(3, cached, cachedErrors), 0);
+		Assert.assertEquals(errors.toString(), cachedErrors.toString());
+		Assert.assertEquals(Integer.valueOf(42), cachedErrors.get(0).getTriangle().getOriginalIndex());
+		Assert.assertEquals(ErrorType.NonManifold, cachedErrors.get(0).getType());
+		Assert.assertEquals(ErrorType.Insideout, cachedErrors.get(1).getType());
+		for (int y = 0; y < slice.getHeight(); y++) {
+			for (int x = 0; x < slice.getWidth(); x++) {
+				Assert.assertEquals("Pixel at:" + x + "," + y, slice.getRGB(x, y), cached.getRGB(x, y));
+			}
+		}
+
+		Assert.assertNull("A layer painted for another resolution is a miss", cache.readLayer(3, new BufferedImage(300, 157, BufferedImage.TYPE_INT_ARGB), null));
+	}
+
+	@Test
+	public void keyDependsOnModelAndSettings() throws IOException {
+		File cacheDirectory = Files.createTempDirectory("sliceCache").toFile();
+		File model = File.createTempFile("model", ".stl");
+		model.deleteOnExit();
+		FileOutputStream output = new FileOutputStream(model);
+		try {
+			output.write(new byte[]{1, 2, 3});
+		} finally {
+			output.close();
+		}
+
+		File first = SliceCache.open(cacheDirectory, model, 10.0, 0.1, 1920, 1080).getLayerDirectory();
+		Assert.assertEquals(first, SliceCache.open(cacheDirectory, model, 10.0, 0.1, 1920, 1080).getLayerDirectory());
+		Assert.assertNotEquals(first, SliceCache.open(cacheDirectory, model, 10.0, 0.05, 1920, 1080).getLayerDirectory());
+
+		output = new FileOutputStream(model);
+		try {
+			output.write(new byte[]{1, 2, 3, 4});
+		} finally {
+			output.close();
+		}
+		Assert.assertNotEquals(first, SliceCache.open(cacheDirectory, model, 10.0, 0.1, 1920, 1080).getLayerDirectory());
+	}
+}
@@ -0,0 +1,90 @@
+package org.area515.resinprinter.slice;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.area515.resinprinter.stl.TriangleMesh;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StlFileTest {
+	private byte[] buildBinaryStl(int claimedFaces, int actualFaces) {
+		ByteBuffer buffer = ByteBuffer.allocate(84 + actualFaces * 50);
+		buffer.order(ByteOrder.nativeOrder());
+		buffer.position(80);
+		buffer.putInt(claimedFaces);
+		for (int t = 0; t < actualFaces; t++) {
+			buffer.putFloat(0).putFloat(0).putFloat(1);
+			buffer.putFloat(t).putFloat(0).putFloat(0);
+			buffer.putFloat(t + 1).putFloat(0).putFloat(0.5f);
+			buffer.putFloat(t).putFloat(1).putFloat(1);
+			buffer.putShort((short)0);
+		}
+		return buffer.array();
+	}
+
+	private File writeTempFile(byte[] data) throws IOException {
+		File file = File.createTempFile("binary", ".stl");
+		file.deleteOnExit();
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(data);
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	private ZSlicer newSlicer() {
+		return new ZSlicer(1, 1, 1, 0.1, 0, false, false, new CloseOffMend());
+	}
+
+	private double[] getVertices(TriangleMesh mesh) {
+		double[] vertices = new double[mesh.getFaceCount() * 9];
+		for (int face = 0; face < mesh.getFaceCount(); face++) {
+			for (int corner = 0; corner < 3; corner++) {
+				vertices[face * 9 + corner * 3] = mesh.getVertexX(face, corner);
+				vertices[face * 9 + corner * 3 + 1] = mesh.getVertexY(face, corner);
+				vertices[face * 9 + corner * 3 + 2] = mesh.getVertexZ(face, corner);
+			}
+		}
+		return vertices;
+	}
+
+	@Test
+	public void mappedAndStreamedFilesAreIdentical() throws IOException {
+		//More facets than a single chunk so that the chunk boundaries are crossed
+		byte[] data = buildBinaryStl(40000, 40000);
+		ZSlicer streamed = newSlicer();
+		streamed.loadFile(new ByteArrayInputStream(data), null, null);
+		ZSlicer mapped = newSlicer();
+		mapped.loadFile(new FileInputStream(writeTempFile(data)), null, null);
+
+		Assert.assertEquals(40000, streamed.getTriangleMesh().getFaceCount());
+		Assert.assertEquals(40000, mapped.getTriangleMesh().getFaceCount());
+		Assert.assertTrue(Arrays.equals(getVertices(streamed.getTriangleMesh()), getVertices(mapped.getTriangleMesh())));
+		Assert.assertEquals(40000 * 3, mapped.getTriangleMesh().getVertexCount());
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException {
+		byte[] data = buildBinaryStl(10, 5);
+		try {
+			newSlicer().loadFile(new FileInputStream(writeTempFile(data)), null, null);
+			Assert.fail("A mapped file that is too small for its facet count should fail");
+		} catch (IOException e) {
+		}
+
+		try {
+			newSlicer().loadFile(new ByteArrayInputStream(data), null, null);
+			Assert.fail("A stream that ends before its facet count should fail");
+		} catch (IOException e) {
+		}
+	}
+}
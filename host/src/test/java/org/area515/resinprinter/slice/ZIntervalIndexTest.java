@@ -0,0 +1,59 @@
+package org.area515.resinprinter.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZIntervalIndexTest {
+	@Test
+	public void matchesBruteForceIntersection() {
+		Random random = new Random(515);
+		int faceCount = 5000;
+		double[] zmin = new double[faceCount];
+		double[] zmax = new double[faceCount];
+		for (int t = 0; t < faceCount; t++) {
+			double first = random.nextInt(200) / 4.0;
+			//Mix in some really tall faces like the walls of a box
+			double second = t % 50 == 0 ? first + 40 : first + random.nextInt(8) / 4.0;
+			zmin[t] = first;
+			zmax[t] = second;
+		}
+
+		//The index sorts the arrays it's given in place
+		ZIntervalIndex index = new ZIntervalIndex(zmin.clone(), zmax.clone());
+		Assert.assertEquals(faceCount, index.size());
+		for (double z = -1; z < 100; z += 0.125) {
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int t = 0; t < faceCount; t++) {
+				if (z >= zmin[t] && z <= zmax[t]) {
+					expected.add(t);
+				}
+			}
+
+			int[] actual = index.findIntersecting(z);
+			Assert.assertEquals("Candidate count at z:" + z, expected.size(), actual.length);
+			for (int t = 0; t < actual.length; t++) {
+				Assert.assertEquals("Load order at z:" + z, expected.get(t).intValue(), actual[t]);
+			}
+		}
+	}
+
+	@Test
+	public void extentsThatArentFloatsArentPruned() {
+		//Both round down to the same float, a subtree maximum that was rounded down would prune the face
+		double zmax = 0.1;
+		double z = Math.nextUp(0.1);
+		ZIntervalIndex index = new ZIntervalIndex(new double[]{0, 0, z}, new double[]{zmax, z, 1});
+		Assert.assertArrayEquals(new int[]{1, 2}, index.findIntersecting(z));
+		Assert.assertArrayEquals(new int[]{0, 1}, index.findIntersecting(zmax));
+	}
+
+	@Test
+	public void emptyIndex() {
+		ZIntervalIndex index = new ZIntervalIndex(new double[0], new double[0]);
+		Assert.assertEquals(0, index.findIntersecting(0).length);
+	}
+}
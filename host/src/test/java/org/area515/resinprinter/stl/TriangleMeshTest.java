@@ -0,0 +1,56 @@
+package org.area515.resinprinter.stl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TriangleMeshTest {
+	@Test
+	public void sharedVerticesAreStoredOnce() {
+		TriangleMesh mesh = new TriangleMesh();
+		int a = mesh.addVertex(0, 0, 0);
+		int b = mesh.addVertex(1, 0, 0);
+		int c = mesh.addVertex(0, 1, 0);
+		mesh.addFace(a, b, c, 0, 0, 1);
+		mesh.addFace(mesh.addVertex(1, 0, 0), mesh.addVertex(1, 1, 0), mesh.addVertex(0, 1, 0), 0, 0, 1);
+		mesh.trimToSize();
+
+		Assert.assertEquals(2, mesh.getFaceCount());
+		Assert.assertEquals(4, mesh.getVertexCount());
+		Assert.assertEquals(b, mesh.addVertex(1, 0, 0));
+
+		Triangle3d triangle = mesh.getTriangle(1);
+		Assert.assertEquals(Integer.valueOf(1), triangle.getOriginalIndex());
+		Assert.assertEquals(1, triangle.getPoints().get(1).x, 0);
+		Assert.assertEquals(1, triangle.getPoints().get(1).y, 0);
+		Assert.assertEquals(1, triangle.getNormal().z, 0);
+	}
+
+	@Test
+	public void distinctFacesMatchSortedTriangleSet() {
+		Random random = new Random(515);
+		TriangleMesh mesh = new TriangleMesh();
+		List<Triangle3d> loaded = new ArrayList<Triangle3d>();
+		for (int t = 0; t < 5000; t++) {
+			int[] vertices = new int[3];
+			for (int v = 0; v < 3; v++) {
+				//A coarse grid makes sure that plenty of vertices and faces are duplicated
+				vertices[v] = mesh.addVertex(random.nextInt(6), random.nextInt(6), random.nextInt(6));
+			}
+			mesh.addFace(vertices[0], vertices[1], vertices[2], 0, 0, 1);
+			loaded.add(mesh.getTriangle(t));
+		}
+
+		TreeSet<Triangle3d> expected = new TreeSet<Triangle3d>(loaded);
+		int[] distinctFaces = mesh.getDistinctFaces();
+		Assert.assertEquals(expected.size(), distinctFaces.length);
+		int t = 0;
+		for (Triangle3d triangle : expected) {
+			Assert.assertEquals(triangle.getOriginalIndex().intValue(), distinctFaces[t++]);
+		}
+	}
+}
@@ -6,6 +6,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -26,6 +29,7 @@ public class ZSlicingGeometry {
     private static final Logger logger = LogManager.getLogger();
 
     private String fileName;
+	private FillFile fillFile;
 	private ZSlicer slicer;
 	private List<FillPoint> checkPoints;
 	private BufferedImage image;
@@ -47,6 +51,7 @@ public class ZSlicingGeometry {
 		slicer.loadFile(CheckSlicePoints.class.getResourceAsStream(fillFile.getFileName()), (double)x, (double)y);
 		image = new BufferedImage(x, y, BufferedImage.TYPE_INT_ARGB);
 		fileName = fillFile.getFileName();
+		this.fillFile = fillFile;
 	}
 	
 	@Test
@@ -120,6 +125,75 @@ public class ZSlicingGeometry {
 		}
 	}
 
+	@Test
+	public void testSweepPlaneMatchesIndexedSlicing() throws IOException {
+		ZSlicer sweepSlicer = new ZSlicer(
+				fillFile.getStlScale(), 
+				fillFile.getPixelsPerMMX(), 
+				fillFile.getPixelsPerMMY(), 
+				fillFile.getzSliceResolution(),
+				fillFile.getzSliceOffset(),
+				true, 
+				false,
+				new CloseOffMend());
+		sweepSlicer.setSweepPlaneSlicing(true);
+		sweepSlicer.loadFile(CheckSlicePoints.class.getResourceAsStream(fillFile.getFileName()), (double)x, (double)y);
+		
+		//Sweep up through the middle of the model and then back down again
+		int middle = (slicer.getZMinIndex() + slicer.getZMaxIndex()) / 2;
+		List<Integer> zIndexes = new ArrayList<Integer>();
+		for (int z = Math.max(slicer.getZMinIndex(), middle - 15); z <= Math.min(slicer.getZMaxIndex(), middle + 15); z++) {
+			zIndexes.add(z);
+		}
+		for (int z = Math.min(slicer.getZMaxIndex(), middle + 15); z >= Math.max(slicer.getZMinIndex(), middle - 15); z -= 5) {
+			zIndexes.add(z);
+		}
+		
+		for (int z : zIndexes) {
+			slicer.setZIndex(z);
+			List<List<Line3d>> indexedLoops = slicer.colorizePolygons(null, null);
+			sweepSlicer.setZIndex(z);
+			List<List<Line3d>> sweepLoops = sweepSlicer.colorizePolygons(null, null);
+			
+			Assert.assertEquals("Loop count of:" + fileName + " on slice:" + z, indexedLoops.size(), sweepLoops.size());
+			Assert.assertEquals("Build area of:" + fileName + " on slice:" + z, slicer.getBuildArea(), sweepSlicer.getBuildArea(), slicer.getBuildArea() / 1000 + 1);
+		}
+	}
+	
+	@Test
+	public void testForkedSlicersMatchSerialSlicing() throws Exception {
+		ZSlicer[] forks = new ZSlicer[3];
+		for (int t = 0; t < forks.length; t++) {
+			forks[t] = slicer.forkSlicer();
+		}
+		
+		int middle = (slicer.getZMinIndex() + slicer.getZMaxIndex()) / 2;
+		int start = Math.max(slicer.getZMinIndex(), middle - 15);
+		int end = Math.min(slicer.getZMaxIndex(), middle + 15);
+		ExecutorService executor = Executors.newFixedThreadPool(forks.length);
+		try {
+			for (int z = start; z <= end; z += forks.length) {
+				List<Future<Double>> forkedAreas = new ArrayList<Future<Double>>();
+				for (int t = 0; t < forks.length && z + t <= end; t++) {
+					ZSlicer fork = forks[t];
+					fork.setZIndex(z + t);
+					forkedAreas.add(executor.submit(() -> {
+						fork.colorizePolygons(null, null);
+						return (double)fork.getBuildArea();
+					}));
+				}
+				
+				for (int t = 0; t < forkedAreas.size(); t++) {
+					slicer.setZIndex(z + t);
+					slicer.colorizePolygons(null, null);
+					Assert.assertEquals("Build area of:" + fileName + " on slice:" + (z + t), (double)slicer.getBuildArea(), forkedAreas.get(t).get(), 0);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
 	@Parameters
 	public static Object[] data() throws IOException {
 		Map<FillFile, FillFile> points = SlicePointUtils.loadPoints();
@@ -1,6 +1,9 @@
 package org.area515.resinprinter.test;
 
+import org.area515.resinprinter.display.FramePresenterTest;
 import org.area515.resinprinter.gcode.FirmwareResponseSimulation;
+import org.area515.resinprinter.gcode.GCodePipeliningTest;
+import org.area515.resinprinter.gcode.GCodeProgramTest;
 import org.area515.resinprinter.gcode.TestGCodeTemplating;
 import org.area515.resinprinter.http.TestByteSession;
 import org.area515.resinprinter.image.ConvertCWMaskToTransparencyMask;
@@ -8,14 +11,34 @@ import org.area515.resinprinter.inkdetection.visual.CircleTest;
 import org.area515.resinprinter.inkdetection.visual.LineTest;
 import org.area515.resinprinter.inkdetection.visual.TestVisualPrintMaterialDetector;
 import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.ExposureClockTest;
+import org.area515.resinprinter.job.SliceArchiveTest;
+import org.area515.resinprinter.job.PrintJobMetricsTest;
+import org.area515.resinprinter.job.PrintTimeSimulatorTest;
+import org.area515.resinprinter.job.SliceImageLookaheadTest;
+import org.area515.resinprinter.job.render.ImageBufferPoolTest;
+import org.area515.resinprinter.job.render.ImageTransformPlanTest;
+import org.area515.resinprinter.job.render.LookaheadRendererTest;
+import org.area515.resinprinter.job.render.SlicePngDecoderTest;
 import org.area515.resinprinter.network.LinuxNetworkManagerTest;
 import org.area515.resinprinter.printer.DetectFirmwareMock;
+import org.area515.resinprinter.printer.ProjectorStatusCacheTest;
 import org.area515.resinprinter.projector.HexCodeBasedProjectorTesting;
+import org.area515.resinprinter.serial.SerialPortDetectorTest;
+import org.area515.resinprinter.serial.SerialReadQueueTest;
 import org.area515.resinprinter.security.KeystoreSecurityTest;
 import org.area515.resinprinter.security.SerializeMessageAsJson;
 import org.area515.resinprinter.security.keystore.RendezvousExchange;
+import org.area515.resinprinter.server.MonitoredExecutorTest;
 import org.area515.resinprinter.services.TestScriptAndTemplating;
 import org.area515.resinprinter.slice.CheckSlicePoints;
+import org.area515.resinprinter.slice.LoopEndpointIndexTest;
+import org.area515.resinprinter.slice.RunLengthLayerTest;
+import org.area515.resinprinter.slice.ScanlineFillPolygonWorkTest;
+import org.area515.resinprinter.slice.SliceCacheTest;
+import org.area515.resinprinter.slice.StlFileTest;
+import org.area515.resinprinter.slice.ZIntervalIndexTest;
+import org.area515.resinprinter.stl.TriangleMeshTest;
 import org.area515.resinprinter.stl.ZSlicingGeometry;
 import org.area515.util.IOUtilitiesTest;
 import org.junit.runner.RunWith;
@@ -31,6 +54,7 @@ import org.junit.runners.Suite;
 	AbstractPrintFileProcessorTest.class,
 	TestScriptAndTemplating.class,
 	HexCodeBasedProjectorTesting.class,
+	ProjectorStatusCacheTest.class,
 	DetectFirmwareMock.class,
 	FirmwareResponseSimulation.class,
 	ConvertCWMaskToTransparencyMask.class,
@@ -40,8 +64,30 @@ import org.junit.runners.Suite;
 	SerializeMessageAsJson.class,
 	RendezvousExchange.class,
 	TestGCodeTemplating.class,
+	GCodePipeliningTest.class,
+	GCodeProgramTest.class,
 	TestByteSession.class,
+	ZIntervalIndexTest.class,
+	TriangleMeshTest.class,
+	StlFileTest.class,
+	SliceCacheTest.class,
+	ScanlineFillPolygonWorkTest.class,
+	RunLengthLayerTest.class,
+	LoopEndpointIndexTest.class,
+	MonitoredExecutorTest.class,
+	SliceArchiveTest.class,
+	SliceImageLookaheadTest.class,
+	PrintTimeSimulatorTest.class,
+	PrintJobMetricsTest.class,
+	SlicePngDecoderTest.class,
+	ImageBufferPoolTest.class,
+	ImageTransformPlanTest.class,
+	LookaheadRendererTest.class,
+	SerialReadQueueTest.class,
+	SerialPortDetectorTest.class,
+	FramePresenterTest.class,
+	ExposureClockTest.class,
 })
 
 public class FullTestSuite {
-}
\ No newline at end of file
+}
\ No newline at end of file